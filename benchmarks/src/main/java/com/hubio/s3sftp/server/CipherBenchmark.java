@@ -0,0 +1,115 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.cipher.Cipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of each cipher sshd supports, to choose the ciphers for a {@link CryptoProfile}.
+ *
+ * <p>Each operation encrypts one SSH packet in place, as the server does for every packet it sends. Multiply the
+ * operations per second by the packet size for the bytes per second a single connection could reach.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark {
+
+    private static final int KEY_MATERIAL_SIZE = 64;
+
+    /**
+     * The name of the cipher.
+     */
+    @Param({
+                   "aes128-ctr", "aes192-ctr", "aes256-ctr", "aes128-cbc", "aes192-cbc", "aes256-cbc", "arcfour128",
+                   "arcfour256", "blowfish-cbc", "3des-cbc"
+           })
+    private String cipherName;
+
+    /**
+     * The size of each packet; the default SSH channel packet is 32KiB.
+     */
+    @Param({"32768"})
+    private int packetSize;
+
+    private Cipher cipher;
+
+    private byte[] packet;
+
+    /**
+     * Create the cipher with a random key and initialisation vector.
+     *
+     * @throws Exception if the cipher is not supported by this JVM
+     */
+    @Setup
+    public void setUp() throws Exception {
+        final BuiltinCiphers factory = BuiltinCiphers.fromFactoryName(cipherName);
+        if (factory == null || !factory.isSupported()) {
+            throw new IllegalStateException("Cipher not supported: " + cipherName);
+        }
+        cipher = factory.create();
+        cipher.init(Cipher.Mode.Encrypt, random(KEY_MATERIAL_SIZE), random(KEY_MATERIAL_SIZE));
+        packet = random(packetSize);
+    }
+
+    private static byte[] random(final int size) {
+        final byte[] bytes = new byte[size];
+        ThreadLocalRandom.current()
+                         .nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Encrypt a packet.
+     *
+     * @return the encrypted packet
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        cipher.update(packet, 0, packetSize);
+        return packet;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FixedPrefixS3PathEnhancer#apply(S3Path)}, which is called for every path passed to the filesystem
+ * provider.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPrefixS3PathEnhancerBenchmark {
+
+    private static final String PREFIX = "/bucket";
+
+    /**
+     * The path to enhance; either already prefixed, or needing the prefix added.
+     */
+    @Param({"/bucket/users/bob/docs/report.txt", "/users/bob/docs/report.txt"})
+    private String path;
+
+    private S3PathEnhancer enhancer;
+
+    private S3Path s3Path;
+
+    /**
+     * Create the enhancer and the path.
+     */
+    @Setup
+    public void setUp() {
+        final S3FileSystem fileSystem = new S3FileSystem(new S3FileSystemProvider(), "bucket", null, "localhost");
+        enhancer = S3PathEnhancer.fixedPrefix(PREFIX);
+        s3Path = new S3Path(fileSystem, path);
+    }
+
+    /**
+     * Enhance the path.
+     *
+     * @return the enhanced path
+     */
+    @Benchmark
+    public S3Path apply() {
+        return enhancer.apply(s3Path);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.filesystem.FileSystemProviderFactory;
+import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3FileSystemProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.subsystem.sftp.UnsupportedAttributePolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JailedSftpSubsystem#resolveFile(String)}, which is called for every path in every SFTP request.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JailedSftpSubsystemBenchmark {
+
+    private static final String BUCKET = "bucket";
+
+    private static final String USERNAME = "bob";
+
+    /**
+     * Whether the user is jailed within their parent directory, or only has a home directory.
+     */
+    @Param({"unjailed", "jailed"})
+    private String mapping;
+
+    /**
+     * The path requested by the client.
+     */
+    @Param({".", "docs/report.txt"})
+    private String remotePath;
+
+    private ExecutorService executorService;
+
+    private JailedSftpSubsystem subsystem;
+
+    /**
+     * Create the subsystem.
+     */
+    @Setup
+    public void setUp() {
+        final S3FileSystem fileSystem = new S3FileSystem(new S3FileSystemProvider(), BUCKET, null, "localhost");
+        final String jail;
+        if ("jailed".equals(mapping)) {
+            jail = "users";
+        } else {
+            jail = "";
+        }
+        final SessionJail sessionJail = session -> jail;
+        final ServerSession serverSession = StubSessions.serverSession(USERNAME);
+        final UserFileSystemResolver resolver = FileSystemProviderFactory.userResolver();
+        resolver.put(USERNAME, BUCKET, jail, fileSystem);
+        executorService = Executors.newSingleThreadExecutor();
+        subsystem = new JailedSftpSubsystem(executorService, true, UnsupportedAttributePolicy.Warn,
+                                            session -> BUCKET, session -> "users/" + session.getUsername(),
+                                            sessionJail, resolver, SessionQuota.unlimited(),
+                                            BucketUsage.listedEvery(Duration.ofMinutes(5))
+        ) {
+            @Override
+            public ServerSession getServerSession() {
+                return serverSession;
+            }
+        };
+    }
+
+    /**
+     * Stop the subsystem's executor.
+     */
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Resolve the requested path.
+     *
+     * @return the resolved path
+     */
+    @Benchmark
+    public Path resolveFile() {
+        return subsystem.resolveFile(remotePath);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.common.mac.Mac;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of each MAC sshd supports, to choose the MACs for a {@link CryptoProfile}.
+ *
+ * <p>Each operation signs one SSH packet with its sequence number, as the server does for every packet it sends.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacBenchmark {
+
+    private static final int KEY_MATERIAL_SIZE = 64;
+
+    /**
+     * The name of the MAC.
+     */
+    @Param({
+                   "hmac-sha2-256", "hmac-sha2-512", "hmac-sha1", "hmac-sha1-96", "hmac-md5", "hmac-md5-96"
+           })
+    private String macName;
+
+    /**
+     * The size of each packet; the default SSH channel packet is 32KiB.
+     */
+    @Param({"32768"})
+    private int packetSize;
+
+    private Mac mac;
+
+    private byte[] packet;
+
+    private byte[] signature;
+
+    private long sequence;
+
+    /**
+     * Create the MAC with a random key.
+     *
+     * @throws Exception if the MAC is not supported by this JVM
+     */
+    @Setup
+    public void setUp() throws Exception {
+        final BuiltinMacs factory = BuiltinMacs.fromFactoryName(macName);
+        if (factory == null || !factory.isSupported()) {
+            throw new IllegalStateException("MAC not supported: " + macName);
+        }
+        mac = factory.create();
+        final byte[] key = new byte[KEY_MATERIAL_SIZE];
+        packet = new byte[packetSize];
+        ThreadLocalRandom.current()
+                         .nextBytes(key);
+        ThreadLocalRandom.current()
+                         .nextBytes(packet);
+        mac.init(key);
+        signature = new byte[mac.getDefaultBlockSize()];
+    }
+
+    /**
+     * Sign a packet.
+     *
+     * @return the signature
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public byte[] sign() throws Exception {
+        mac.updateUInt(sequence++);
+        mac.update(packet, 0, packetSize);
+        mac.doFinal(signature, 0);
+        return signature;
+    }
+}
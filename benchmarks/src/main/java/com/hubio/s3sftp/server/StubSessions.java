@@ -0,0 +1,67 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.server.session.ServerSession;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Server sessions for benchmarks, which only know their username.
+ *
+ * <p>A mocking library would add more to each call than some of the benchmarks are measuring.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public final class StubSessions {
+
+    private StubSessions() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Create a session for a user.
+     *
+     * @param username The username
+     *
+     * @return the session
+     */
+    public static ServerSession serverSession(final String username) {
+        return (ServerSession) Proxy.newProxyInstance(StubSessions.class.getClassLoader(),
+                                                      new Class<?>[]{ServerSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getUsername":
+                        return username;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "StubSession(" + username + ")";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
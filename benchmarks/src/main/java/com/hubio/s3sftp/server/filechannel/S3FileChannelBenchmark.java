@@ -0,0 +1,120 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reads and writes through {@link S3FileChannel}, as made for each SFTP read and write request.
+ *
+ * <p>The channel reads and writes an in-memory copy of the object, so the results exclude the transfer to and from S3
+ * when the channel is opened and closed.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S3FileChannelBenchmark {
+
+    private static final int OBJECT_SIZE = 1024 * 1024;
+
+    /**
+     * The size of each read or write; the default SFTP packet size is 32KiB.
+     */
+    @Param({"4096", "32768"})
+    private int chunkSize;
+
+    private FileChannel channel;
+
+    private ByteBuffer buffer;
+
+    private long lastChunk;
+
+    /**
+     * Create the channel over an object of random content.
+     */
+    @Setup
+    public void setUp() {
+        final byte[] content = new byte[OBJECT_SIZE];
+        ThreadLocalRandom.current()
+                         .nextBytes(content);
+        channel = FileChannelFactory.of(new InMemorySeekableByteChannel(content));
+        buffer = ByteBuffer.allocate(chunkSize);
+        lastChunk = OBJECT_SIZE - chunkSize;
+    }
+
+    /**
+     * Read the next chunk, starting again from the beginning at the end of the object.
+     *
+     * @return the number of bytes read
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public int read() throws IOException {
+        rewindAtEnd();
+        buffer.clear();
+        return channel.read(buffer);
+    }
+
+    /**
+     * Write the next chunk, starting again from the beginning at the end of the object.
+     *
+     * @return the number of bytes written
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public int write() throws IOException {
+        rewindAtEnd();
+        buffer.clear();
+        return channel.write(buffer);
+    }
+
+    private void rewindAtEnd() throws IOException {
+        if (channel.position() > lastChunk) {
+            channel.position(0);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.AccessMode;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost that {@link InstrumentedS3SftpFileSystemProvider} adds to each call.
+ *
+ * <p>Each benchmark calls {@code checkAccess} on a provider that does nothing, so the difference between
+ * {@link #baseline()} and the instrumented benchmarks is the cost of instrumentation. The target is under 100ns per
+ * call.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final AccessMode[] MODES = {AccessMode.READ};
+
+    private S3SftpFileSystemProvider baseline;
+
+    private S3SftpFileSystemProvider noop;
+
+    private S3SftpFileSystemProvider jmx;
+
+    private S3SftpFileSystemProvider jmxPerUser;
+
+    private Path path;
+
+    /**
+     * Create the providers.
+     */
+    @Setup
+    public void setUp() {
+        baseline = new NothingProvider();
+        noop = new InstrumentedS3SftpFileSystemProvider(new NothingProvider(), MetricsRegistry.noop(), "bob");
+        jmx = new InstrumentedS3SftpFileSystemProvider(new NothingProvider(), MetricsRegistry.jmx(false), "bob");
+        jmxPerUser = new InstrumentedS3SftpFileSystemProvider(new NothingProvider(), MetricsRegistry.jmx(true), "bob");
+    }
+
+    /**
+     * The provider without instrumentation.
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public void baseline() throws Exception {
+        baseline.checkAccess(path, MODES);
+    }
+
+    /**
+     * Instrumented, but recording nothing: the cost of the clock reads.
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public void instrumentedNoop() throws Exception {
+        noop.checkAccess(path, MODES);
+    }
+
+    /**
+     * Instrumented, recording to latency histograms.
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public void instrumentedJmx() throws Exception {
+        jmx.checkAccess(path, MODES);
+    }
+
+    /**
+     * Instrumented, recording to latency histograms for each user.
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    public void instrumentedJmxPerUser() throws Exception {
+        jmxPerUser.checkAccess(path, MODES);
+    }
+
+    /**
+     * Instrumented, recording to latency histograms from several threads at once.
+     *
+     * @throws Exception never
+     */
+    @Benchmark
+    @Threads(4)
+    public void instrumentedJmxContended() throws Exception {
+        jmx.checkAccess(path, MODES);
+    }
+
+    /**
+     * A provider whose checkAccess does nothing.
+     */
+    private static final class NothingProvider extends S3SftpFileSystemProviderDecorator {
+
+        NothingProvider() {
+            super(null);
+        }
+
+        @Override
+        public void checkAccess(final Path path, final AccessMode... modes) {
+            // nothing
+        }
+    }
+}
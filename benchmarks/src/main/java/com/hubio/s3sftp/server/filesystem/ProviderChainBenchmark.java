@@ -0,0 +1,154 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.S3PathEnhancer;
+import com.hubio.s3sftp.server.StubSessions;
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import com.hubio.s3sftp.server.scheduling.UserWeight;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of dispatching a call through the full chain of providers created by
+ * {@link DefaultS3SftpFileSystemProviderFactory}, compared with calling the s3fs provider directly.
+ *
+ * <p>Only operations that are answered without calling S3 are measured, so the results are the cost of the chain
+ * itself.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderChainBenchmark {
+
+    private static final int MAX_CONCURRENT = 50;
+
+    private static final int MAX_CONCURRENT_PER_USER = 8;
+
+    private WorkScheduler workScheduler;
+
+    private MetricsRegistry metricsRegistry;
+
+    private S3SftpFileSystemProvider direct;
+
+    private S3SftpFileSystemProvider chain;
+
+    private S3Path path;
+
+    /**
+     * Create the providers, with the same resources the server uses by default.
+     */
+    @Setup
+    public void setUp() {
+        workScheduler = WorkScheduler.fairShare(MAX_CONCURRENT, MAX_CONCURRENT_PER_USER, UserWeight.equal());
+        metricsRegistry = MetricsRegistry.jmx(false);
+        workScheduler.start();
+        metricsRegistry.start();
+        final ProviderResources resources = ProviderResources.builder()
+                                                             .workScheduler(workScheduler)
+                                                             .metricsRegistry(metricsRegistry)
+                                                             .build();
+        final S3PathEnhancer enhancer = S3PathEnhancer.fixedPrefix("/bucket");
+        direct = new DelegatableS3FileSystemProvider(StubSessions.serverSession("bob"));
+        chain = FileSystemProviderFactory.s3SftpProviderFactory(resources)
+                                         .createWith(enhancer, StubSessions.serverSession("bob"));
+        path = new S3Path(new S3FileSystem(direct.getS3FileSystemProvider(), "bucket", null, "localhost"),
+                          "/bucket/users/bob/docs/report.txt"
+        );
+    }
+
+    /**
+     * Stop the resources.
+     */
+    @TearDown
+    public void tearDown() {
+        metricsRegistry.stop();
+        workScheduler.stop();
+    }
+
+    /**
+     * Get an attribute view directly from the s3fs provider.
+     *
+     * @return the view
+     */
+    @Benchmark
+    public BasicFileAttributeView directGetFileAttributeView() {
+        return direct.getFileAttributeView(path, BasicFileAttributeView.class);
+    }
+
+    /**
+     * Get an attribute view through the full chain.
+     *
+     * @return the view
+     */
+    @Benchmark
+    public BasicFileAttributeView chainGetFileAttributeView() {
+        return chain.getFileAttributeView(path, BasicFileAttributeView.class);
+    }
+
+    /**
+     * Check whether a path is hidden directly with the s3fs provider.
+     *
+     * @return false
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public boolean directIsHidden() throws IOException {
+        return direct.isHidden(path);
+    }
+
+    /**
+     * Check whether a path is hidden through the full chain.
+     *
+     * @return false
+     *
+     * @throws IOException never
+     */
+    @Benchmark
+    public boolean chainIsHidden() throws IOException {
+        return chain.isHidden(path);
+    }
+}
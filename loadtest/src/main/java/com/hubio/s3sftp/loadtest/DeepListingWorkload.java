@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a deep tree of directories, listing each one.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class DeepListingWorkload implements Workload {
+
+    static final int DEFAULT_DEPTH = 3;
+
+    static final int DEFAULT_FAN_OUT = 3;
+
+    static final int FILES_PER_DIRECTORY = 8;
+
+    private static final String ROOT = "tree";
+
+    private final int depth;
+
+    private final int fanOut;
+
+    @Override
+    public void prepare(final AmazonS3 amazonS3, final String bucket, final String home) {
+        prepareDirectory(amazonS3, bucket, home + "/" + ROOT, depth);
+    }
+
+    private void prepareDirectory(final AmazonS3 amazonS3, final String bucket, final String key, final int levels) {
+        put(amazonS3, bucket, key + "/");
+        for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+            put(amazonS3, bucket, key + "/file-" + i);
+        }
+        if (levels > 0) {
+            for (int i = 0; i < fanOut; i++) {
+                prepareDirectory(amazonS3, bucket, key + "/dir-" + i, levels - 1);
+            }
+        }
+    }
+
+    private static void put(final AmazonS3 amazonS3, final String bucket, final String key) {
+        val metadata = new ObjectMetadata();
+        metadata.setContentLength(0);
+        amazonS3.putObject(bucket, key, new ByteArrayInputStream(new byte[0]), metadata);
+    }
+
+    @Override
+    public void iterate(final SftpClient client, final OperationRecorder recorder) throws IOException {
+        walk(client, recorder, ROOT);
+    }
+
+    private void walk(final SftpClient client, final OperationRecorder recorder, final String path)
+            throws IOException {
+        val directories = new ArrayList<String>();
+        recorder.time("readdir", () -> {
+            list(client, path, directories);
+            return 0L;
+        });
+        for (final String directory : directories) {
+            walk(client, recorder, path + "/" + directory);
+        }
+    }
+
+    private static void list(final SftpClient client, final String path, final List<String> directories)
+            throws IOException {
+        for (final SftpClient.DirEntry entry : client.readDir(path)) {
+            val name = entry.getFilename();
+            if (entry.getAttributes()
+                     .isDirectory() && !".".equals(name) && !"..".equals(name)) {
+                directories.add(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes, reads back and removes a few large files.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class LargeFilesWorkload implements Workload {
+
+    static final int DEFAULT_FILE_SIZE = 64 * 1024 * 1024;
+
+    private final AtomicLong files = new AtomicLong();
+
+    private final int fileSize;
+
+    @Override
+    public void iterate(final SftpClient client, final OperationRecorder recorder) throws IOException {
+        val path = "large-" + files.incrementAndGet();
+        recorder.time("write", () -> Transfers.write(client, path, fileSize));
+        recorder.time("read", () -> Transfers.read(client, path));
+        recorder.time("remove", () -> {
+            client.remove(path);
+            return 0L;
+        });
+    }
+}
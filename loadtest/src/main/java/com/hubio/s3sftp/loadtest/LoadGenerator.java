@@ -0,0 +1,158 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a workload in many concurrent SFTP sessions, each logged in as a different user.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class LoadGenerator {
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private static final int SESSION_ATTEMPTS = 5;
+
+    private final String host;
+
+    private final int port;
+
+    private final String password;
+
+    private final Workload workload;
+
+    private final OperationRecorder recorder = new OperationRecorder();
+
+    private volatile boolean running;
+
+    /**
+     * Run the workload, discarding the results gathered during the warmup.
+     *
+     * @param usernames The user to log in as for each session
+     * @param warmup    How long to run before measuring
+     * @param duration  How long to measure for
+     *
+     * @return the report of the measured period
+     *
+     * @throws IOException          if a session could not be opened
+     * @throws InterruptedException if interrupted while waiting for the sessions
+     */
+    LoadReport run(final List<String> usernames, final Duration warmup, final Duration duration)
+            throws IOException, InterruptedException {
+        try (SshClient client = SshClient.setUpDefaultClient()) {
+            client.start();
+            val sftpClients = new ArrayList<SftpClient>();
+            try {
+                for (final String username : usernames) {
+                    sftpClients.add(openSession(client, username));
+                }
+                return measure(sftpClients, warmup, duration);
+            } finally {
+                for (final SftpClient sftpClient : sftpClients) {
+                    sftpClient.getClientSession()
+                              .close(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a session, trying again if it fails, as it may when faults are being injected into S3.
+     */
+    private SftpClient openSession(final SshClient client, final String username) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tryOpenSession(client, username);
+            } catch (IOException e) {
+                if (attempt == SESSION_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("{}: could not open session, trying again: {}", username, e.getMessage());
+            }
+        }
+    }
+
+    private SftpClient tryOpenSession(final SshClient client, final String username) throws IOException {
+        val session = client.connect(username, host, port)
+                            .verify(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                            .getSession();
+        session.addPasswordIdentity(password);
+        session.auth()
+               .verify(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return session.createSftpClient();
+    }
+
+    private LoadReport measure(final List<SftpClient> sftpClients, final Duration warmup, final Duration duration)
+            throws InterruptedException {
+        val finished = new CountDownLatch(sftpClients.size());
+        running = true;
+        for (final SftpClient sftpClient : sftpClients) {
+            val worker = new Thread(() -> {
+                try {
+                    drive(sftpClient);
+                } finally {
+                    finished.countDown();
+                }
+            }, "load-" + sftpClient.getClientSession()
+                                   .getUsername());
+            worker.setDaemon(true);
+            worker.start();
+        }
+        TimeUnit.NANOSECONDS.sleep(warmup.toNanos());
+        recorder.reset();
+        val start = System.nanoTime();
+        TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+        running = false;
+        val elapsed = Duration.ofNanos(System.nanoTime() - start);
+        finished.await();
+        return new LoadReport(recorder.getTotals(), elapsed);
+    }
+
+    private void drive(final SftpClient sftpClient) {
+        while (running) {
+            try {
+                workload.iterate(sftpClient, recorder);
+            } catch (IOException e) {
+                // counted by the recorder; carry on with the next round
+                log.debug("{}: {}", sftpClient.getClientSession()
+                                              .getUsername(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and latency of each kind of SFTP operation over a measured period.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class LoadReport {
+
+    private static final String HEADER_FORMAT = "%-10s %10s %8s %10s %10s %10s %10s %10s%n";
+
+    private static final String ROW_FORMAT = "%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n";
+
+    private static final double BYTES_PER_MEGABYTE = 1_000_000.0;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final double P50 = 50.0;
+
+    private static final double P99 = 99.0;
+
+    private static final double P999 = 99.9;
+
+    private final Map<String, OperationRecorder.Totals> totals;
+
+    private final Duration elapsed;
+
+    /**
+     * Format the report as a table with a row for each kind of operation.
+     *
+     * @return the table
+     */
+    String format() {
+        val seconds = elapsed.toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+        val table = new StringBuilder();
+        table.append(String.format(HEADER_FORMAT, "operation", "count", "errors", "ops/sec", "MB/s", "p50 ms",
+                                   "p99 ms", "p999 ms"
+                                  ));
+        totals.forEach((operation, total) -> {
+            val latency = total.getLatency();
+            val count = latency.getCount();
+            table.append(String.format(ROW_FORMAT, operation, count, total.getErrors(), count / seconds,
+                                       total.getBytes() / BYTES_PER_MEGABYTE / seconds,
+                                       latency.getValueAtPercentile(P50) / NANOS_PER_MILLI,
+                                       latency.getValueAtPercentile(P99) / NANOS_PER_MILLI,
+                                       latency.getValueAtPercentile(P999) / NANOS_PER_MILLI
+                                      ));
+        });
+        val count = totals.values()
+                          .stream()
+                          .mapToLong(total -> total.getLatency()
+                                                   .getCount())
+                          .sum();
+        val errors = totals.values()
+                           .stream()
+                           .mapToLong(OperationRecorder.Totals::getErrors)
+                           .sum();
+        val bytes = totals.values()
+                          .stream()
+                          .mapToLong(OperationRecorder.Totals::getBytes)
+                          .sum();
+        table.append(String.format("%-10s %10d %8d %10.1f %10.2f%n", "total", count, errors, count / seconds,
+                                   bytes / BYTES_PER_MEGABYTE / seconds
+                                  ));
+        return table.toString();
+    }
+}
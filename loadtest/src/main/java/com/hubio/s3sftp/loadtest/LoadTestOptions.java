@@ -0,0 +1,219 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.time.Duration;
+
+/**
+ * The shape of a load test.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class LoadTestOptions {
+
+    private final int sessions;
+
+    @NonNull
+    private final String workload;
+
+    @NonNull
+    private final Duration warmup;
+
+    @NonNull
+    private final Duration duration;
+
+    private final int fileSize;
+
+    @NonNull
+    private final Duration latency;
+
+    private final long bandwidth;
+
+    private final boolean virtualThreads;
+
+    @NonNull
+    private final String latencyDistribution;
+
+    private final double slowDownRate;
+
+    private final double connectionResetRate;
+
+    private final double partialReadRate;
+
+    /**
+     * Parse options from the command line.
+     *
+     * <p>Each argument has the form {@code --name=value}. Durations are given in seconds, except for latency which is
+     * given in milliseconds. Options not given take their default values.</p>
+     *
+     * <p>The fault options, {@code latency-distribution}, {@code slow-down-rate}, {@code connection-reset-rate} and
+     * {@code partial-read-rate}, take the values described in {@link com.hubio.s3sftp.testkit.FaultPlan}.</p>
+     *
+     * @param args The command line arguments
+     *
+     * @return the options
+     */
+    public static LoadTestOptions parse(final String... args) {
+        val builder = builder();
+        for (final String arg : args) {
+            val separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            val name = arg.substring(2, separator);
+            val value = arg.substring(separator + 1);
+            switch (name) {
+                case "sessions":
+                    builder.sessions(Integer.parseInt(value));
+                    break;
+                case "workload":
+                    builder.workload(value);
+                    break;
+                case "warmup":
+                    builder.warmup(Duration.ofSeconds(Long.parseLong(value)));
+                    break;
+                case "duration":
+                    builder.duration(Duration.ofSeconds(Long.parseLong(value)));
+                    break;
+                case "file-size":
+                    builder.fileSize(Integer.parseInt(value));
+                    break;
+                case "latency":
+                    builder.latency(Duration.ofMillis(Long.parseLong(value)));
+                    break;
+                case "bandwidth":
+                    builder.bandwidth(Long.parseLong(value));
+                    break;
+                case "virtual-threads":
+                    builder.virtualThreads(Boolean.parseBoolean(value));
+                    break;
+                case "latency-distribution":
+                    builder.latencyDistribution(value);
+                    break;
+                case "slow-down-rate":
+                    builder.slowDownRate(Double.parseDouble(value));
+                    break;
+                case "connection-reset-rate":
+                    builder.connectionResetRate(Double.parseDouble(value));
+                    break;
+                case "partial-read-rate":
+                    builder.partialReadRate(Double.parseDouble(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d sessions, %s workload, %s, %ss warmup, %ss measured, S3 latency %dms, %s%s",
+                             sessions, workload, fileSizeDescription(), warmup.getSeconds(), duration.getSeconds(),
+                             latency.toMillis(), bandwidthDescription(), faultsDescription()
+                            );
+    }
+
+    /**
+     * Whether any faults are to be injected into S3 requests.
+     *
+     * @return true if any fault option was given
+     */
+    public boolean hasFaults() {
+        return !latencyDistribution.isEmpty() || slowDownRate > 0 || connectionResetRate > 0 || partialReadRate > 0;
+    }
+
+    private String faultsDescription() {
+        if (!hasFaults()) {
+            return "";
+        }
+        return String.format(", faults: latency '%s', slow down %s, connection reset %s, partial read %s",
+                             latencyDistribution, slowDownRate, connectionResetRate, partialReadRate
+                            );
+    }
+
+    private String fileSizeDescription() {
+        if (fileSize == 0) {
+            return "default file size";
+        }
+        return String.format("%d byte files", fileSize);
+    }
+
+    private String bandwidthDescription() {
+        if (bandwidth == 0) {
+            return "unlimited S3 bandwidth";
+        }
+        return String.format("S3 bandwidth %d bytes per second", bandwidth);
+    }
+
+    /**
+     * Builder for {@link LoadTestOptions}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>sessions: 8</li>
+     *     <li>workload: mixed</li>
+     *     <li>warmup: 5 seconds</li>
+     *     <li>duration: 30 seconds</li>
+     *     <li>fileSize: 0, i.e. the workload's own default: 4 KiB for small-files, 64 KiB for mixed and 64 MiB for
+     *     large-files</li>
+     *     <li>latency: 20 milliseconds for each S3 request</li>
+     *     <li>bandwidth: unlimited</li>
+     *     <li>virtualThreads: false</li>
+     *     <li>latencyDistribution: none, beyond the fixed latency</li>
+     *     <li>slowDownRate, connectionResetRate and partialReadRate: 0</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class LoadTestOptionsBuilder {
+
+        private static final int DEFAULT_SESSIONS = 8;
+
+        private static final int DEFAULT_WARMUP_SECONDS = 5;
+
+        private static final int DEFAULT_DURATION_SECONDS = 30;
+
+        private static final int DEFAULT_LATENCY_MILLIS = 20;
+
+        private int sessions = DEFAULT_SESSIONS;
+
+        private String workload = "mixed";
+
+        private Duration warmup = Duration.ofSeconds(DEFAULT_WARMUP_SECONDS);
+
+        private Duration duration = Duration.ofSeconds(DEFAULT_DURATION_SECONDS);
+
+        private Duration latency = Duration.ofMillis(DEFAULT_LATENCY_MILLIS);
+
+        private String latencyDistribution = "";
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import com.hubio.s3sftp.server.LoginThrottle;
+import com.hubio.s3sftp.server.S3SftpServer;
+import com.hubio.s3sftp.server.S3SftpServerConfiguration;
+import com.hubio.s3sftp.testkit.FaultInjectingAmazonS3Factory;
+import com.hubio.s3sftp.testkit.FaultPlan;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.hubio.s3sftp.testkit.SimulatedNetwork;
+import com.upplication.s3fs.S3FileSystemProvider;
+import lombok.val;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Starts an S3 SFTP server backed by an in-memory S3, drives it with concurrent SFTP sessions and prints the
+ * throughput and latency of each kind of operation.
+ *
+ * <p>See {@link LoadTestOptions#parse(String...)} for the arguments.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public final class LoadTestRunner {
+
+    private static final String BUCKET = "loadtest";
+
+    private static final String USERS = "users";
+
+    private static final String PASSWORD = "password";
+
+    private static final int HOST_KEY_BITS = 2048;
+
+    private LoadTestRunner() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args The options, each in the form {@code --name=value}
+     *
+     * @throws IOException          if the server could not be started or a session could not be opened
+     * @throws InterruptedException if interrupted while the load test is running
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        val options = LoadTestOptions.parse(args);
+        System.out.println(options);
+        System.out.println();
+        System.out.print(run(options).format());
+    }
+
+    /**
+     * Run a load test.
+     *
+     * @param options The shape of the load test
+     *
+     * @return the report
+     *
+     * @throws IOException          if the server could not be started or a session could not be opened
+     * @throws InterruptedException if interrupted while the load test is running
+     */
+    static LoadReport run(final LoadTestOptions options) throws IOException, InterruptedException {
+        val workload = Workload.named(options.getWorkload(), options.getFileSize());
+        val amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        val usernames = new ArrayList<String>();
+        val users = new HashMap<String, String>();
+        for (int i = 0; i < options.getSessions(); i++) {
+            val username = "user-" + i;
+            val home = USERS + "/" + username;
+            amazonS3.putObject(BUCKET, home + "/", "");
+            workload.prepare(amazonS3, BUCKET, home);
+            usernames.add(username);
+            users.put(username, PASSWORD);
+        }
+        amazonS3.setNetwork(SimulatedNetwork.of(options.getLatency(), options.getBandwidth()));
+        InMemoryAmazonS3Factory.use(amazonS3);
+        useFactory(options);
+        val port = freePort();
+        val server = S3SftpServer.using(S3SftpServerConfiguration.builder()
+                                                                 .port(port)
+                                                                 .hostKeyPrivate(generateHostKey())
+                                                                 .uri("s3://" + BUCKET + "/")
+                                                                 .sessionBucket(
+                                                                         S3SftpServer.simpleSessionBucket(BUCKET))
+                                                                 .sessionHome(S3SftpServer.perUserHome(USERS))
+                                                                 .authenticationProvider(
+                                                                         S3SftpServer.simpleAuthenticator(users))
+                                                                 .loginThrottle(LoginThrottle.unlimited())
+                                                                 .virtualThreads(options.isVirtualThreads())
+                                                                 .build());
+        server.start();
+        try {
+            return new LoadGenerator("localhost", port, PASSWORD, workload).run(usernames, options.getWarmup(),
+                                                                                 options.getDuration()
+                                                                                );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Select the S3 client factory for the server, putting the fault injecting factory in front of the in-memory S3
+     * when faults are wanted.
+     *
+     * <p>Faults given as options are set as system properties, from where the fault injecting factory reads them. Any
+     * set with {@code -D}, e.g. for a single request, are left in place.</p>
+     */
+    private static void useFactory(final LoadTestOptions options) {
+        if (!options.hasFaults()) {
+            System.setProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+            return;
+        }
+        System.setProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS,
+                           FaultInjectingAmazonS3Factory.class.getName()
+                          );
+        System.setProperty(FaultInjectingAmazonS3Factory.DELEGATE_FACTORY_CLASS,
+                           InMemoryAmazonS3Factory.class.getName()
+                          );
+        if (!options.getLatencyDistribution()
+                    .isEmpty()) {
+            System.setProperty(FaultPlan.LATENCY, options.getLatencyDistribution());
+        }
+        setRate(FaultPlan.SLOW_DOWN_RATE, options.getSlowDownRate());
+        setRate(FaultPlan.CONNECTION_RESET_RATE, options.getConnectionResetRate());
+        setRate(FaultPlan.PARTIAL_READ_RATE, options.getPartialReadRate());
+    }
+
+    private static void setRate(final String key, final double rate) {
+        if (rate > 0) {
+            System.setProperty(key, Double.toString(rate));
+        }
+    }
+
+    /**
+     * Generate a fresh RSA host key, so that none need be kept with the load test.
+     */
+    private static String generateHostKey() throws IOException {
+        try {
+            val generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(HOST_KEY_BITS);
+            val pem = new StringWriter();
+            try (JcaPEMWriter writer = new JcaPEMWriter(pem)) {
+                writer.writeObject(generator.generateKeyPair());
+            }
+            return pem.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("RSA is not available", e);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A blend of operations on a working set of files: half reads, a fifth writes, and the rest split between checking
+ * files and listing the directory.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class MixedWorkload implements Workload {
+
+    static final int DEFAULT_FILE_SIZE = 64 * 1024;
+
+    static final int WORKING_SET = 100;
+
+    private static final int READ_PERCENT = 50;
+
+    private static final int WRITE_PERCENT = 20;
+
+    private static final int STAT_PERCENT = 15;
+
+    private static final int PERCENT = 100;
+
+    private final int fileSize;
+
+    @Override
+    public void prepare(final AmazonS3 amazonS3, final String bucket, final String home) {
+        val content = new byte[fileSize];
+        for (int i = 0; i < WORKING_SET; i++) {
+            val metadata = new ObjectMetadata();
+            metadata.setContentLength(fileSize);
+            amazonS3.putObject(bucket, home + "/" + fileName(i), new ByteArrayInputStream(content), metadata);
+        }
+    }
+
+    @Override
+    public void iterate(final SftpClient client, final OperationRecorder recorder) throws IOException {
+        val random = ThreadLocalRandom.current();
+        val path = fileName(random.nextInt(WORKING_SET));
+        val choice = random.nextInt(PERCENT);
+        if (choice < READ_PERCENT) {
+            recorder.time("read", () -> Transfers.read(client, path));
+        } else if (choice < READ_PERCENT + WRITE_PERCENT) {
+            recorder.time("write", () -> Transfers.write(client, path, fileSize));
+        } else if (choice < READ_PERCENT + WRITE_PERCENT + STAT_PERCENT) {
+            recorder.time("stat", () -> {
+                client.stat(path);
+                return 0L;
+            });
+        } else {
+            recorder.time("readdir", () -> {
+                for (final SftpClient.DirEntry ignored : client.readDir(".")) {
+                    // read every entry
+                }
+                return 0L;
+            });
+        }
+    }
+
+    private static String fileName(final int index) {
+        return "mixed-" + index;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import com.hubio.s3sftp.server.metrics.LatencyHistogram;
+import lombok.val;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency, bytes moved and failures of each kind of SFTP operation.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class OperationRecorder {
+
+    private final ConcurrentMap<String, Totals> operations = new ConcurrentHashMap<>();
+
+    /**
+     * An SFTP operation that moves a number of bytes.
+     */
+    @FunctionalInterface
+    interface Operation {
+
+        /**
+         * Perform the operation.
+         *
+         * @return the number of bytes moved
+         *
+         * @throws IOException if the operation fails
+         */
+        long perform() throws IOException;
+    }
+
+    /**
+     * Perform an operation, recording how long it took.
+     *
+     * <p>A failed operation is counted as an error and its latency is not recorded.</p>
+     *
+     * @param name      The kind of operation
+     * @param operation The operation
+     *
+     * @throws IOException if the operation fails
+     */
+    void time(final String name, final Operation operation) throws IOException {
+        val totals = operations.computeIfAbsent(name, key -> new Totals());
+        val start = System.nanoTime();
+        try {
+            val bytes = operation.perform();
+            totals.latency.record(System.nanoTime() - start);
+            totals.bytes.add(bytes);
+        } catch (IOException | RuntimeException e) {
+            totals.errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Forget everything recorded so far, e.g. at the end of a warmup.
+     */
+    void reset() {
+        operations.clear();
+    }
+
+    /**
+     * The totals for each kind of operation, in name order.
+     *
+     * @return the totals
+     */
+    Map<String, Totals> getTotals() {
+        return new TreeMap<>(operations);
+    }
+
+    /**
+     * The totals for one kind of operation.
+     */
+    static final class Totals {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        long getBytes() {
+            return bytes.sum();
+        }
+
+        long getErrors() {
+            return errors.sum();
+        }
+    }
+}
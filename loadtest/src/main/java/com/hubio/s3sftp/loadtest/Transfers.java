@@ -0,0 +1,97 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Moves file content over SFTP without holding whole files in memory.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+final class Transfers {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private static final byte[] CONTENT = new byte[BUFFER_SIZE];
+
+    static {
+        Arrays.fill(CONTENT, (byte) 'x');
+    }
+
+    private Transfers() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Write a file.
+     *
+     * @param client The SFTP client
+     * @param path   The path of the file
+     * @param size   The number of bytes to write
+     *
+     * @return the number of bytes written
+     *
+     * @throws IOException if the file could not be written
+     */
+    static long write(final SftpClient client, final String path, final long size) throws IOException {
+        try (OutputStream output = client.write(path)) {
+            long remaining = size;
+            while (remaining > 0) {
+                val length = (int) Math.min(remaining, CONTENT.length);
+                output.write(CONTENT, 0, length);
+                remaining -= length;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Read a file to its end.
+     *
+     * @param client The SFTP client
+     * @param path   The path of the file
+     *
+     * @return the number of bytes read
+     *
+     * @throws IOException if the file could not be read
+     */
+    static long read(final SftpClient client, final String path) throws IOException {
+        val buffer = new byte[BUFFER_SIZE];
+        long total = 0L;
+        try (InputStream input = client.read(path)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
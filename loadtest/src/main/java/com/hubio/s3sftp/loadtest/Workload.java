@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.loadtest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
+
+import java.io.IOException;
+
+/**
+ * A pattern of SFTP operations repeated by each session of a load test.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+interface Workload {
+
+    /**
+     * Store any content the workload expects to find in a user's home directory.
+     *
+     * <p>Content is stored directly in S3, rather than over SFTP, so that a large tree can be prepared quickly.</p>
+     *
+     * @param amazonS3 The S3 client
+     * @param bucket   The bucket
+     * @param home     The key of the user's home directory, without a trailing slash
+     */
+    default void prepare(final AmazonS3 amazonS3, final String bucket, final String home) {
+        // nothing to prepare
+    }
+
+    /**
+     * Perform one round of the workload within the session's home directory.
+     *
+     * @param client   The SFTP client for the session
+     * @param recorder The recorder for each operation performed
+     *
+     * @throws IOException if an operation fails
+     */
+    void iterate(SftpClient client, OperationRecorder recorder) throws IOException;
+
+    /**
+     * Find a workload by name.
+     *
+     * @param name     One of {@code small-files}, {@code large-files}, {@code deep-listing} or {@code mixed}
+     * @param fileSize The size of each file written, or zero for the workload's default
+     *
+     * @return the workload
+     */
+    static Workload named(final String name, final int fileSize) {
+        switch (name) {
+            case "small-files":
+                return new SmallFilesWorkload(sizeOrDefault(fileSize, SmallFilesWorkload.DEFAULT_FILE_SIZE));
+            case "large-files":
+                return new LargeFilesWorkload(sizeOrDefault(fileSize, LargeFilesWorkload.DEFAULT_FILE_SIZE));
+            case "deep-listing":
+                return new DeepListingWorkload(DeepListingWorkload.DEFAULT_DEPTH, DeepListingWorkload.DEFAULT_FAN_OUT);
+            case "mixed":
+                return new MixedWorkload(sizeOrDefault(fileSize, MixedWorkload.DEFAULT_FILE_SIZE));
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * Select the file size for a workload.
+     *
+     * @param fileSize    The size requested, or zero
+     * @param defaultSize The workload's default size
+     *
+     * @return the size to use
+     */
+    static int sizeOrDefault(final int fileSize, final int defaultSize) {
+        if (fileSize > 0) {
+            return fileSize;
+        }
+        return defaultSize;
+    }
+}
@@ -0,0 +1,45 @@
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LoadReport}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class LoadReportTest {
+
+    @Test
+    public void shouldReportThroughputAndLatencyForEachOperation() throws IOException {
+        //given
+        val recorder = new OperationRecorder();
+        for (int i = 0; i < 10; i++) {
+            recorder.time("read", () -> 1_000_000L);
+        }
+        // replace the measured latencies with known ones
+        val latency = recorder.getTotals()
+                              .get("read")
+                              .getLatency();
+        latency.reset();
+        for (int i = 0; i < 10; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(4));
+        }
+        val subject = new LoadReport(recorder.getTotals(), Duration.ofSeconds(2));
+        //when
+        val result = subject.format();
+        //then
+        val lines = result.split(System.lineSeparator());
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("operation")
+                            .contains("ops/sec", "MB/s", "p50 ms", "p99 ms", "p999 ms");
+        assertThat(lines[1].split("\\s+")).containsExactly("read", "10", "0", "5.0", "5.00", "4.00", "4.00", "4.00");
+        assertThat(lines[2].split("\\s+")).containsExactly("total", "10", "0", "5.0", "5.00");
+    }
+}
@@ -0,0 +1,106 @@
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LoadTestOptions}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class LoadTestOptionsTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldUseDefaultsWhenNoArguments() {
+        //when
+        val result = LoadTestOptions.parse();
+        //then
+        assertThat(result.getSessions()).isEqualTo(8);
+        assertThat(result.getWorkload()).isEqualTo("mixed");
+        assertThat(result.getWarmup()).isEqualTo(Duration.ofSeconds(5));
+        assertThat(result.getDuration()).isEqualTo(Duration.ofSeconds(30));
+        assertThat(result.getFileSize()).isZero();
+        assertThat(result.getLatency()).isEqualTo(Duration.ofMillis(20));
+        assertThat(result.getBandwidth()).isZero();
+        assertThat(result.isVirtualThreads()).isFalse();
+        assertThat(result.hasFaults()).isFalse();
+    }
+
+    @Test
+    public void shouldParseEachOption() {
+        //when
+        val result = LoadTestOptions.parse("--sessions=32", "--workload=small-files", "--warmup=2", "--duration=60",
+                                           "--file-size=1024", "--latency=50", "--bandwidth=1000000",
+                                           "--virtual-threads=true"
+                                          );
+        //then
+        assertThat(result.getSessions()).isEqualTo(32);
+        assertThat(result.getWorkload()).isEqualTo("small-files");
+        assertThat(result.getWarmup()).isEqualTo(Duration.ofSeconds(2));
+        assertThat(result.getDuration()).isEqualTo(Duration.ofSeconds(60));
+        assertThat(result.getFileSize()).isEqualTo(1024);
+        assertThat(result.getLatency()).isEqualTo(Duration.ofMillis(50));
+        assertThat(result.getBandwidth()).isEqualTo(1000000L);
+        assertThat(result.isVirtualThreads()).isTrue();
+    }
+
+    @Test
+    public void shouldParseFaultOptions() {
+        //when
+        val result = LoadTestOptions.parse("--latency-distribution=exponential:50", "--slow-down-rate=0.01",
+                                           "--connection-reset-rate=0.02", "--partial-read-rate=0.03"
+                                          );
+        //then
+        assertThat(result.getLatencyDistribution()).isEqualTo("exponential:50");
+        assertThat(result.getSlowDownRate()).isEqualTo(0.01);
+        assertThat(result.getConnectionResetRate()).isEqualTo(0.02);
+        assertThat(result.getPartialReadRate()).isEqualTo(0.03);
+        assertThat(result.hasFaults()).isTrue();
+    }
+
+    @Test
+    public void shouldErrorWhenOptionIsUnknown() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unknown option: threads");
+        //when
+        LoadTestOptions.parse("--threads=4");
+    }
+
+    @Test
+    public void shouldErrorWhenArgumentHasNoValue() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Expected --name=value");
+        //when
+        LoadTestOptions.parse("--sessions");
+    }
+
+    @Test
+    public void shouldDescribeItself() {
+        //given
+        val subject = LoadTestOptions.parse("--sessions=2", "--workload=large-files", "--file-size=1048576");
+        //then
+        assertThat(subject.toString()).isEqualTo(
+                "2 sessions, large-files workload, 1048576 byte files, 5s warmup, 30s measured, S3 latency 20ms, "
+                + "unlimited S3 bandwidth");
+    }
+
+    @Test
+    public void shouldDescribeFaults() {
+        //given
+        val subject = LoadTestOptions.parse("--sessions=2", "--slow-down-rate=0.05");
+        //then
+        assertThat(subject.toString()).endsWith(
+                "unlimited S3 bandwidth, faults: latency '', slow down 0.05, connection reset 0.0, partial read 0.0");
+    }
+}
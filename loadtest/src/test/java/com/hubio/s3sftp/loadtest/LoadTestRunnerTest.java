@@ -0,0 +1,34 @@
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LoadTestRunner}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class LoadTestRunnerTest {
+
+    @Test
+    public void shouldDriveServerOverSftp() throws Exception {
+        //given
+        val options = LoadTestOptions.builder()
+                                     .sessions(2)
+                                     .workload("small-files")
+                                     .warmup(Duration.ZERO)
+                                     .duration(Duration.ofSeconds(1))
+                                     .latency(Duration.ZERO)
+                                     .build();
+        //when
+        val result = LoadTestRunner.run(options)
+                                   .format();
+        //then
+        assertThat(result).contains("write", "stat", "read", "remove");
+        assertThat(result).doesNotContain("NaN");
+    }
+}
@@ -0,0 +1,70 @@
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link OperationRecorder}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class OperationRecorderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final OperationRecorder subject = new OperationRecorder();
+
+    @Test
+    public void shouldRecordLatencyAndBytesForEachOperation() throws IOException {
+        //when
+        subject.time("write", () -> 100L);
+        subject.time("write", () -> 50L);
+        subject.time("read", () -> 10L);
+        //then
+        val totals = subject.getTotals();
+        assertThat(totals.keySet()).containsExactly("read", "write");
+        assertThat(totals.get("write")
+                         .getLatency()
+                         .getCount()).isEqualTo(2L);
+        assertThat(totals.get("write")
+                         .getBytes()).isEqualTo(150L);
+        assertThat(totals.get("read")
+                         .getBytes()).isEqualTo(10L);
+    }
+
+    @Test
+    public void shouldCountFailuresAsErrors() throws IOException {
+        //given
+        exception.expect(IOException.class);
+        //when
+        try {
+            subject.time("stat", () -> {
+                throw new IOException("no such file");
+            });
+        } finally {
+            //then
+            val totals = subject.getTotals()
+                                .get("stat");
+            assertThat(totals.getErrors()).isEqualTo(1L);
+            assertThat(totals.getLatency()
+                             .getCount()).isZero();
+        }
+    }
+
+    @Test
+    public void resetShouldForgetEverything() throws IOException {
+        //given
+        subject.time("write", () -> 100L);
+        //when
+        subject.reset();
+        //then
+        assertThat(subject.getTotals()).isEmpty();
+    }
+}
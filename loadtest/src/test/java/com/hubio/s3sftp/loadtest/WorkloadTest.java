@@ -0,0 +1,52 @@
+package com.hubio.s3sftp.loadtest;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Workload}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class WorkloadTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldFindEachWorkloadByName() {
+        assertThat(Workload.named("small-files", 0)).isInstanceOf(SmallFilesWorkload.class);
+        assertThat(Workload.named("large-files", 0)).isInstanceOf(LargeFilesWorkload.class);
+        assertThat(Workload.named("deep-listing", 0)).isInstanceOf(DeepListingWorkload.class);
+        assertThat(Workload.named("mixed", 0)).isInstanceOf(MixedWorkload.class);
+    }
+
+    @Test
+    public void shouldErrorWhenWorkloadIsUnknown() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unknown workload: huge-files");
+        //when
+        Workload.named("huge-files", 0);
+    }
+
+    @Test
+    public void sizeOrDefaultShouldPreferRequestedSize() {
+        //when
+        val result = Workload.sizeOrDefault(10, 20);
+        //then
+        assertThat(result).isEqualTo(10);
+    }
+
+    @Test
+    public void sizeOrDefaultShouldUseDefaultWhenNoSizeRequested() {
+        //when
+        val result = Workload.sizeOrDefault(0, 20);
+        //then
+        assertThat(result).isEqualTo(20);
+    }
+}
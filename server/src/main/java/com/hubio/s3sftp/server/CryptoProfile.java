@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.server.SshServer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ciphers and MACs the server offers to clients.
+ *
+ * <p>SSH clients choose the first algorithm in their own list that the server offers, so the server's order only
+ * matters to clients that have no preference. To keep clients off slow algorithms, they must not be offered.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface CryptoProfile {
+
+    /**
+     * Offer the ciphers and MACs that sshd offers by default, including CBC ciphers, RC4, Blowfish, Triple DES and
+     * HMAC-MD5.
+     *
+     * @return the profile
+     */
+    static CryptoProfile sshdDefaults() {
+        return server -> {
+        };
+    }
+
+    /**
+     * Offer only the fast ciphers and MACs, of those sshd supports, that are not known to be weak.
+     *
+     * <p>The ciphers are AES in counter mode, which the JVM runs with the processor's AES instructions where it has
+     * them, smallest key first. The MACs are HMAC-SHA2-256, HMAC-SHA2-512 and HMAC-SHA1. Triple DES and Blowfish, which
+     * are several times slower, are not offered. Nor are the CBC ciphers, RC4, HMAC-MD5 and the truncated MACs, which
+     * can be as fast but are weak. AES-GCM, ChaCha20-Poly1305 and the encrypt-then-MAC MACs are not supported by this
+     * version of sshd.</p>
+     *
+     * <p>The {@code CipherBenchmark} and {@code MacBenchmark} in the benchmarks module measure the throughput of each
+     * algorithm on a given JVM.</p>
+     *
+     * @return the profile
+     */
+    static CryptoProfile throughput() {
+        return of(Arrays.asList(BuiltinCiphers.aes128ctr, BuiltinCiphers.aes192ctr, BuiltinCiphers.aes256ctr),
+                  Arrays.asList(BuiltinMacs.hmacsha256, BuiltinMacs.hmacsha512, BuiltinMacs.hmacsha1)
+                 );
+    }
+
+    /**
+     * Offer the ciphers and MACs given, in order, leaving out any that the JVM does not support.
+     *
+     * @param ciphers The ciphers to offer, most preferred first
+     * @param macs    The MACs to offer, most preferred first
+     *
+     * @return the profile
+     */
+    static CryptoProfile of(final List<BuiltinCiphers> ciphers, final List<BuiltinMacs> macs) {
+        return new OrderedCryptoProfile(ciphers, macs);
+    }
+
+    /**
+     * Set the ciphers and MACs the server offers.
+     *
+     * @param server The server
+     */
+    void apply(SshServer server);
+}
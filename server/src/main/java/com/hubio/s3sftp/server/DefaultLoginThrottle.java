@@ -0,0 +1,144 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default implementation of {@link LoginThrottle}, with a token bucket per client address and per username.
+ *
+ * <p>Each failed attempt takes a token from both buckets, and an attempt is refused while either is empty.</p>
+ *
+ * <p>Throttled sessions are held open until the tarpit delay has passed and are then disconnected by a scheduled task,
+ * so an abusive client ties up none of the server's threads while it waits.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class DefaultLoginThrottle implements LoginThrottle {
+
+    private static final AttributeStore.AttributeKey<Boolean> TARPITTED = new AttributeStore.AttributeKey<>();
+
+    private static final long PURGE_INTERVAL_SECONDS = 60L;
+
+    private final KeyedRateLimiter addressLimiter;
+
+    private final KeyedRateLimiter userLimiter;
+
+    private final Duration tarpit;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    @Override
+    public boolean isPermitted(final String username, final ServerSession session) {
+        if (session.getAttribute(TARPITTED) != null) {
+            return false;
+        }
+        val address = addressOf(session);
+        if (!addressLimiter.isAvailable(address, 1)) {
+            tarpit(session, "address: " + address);
+            return false;
+        }
+        if (!userLimiter.isAvailable(username, 1)) {
+            tarpit(session, "user: " + username);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void failed(final String username, final ServerSession session) {
+        // charge the address first, so that a single source cannot flood the user buckets with made-up usernames
+        if (addressLimiter.tryAcquire(addressOf(session), 1)) {
+            userLimiter.tryAcquire(username, 1);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (scheduler == null) {
+            val executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                val thread = Executors.defaultThreadFactory()
+                                      .newThread(runnable);
+                thread.setName("s3sftp-login-throttle");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            executor.scheduleWithFixedDelay(this::purge, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS,
+                                            TimeUnit.SECONDS
+                                           );
+            scheduler = executor;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void tarpit(final ServerSession session, final String reason) {
+        if (session.setAttribute(TARPITTED, Boolean.TRUE) != null) {
+            return;
+        }
+        log.warn("Login throttled - {}, disconnecting {} in {}", reason, session.getClientAddress(), tarpit);
+        val executor = scheduler;
+        if (executor != null) {
+            executor.schedule(() -> session.close(false), tarpit.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void purge() {
+        val addresses = addressLimiter.purge();
+        val users = userLimiter.purge();
+        log.debug("Login throttle purged {} addresses and {} users", addresses, users);
+    }
+
+    private static String addressOf(final ServerSession session) {
+        val clientAddress = session.getClientAddress();
+        if (clientAddress instanceof InetSocketAddress) {
+            val inetAddress = ((InetSocketAddress) clientAddress).getAddress();
+            if (inetAddress != null) {
+                return inetAddress.getHostAddress();
+            }
+        }
+        return String.valueOf(clientAddress);
+    }
+}
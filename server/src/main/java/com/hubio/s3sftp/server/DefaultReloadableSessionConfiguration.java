@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Default implementation of {@link ReloadableSessionConfiguration}.
+ *
+ * <p>Each session is pinned to the configuration that is current when it is first looked up, normally as the user
+ * logs in, by holding it as an attribute of the session. Later lookups read the attribute, without taking a
+ * lock.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class DefaultReloadableSessionConfiguration implements ReloadableSessionConfiguration {
+
+    private final AttributeStore.AttributeKey<SessionConfiguration> sessionConfigurationKey =
+            new AttributeStore.AttributeKey<>();
+
+    private final AtomicReference<SessionConfiguration> current;
+
+    @Getter
+    private final ReloadableAuthenticationProvider authenticationProvider = new ReloadableAuthenticationProvider(this);
+
+    @Getter
+    private final SessionBucket sessionBucket = session -> forSession(session.getServerSession()).getSessionBucket()
+                                                                                                 .getBucket(session);
+
+    @Getter
+    private final SessionHome sessionHome = session -> forSession(session.getServerSession()).getSessionHome()
+                                                                                             .getHomePath(session);
+
+    @Getter
+    private final SessionJail sessionJail = session -> forSession(session.getServerSession()).getSessionJail()
+                                                                                             .getJail(session);
+
+    /**
+     * Constructor.
+     *
+     * @param initial The configuration until the first reload
+     */
+    DefaultReloadableSessionConfiguration(final SessionConfiguration initial) {
+        current = new AtomicReference<>(Objects.requireNonNull(initial, "initial"));
+    }
+
+    @Override
+    public void reload(final SessionConfiguration configuration) {
+        Objects.requireNonNull(configuration, "configuration");
+        val homeDirExistsChecker = authenticationProvider.getHomeDirExistsChecker();
+        if (homeDirExistsChecker != null) {
+            configuration.getAuthenticationProvider()
+                         .setHomeDirExistsChecker(homeDirExistsChecker);
+        }
+        current.set(configuration);
+        log.info("Reloaded session configuration");
+    }
+
+    @Override
+    public SessionConfiguration getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Returns the configuration the session is pinned to, pinning it to the current configuration if it isn't yet.
+     *
+     * @param session The session
+     *
+     * @return the configuration for the session
+     */
+    SessionConfiguration forSession(final ServerSession session) {
+        val pinned = session.getAttribute(sessionConfigurationKey);
+        if (pinned != null) {
+            return pinned;
+        }
+        val configuration = current.get();
+        session.setAttribute(sessionConfigurationKey, configuration);
+        return configuration;
+    }
+}
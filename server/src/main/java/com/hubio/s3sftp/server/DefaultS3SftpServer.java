@@ -23,27 +23,30 @@
 
 package com.hubio.s3sftp.server;
 
-import com.hubio.s3sftp.server.filesystem.FileSystemProviderFactory;
+import com.hubio.s3sftp.server.filechannel.OpenTransfers;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.config.keys.KeyUtils;
 import org.apache.sshd.common.keyprovider.KeyPairProvider;
-import org.apache.sshd.server.SshServer;
-import org.apache.sshd.server.auth.UserAuth;
-import org.apache.sshd.server.auth.password.PasswordAuthenticator;
-import org.apache.sshd.server.auth.password.UserAuthPasswordFactory;
-import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
-import org.apache.sshd.server.auth.pubkey.UserAuthPublicKeyFactory;
-
-import java.io.File;
+import org.apache.sshd.common.keyprovider.MappedKeyPairProvider;
+
 import java.io.IOException;
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Default implementation of the {@link S3SftpServer}.
@@ -54,53 +57,69 @@ import java.util.Collections;
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 class DefaultS3SftpServer implements S3SftpServer {
 
-    private final SshServer sshServer = SshServer.setUpDefaultServer();
+    /**
+     * How often a draining server checks whether its transfers have finished.
+     */
+    private static final long DRAIN_POLL_MILLIS = 100;
+
+    private static final long DRAIN_REPORT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The transfers open on every listener, replaced on each start so that a server started again after draining
+     * accepts transfers.
+     */
+    private OpenTransfers transfers = new OpenTransfers();
 
     private final S3SftpServerConfiguration configuration;
 
-    private static KeyPairProvider keyPairProviderFromString(final String algorithm, final String privateHostKey)
-            throws Exception {
-        // write private key to temp file
-        val privateKey = Files.createTempFile("sftp-private-host", ".key");
-        log.info("Writing private host key: {}", privateKey);
-        Files.write(privateKey, privateHostKey.getBytes(StandardCharsets.UTF_8));
-        return keyPairProviderFromFile(algorithm, privateKey.toFile());
-    }
+    private List<SftpListener> listeners = Collections.emptyList();
 
-    private static KeyPairProvider keyPairProviderFromFile(final String algorithm, final File privateHostKeyFile)
-            throws Exception {
-        // load private key into a key pair provider
-        return SshServer.setupServerKeys(null, algorithm, 0, Collections.singletonList(privateHostKeyFile.toString()));
+    private static KeyPairProvider keyPairProvider(final String privateHostKeys) throws Exception {
+        // parse each key once, here, rather than on the first key exchange
+        val keyPairs = HostKeys.parse(privateHostKeys);
+        keyPairs.forEach(keyPair -> log.info("Loaded {} host key: {}", KeyUtils.getKeyType(keyPair),
+                                             KeyUtils.getFingerPrint(keyPair.getPublic())
+        ));
+        return new MappedKeyPairProvider(keyPairs);
     }
 
     @Override
     public void start() {
         validateSessionMapping();
-        val port = configuration.getPort();
-        sshServer.setPort(port);
-        loadHostKey();
-        // sftp subsystem
-        val sessionFileSystemResolver = FileSystemProviderFactory.userResolver();
-        val sessionBucket = configuration.getSessionBucket();
-        val sessionHome = configuration.getSessionHome();
-        val sessionJail = configuration.getSessionJail();
-        val sftpSubsystemFactory =
-                new JailedSftpSubsystemFactory(sessionBucket, sessionHome, sessionJail, sessionFileSystemResolver);
-        sshServer.setSubsystemFactories(Collections.singletonList(sftpSubsystemFactory));
-        // file system
-        val fileSystemFactory =
-                new S3FileSystemFactory(sessionBucket, sessionHome, sessionJail, URI.create(configuration.getUri()),
-                                        FileSystemProviderFactory.s3SftpProviderFactory(),
-                                        sessionFileSystemResolver
-                );
-        sshServer.setFileSystemFactory(fileSystemFactory);
-        configureAuthentication(sftpSubsystemFactory, fileSystemFactory);
+        transfers = new OpenTransfers();
+        listeners = createListeners();
+        val keyPairProvider = loadHostKey();
+        val started = new ArrayList<SftpListener>();
         try {
-            sshServer.start();
+            startServices();
+            for (final SftpListener listener : listeners) {
+                listener.start(keyPairProvider);
+                started.add(listener);
+            }
         } catch (IOException e) {
+            stopStarted(started, e);
             throw new S3SftpServerStartException("Could not start server", e);
+        } catch (RuntimeException e) {
+            stopStarted(started, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the listeners and services of a server that failed to start, keeping any errors in stopping them with the
+     * error that failed the start.
+     */
+    private void stopStarted(final List<SftpListener> started, final Exception error) {
+        try {
+            stopListeners(started);
+        } catch (IOException stopError) {
+            error.addSuppressed(stopError);
+        }
+        try {
+            stopServices();
+        } catch (RuntimeException stopError) {
+            error.addSuppressed(stopError);
         }
-        log.info("S3 SFTP Server started on port {}", port);
     }
 
     /**
@@ -113,34 +132,125 @@ class DefaultS3SftpServer implements S3SftpServer {
 
     }
 
-    private void configureAuthentication(
-            final JailedSftpSubsystemFactory sftpSubsystemFactory, final S3FileSystemFactory fileSystemFactory
-                                        ) {
-        val userAuthFactories = new ArrayList<NamedFactory<UserAuth>>();
-        val authenticationProvider = configuration.getAuthenticationProvider();
-        authenticationProvider.setHomeDirExistsChecker(
-                new DefaultHomeDirExistsChecker(sftpSubsystemFactory, fileSystemFactory));
-        if (authenticationProvider instanceof PasswordAuthenticator) {
-            sshServer.setPasswordAuthenticator((PasswordAuthenticator) authenticationProvider);
-            userAuthFactories.add(UserAuthPasswordFactory.INSTANCE);
+    /**
+     * Creates a listener for the server's own port, then one for each additional listener.
+     *
+     * <p>An authentication provider checks that each user's home directory exists using the session mappings of the
+     * listener it was last given to, so listeners with different mappings may not share one.</p>
+     */
+    private List<SftpListener> createListeners() {
+        val listenerConfigurations = new ArrayList<ListenerConfiguration>();
+        listenerConfigurations.add(ListenerConfiguration.builder()
+                                                        .port(configuration.getPort())
+                                                        .build()
+                                                        .orElse(configuration));
+        configuration.getListeners()
+                     .forEach(listener -> listenerConfigurations.add(listener.orElse(configuration)));
+        val ports = new HashSet<Integer>();
+        val mappings = new IdentityHashMap<AuthenticationProvider, ListenerConfiguration>();
+        val created = new ArrayList<SftpListener>();
+        for (final ListenerConfiguration listener : listenerConfigurations) {
+            val port = listener.getPort();
+            if (port != 0 && !ports.add(port)) {
+                throw new IllegalArgumentException("More than one listener on port " + port);
+            }
+            val other = mappings.putIfAbsent(listener.getAuthenticationProvider(), listener);
+            if (other != null && (other.getSessionBucket() != listener.getSessionBucket()
+                                  || other.getSessionHome() != listener.getSessionHome()
+                                  || other.getSessionJail() != listener.getSessionJail())) {
+                throw new IllegalArgumentException(
+                        "Listeners with different session mappings need their own authenticationProvider: port "
+                        + port);
+            }
+            created.add(new SftpListener(configuration, listener, transfers));
+        }
+        return created;
+    }
+
+    /**
+     * Returns each distinct instance of a setting, once however many listeners share it.
+     */
+    private <T> Set<T> distinct(final Function<ListenerConfiguration, T> setting) {
+        final Set<T> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        listeners.forEach(listener -> instances.add(setting.apply(listener.getListener())));
+        return instances;
+    }
+
+    private void startServices() {
+        distinct(ListenerConfiguration::getLoginThrottle).forEach(LoginThrottle::start);
+        startWorkSchedulers();
+        configuration.getMetricsRegistry()
+                     .start();
+        configuration.getBufferPool()
+                     .start();
+        configuration.getCompression()
+                     .start();
+        configuration.getBucketUsage()
+                     .start();
+    }
+
+    /**
+     * Starts the server's work scheduler, and each listener's own, named after the port of the first listener given it.
+     */
+    private void startWorkSchedulers() {
+        final Map<WorkScheduler, Integer> ports = new IdentityHashMap<>();
+        for (final SftpListener listener : listeners) {
+            val settings = listener.getListener();
+            ports.putIfAbsent(settings.getWorkScheduler(), settings.getPort());
+        }
+        ports.forEach((workScheduler, port) -> {
+            if (workScheduler == configuration.getWorkScheduler()) {
+                workScheduler.start();
+            } else {
+                workScheduler.start(port);
+            }
+        });
+    }
+
+    private void stopServices() {
+        configuration.getBucketUsage()
+                     .stop();
+        configuration.getCompression()
+                     .stop();
+        configuration.getBufferPool()
+                     .stop();
+        configuration.getMetricsRegistry()
+                     .stop();
+        distinct(ListenerConfiguration::getWorkScheduler).forEach(WorkScheduler::stop);
+        distinct(ListenerConfiguration::getLoginThrottle).forEach(LoginThrottle::stop);
+    }
+
+    /**
+     * Stops every listener, even if an earlier one could not be stopped.
+     */
+    private static void stopListeners(final List<SftpListener> listeners) throws IOException {
+        IOException error = null;
+        for (final SftpListener listener : listeners) {
+            try {
+                listener.stop();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
         }
-        if (authenticationProvider instanceof PublickeyAuthenticator) {
-            sshServer.setPublickeyAuthenticator((PublickeyAuthenticator) authenticationProvider);
-            userAuthFactories.add(UserAuthPublicKeyFactory.INSTANCE);
+        if (error != null) {
+            throw error;
         }
-        sshServer.setUserAuthFactories(userAuthFactories);
     }
 
     @SuppressWarnings("illegalcatch")
-    private void loadHostKey() {
+    private KeyPairProvider loadHostKey() {
         try {
             val hostKeyPrivateFile = configuration.getHostKeyPrivateFile();
-            val hostKeyAlgorithm = configuration.getHostKeyAlgorithm();
             val hostKeyPrivate = configuration.getHostKeyPrivate();
             if (hostKeyPrivateFile != null) {
-                sshServer.setKeyPairProvider(keyPairProviderFromFile(hostKeyAlgorithm, hostKeyPrivateFile));
+                return keyPairProvider(
+                        new String(Files.readAllBytes(hostKeyPrivateFile.toPath()), StandardCharsets.UTF_8));
             } else if (hostKeyPrivate != null && !hostKeyPrivate.isEmpty()) {
-                sshServer.setKeyPairProvider(keyPairProviderFromString(hostKeyAlgorithm, hostKeyPrivate));
+                return keyPairProvider(hostKeyPrivate);
             } else {
                 throw new IllegalStateException("Missing hostKey. Specify either hostKeyPrivateFile or hostKeyPrivate");
             }
@@ -153,10 +263,62 @@ class DefaultS3SftpServer implements S3SftpServer {
     public void stop() {
         log.info("Stopping S3 SFTP Server");
         try {
-            sshServer.stop();
+            stopListeners(listeners);
         } catch (IOException e) {
             throw new S3SftpServerStopException("Could not stop server", e);
+        } finally {
+            stopServices();
         }
         log.info("S3 SFTP Server stopped");
     }
+
+    @Override
+    public boolean drain(final Duration timeout, final Consumer<DrainProgress> progress) {
+        log.info("Draining S3 SFTP Server for up to {}", timeout);
+        listeners.forEach(SftpListener::stopAccepting);
+        transfers.drain();
+        val started = System.nanoTime();
+        val deadline = started + timeout.toNanos();
+        long nextReport = started;
+        DrainProgress current = drainProgress(started);
+        while (!current.isComplete() && System.nanoTime() - deadline < 0) {
+            if (System.nanoTime() - nextReport >= 0) {
+                reportDrain(current, progress);
+                nextReport += DRAIN_REPORT_NANOS;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                break;
+            }
+            current = drainProgress(started);
+        }
+        reportDrain(current, progress);
+        if (!current.isComplete()) {
+            log.warn("Drain timed out with {} transfers open: aborted {} uploads", current.getTransfers(),
+                     transfers.abortUploads()
+                    );
+        }
+        stop();
+        return current.isComplete();
+    }
+
+    private DrainProgress drainProgress(final long started) {
+        val sessions = listeners.stream()
+                                .mapToInt(SftpListener::getActiveSessions)
+                                .sum();
+        return new DrainProgress(sessions, transfers.getOpen(), transfers.getUploads(),
+                                 Duration.ofNanos(System.nanoTime() - started)
+        );
+    }
+
+    private static void reportDrain(final DrainProgress current, final Consumer<DrainProgress> progress) {
+        val elapsed = current.getElapsed();
+        log.info("Draining: {} sessions, {} transfers, {} uploads open after {}ms", current.getSessions(),
+                 current.getTransfers(), current.getUploads(), elapsed.toMillis()
+                );
+        progress.accept(current);
+    }
 }
@@ -0,0 +1,55 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.server.ServerBuilder;
+import org.apache.sshd.server.SshServer;
+
+/**
+ * An {@link SshServer} that can stop accepting connections while leaving its sessions open.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class DrainableSshServer extends SshServer {
+
+    /**
+     * Create a server with the default configuration, as {@link SshServer#setUpDefaultServer()}.
+     *
+     * @return the server
+     */
+    static DrainableSshServer setUp() {
+        return (DrainableSshServer) ServerBuilder.builder()
+                                                 .factory(DrainableSshServer::new)
+                                                 .build();
+    }
+
+    /**
+     * Stop listening for connections, releasing the port.
+     */
+    void stopAccepting() {
+        if (acceptor != null) {
+            acceptor.unbind();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.apache.sshd.common.cipher.ECCurves;
+import org.apache.sshd.common.config.keys.KeyUtils;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.common.util.SecurityUtils;
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.openssl.PEMEncryptedKeyPair;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.DSAPrivateKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.DSAPrivateKeySpec;
+import java.security.spec.DSAPublicKeySpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reads private host keys from a string, without writing them to disk.
+ *
+ * <p>Accepts PEM encoded RSA, DSA and EC keys, in their traditional or PKCS#8 forms, and unencrypted keys in the
+ * OpenSSH format that {@code ssh-keygen} writes by default. Several keys, each of a different type, may be given one
+ * after another, and the server offers each of them to clients.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+final class HostKeys {
+
+    private static final Pattern BLOCK =
+            Pattern.compile("-----BEGIN ([A-Z0-9 ]+)-----(.*?)-----END \\1-----", Pattern.DOTALL);
+
+    private static final String OPENSSH_PRIVATE_KEY = "OPENSSH PRIVATE KEY";
+
+    private static final byte[] OPENSSH_MAGIC = "openssh-key-v1\0".getBytes(StandardCharsets.US_ASCII);
+
+    private HostKeys() {
+    }
+
+    /**
+     * Parses each private key in the text.
+     *
+     * @param text One or more PEM or OpenSSH private keys
+     *
+     * @return The key pairs, in the order given
+     *
+     * @throws IOException              if a key can't be decoded
+     * @throws GeneralSecurityException if a key can't be created
+     */
+    static List<KeyPair> parse(final String text) throws IOException, GeneralSecurityException {
+        val keyPairs = new ArrayList<KeyPair>();
+        val keyTypes = new HashSet<String>();
+        val matcher = BLOCK.matcher(text);
+        while (matcher.find()) {
+            val keyPair = OPENSSH_PRIVATE_KEY.equals(matcher.group(1))
+                          ? parseOpenSsh(Base64.getMimeDecoder()
+                                               .decode(matcher.group(2)))
+                          : parsePem(matcher.group());
+            val keyType = KeyUtils.getKeyType(keyPair);
+            if (!keyTypes.add(keyType)) {
+                throw new IllegalArgumentException("More than one host key of type " + keyType);
+            }
+            keyPairs.add(keyPair);
+        }
+        if (keyPairs.isEmpty()) {
+            throw new IllegalArgumentException("No private host key found");
+        }
+        return Collections.unmodifiableList(keyPairs);
+    }
+
+    private static KeyPair parsePem(final String block) throws IOException, GeneralSecurityException {
+        val converter = new JcaPEMKeyConverter();
+        if (SecurityUtils.isBouncyCastleRegistered()) {
+            converter.setProvider(SecurityUtils.BOUNCY_CASTLE);
+        }
+        try (PEMParser parser = new PEMParser(new StringReader(block))) {
+            val object = parser.readObject();
+            if (object instanceof PEMKeyPair) {
+                return converter.getKeyPair((PEMKeyPair) object);
+            }
+            if (object instanceof PrivateKeyInfo) {
+                val info = (PrivateKeyInfo) object;
+                val privateKey = converter.getPrivateKey(info);
+                return new KeyPair(publicKeyOf(info, privateKey, converter), privateKey);
+            }
+            if (object instanceof PEMEncryptedKeyPair) {
+                throw new IllegalArgumentException("Encrypted host keys are not supported");
+            }
+            throw new IllegalArgumentException("Not a private key: " + object);
+        }
+    }
+
+    // a PKCS#8 key holds only the private key, so the public key is recovered from it
+    private static PublicKey publicKeyOf(
+            final PrivateKeyInfo info, final PrivateKey privateKey, final JcaPEMKeyConverter converter
+                                        ) throws IOException, GeneralSecurityException {
+        if (privateKey instanceof RSAPrivateCrtKey) {
+            val rsa = (RSAPrivateCrtKey) privateKey;
+            return SecurityUtils.getKeyFactory(KeyUtils.RSA_ALGORITHM)
+                                .generatePublic(new RSAPublicKeySpec(rsa.getModulus(), rsa.getPublicExponent()));
+        }
+        if (privateKey instanceof DSAPrivateKey) {
+            val params = ((DSAPrivateKey) privateKey).getParams();
+            val y = params.getG()
+                          .modPow(((DSAPrivateKey) privateKey).getX(), params.getP());
+            return SecurityUtils.getKeyFactory(KeyUtils.DSS_ALGORITHM)
+                                .generatePublic(new DSAPublicKeySpec(y, params.getP(), params.getQ(), params.getG()));
+        }
+        val ecPrivateKey = org.bouncycastle.asn1.sec.ECPrivateKey.getInstance(info.parsePrivateKey());
+        if (ecPrivateKey.getPublicKey() == null) {
+            throw new IllegalArgumentException("EC host key has no public key");
+        }
+        return converter.getPublicKey(
+                new SubjectPublicKeyInfo(info.getPrivateKeyAlgorithm(), ecPrivateKey.getPublicKey()
+                                                                                    .getBytes()));
+    }
+
+    private static KeyPair parseOpenSsh(final byte[] data) throws IOException, GeneralSecurityException {
+        val buffer = new ByteArrayBuffer(data);
+        val magic = new byte[OPENSSH_MAGIC.length];
+        buffer.getRawBytes(magic);
+        if (!Arrays.equals(magic, OPENSSH_MAGIC)) {
+            throw new IllegalArgumentException("Not an OpenSSH private key");
+        }
+        val cipher = buffer.getString();
+        buffer.getString(); // kdf name
+        buffer.getBytes(); // kdf options
+        if (!"none".equals(cipher)) {
+            throw new IllegalArgumentException("Encrypted host keys are not supported");
+        }
+        if (buffer.getInt() != 1) {
+            throw new IllegalArgumentException("Only one key is supported in each OpenSSH private key");
+        }
+        val publicKeyBlob = buffer.getBytes();
+        val keyType = new ByteArrayBuffer(publicKeyBlob).getString();
+        if (!KeyPairProvider.SSH_RSA.equals(keyType) && !KeyPairProvider.SSH_DSS.equals(keyType)
+            && ECCurves.fromKeyType(keyType) == null) {
+            throw new IllegalArgumentException("Unsupported host key type: " + keyType);
+        }
+        val publicKey = new ByteArrayBuffer(publicKeyBlob).getRawPublicKey();
+        val privateSection = new ByteArrayBuffer(buffer.getBytes());
+        val check = privateSection.getInt();
+        if (privateSection.getInt() != check) {
+            throw new IllegalArgumentException("Corrupt OpenSSH private key");
+        }
+        return new KeyPair(publicKey, openSshPrivateKey(privateSection));
+    }
+
+    private static PrivateKey openSshPrivateKey(final Buffer buffer) throws GeneralSecurityException {
+        val keyType = buffer.getString();
+        switch (keyType) {
+            case KeyPairProvider.SSH_RSA:
+                val n = buffer.getMPInt();
+                val e = buffer.getMPInt();
+                val d = buffer.getMPInt();
+                val qInv = buffer.getMPInt();
+                val p = buffer.getMPInt();
+                val q = buffer.getMPInt();
+                return SecurityUtils.getKeyFactory(KeyUtils.RSA_ALGORITHM)
+                                    .generatePrivate(new RSAPrivateCrtKeySpec(n, e, d, p, q,
+                                                                              d.mod(p.subtract(BigInteger.ONE)),
+                                                                              d.mod(q.subtract(BigInteger.ONE)), qInv
+                                    ));
+            case KeyPairProvider.SSH_DSS:
+                val dsaP = buffer.getMPInt();
+                val dsaQ = buffer.getMPInt();
+                val dsaG = buffer.getMPInt();
+                buffer.getMPInt(); // public key
+                val x = buffer.getMPInt();
+                return SecurityUtils.getKeyFactory(KeyUtils.DSS_ALGORITHM)
+                                    .generatePrivate(new DSAPrivateKeySpec(x, dsaP, dsaQ, dsaG));
+            default:
+                buffer.getString(); // curve name
+                buffer.getBytes(); // public key
+                val s = buffer.getMPInt();
+                return SecurityUtils.getKeyFactory(KeyUtils.EC_ALGORITHM)
+                                    .generatePrivate(new ECPrivateKeySpec(s, ECCurves.fromKeyType(keyType)
+                                                                                     .getParameters()));
+        }
+    }
+}
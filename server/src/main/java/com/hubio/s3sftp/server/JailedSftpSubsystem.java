@@ -23,24 +23,48 @@
 
 package com.hubio.s3sftp.server;
 
+import com.hubio.s3sftp.server.filechannel.ObjectChecksums;
 import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
+import com.hubio.s3sftp.server.usage.BucketUsage;
 import com.upplication.s3fs.S3FileSystem;
 import com.upplication.s3fs.S3Path;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.sshd.common.subsystem.sftp.SftpConstants;
+import org.apache.sshd.common.subsystem.sftp.extensions.SpaceAvailableExtensionInfo;
+import org.apache.sshd.common.subsystem.sftp.extensions.openssh.AbstractOpenSSHExtensionParser.OpenSSHExtension;
+import org.apache.sshd.common.util.GenericUtils;
+import org.apache.sshd.common.util.NumberUtils;
 import org.apache.sshd.common.util.SelectorUtils;
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.common.util.buffer.BufferUtils;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.subsystem.sftp.Handle;
 import org.apache.sshd.server.subsystem.sftp.SftpSubsystem;
 import org.apache.sshd.server.subsystem.sftp.UnsupportedAttributePolicy;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 /**
  * {@link SftpSubsystem} where the user is jailed within a subdirectory specified by a {@link SessionHome}.
  *
+ * <p>Free space queries, by the {@code space-available} and {@code statvfs@openssh.com} extensions, are answered from
+ * the user's {@link SessionQuota} and the bytes the {@link BucketUsage} last counted under their home directory.</p>
+ *
+ * <p>Hashes of whole files, by the {@code check-file-name}, {@code check-file-handle}, {@code md5-hash} and {@code
+ * md5-hash-handle} extensions, are answered from the {@link ObjectChecksums} of the object, with a single HEAD request,
+ * rather than by reading it. Hashes of part of a file, or by an algorithm the object has no checksum for, are computed
+ * by reading the file.</p>
+ *
  * @author Paul Campbell (paul.campbell@hubio.com)
  */
 @Slf4j
@@ -50,6 +74,19 @@ class JailedSftpSubsystem extends SftpSubsystem {
 
     private static final String DOT = ".";
 
+    private static final String STATVFS = "statvfs@openssh.com";
+
+    private static final String FSTATVFS = "fstatvfs@openssh.com";
+
+    private static final String STATVFS_VERSION = "2";
+
+    private static final String HANDLE_SUFFIX = "-handle";
+
+    /**
+     * The number of bytes at the start of a file hashed for the quick check of {@code md5-hash}.
+     */
+    private static final long MD5_QUICK_CHECK_SIZE = 2048L;
+
     private final SessionBucket sessionBucket;
 
     private final SessionHome sessionHome;
@@ -58,6 +95,10 @@ class JailedSftpSubsystem extends SftpSubsystem {
 
     private final UserFileSystemResolver resolver;
 
+    private final SessionQuota sessionQuota;
+
+    private final BucketUsage bucketUsage;
+
     /**
      * Constructor.
      *
@@ -68,18 +109,23 @@ class JailedSftpSubsystem extends SftpSubsystem {
      * @param sessionHome                The session home path mapper
      * @param sessionJail                The session jail mapper
      * @param userFileSystemResolver     The session Filesystem resolver
+     * @param sessionQuota               The session quota mapper
+     * @param bucketUsage                The bytes used under each home directory
      */
     JailedSftpSubsystem(
             final ExecutorService executorService, final boolean shutdownOnExit,
             final UnsupportedAttributePolicy unsupportedAttributePolicy, final SessionBucket sessionBucket,
             final SessionHome sessionHome, final SessionJail sessionJail,
-            final UserFileSystemResolver userFileSystemResolver
+            final UserFileSystemResolver userFileSystemResolver, final SessionQuota sessionQuota,
+            final BucketUsage bucketUsage
                        ) {
         super(executorService, shutdownOnExit, unsupportedAttributePolicy);
         this.sessionBucket = sessionBucket;
         this.sessionHome = sessionHome;
         this.sessionJail = sessionJail;
         this.resolver = userFileSystemResolver;
+        this.sessionQuota = sessionQuota;
+        this.bucketUsage = bucketUsage;
     }
 
     // variables with 'Key' suffix are paths based in the root of the bucket
@@ -132,11 +178,11 @@ class JailedSftpSubsystem extends SftpSubsystem {
         val sourcePath = SelectorUtils.translateToLocalFileSystemPath(userPath, '/', fileSystem);
         val cleanPath = cleanPath(sourcePath, bucketName);
         val resolvedPath = defaultDir.resolve(cleanPath);
-        return new S3Path(getSessionFileSystem(), resolvedPath.toString());
+        return new S3Path(getSessionFileSystem(bucketName, jailKey), resolvedPath.toString());
     }
 
-    private S3FileSystem getSessionFileSystem() {
-        return resolver.resolve(getServerSession().getUsername())
+    private S3FileSystem getSessionFileSystem(final String bucket, final String jail) {
+        return resolver.resolve(getServerSession().getUsername(), bucket, jail)
                        .orElseThrow(() -> new RuntimeException("Error finding filesystem."));
     }
 
@@ -204,4 +250,149 @@ class JailedSftpSubsystem extends SftpSubsystem {
         attributes.remove("permissions");
         super.doSetAttributes(file, attributes);
     }
+
+    @Override
+    protected List<OpenSSHExtension> resolveOpenSSHExtensions(final ServerSession session) {
+        val extensions = new ArrayList<OpenSSHExtension>(super.resolveOpenSSHExtensions(session));
+        extensions.add(new OpenSSHExtension(STATVFS, STATVFS_VERSION));
+        extensions.add(new OpenSSHExtension(FSTATVFS, STATVFS_VERSION));
+        return extensions;
+    }
+
+    @Override
+    protected void executeExtendedCommand(final Buffer buffer, final int id, final String extension)
+            throws IOException {
+        if (STATVFS.equals(extension)) {
+            doStatVfs(buffer, id, buffer.getString(), false);
+        } else if (FSTATVFS.equals(extension)) {
+            doStatVfs(buffer, id, buffer.getString(), true);
+        } else {
+            super.executeExtendedCommand(buffer, id, extension);
+        }
+    }
+
+    private void doStatVfs(final Buffer buffer, final int id, final String target, final boolean isHandle)
+            throws IOException {
+        final SessionSpace space;
+        try {
+            space = getSessionSpace(statVfsFile(target, isHandle));
+        } catch (IOException | RuntimeException e) {
+            sendStatus(BufferUtils.clear(buffer), id, e);
+            return;
+        }
+        buffer.clear();
+        buffer.putByte((byte) SftpConstants.SSH_FXP_EXTENDED_REPLY);
+        buffer.putInt(id);
+        space.putStatVfs(buffer);
+        send(buffer);
+    }
+
+    private Path statVfsFile(final String target, final boolean isHandle) throws IOException {
+        if (isHandle) {
+            return validateHandle(target, handles.get(target), Handle.class).getFile();
+        }
+        return resolveFile(target);
+    }
+
+    @Override
+    protected SpaceAvailableExtensionInfo doSpaceAvailable(final int id, final String path) throws IOException {
+        return getSessionSpace(resolveFile(path)).toSpaceAvailable();
+    }
+
+    /**
+     * Returns the space left to the user within their quota.
+     *
+     * <p>Never waits on S3: the bytes used are those last counted under the user's home directory, which is counted
+     * in the background.</p>
+     *
+     * @param file A file in the user's file system
+     *
+     * @return the user's space
+     */
+    private SessionSpace getSessionSpace(final Path file) {
+        val serverSession = SftpSession.of(getServerSession());
+        val quota = sessionQuota.getQuota(serverSession);
+        if (quota == SessionQuota.UNLIMITED) {
+            return SessionSpace.of(quota, 0L);
+        }
+        val homeKey = sessionHome.getHomePath(serverSession);
+        val prefix = BucketUsage.homePrefix(homeKey);
+        val client = ((S3Path) file).getFileSystem()
+                                    .getClient();
+        val bucketName = sessionBucket.getBucket(serverSession);
+        return SessionSpace.of(quota, bucketUsage.track(client, bucketName, prefix)
+                                                 .getBytes());
+    }
+
+    @Override
+    protected void doCheckFileHash(
+            final int id, final String targetType, final String target, final Collection<String> algos,
+            final long startOffset, final long length, final int blockSize, final Buffer buffer
+                                  ) throws Exception {
+        val checksums = storedChecksums(hashTarget(targetType, target));
+        val size = storedSize(checksums);
+        val wholeFile = startOffset == 0L && size > 0L && (length == 0L || length >= size)
+                        && (blockSize == 0 || blockSize >= size);
+        if (wholeFile) {
+            for (final String algorithm : algos) {
+                val checksum = checksums.get(algorithm);
+                if (checksum instanceof byte[]) {
+                    log.debug("check-file {} answered from stored {}", target, algorithm);
+                    buffer.putString(algorithm);
+                    buffer.putBytes((byte[]) checksum);
+                    return;
+                }
+            }
+        }
+        super.doCheckFileHash(id, targetType, target, algos, startOffset, length, blockSize, buffer);
+    }
+
+    @Override
+    protected byte[] doMD5Hash(
+            final int id, final String targetType, final String target, final long startOffset, final long length,
+            final byte[] quickCheckHash
+                              ) throws Exception {
+        val checksums = storedChecksums(hashTarget(targetType, target));
+        val size = storedSize(checksums);
+        val md5 = checksums.get(ObjectChecksums.MD5);
+        // the quick check hashes the start of the file, which is only known when it is the whole file
+        val quickCheck = NumberUtils.length(quickCheckHash) > 0;
+        val quickCheckable = !quickCheck || size <= MD5_QUICK_CHECK_SIZE;
+        if (md5 instanceof byte[] && startOffset == 0L && size > 0L && length >= size && quickCheckable) {
+            log.debug("md5-hash {} answered from stored md5", target);
+            if (quickCheck && !Arrays.equals(quickCheckHash, (byte[]) md5)) {
+                return GenericUtils.EMPTY_BYTE_ARRAY;
+            }
+            return (byte[]) md5;
+        }
+        return super.doMD5Hash(id, targetType, target, startOffset, length, quickCheckHash);
+    }
+
+    private Path hashTarget(final String targetType, final String target) throws IOException {
+        if (targetType.endsWith(HANDLE_SUFFIX)) {
+            return validateHandle(target, handles.get(target), Handle.class).getFile();
+        }
+        return resolveFile(target);
+    }
+
+    /**
+     * Returns the checksums stored with the object, or none if they can't be read, e.g. for a directory, leaving the
+     * error to be reported when the file is read.
+     */
+    private static Map<String, Object> storedChecksums(final Path file) {
+        try {
+            return Files.readAttributes(file, ObjectChecksums.ATTRIBUTES);
+        } catch (IOException | RuntimeException e) {
+            log.debug("No stored checksums for {}", file, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static long storedSize(final Map<String, Object> checksums) {
+        val size = checksums.get(ObjectChecksums.SIZE);
+        if (size instanceof Long) {
+            return (Long) size;
+        }
+        return -1L;
+    }
 }
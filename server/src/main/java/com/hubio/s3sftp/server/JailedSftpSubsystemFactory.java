@@ -24,6 +24,7 @@
 package com.hubio.s3sftp.server;
 
 import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
+import com.hubio.s3sftp.server.usage.BucketUsage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -48,12 +49,17 @@ class JailedSftpSubsystemFactory extends SftpSubsystemFactory {
 
     private final UserFileSystemResolver fileSystemProvider;
 
+    private final SessionQuota sessionQuota;
+
+    private final BucketUsage bucketUsage;
+
     @Override
     public Command create() {
         log.trace("create()");
         val subsystem =
                 new JailedSftpSubsystem(getExecutorService(), isShutdownOnExit(), getUnsupportedAttributePolicy(),
-                                        sessionBucket, sessionHome, sessionJail, fileSystemProvider
+                                        sessionBucket, sessionHome, sessionJail, fileSystemProvider, sessionQuota,
+                                        bucketUsage
                 );
         getRegisteredListeners().forEach(subsystem::addSftpEventListener);
         log.trace(" <= {}", subsystem);
@@ -0,0 +1,105 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * An additional port for an {@link S3SftpServer} to listen on, with its own users and session mappings.
+ *
+ * <p>Settings left unset are taken from the {@link S3SftpServerConfiguration}, and any instance given to more than
+ * one listener, such as a {@link WorkScheduler}, is shared between them. The host keys, ciphers, compression, object
+ * cache, buffer pool, metrics and S3 admission are always shared by every listener.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class ListenerConfiguration {
+
+    private final int port;
+
+    private final AuthenticationProvider authenticationProvider;
+
+    private final SessionBucket sessionBucket;
+
+    private final SessionHome sessionHome;
+
+    private final SessionJail sessionJail;
+
+    private final LoginThrottle loginThrottle;
+
+    private final Boolean virtualThreads;
+
+    private final WorkScheduler workScheduler;
+
+    private final SessionBandwidth sessionBandwidth;
+
+    private final SessionQuota sessionQuota;
+
+    /**
+     * Fills in the settings this listener leaves unset from the server's configuration.
+     *
+     * @param server The server's configuration
+     *
+     * @return a listener configuration with every setting given
+     */
+    ListenerConfiguration orElse(final S3SftpServerConfiguration server) {
+        return new ListenerConfiguration(port, or(authenticationProvider, server.getAuthenticationProvider()),
+                                         or(sessionBucket, server.getSessionBucket()),
+                                         or(sessionHome, server.getSessionHome()),
+                                         or(sessionJail, server.getSessionJail()),
+                                         or(loginThrottle, server.getLoginThrottle()),
+                                         or(virtualThreads, server.isVirtualThreads()),
+                                         or(workScheduler, server.getWorkScheduler()),
+                                         or(sessionBandwidth, server.getSessionBandwidth()),
+                                         or(sessionQuota, server.getSessionQuota())
+        );
+    }
+
+    private static <T> T or(final T value, final T serverValue) {
+        if (value == null) {
+            return serverValue;
+        }
+        return value;
+    }
+
+    /**
+     * Builder for {@link ListenerConfiguration}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>port: 0 (i.e. any free port)</li>
+     *     <li>authenticationProvider, sessionBucket, sessionHome, sessionJail, loginThrottle, virtualThreads,
+     *     workScheduler, sessionBandwidth and sessionQuota: those of the server</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class ListenerConfigurationBuilder {
+
+    }
+}
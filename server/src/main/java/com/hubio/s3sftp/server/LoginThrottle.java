@@ -0,0 +1,103 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+import com.hubio.s3sftp.server.ratelimit.RateLimit;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.time.Duration;
+
+/**
+ * Limits the rate of login attempts before they reach the {@link AuthenticationProvider}.
+ *
+ * <p>Only attempts that fail authentication are charged, so a user who logs in successfully, however often, is never
+ * throttled. Once a client or username has failed too often, every attempt is refused, whether or not it would have
+ * succeeded, until the throttle allows it again.</p>
+ *
+ * <p>Refused attempts fail without any authentication work being done, so they never reach the
+ * {@link HomeDirExistsChecker} and cost no S3 requests.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface LoginThrottle {
+
+    /**
+     * Checks whether a login attempt may proceed to authentication, without charging for it.
+     *
+     * @param username The username being authenticated
+     * @param session  The session the attempt is being made on
+     *
+     * @return true if the attempt may proceed; false if it should be refused
+     */
+    boolean isPermitted(String username, ServerSession session);
+
+    /**
+     * Charges for a login attempt that was permitted, but failed authentication.
+     *
+     * @param username The username that failed authentication
+     * @param session  The session the attempt was made on
+     */
+    default void failed(final String username, final ServerSession session) {
+    }
+
+    /**
+     * Start any background work needed by the throttle.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stop any background work started by {@link #start()}.
+     */
+    default void stop() {
+    }
+
+    /**
+     * Creates a throttle that never refuses an attempt.
+     *
+     * @return the login throttle
+     */
+    static LoginThrottle unlimited() {
+        return (username, session) -> true;
+    }
+
+    /**
+     * Creates a throttle with a token bucket for each client address and for each username, from which each failed
+     * attempt takes a token.
+     *
+     * <p>A session that has an attempt refused is disconnected once the tarpit delay has passed. Any further attempts
+     * made on the session before then are also refused.</p>
+     *
+     * @param perAddress The limit of failed attempts for each client address
+     * @param perUser    The limit of failed attempts for each username
+     * @param tarpit     The delay before disconnecting a session that has been throttled
+     *
+     * @return the login throttle
+     */
+    static LoginThrottle perAddressAndUser(final RateLimit perAddress, final RateLimit perUser, final Duration tarpit) {
+        return new DefaultLoginThrottle(new KeyedRateLimiter(perAddress), new KeyedRateLimiter(perUser), tarpit);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.cipher.Cipher;
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.common.mac.Mac;
+import org.apache.sshd.server.SshServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link CryptoProfile} offering a list of ciphers and MACs in order.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class OrderedCryptoProfile implements CryptoProfile {
+
+    private final List<NamedFactory<Cipher>> ciphers = new ArrayList<>();
+
+    private final List<NamedFactory<Mac>> macs = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param ciphers The ciphers to offer, most preferred first
+     * @param macs    The MACs to offer, most preferred first
+     */
+    OrderedCryptoProfile(final List<BuiltinCiphers> ciphers, final List<BuiltinMacs> macs) {
+        for (final BuiltinCiphers cipher : ciphers) {
+            if (cipher.isSupported()) {
+                this.ciphers.add(cipher);
+            } else {
+                log.warn("Cipher {} is not supported by this JVM", cipher);
+            }
+        }
+        for (final BuiltinMacs mac : macs) {
+            if (mac.isSupported()) {
+                this.macs.add(mac);
+            } else {
+                log.warn("MAC {} is not supported by this JVM", mac);
+            }
+        }
+        if (this.ciphers.isEmpty() || this.macs.isEmpty()) {
+            throw new IllegalArgumentException("At least one supported cipher and MAC are needed");
+        }
+    }
+
+    @Override
+    public void apply(final SshServer server) {
+        val cipherFactories = new ArrayList<NamedFactory<Cipher>>(ciphers);
+        val macFactories = new ArrayList<NamedFactory<Mac>>(macs);
+        server.setCipherFactories(cipherFactories);
+        server.setMacFactories(macFactories);
+        log.info("Offering ciphers {} and MACs {}", NamedResource.getNames(cipherFactories),
+                 NamedResource.getNames(macFactories)
+                );
+    }
+}
@@ -24,6 +24,7 @@
 package com.hubio.s3sftp.server;
 
 import lombok.val;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
 import org.apache.sshd.server.session.ServerSession;
 
 import java.util.Objects;
@@ -36,7 +37,7 @@ import java.util.Objects;
  *
  * @author Paul Campbell (paul.campbell@hubio.com)
  */
-public interface PasswordAuthenticationProvider extends AuthenticationProvider {
+public interface PasswordAuthenticationProvider extends AuthenticationProvider, PasswordAuthenticator {
 
     /**
      * Authenticate the username and password for the session.
@@ -63,6 +64,7 @@ public interface PasswordAuthenticationProvider extends AuthenticationProvider {
      *
      * @return true if the username and password are valid and the user's home directory exists
      */
+    @Override
     default boolean authenticate(final String username, final String password, final ServerSession session) {
         val homeDirExistsChecker = getHomeDirExistsChecker();
         Objects.requireNonNull(homeDirExistsChecker, "No HomeDirExistsChecker set");
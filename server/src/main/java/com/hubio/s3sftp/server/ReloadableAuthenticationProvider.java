@@ -0,0 +1,71 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.security.PublicKey;
+
+/**
+ * Authenticates each session with the provider from the session's {@link SessionConfiguration}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class ReloadableAuthenticationProvider implements AuthenticationProvider, PasswordAuthenticator, PublickeyAuthenticator {
+
+    private final DefaultReloadableSessionConfiguration configurations;
+
+    @Getter
+    private volatile HomeDirExistsChecker homeDirExistsChecker;
+
+    @Override
+    public void setHomeDirExistsChecker(final HomeDirExistsChecker homeDirExistsChecker) {
+        this.homeDirExistsChecker = homeDirExistsChecker;
+        configurations.getCurrent()
+                      .getAuthenticationProvider()
+                      .setHomeDirExistsChecker(homeDirExistsChecker);
+    }
+
+    @Override
+    public boolean authenticate(final String username, final String password, final ServerSession session) {
+        val provider = configurations.forSession(session)
+                                     .getAuthenticationProvider();
+        return provider instanceof PasswordAuthenticator
+               && ((PasswordAuthenticator) provider).authenticate(username, password, session);
+    }
+
+    @Override
+    public boolean authenticate(final String username, final PublicKey key, final ServerSession session) {
+        val provider = configurations.forSession(session)
+                                     .getAuthenticationProvider();
+        return provider instanceof PublickeyAuthenticator
+               && ((PublickeyAuthenticator) provider).authenticate(username, key, session);
+    }
+}
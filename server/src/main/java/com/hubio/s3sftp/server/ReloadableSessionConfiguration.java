@@ -0,0 +1,94 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+/**
+ * Holds the {@link SessionConfiguration} for new sessions, which may be replaced while the server is running.
+ *
+ * <p>Each session keeps the configuration it started with, so a reload changes who may log in and where new
+ * sessions are taken, while the sessions already open carry on as they were.</p>
+ *
+ * <p>Pass it to {@link S3SftpServerConfiguration.S3SftpServerConfigurationBuilder#sessionConfiguration(
+ * ReloadableSessionConfiguration)} in place of the authentication provider, session bucket, home and jail.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface ReloadableSessionConfiguration {
+
+    /**
+     * Creates a reloadable configuration.
+     *
+     * @param initial The configuration until the first reload
+     *
+     * @return the reloadable configuration
+     */
+    static ReloadableSessionConfiguration of(final SessionConfiguration initial) {
+        return new DefaultReloadableSessionConfiguration(initial);
+    }
+
+    /**
+     * Replaces the configuration for sessions that start from now on.
+     *
+     * @param configuration The new configuration
+     */
+    void reload(SessionConfiguration configuration);
+
+    /**
+     * Returns the configuration that new sessions are given.
+     *
+     * @return the current configuration
+     */
+    SessionConfiguration getCurrent();
+
+    /**
+     * Returns an authentication provider that authenticates each session against its configuration.
+     *
+     * <p>It accepts both passwords and public keys, and rejects those that the configured provider does not
+     * support, so that a reload may change from one to the other.</p>
+     *
+     * @return the authentication provider
+     */
+    AuthenticationProvider getAuthenticationProvider();
+
+    /**
+     * Returns the session bucket from each session's configuration.
+     *
+     * @return the session bucket
+     */
+    SessionBucket getSessionBucket();
+
+    /**
+     * Returns the session home from each session's configuration.
+     *
+     * @return the session home
+     */
+    SessionHome getSessionHome();
+
+    /**
+     * Returns the session jail from each session's configuration.
+     *
+     * @return the session jail
+     */
+    SessionJail getSessionJail();
+}
@@ -0,0 +1,71 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WindowTuning} that sizes the window to the bandwidth-delay product of the session.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class RoundTripWindowTuning implements WindowTuning {
+
+    private final long bytesPerSecond;
+
+    private final int maxWindowSize;
+
+    /**
+     * Constructor.
+     *
+     * @param bytesPerSecond The upload bandwidth each session should be able to reach
+     * @param maxWindowSize  The largest window to give a session
+     */
+    RoundTripWindowTuning(final long bytesPerSecond, final int maxWindowSize) {
+        if (bytesPerSecond < 1) {
+            throw new IllegalArgumentException("bytesPerSecond must be positive: " + bytesPerSecond);
+        }
+        if (maxWindowSize < 1) {
+            throw new IllegalArgumentException("maxWindowSize must be positive: " + maxWindowSize);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    @Override
+    public int windowSize(final int windowSize, final Duration roundTrip) {
+        final double seconds = (double) roundTrip.toNanos() / TimeUnit.SECONDS.toNanos(1);
+        final double product = bytesPerSecond * seconds;
+        if (product <= windowSize) {
+            return windowSize;
+        }
+        return (int) Math.min(product, Math.max(windowSize, maxWindowSize));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("roundTrip(%d bytes/s, max window %d)", bytesPerSecond, maxWindowSize);
+    }
+}
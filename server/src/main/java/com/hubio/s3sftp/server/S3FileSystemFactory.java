@@ -62,15 +62,18 @@ class S3FileSystemFactory implements FileSystemFactory {
     @Override
     public FileSystem createFileSystem(final Session session) throws IOException {
         log.trace("createFileSystem({})", session);
+        val sftpSession = SftpSession.of((ServerSession) session);
         val username = session.getUsername();
-        return resolver.resolve(username)
-                       .orElseGet(() -> getS3FileSystem(SftpSession.of((ServerSession) session), username));
+        val bucket = sessionBucket.getBucket(sftpSession);
+        val jail = sessionJail.getJail(sftpSession);
+        return resolver.resolve(username, bucket, jail)
+                       .orElseGet(() -> getS3FileSystem(sftpSession, username, bucket, jail));
     }
 
-    private S3FileSystem getS3FileSystem(final SftpSession session, final String username) {
-        val bucket = sessionBucket.getBucket(session);
+    private S3FileSystem getS3FileSystem(
+            final SftpSession session, final String username, final String bucket, final String jail
+                                        ) {
         val homedir = sessionHome.getHomePath(session);
-        val jail = sessionJail.getJail(session);
         val mapBuilder = new MapBuilder<String, String>();
         val env = mapBuilder.put(S3SftpServer.USERNAME, username)
                             .put(S3SftpServer.BUCKET, bucket)
@@ -80,7 +83,7 @@ class S3FileSystemFactory implements FileSystemFactory {
         val s3PathEnhancer = new FixedPrefixS3PathEnhancer(String.format("/%s/%s", bucket, jail));
         val fileSystemProvider = fileSystemProviderFactory.createWith(s3PathEnhancer, session.getServerSession());
         val fs = (S3FileSystem) fileSystemProvider.getFileSystem(s3Uri, env);
-        resolver.put(username, fs);
+        resolver.put(username, bucket, jail, fs);
         return fs;
     }
 }
@@ -26,7 +26,9 @@ package com.hubio.s3sftp.server;
 import lombok.NonNull;
 import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * S3 SFTP Server.
@@ -78,6 +80,35 @@ public interface S3SftpServer {
      */
     void stop();
 
+    /**
+     * Stop the server once the transfers in progress have finished.
+     *
+     * @param timeout The longest to wait for the transfers to finish
+     *
+     * @return true if every transfer finished, false if any were cut short
+     *
+     * @see #drain(Duration, Consumer)
+     */
+    default boolean drain(final Duration timeout) {
+        return drain(timeout, progress -> {
+        });
+    }
+
+    /**
+     * Stop the server once the transfers in progress have finished.
+     *
+     * <p>The server stops accepting connections straight away, releasing its port so that a replacement server can
+     * start on it, and refuses to open files in the sessions still connected. Once no files are open, or the timeout
+     * has passed, the server is stopped. Uploads still in progress at the timeout are aborted, rather than storing
+     * partly written objects in S3.</p>
+     *
+     * @param timeout  The longest to wait for the transfers to finish
+     * @param progress Told of the sessions and transfers still open, once a second and when done
+     *
+     * @return true if every transfer finished, false if any were cut short
+     */
+    boolean drain(Duration timeout, Consumer<DrainProgress> progress);
+
     /**
      * Creates a simple password authenticator using a list of usernames and password.
      *
@@ -23,11 +23,24 @@
 
 package com.hubio.s3sftp.server;
 
+import com.hubio.s3sftp.server.admission.AdmissionPolicy;
+import com.hubio.s3sftp.server.admission.S3Admission;
+import com.hubio.s3sftp.server.compression.SessionCompression;
+import com.hubio.s3sftp.server.filechannel.BufferPool;
+import com.hubio.s3sftp.server.filechannel.ObjectCache;
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import com.hubio.s3sftp.server.ratelimit.RateLimit;
+import com.hubio.s3sftp.server.scheduling.UserWeight;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.hubio.s3sftp.server.usage.BucketUsage;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Configuration for {@link S3SftpServer}.
@@ -61,15 +74,105 @@ public class S3SftpServerConfiguration {
     @NonNull
     private final String uri;
 
+    @NonNull
+    private final LoginThrottle loginThrottle;
+
+    private final boolean virtualThreads;
+
+    private final int windowSize;
+
+    private final int maxPacketSize;
+
+    private final int nioReadBufferSize;
+
+    private final int socketSendBufferSize;
+
+    private final int socketReceiveBufferSize;
+
+    private final int sftpMaxReadLength;
+
+    @NonNull
+    private final WindowTuning windowTuning;
+
+    @NonNull
+    private final CryptoProfile cryptoProfile;
+
+    @NonNull
+    private final SessionCompression compression;
+
+    @NonNull
+    private final WorkScheduler workScheduler;
+
+    @NonNull
+    private final SessionBandwidth sessionBandwidth;
+
+    @NonNull
+    private final SessionQuota sessionQuota;
+
+    @NonNull
+    private final BucketUsage bucketUsage;
+
+    @NonNull
+    private final MetricsRegistry metricsRegistry;
+
+    @NonNull
+    private final S3Admission s3Admission;
+
+    @NonNull
+    private final ObjectCache objectCache;
+
+    @NonNull
+    private final BufferPool bufferPool;
+
+    @NonNull
+    private final List<ListenerConfiguration> listeners;
+
     /**
      * Builder for {@link S3SftpServerConfiguration}.
      *
      * <p>Default values:</p>
      * <ul>
      *     <li>port: 22</li>
-     *     <li>hostKeyAlgorithm: RSA</li>
+     *     <li>hostKeyAlgorithm: RSA. Not used to load the host keys, as the type of each key is read from the key
+     *     itself</li>
      *     <li>sessionHome: "" (i.e. the root of the bucket)</li>
      *     <li>sessionJail: "" (i.e. unjailed)</li>
+     *     <li>loginThrottle: 10 failed attempts per second for each client address (burst of 30), 1 failed attempt
+     *     per second for each username (burst of 10), throttled sessions are disconnected after 5 seconds</li>
+     *     <li>virtualThreads: false (i.e. one platform thread per SFTP channel). When true, SFTP channels, and the
+     *     blocking S3 calls they make, run on virtual threads if the JVM supports them</li>
+     *     <li>windowSize: 2 MiB, the SSH channel window, i.e. the most a client may upload before the server
+     *     acknowledges it</li>
+     *     <li>maxPacketSize: 32 KiB, the largest SSH channel packet the server will accept</li>
+     *     <li>nioReadBufferSize: 0 (i.e. the sshd default) for reading from each connection</li>
+     *     <li>socketSendBufferSize: 0 (i.e. the operating system default)</li>
+     *     <li>socketReceiveBufferSize: 0 (i.e. the operating system default)</li>
+     *     <li>sftpMaxReadLength: 16 KiB, the most returned by each SFTP read; larger reads are cut short</li>
+     *     <li>windowTuning: fixed, i.e. every session has the same window size. See {@link WindowTuning#roundTrip}
+     *     to grow the window of distant sessions</li>
+     *     <li>cryptoProfile: the ciphers and MACs sshd offers by default. See {@link CryptoProfile#throughput} to
+     *     offer only the fastest</li>
+     *     <li>compression: none. See {@link SessionCompression#adaptive()} to offer compression that stops while the
+     *     data does not compress well</li>
+     *     <li>workScheduler: at most 50 S3 operations at once, at most 8 for any one user, shared equally between
+     *     users</li>
+     *     <li>sessionBandwidth: unlimited</li>
+     *     <li>sessionQuota: unlimited. The bytes and objects under each user's home directory are limited as they
+     *     are uploaded, and the free space is reported to clients that ask, e.g. before an upload</li>
+     *     <li>bucketUsage: the bytes and objects under each home directory listed every 5 minutes, while its user
+     *     has a quota and is logged in, and kept only in memory, see {@link BucketUsage#listedEvery(Duration,
+     *     java.nio.file.Path)} to keep them between restarts</li>
+     *     <li>metricsRegistry: latency histograms for each operation, combined for all users, published over
+     *     JMX</li>
+     *     <li>s3Admission: concurrent requests for each prefix ({@code bucket/users/alice/}) limited adaptively,
+     *     starting at 16, with up to 4 attempts at each request and one retry for every ten requests, see {@link
+     *     AdmissionPolicy}</li>
+     *     <li>objectCache: none, i.e. every read downloads the object from S3. See {@link ObjectCache#onDisk} to keep
+     *     popular objects on local disk</li>
+     *     <li>bufferPool: direct buffers from 4 KiB to 1 MiB, keeping up to 32 MiB for reuse, published over JMX, see
+     *     {@link BufferPool#direct(long)}</li>
+     *     <li>listeners: none, i.e. the server listens on {@code port} alone. See {@link ListenerConfiguration} to
+     *     listen on more ports, each with its own users and session mappings</li>
      * </ul>
      */
     // Default configuration values
@@ -78,6 +181,28 @@ public class S3SftpServerConfiguration {
 
         private static final int DEFAULT_PORT = 22;
 
+        private static final int LOGINS_PER_ADDRESS_PER_SECOND = 10;
+
+        private static final int LOGIN_BURST_PER_ADDRESS = 30;
+
+        private static final int LOGINS_PER_USER_PER_SECOND = 1;
+
+        private static final int LOGIN_BURST_PER_USER = 10;
+
+        private static final int LOGIN_TARPIT_SECONDS = 5;
+
+        private static final int MAX_CONCURRENT_S3_OPERATIONS = 50;
+
+        private static final int MAX_CONCURRENT_S3_OPERATIONS_PER_USER = 8;
+
+        private static final int DEFAULT_WINDOW_SIZE = 2 * 1024 * 1024;
+
+        private static final int DEFAULT_MAX_PACKET_SIZE = 32 * 1024;
+
+        private static final int DEFAULT_SFTP_MAX_READ_LENGTH = 16 * 1024;
+
+        private static final int BUCKET_USAGE_REFRESH_MINUTES = 5;
+
         private int port = DEFAULT_PORT;
 
         private String hostKeyAlgorithm = "RSA";
@@ -86,5 +211,60 @@ public class S3SftpServerConfiguration {
 
         private SessionJail sessionJail = session -> "";
 
+        private LoginThrottle loginThrottle = LoginThrottle.perAddressAndUser(
+                RateLimit.perSecond(LOGINS_PER_ADDRESS_PER_SECOND, LOGIN_BURST_PER_ADDRESS),
+                RateLimit.perSecond(LOGINS_PER_USER_PER_SECOND, LOGIN_BURST_PER_USER),
+                Duration.ofSeconds(LOGIN_TARPIT_SECONDS));
+
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+
+        private int maxPacketSize = DEFAULT_MAX_PACKET_SIZE;
+
+        private int sftpMaxReadLength = DEFAULT_SFTP_MAX_READ_LENGTH;
+
+        private WindowTuning windowTuning = WindowTuning.fixed();
+
+        private CryptoProfile cryptoProfile = CryptoProfile.sshdDefaults();
+
+        private SessionCompression compression = SessionCompression.none();
+
+        private WorkScheduler workScheduler =
+                WorkScheduler.fairShare(MAX_CONCURRENT_S3_OPERATIONS, MAX_CONCURRENT_S3_OPERATIONS_PER_USER,
+                                        UserWeight.equal()
+                                       );
+
+        private SessionBandwidth sessionBandwidth = SessionBandwidth.unlimited();
+
+        private SessionQuota sessionQuota = SessionQuota.unlimited();
+
+        private BucketUsage bucketUsage = BucketUsage.listedEvery(Duration.ofMinutes(BUCKET_USAGE_REFRESH_MINUTES));
+
+        private MetricsRegistry metricsRegistry = MetricsRegistry.jmx(false);
+
+        private S3Admission s3Admission = S3Admission.adaptive(AdmissionPolicy.builder()
+                                                                              .build());
+
+        private ObjectCache objectCache = ObjectCache.none();
+
+        private BufferPool bufferPool = BufferPool.direct();
+
+        private List<ListenerConfiguration> listeners = Collections.emptyList();
+
+        /**
+         * Takes the authentication provider, session bucket, home and jail from a reloadable configuration, so that
+         * they can be changed without restarting the server.
+         *
+         * @param sessionConfiguration The reloadable session configuration
+         *
+         * @return this builder
+         */
+        public S3SftpServerConfigurationBuilder sessionConfiguration(
+                final ReloadableSessionConfiguration sessionConfiguration
+                                                                    ) {
+            return authenticationProvider(sessionConfiguration.getAuthenticationProvider())
+                    .sessionBucket(sessionConfiguration.getSessionBucket())
+                    .sessionHome(sessionConfiguration.getSessionHome())
+                    .sessionJail(sessionConfiguration.getSessionJail());
+        }
     }
 }
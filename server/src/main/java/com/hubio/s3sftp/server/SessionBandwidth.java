@@ -0,0 +1,67 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.ratelimit.Bandwidth;
+
+/**
+ * The upload and download bandwidth allowed to the user of the session.
+ *
+ * <p>The limit is shared by all of the user's sessions, so opening more sessions does not give a user more
+ * bandwidth.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface SessionBandwidth {
+
+    /**
+     * No limit for any user.
+     *
+     * @return a session bandwidth that never limits
+     */
+    static SessionBandwidth unlimited() {
+        return session -> Bandwidth.unlimited();
+    }
+
+    /**
+     * The same limit for every user.
+     *
+     * @param bandwidth The limit for each user
+     *
+     * @return the session bandwidth
+     */
+    static SessionBandwidth perUser(final Bandwidth bandwidth) {
+        return session -> bandwidth;
+    }
+
+    /**
+     * Returns the bandwidth allowed to the user of the session.
+     *
+     * @param session the Session.
+     *
+     * @return the session's bandwidth
+     */
+    Bandwidth getBandwidth(SftpSession session);
+}
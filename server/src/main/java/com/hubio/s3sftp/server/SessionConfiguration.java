@@ -0,0 +1,70 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The settings a session is given when it starts: who may log in and which bucket, home and jail they are given.
+ *
+ * <p>A {@link ReloadableSessionConfiguration} holds one of these at a time and swaps it for another on reload.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class SessionConfiguration {
+
+    @NonNull
+    private final AuthenticationProvider authenticationProvider;
+
+    @NonNull
+    private final SessionBucket sessionBucket;
+
+    @NonNull
+    private final SessionHome sessionHome;
+
+    @NonNull
+    private final SessionJail sessionJail;
+
+    /**
+     * Builder for {@link SessionConfiguration}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>sessionHome: "" (i.e. the root of the bucket)</li>
+     *     <li>sessionJail: "" (i.e. unjailed)</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class SessionConfigurationBuilder {
+
+        private SessionHome sessionHome = session -> "";
+
+        private SessionJail sessionJail = session -> "";
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+
+/**
+ * The number of bytes, and of objects, the user of the session may store under their home directory.
+ *
+ * <p>The quota is enforced as each file is uploaded: opening a new file beyond the object quota fails, as does
+ * writing beyond the byte quota. It is also what the server reports to clients that ask how much space is free.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface SessionQuota {
+
+    /**
+     * The quota of a user with no limit.
+     */
+    long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * No limit for any user.
+     *
+     * @return a session quota that never limits
+     */
+    static SessionQuota unlimited() {
+        return session -> UNLIMITED;
+    }
+
+    /**
+     * The same quota for every user.
+     *
+     * @param bytes The number of bytes each user may store
+     *
+     * @return the session quota
+     */
+    static SessionQuota perUser(final long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("quota must be positive: " + bytes);
+        }
+        return session -> bytes;
+    }
+
+    /**
+     * The same quota for every user, in bytes and in objects.
+     *
+     * @param bytes   The number of bytes each user may store
+     * @param objects The number of objects each user may store
+     *
+     * @return the session quota
+     */
+    static SessionQuota perUser(final long bytes, final long objects) {
+        if (objects < 1) {
+            throw new IllegalArgumentException("object quota must be positive: " + objects);
+        }
+        val byteQuota = perUser(bytes);
+        return new SessionQuota() {
+            @Override
+            public long getQuota(final SftpSession session) {
+                return byteQuota.getQuota(session);
+            }
+
+            @Override
+            public long getObjectQuota(final SftpSession session) {
+                return objects;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of bytes the user of the session may store, or {@link #UNLIMITED}.
+     *
+     * @param session the Session.
+     *
+     * @return the session's quota in bytes
+     */
+    long getQuota(SftpSession session);
+
+    /**
+     * Returns the number of objects the user of the session may store, or {@link #UNLIMITED}.
+     *
+     * @param session the Session.
+     *
+     * @return the session's quota in objects
+     */
+    default long getObjectQuota(final SftpSession session) {
+        return UNLIMITED;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.common.subsystem.sftp.extensions.SpaceAvailableExtensionInfo;
+import org.apache.sshd.common.util.buffer.Buffer;
+
+/**
+ * The space given to the user of a session by their {@link SessionQuota}, and how much of it is free.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@RequiredArgsConstructor
+class SessionSpace {
+
+    /**
+     * The block size reported to clients.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The longest file name reported to clients, the longest key S3 allows.
+     */
+    private static final long NAME_MAX = 1024L;
+
+    /**
+     * The {@code ST_NOSUID} flag of {@code statvfs@openssh.com}.
+     */
+    private static final long ST_NOSUID = 0x2L;
+
+    private final long totalBytes;
+
+    private final long freeBytes;
+
+    /**
+     * Creates the space for a quota, of which some bytes have been used.
+     *
+     * @param quota The quota in bytes, or {@link SessionQuota#UNLIMITED}
+     * @param used  The number of bytes used
+     *
+     * @return the session space
+     */
+    static SessionSpace of(final long quota, final long used) {
+        if (quota == SessionQuota.UNLIMITED) {
+            return new SessionSpace(quota, quota);
+        }
+        return new SessionSpace(quota, Math.max(0L, quota - used));
+    }
+
+    /**
+     * Returns the space as a reply to the {@code space-available} extension.
+     *
+     * @return the space available
+     */
+    SpaceAvailableExtensionInfo toSpaceAvailable() {
+        val info = new SpaceAvailableExtensionInfo();
+        info.bytesOnDevice = totalBytes;
+        info.unusedBytesOnDevice = freeBytes;
+        info.bytesAvailableToUser = totalBytes;
+        info.unusedBytesAvailableToUser = freeBytes;
+        info.bytesPerAllocationUnit = BLOCK_SIZE;
+        return info;
+    }
+
+    /**
+     * Writes the space as a reply to the {@code statvfs@openssh.com} extension.
+     *
+     * <p>S3 has no limit on the number of objects, so no inodes are reported.</p>
+     *
+     * @param buffer The buffer to write to
+     */
+    void putStatVfs(final Buffer buffer) {
+        buffer.putLong(BLOCK_SIZE); // f_bsize
+        buffer.putLong(BLOCK_SIZE); // f_frsize
+        buffer.putLong(totalBytes / BLOCK_SIZE); // f_blocks
+        buffer.putLong(freeBytes / BLOCK_SIZE); // f_bfree
+        buffer.putLong(freeBytes / BLOCK_SIZE); // f_bavail
+        buffer.putLong(0L); // f_files
+        buffer.putLong(0L); // f_ffree
+        buffer.putLong(0L); // f_favail
+        buffer.putLong(0L); // f_fsid
+        buffer.putLong(ST_NOSUID); // f_flag
+        buffer.putLong(NAME_MAX); // f_namemax
+    }
+}
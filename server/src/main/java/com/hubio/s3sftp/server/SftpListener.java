@@ -0,0 +1,255 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.filechannel.OpenTransfers;
+import com.hubio.s3sftp.server.filesystem.FileSystemProviderFactory;
+import com.hubio.s3sftp.server.filesystem.ProviderResources;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.FactoryManager;
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.PropertyResolverUtils;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.server.auth.UserAuth;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.auth.password.UserAuthPasswordFactory;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.apache.sshd.server.auth.pubkey.UserAuthPublicKeyFactory;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * One port of an {@link S3SftpServer}, with its own SSH server, users and session mappings.
+ *
+ * <p>The settings common to every listener come from the {@link S3SftpServerConfiguration}, and the S3 resources are
+ * shared through the {@link OpenTransfers} and the server's object cache, buffer pool, metrics and admission.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class SftpListener {
+
+    private final DrainableSshServer sshServer = DrainableSshServer.setUp();
+
+    private final S3SftpServerConfiguration configuration;
+
+    @Getter
+    private final ListenerConfiguration listener;
+
+    private final OpenTransfers transfers;
+
+    private ExecutorService subsystemExecutor;
+
+    /**
+     * Configures the SSH server for the listener, without starting it.
+     *
+     * @param configuration The server's configuration
+     * @param listener      The listener's configuration, with every setting given
+     * @param transfers     The transfers open on every listener
+     */
+    SftpListener(
+            final S3SftpServerConfiguration configuration, final ListenerConfiguration listener,
+            final OpenTransfers transfers
+                ) {
+        this.configuration = configuration;
+        this.listener = listener;
+        this.transfers = transfers;
+        sshServer.setPort(listener.getPort());
+        configureChannels();
+        configuration.getCryptoProfile()
+                     .apply(sshServer);
+        configuration.getCompression()
+                     .apply(sshServer);
+    }
+
+    /**
+     * Starts listening, using the host keys.
+     *
+     * @param keyPairProvider The host keys
+     *
+     * @throws IOException if the port can't be bound
+     */
+    void start(final KeyPairProvider keyPairProvider) throws IOException {
+        sshServer.setKeyPairProvider(keyPairProvider);
+        // sftp subsystem
+        val sessionFileSystemResolver = FileSystemProviderFactory.userResolver();
+        val sessionBucket = listener.getSessionBucket();
+        val sessionHome = listener.getSessionHome();
+        val sessionJail = listener.getSessionJail();
+        val sftpSubsystemFactory =
+                new JailedSftpSubsystemFactory(sessionBucket, sessionHome, sessionJail, sessionFileSystemResolver,
+                                               listener.getSessionQuota(), configuration.getBucketUsage()
+                );
+        configureSubsystemExecutor(sftpSubsystemFactory);
+        try {
+            sshServer.setSubsystemFactories(Collections.singletonList(sftpSubsystemFactory));
+            // file system
+            val fileSystemFactory =
+                    new S3FileSystemFactory(sessionBucket, sessionHome, sessionJail, URI.create(configuration.getUri()),
+                                            FileSystemProviderFactory.s3SftpProviderFactory(providerResources()),
+                                            sessionFileSystemResolver
+                    );
+            sshServer.setFileSystemFactory(fileSystemFactory);
+            configureAuthentication(sftpSubsystemFactory, fileSystemFactory);
+            sshServer.start();
+        } catch (IOException | RuntimeException e) {
+            shutdownSubsystemExecutor();
+            throw e;
+        }
+        log.info("S3 SFTP Server started on port {}", sshServer.getPort());
+    }
+
+    /**
+     * Stops accepting new connections, leaving the sessions already open running.
+     */
+    void stopAccepting() {
+        sshServer.stopAccepting();
+    }
+
+    /**
+     * Stops the SSH server, closing any open sessions.
+     *
+     * @throws IOException if the server could not be stopped
+     */
+    void stop() throws IOException {
+        try {
+            sshServer.stop();
+        } finally {
+            shutdownSubsystemExecutor();
+        }
+    }
+
+    /**
+     * Returns the number of sessions open on this listener.
+     *
+     * @return the number of open sessions
+     */
+    int getActiveSessions() {
+        return sshServer.getActiveSessions()
+                        .size();
+    }
+
+    private void shutdownSubsystemExecutor() {
+        if (subsystemExecutor != null) {
+            subsystemExecutor.shutdownNow();
+            subsystemExecutor = null;
+        }
+    }
+
+    /**
+     * Sets the sizes of the SSH channel windows and packets, the connection buffers and SFTP reads.
+     *
+     * <p>Zero buffer sizes are left to sshd and the operating system.</p>
+     */
+    private void configureChannels() {
+        val windowSize = configuration.getWindowSize();
+        val maxPacketSize = configuration.getMaxPacketSize();
+        if (maxPacketSize < 1 || windowSize < maxPacketSize) {
+            throw new IllegalArgumentException(
+                    String.format("windowSize (%d) must be at least maxPacketSize (%d), which must be positive",
+                                  windowSize, maxPacketSize
+                                 ));
+        }
+        if (configuration.getSftpMaxReadLength() < 1) {
+            throw new IllegalArgumentException(
+                    "sftpMaxReadLength must be positive: " + configuration.getSftpMaxReadLength());
+        }
+        PropertyResolverUtils.updateProperty(sshServer, FactoryManager.WINDOW_SIZE, windowSize);
+        PropertyResolverUtils.updateProperty(sshServer, FactoryManager.MAX_PACKET_SIZE, maxPacketSize);
+        PropertyResolverUtils.updateProperty(sshServer, SftpSubsystem.MAX_PACKET_LENGTH_PROP,
+                                             configuration.getSftpMaxReadLength()
+                                            );
+        updatePositiveProperty(FactoryManager.NIO2_READ_BUFFER_SIZE, configuration.getNioReadBufferSize());
+        updatePositiveProperty(FactoryManager.SOCKET_SNDBUF, configuration.getSocketSendBufferSize());
+        updatePositiveProperty(FactoryManager.SOCKET_RCVBUF, configuration.getSocketReceiveBufferSize());
+        sshServer.addSessionListener(new WindowTuningSessionListener(configuration.getWindowTuning(), windowSize));
+    }
+
+    private void updatePositiveProperty(final String name, final int value) {
+        if (value > 0) {
+            PropertyResolverUtils.updateProperty(sshServer, name, value);
+        }
+    }
+
+    private ProviderResources providerResources() {
+        return ProviderResources.builder()
+                                .workScheduler(listener.getWorkScheduler())
+                                .sessionBandwidth(listener.getSessionBandwidth())
+                                .metricsRegistry(configuration.getMetricsRegistry())
+                                .s3Admission(configuration.getS3Admission())
+                                .objectCache(configuration.getObjectCache())
+                                .bufferPool(configuration.getBufferPool())
+                                .openTransfers(transfers)
+                                .sessionQuota(listener.getSessionQuota())
+                                .bucketUsage(configuration.getBucketUsage())
+                                .sessionHome(listener.getSessionHome())
+                                .build();
+    }
+
+    /**
+     * Shares a virtual thread executor across all SFTP channels when configured, otherwise leaves SSHD to create a
+     * platform thread for each channel.
+     */
+    private void configureSubsystemExecutor(final JailedSftpSubsystemFactory sftpSubsystemFactory) {
+        if (listener.getVirtualThreads()) {
+            VirtualThreads.newThreadPerTaskExecutor()
+                          .ifPresent(executor -> {
+                              log.info("SFTP subsystem will use virtual threads");
+                              subsystemExecutor = executor;
+                              sftpSubsystemFactory.setExecutorService(executor);
+                              sftpSubsystemFactory.setShutdownOnExit(false);
+                          });
+        }
+    }
+
+    private void configureAuthentication(
+            final JailedSftpSubsystemFactory sftpSubsystemFactory, final S3FileSystemFactory fileSystemFactory
+                                        ) {
+        val userAuthFactories = new ArrayList<NamedFactory<UserAuth>>();
+        val authenticationProvider = listener.getAuthenticationProvider();
+        authenticationProvider.setHomeDirExistsChecker(
+                new DefaultHomeDirExistsChecker(sftpSubsystemFactory, fileSystemFactory));
+        val loginThrottle = listener.getLoginThrottle();
+        if (authenticationProvider instanceof PasswordAuthenticator) {
+            sshServer.setPasswordAuthenticator(
+                    new ThrottlingPasswordAuthenticator((PasswordAuthenticator) authenticationProvider, loginThrottle));
+            userAuthFactories.add(UserAuthPasswordFactory.INSTANCE);
+        }
+        if (authenticationProvider instanceof PublickeyAuthenticator) {
+            sshServer.setPublickeyAuthenticator(
+                    new ThrottlingPublickeyAuthenticator((PublickeyAuthenticator) authenticationProvider,
+                                                         loginThrottle
+                    ));
+            userAuthFactories.add(UserAuthPublicKeyFactory.INSTANCE);
+        }
+        sshServer.setUserAuthFactories(userAuthFactories);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.security.PublicKey;
+
+/**
+ * {@link PublickeyAuthenticator} that only authenticates attempts permitted by a {@link LoginThrottle}, and charges it
+ * for those that fail.
+ *
+ * <p>The SSH protocol asks whether each offered key would be accepted before the client signs for it. Only keys that
+ * are refused are charged, once each, as the client goes on to sign for a key that is accepted, so a client may offer
+ * several keys, or open many sessions, without being throttled.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class ThrottlingPublickeyAuthenticator implements PublickeyAuthenticator {
+
+    private final PublickeyAuthenticator authenticator;
+
+    private final LoginThrottle loginThrottle;
+
+    @Override
+    public boolean authenticate(final String username, final PublicKey key, final ServerSession session) {
+        if (!loginThrottle.isPermitted(username, session)) {
+            return false;
+        }
+        val authenticated = authenticator.authenticate(username, key, session);
+        if (!authenticated) {
+            loginThrottle.failed(username, session);
+        }
+        return authenticated;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import java.time.Duration;
+
+/**
+ * Chooses the size of the SSH channel window for a session.
+ *
+ * <p>The window is how much data a client may send before waiting for the server to acknowledge it, so a single
+ * session can upload no faster than the window size divided by the round trip time. Sessions over long distances need
+ * larger windows than those nearby.</p>
+ *
+ * <p>The round trip time of a session is estimated from how long its key exchange takes, which is two round trips.
+ * The estimate includes the time both sides spend on the key exchange's cryptography, so it errs large.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface WindowTuning {
+
+    /**
+     * Use the configured window size for every session.
+     *
+     * @return the tuning
+     */
+    static WindowTuning fixed() {
+        return (windowSize, roundTrip) -> windowSize;
+    }
+
+    /**
+     * Size each session's window to allow the bandwidth at the session's round trip time.
+     *
+     * <p>The window is the bandwidth multiplied by the round trip time, but no smaller than the configured window size
+     * and no larger than {@code maxWindowSize}.</p>
+     *
+     * @param bytesPerSecond The upload bandwidth each session should be able to reach
+     * @param maxWindowSize  The largest window to give a session
+     *
+     * @return the tuning
+     */
+    static WindowTuning roundTrip(final long bytesPerSecond, final int maxWindowSize) {
+        return new RoundTripWindowTuning(bytesPerSecond, maxWindowSize);
+    }
+
+    /**
+     * Choose the window size for a session.
+     *
+     * @param windowSize The configured window size
+     * @param roundTrip  The estimated round trip time of the session
+     *
+     * @return the window size for the session
+     */
+    int windowSize(int windowSize, Duration roundTrip);
+}
@@ -0,0 +1,82 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.common.FactoryManager;
+import org.apache.sshd.common.PropertyResolverUtils;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+
+import java.time.Duration;
+
+/**
+ * Sets the window size of each session from a {@link WindowTuning}, once the key exchange has shown how far away the
+ * client is.
+ *
+ * <p>A session's channels take their window size from the session when they are opened, which is always after the
+ * key exchange.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class WindowTuningSessionListener implements SessionListener {
+
+    /**
+     * The key exchange is two round trips: the key exchange init and the reply, then the new keys.
+     */
+    private static final int KEY_EXCHANGE_ROUND_TRIPS = 2;
+
+    private static final AttributeStore.AttributeKey<Long> CREATED = new AttributeStore.AttributeKey<>();
+
+    private final WindowTuning windowTuning;
+
+    private final int windowSize;
+
+    @Override
+    public void sessionCreated(final Session session) {
+        session.setAttribute(CREATED, System.nanoTime());
+    }
+
+    @Override
+    public void sessionEvent(final Session session, final Event event) {
+        if (event != Event.KeyEstablished && event != Event.KexCompleted) {
+            return;
+        }
+        val created = session.removeAttribute(CREATED);
+        if (created == null) {
+            return;
+        }
+        val roundTrip = Duration.ofNanos((System.nanoTime() - created) / KEY_EXCHANGE_ROUND_TRIPS);
+        val tuned = windowTuning.windowSize(windowSize, roundTrip);
+        log.debug("Round trip for {} estimated at {}ms: window size {}", session, roundTrip.toMillis(), tuned);
+        if (tuned != windowSize) {
+            PropertyResolverUtils.updateProperty(session, FactoryManager.WINDOW_SIZE, tuned);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * {@link S3Admission} that limits the concurrent requests for each prefix by additive increase and multiplicative
+ * decrease, and retries failed requests within a budget.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class AdaptiveS3Admission implements S3Admission {
+
+    private final AdmissionPolicy policy;
+
+    private final AimdLimiter limiter;
+
+    private final RetryBudget budget;
+
+    /**
+     * Constructor.
+     *
+     * @param policy The limits, backoff and budget
+     */
+    AdaptiveS3Admission(final AdmissionPolicy policy) {
+        this.policy = policy;
+        this.limiter = new AimdLimiter(policy);
+        this.budget = new RetryBudget(policy);
+    }
+
+    @Override
+    public AmazonS3 wrap(final AmazonS3 amazonS3) {
+        return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(), new Class<?>[]{AmazonS3.class},
+                                                 new AdmittingAmazonS3(amazonS3, policy, limiter, budget)
+                                                );
+    }
+
+    @Override
+    public boolean retries() {
+        return true;
+    }
+
+    /**
+     * The limiter shared by every wrapped client.
+     *
+     * @return the limiter
+     */
+    AimdLimiter getLimiter() {
+        return limiter;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * The limits, backoff and retry budget for an adaptive {@link S3Admission}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class AdmissionPolicy {
+
+    /**
+     * The number of leading segments of an object's key that make up its prefix. Each prefix has its own limit.
+     */
+    private final int prefixDepth;
+
+    /**
+     * The number of concurrent requests a prefix starts with.
+     */
+    private final int initialConcurrency;
+
+    /**
+     * The fewest concurrent requests a prefix is ever limited to.
+     */
+    private final int minConcurrency;
+
+    /**
+     * The most concurrent requests a prefix is ever allowed.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * The fraction of its limit that a prefix keeps when S3 asks for requests to slow down.
+     */
+    private final double decrease;
+
+    /**
+     * The most times a request is made, including the first.
+     */
+    private final int maxAttempts;
+
+    /**
+     * The longest wait before the first retry. Each later retry may wait twice as long as the one before.
+     */
+    @NonNull
+    private final Duration baseBackoff;
+
+    /**
+     * The longest wait before any retry.
+     */
+    @NonNull
+    private final Duration maxBackoff;
+
+    /**
+     * The number of retries allowed for each request made.
+     */
+    private final double retryRatio;
+
+    /**
+     * The number of retries allowed in a burst, e.g. after a quiet spell.
+     */
+    private final int retryBurst;
+
+    @SuppressWarnings("parameternumber")
+    private AdmissionPolicy(
+            final int prefixDepth, final int initialConcurrency, final int minConcurrency, final int maxConcurrency,
+            final double decrease, final int maxAttempts, final Duration baseBackoff, final Duration maxBackoff,
+            final double retryRatio, final int retryBurst
+                           ) {
+        if (prefixDepth < 0) {
+            throw new IllegalArgumentException("prefixDepth must not be negative: " + prefixDepth);
+        }
+        if (minConcurrency < 1) {
+            throw new IllegalArgumentException("minConcurrency must be at least 1: " + minConcurrency);
+        }
+        if (initialConcurrency < minConcurrency || initialConcurrency > maxConcurrency) {
+            throw new IllegalArgumentException(
+                    "initialConcurrency must be between minConcurrency and maxConcurrency: " + initialConcurrency);
+        }
+        if (decrease <= 0 || decrease >= 1) {
+            throw new IllegalArgumentException("decrease must be between 0 and 1: " + decrease);
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        if (retryRatio < 0) {
+            throw new IllegalArgumentException("retryRatio must not be negative: " + retryRatio);
+        }
+        if (retryBurst < 0) {
+            throw new IllegalArgumentException("retryBurst must not be negative: " + retryBurst);
+        }
+        this.prefixDepth = prefixDepth;
+        this.initialConcurrency = initialConcurrency;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.decrease = decrease;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retryRatio = retryRatio;
+        this.retryBurst = retryBurst;
+    }
+
+    /**
+     * Builder for {@link AdmissionPolicy}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>prefixDepth: 2, e.g. {@code users/alice/}</li>
+     *     <li>initialConcurrency: 16</li>
+     *     <li>minConcurrency: 1</li>
+     *     <li>maxConcurrency: 256</li>
+     *     <li>decrease: 0.5</li>
+     *     <li>maxAttempts: 4</li>
+     *     <li>baseBackoff: 50 milliseconds</li>
+     *     <li>maxBackoff: 5 seconds</li>
+     *     <li>retryRatio: 0.1, i.e. one retry for every ten requests</li>
+     *     <li>retryBurst: 10</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class AdmissionPolicyBuilder {
+
+        private static final int DEFAULT_PREFIX_DEPTH = 2;
+
+        private static final int DEFAULT_INITIAL_CONCURRENCY = 16;
+
+        private static final int DEFAULT_MAX_CONCURRENCY = 256;
+
+        private static final double DEFAULT_DECREASE = 0.5;
+
+        private static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+        private static final int DEFAULT_BASE_BACKOFF_MILLIS = 50;
+
+        private static final int DEFAULT_MAX_BACKOFF_SECONDS = 5;
+
+        private static final double DEFAULT_RETRY_RATIO = 0.1;
+
+        private static final int DEFAULT_RETRY_BURST = 10;
+
+        private int prefixDepth = DEFAULT_PREFIX_DEPTH;
+
+        private int initialConcurrency = DEFAULT_INITIAL_CONCURRENCY;
+
+        private int minConcurrency = 1;
+
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private double decrease = DEFAULT_DECREASE;
+
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+        private Duration baseBackoff = Duration.ofMillis(DEFAULT_BASE_BACKOFF_MILLIS);
+
+        private Duration maxBackoff = Duration.ofSeconds(DEFAULT_MAX_BACKOFF_SECONDS);
+
+        private double retryRatio = DEFAULT_RETRY_RATIO;
+
+        private int retryBurst = DEFAULT_RETRY_BURST;
+    }
+}
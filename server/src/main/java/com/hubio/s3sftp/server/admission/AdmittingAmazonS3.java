@@ -0,0 +1,243 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.RequestClientOptions;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3DataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes each request to the wrapped {@link AmazonS3} once the {@link AimdLimiter} admits it, and makes it again after
+ * a backoff if it fails in a way that may succeed on another attempt.
+ *
+ * <p>A request is retried if S3 was throttling or unavailable, or if the request never got a response, and only while
+ * the {@link RetryBudget} allows. Each wait is drawn at random from zero up to the exponential backoff for the
+ * attempt ("full jitter"), so that requests throttled together don't all return together.</p>
+ *
+ * <p>Requests whose content is read from a stream are only retried if the stream can be reset to where it started.
+ * As the S3 client does when it retries, the stream is marked before the first attempt, after wrapping it in a buffer
+ * if it can't be marked itself, so content up to the request's read limit can always be sent again. Content read
+ * from a file can always be sent again. Methods that configure the client or build URLs, rather than make requests,
+ * are passed straight through.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class AdmittingAmazonS3 implements InvocationHandler {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int INTERNAL_ERROR = 500;
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private static final Set<String> THROTTLING_CODES = new HashSet<>(
+            Arrays.asList("SlowDown", "Throttling", "ThrottlingException", "RequestLimitExceeded",
+                          "TooManyRequestsException"
+                         ));
+
+    /**
+     * The read limit of the S3 client's requests, for content given without a request to say otherwise.
+     */
+    private static final int DEFAULT_READ_LIMIT = RequestClientOptions.DEFAULT_STREAM_BUFFER_SIZE + 1;
+
+    private static final Set<String> LOCAL_METHODS = new HashSet<>(
+            Arrays.asList("setEndpoint", "setRegion", "setS3ClientOptions", "shutdown", "getRegion", "getRegionName",
+                          "getCachedResponseMetadata", "getUrl", "generatePresignedUrl"
+                         ));
+
+    private final AmazonS3 delegate;
+
+    private final AdmissionPolicy policy;
+
+    private final AimdLimiter limiter;
+
+    private final RetryBudget budget;
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class || LOCAL_METHODS.contains(method.getName())) {
+            return invokeDelegate(method, args);
+        }
+        val prefix = RequestPrefix.of(args, policy.getPrefixDepth());
+        val content = markContent(args);
+        budget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            val permit = limiter.acquire(prefix);
+            try {
+                val result = invokeDelegate(method, args);
+                permit.release(AimdLimiter.Outcome.SUCCESS);
+                return result;
+            } catch (AmazonServiceException e) {
+                permit.release(isThrottling(e) ? AimdLimiter.Outcome.THROTTLED : AimdLimiter.Outcome.FAILED);
+                if (!isRetryable(e) || !mayRetry(attempt, content)) {
+                    throw e;
+                }
+                log.debug("{} {}: retrying after {}", method.getName(), prefix, e.getErrorCode());
+            } catch (AbortedException e) {
+                permit.release(AimdLimiter.Outcome.FAILED);
+                throw e;
+            } catch (SdkClientException e) {
+                permit.release(AimdLimiter.Outcome.FAILED);
+                if (!e.isRetryable() || !mayRetry(attempt, content)) {
+                    throw e;
+                }
+                log.debug("{} {}: retrying after {}", method.getName(), prefix, e.getMessage());
+            } catch (RuntimeException | Error e) {
+                permit.release(AimdLimiter.Outcome.FAILED);
+                throw e;
+            }
+            backoff(attempt);
+        }
+    }
+
+    private Object invokeDelegate(final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean mayRetry(final int attempt, final InputStream content) {
+        return attempt < policy.getMaxAttempts() && rewind(content) && budget.tryWithdraw();
+    }
+
+    private void backoff(final int attempt) {
+        val max = policy.getMaxBackoff()
+                        .toNanos();
+        long ceiling = policy.getBaseBackoff()
+                             .toNanos();
+        for (int i = 1; i < attempt && ceiling < max; i++) {
+            ceiling *= 2;
+        }
+        ceiling = Math.min(ceiling, max);
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current()
+                                                        .nextLong(ceiling));
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new AbortedException("Interrupted waiting to retry", e);
+        }
+    }
+
+    /**
+     * Whether S3 asked for requests to slow down.
+     */
+    static boolean isThrottling(final AmazonServiceException e) {
+        return e.getStatusCode() == SERVICE_UNAVAILABLE || e.getStatusCode() == TOO_MANY_REQUESTS
+               || THROTTLING_CODES.contains(e.getErrorCode());
+    }
+
+    private static boolean isRetryable(final AmazonServiceException e) {
+        return isThrottling(e) || e.getStatusCode() >= INTERNAL_ERROR;
+    }
+
+    /**
+     * Marks the content of a request that is read from a stream, so that the request can be made again.
+     *
+     * <p>A stream that can't be marked is replaced in the arguments by a buffered stream that can.</p>
+     *
+     * @param args The arguments of the request, which may be updated
+     *
+     * @return the stream the content is read from, or null if it isn't read from a stream
+     */
+    static InputStream markContent(final Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof InputStream) {
+                val content = markable((InputStream) args[i]);
+                args[i] = content;
+                content.mark(DEFAULT_READ_LIMIT);
+                return content;
+            }
+            if (args[i] instanceof S3DataSource && ((S3DataSource) args[i]).getInputStream() != null) {
+                val source = (S3DataSource) args[i];
+                val content = markable(source.getInputStream());
+                source.setInputStream(content);
+                content.mark(readLimit(args[i]));
+                return content;
+            }
+        }
+        return null;
+    }
+
+    private static InputStream markable(final InputStream stream) {
+        if (stream.markSupported()) {
+            return stream;
+        }
+        return new BufferedInputStream(stream, RequestClientOptions.DEFAULT_STREAM_BUFFER_SIZE);
+    }
+
+    private static int readLimit(final Object request) {
+        if (request instanceof AmazonWebServiceRequest) {
+            return ((AmazonWebServiceRequest) request).getReadLimit();
+        }
+        return DEFAULT_READ_LIMIT;
+    }
+
+    /**
+     * Resets the content of a request to where it started, if it is read from a stream.
+     *
+     * @return false if the content has been read beyond the mark, so the request can't be made again
+     */
+    private static boolean rewind(final InputStream content) {
+        if (content == null) {
+            return true;
+        }
+        try {
+            content.reset();
+            return true;
+        } catch (IOException e) {
+            log.debug("Content can't be sent again: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.AbortedException;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of concurrent requests for each of an open-ended set of prefixes, adjusting each limit by additive
+ * increase and multiplicative decrease.
+ *
+ * <p>Each successful request made while the prefix is at least half busy raises its limit by {@code 1 / limit}, so
+ * the limit rises by about one for each round of requests. A prefix that isn't busy isn't pushing S3, so its success
+ * says nothing about a higher limit. A throttled request cuts the limit by {@link AdmissionPolicy#getDecrease()}. The
+ * requests already in flight when the limit is cut were sent at the old rate, so their throttling is a reaction to the
+ * same congestion and doesn't cut the limit again.</p>
+ *
+ * <p>A prefix with nothing in flight whose limit has grown back to at least its initial value carries no information
+ * and is forgotten. A caller racing with that may start again from the initial limit.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class AimdLimiter {
+
+    private final ConcurrentMap<String, PrefixLimit> limits = new ConcurrentHashMap<>();
+
+    private final AdmissionPolicy policy;
+
+    /**
+     * Constructor.
+     *
+     * @param policy The limits
+     */
+    AimdLimiter(final AdmissionPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Wait until a request for the prefix may be made.
+     *
+     * @param prefix The prefix
+     *
+     * @return the permit, to be released when the request completes
+     *
+     * @throws AbortedException if the thread is interrupted while waiting
+     */
+    Permit acquire(final String prefix) {
+        return limits.computeIfAbsent(prefix, PrefixLimit::new)
+                     .acquire();
+    }
+
+    /**
+     * The current limit for a prefix.
+     *
+     * @param prefix The prefix
+     *
+     * @return the number of concurrent requests allowed
+     */
+    double getLimit(final String prefix) {
+        val limit = limits.get(prefix);
+        if (limit == null) {
+            return policy.getInitialConcurrency();
+        }
+        return limit.getLimit();
+    }
+
+    /**
+     * The number of prefixes currently being tracked.
+     *
+     * @return the number of prefixes
+     */
+    int size() {
+        return limits.size();
+    }
+
+    /**
+     * How a request ended.
+     */
+    enum Outcome {
+
+        /**
+         * S3 answered the request.
+         */
+        SUCCESS,
+
+        /**
+         * S3 asked for requests to slow down.
+         */
+        THROTTLED,
+
+        /**
+         * The request failed for some other reason, which says nothing about the limit.
+         */
+        FAILED
+    }
+
+    /**
+     * Permission to make a single request.
+     */
+    interface Permit {
+
+        /**
+         * Release the permit, adjusting the limit according to how the request ended.
+         *
+         * @param outcome How the request ended
+         */
+        void release(Outcome outcome);
+    }
+
+    /**
+     * The limit for a single prefix.
+     */
+    private final class PrefixLimit {
+
+        private final String prefix;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition available = lock.newCondition();
+
+        private double limit = policy.getInitialConcurrency();
+
+        private int inFlight;
+
+        private long generation;
+
+        PrefixLimit(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        Permit acquire() {
+            lock.lock();
+            try {
+                while (inFlight >= (int) limit) {
+                    available.await();
+                }
+                inFlight++;
+                val acquiredGeneration = generation;
+                return outcome -> release(acquiredGeneration, outcome);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new AbortedException("Interrupted waiting to make a request for " + prefix, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double getLimit() {
+            lock.lock();
+            try {
+                return limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(final long acquiredGeneration, final Outcome outcome) {
+            lock.lock();
+            try {
+                if (outcome == Outcome.SUCCESS && inFlight * 2 >= limit) {
+                    limit = Math.min(policy.getMaxConcurrency(), limit + 1 / limit);
+                } else if (outcome == Outcome.THROTTLED && acquiredGeneration == generation) {
+                    limit = Math.max(policy.getMinConcurrency(), limit * policy.getDecrease());
+                    generation++;
+                    log.debug("Throttled by S3: limit for '{}' cut to {}", prefix, (int) limit);
+                }
+                inFlight--;
+                available.signalAll();
+                if (inFlight == 0 && limit >= policy.getInitialConcurrency()) {
+                    limits.remove(prefix, this);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
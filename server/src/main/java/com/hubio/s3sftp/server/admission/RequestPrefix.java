@@ -0,0 +1,118 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import lombok.val;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Finds the prefix that a request to S3 is for.
+ *
+ * <p>S3 scales the request rate it will accept for each prefix independently, so requests for different prefixes are
+ * limited separately. A prefix is the bucket and the leading segments of the object's key, e.g. with a depth of two,
+ * {@code bucket/users/alice/} for the key {@code users/alice/docs/report.txt}.</p>
+ *
+ * <p>Requests are passed either as a bucket and key, or as a request object, whose bucket and key (or prefix, when
+ * listing) are read through their getters.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+final class RequestPrefix {
+
+    private static final String[] BUCKET_GETTERS = {"getBucketName", "getDestinationBucketName"};
+
+    private static final String[] KEY_GETTERS = {"getKey", "getDestinationKey", "getPrefix"};
+
+    private RequestPrefix() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Find the prefix of a request.
+     *
+     * @param args  The arguments the request was made with
+     * @param depth The number of segments of the key to include
+     *
+     * @return the prefix, or an empty string if the request isn't for a bucket
+     */
+    static String of(final Object[] args, final int depth) {
+        if (args == null || args.length == 0) {
+            return "";
+        }
+        if (args[0] instanceof String) {
+            val bucket = (String) args[0];
+            if (args.length > 1 && args[1] instanceof String) {
+                return bucket + "/" + truncate((String) args[1], depth);
+            }
+            return bucket + "/";
+        }
+        val bucket = property(args[0], BUCKET_GETTERS);
+        if (bucket == null) {
+            return "";
+        }
+        val key = property(args[0], KEY_GETTERS);
+        if (key == null) {
+            return bucket + "/";
+        }
+        return bucket + "/" + truncate(key, depth);
+    }
+
+    /**
+     * Truncate a key after the given number of segments, leaving only whole segments.
+     *
+     * @param key   The key
+     * @param depth The number of segments to keep
+     *
+     * @return the truncated key, ending with a '/' unless empty
+     */
+    static String truncate(final String key, final int depth) {
+        int end = 0;
+        for (int i = 0; i < depth; i++) {
+            val slash = key.indexOf('/', end);
+            if (slash < 0) {
+                break;
+            }
+            end = slash + 1;
+        }
+        return key.substring(0, end);
+    }
+
+    private static String property(final Object request, final String... getters) {
+        for (final String getter : getters) {
+            try {
+                final Method method = request.getClass()
+                                             .getMethod(getter);
+                val value = method.invoke(request);
+                if (value instanceof String) {
+                    return (String) value;
+                }
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                // try the next getter
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import lombok.val;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of the requests made.
+ *
+ * <p>Each request deposits a fraction of a retry, and each retry withdraws a whole one. The balance starts with a burst
+ * of retries and never holds more than that, or than a single retry when there is no burst. When S3 is failing most requests the budget runs dry, so the load on S3 grows by no more than the retry
+ * ratio rather than multiplying by the number of attempts.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000L;
+
+    private final AtomicLong balance;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    /**
+     * Constructor.
+     *
+     * @param policy The retry ratio and burst
+     */
+    RetryBudget(final AdmissionPolicy policy) {
+        this.deposit = Math.round(policy.getRetryRatio() * SCALE);
+        this.capacity = Math.max(1, policy.getRetryBurst()) * SCALE;
+        this.balance = new AtomicLong(policy.getRetryBurst() * SCALE);
+    }
+
+    /**
+     * Record that a request was made.
+     */
+    void deposit() {
+        balance.accumulateAndGet(deposit, (current, amount) -> Math.min(capacity, current + amount));
+    }
+
+    /**
+     * Take a retry from the budget if there is one.
+     *
+     * @return true if the retry may be made
+     */
+    boolean tryWithdraw() {
+        while (true) {
+            val current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The number of retries available.
+     *
+     * @return the number of retries
+     */
+    double getAvailable() {
+        return (double) balance.get() / SCALE;
+    }
+}
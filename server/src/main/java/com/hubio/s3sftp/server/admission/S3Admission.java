@@ -0,0 +1,80 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+/**
+ * Decides when requests to S3 may be made, and whether a failed request is made again.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface S3Admission {
+
+    /**
+     * Creates an admission that makes each request at once and leaves retries to the S3 client.
+     *
+     * @return the admission
+     */
+    static S3Admission none() {
+        return amazonS3 -> amazonS3;
+    }
+
+    /**
+     * Creates an admission that adapts the number of concurrent requests for each prefix to what S3 will sustain, and
+     * retries throttled and failed requests after a jittered backoff, within a budget.
+     *
+     * <p>The limit for a prefix grows by one for each round of successful requests and is cut by a fraction when S3
+     * asks for requests to slow down (additive increase, multiplicative decrease), so it converges on the highest rate
+     * S3 will sustain for that prefix rather than oscillating around it. Retries are limited to a fraction of the
+     * requests made, so that a struggling S3 isn't sent ever more requests.</p>
+     *
+     * @param policy The limits, backoff and budget
+     *
+     * @return the admission
+     */
+    static S3Admission adaptive(final AdmissionPolicy policy) {
+        return new AdaptiveS3Admission(policy);
+    }
+
+    /**
+     * Wrap a client so that its requests are subject to this admission.
+     *
+     * <p>Every client wrapped by the same admission shares its limits and retry budget.</p>
+     *
+     * @param amazonS3 The client
+     *
+     * @return the wrapped client
+     */
+    AmazonS3 wrap(AmazonS3 amazonS3);
+
+    /**
+     * Whether failed requests are retried by the admission, in which case the S3 client needn't retry them as well.
+     *
+     * @return true if the admission retries requests
+     */
+    default boolean retries() {
+        return false;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.compression.BuiltinCompressions;
+import org.apache.sshd.common.compression.Compression;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link SessionCompression} offering {@link AdaptiveZlibCompression}, and keeping the {@link CompressionCounters} of
+ * each session that uses it.
+ *
+ * <p>A session's compression is replaced each time its keys are exchanged, so the counters are given to the new
+ * compression after each exchange.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class AdaptiveSessionCompression implements SessionCompression, SessionListener, CompressionMXBean {
+
+    /**
+     * The JMX name the metrics are published under while started.
+     */
+    static final String OBJECT_NAME = "com.hubio.s3sftp:type=Compression";
+
+    private static final Comparator<CompressionStats> ORDER =
+            Comparator.comparing(CompressionStats::getUsername, Comparator.nullsFirst(Comparator.naturalOrder()))
+                      .thenComparing(CompressionStats::getRemoteAddress,
+                                     Comparator.nullsFirst(Comparator.naturalOrder())
+                                    );
+
+    private final ConcurrentMap<Session, CompressionCounters> sessions = new ConcurrentHashMap<>();
+
+    private final CompressionPolicy policy;
+
+    private ObjectName registeredName;
+
+    @Override
+    public void apply(final SshServer server) {
+        server.setCompressionFactories(Arrays.asList(new ZlibFactory(), BuiltinCompressions.none));
+        server.addSessionListener(this);
+    }
+
+    @Override
+    public void sessionEvent(final Session session, final Event event) {
+        val incoming = session.getCompressionInformation(true);
+        val outgoing = session.getCompressionInformation(false);
+        if (!(incoming instanceof AdaptiveZlibCompression || outgoing instanceof AdaptiveZlibCompression)) {
+            return;
+        }
+        val counters = sessions.computeIfAbsent(session, key -> new CompressionCounters());
+        if (incoming instanceof AdaptiveZlibCompression) {
+            ((AdaptiveZlibCompression) incoming).recordTo(counters);
+        }
+        if (outgoing instanceof AdaptiveZlibCompression) {
+            ((AdaptiveZlibCompression) outgoing).recordTo(counters);
+        }
+    }
+
+    @Override
+    public void sessionClosed(final Session session) {
+        sessions.remove(session);
+    }
+
+    @Override
+    public List<CompressionStats> getSessions() {
+        return sessions.entrySet()
+                       .stream()
+                       .map(AdaptiveSessionCompression::snapshot)
+                       .sorted(ORDER)
+                       .collect(Collectors.toList());
+    }
+
+    private static CompressionStats snapshot(final Map.Entry<Session, CompressionCounters> entry) {
+        val session = entry.getKey();
+        val ioSession = session.getIoSession();
+        String remoteAddress = null;
+        if (ioSession != null) {
+            remoteAddress = Objects.toString(ioSession.getRemoteAddress(), null);
+        }
+        return entry.getValue()
+                    .snapshot(session.getUsername(), remoteAddress);
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            val name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, name);
+            registeredName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Other compression metrics are already registered as {}", OBJECT_NAME);
+        } catch (JMException e) {
+            log.warn("Could not register compression metrics with JMX as {}", OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .unregisterMBean(registeredName);
+        } catch (JMException e) {
+            log.warn("Could not unregister compression metrics from JMX as {}", registeredName, e);
+        }
+        registeredName = null;
+    }
+
+    /**
+     * Creates the compression for each direction of each session.
+     */
+    private final class ZlibFactory implements NamedFactory<Compression> {
+
+        @Override
+        public String getName() {
+            return AdaptiveZlibCompression.NAME;
+        }
+
+        @Override
+        public Compression create() {
+            return new AdaptiveZlibCompression(policy);
+        }
+    }
+}
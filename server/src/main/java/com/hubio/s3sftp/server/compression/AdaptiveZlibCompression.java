@@ -0,0 +1,221 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import lombok.NonNull;
+import org.apache.sshd.common.compression.BaseCompression;
+import org.apache.sshd.common.util.buffer.Buffer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Delayed zlib compression ({@code zlib@openssh.com}) for one direction of a session, that stops compressing what it
+ * sends while it does not compress well.
+ *
+ * <p>Rather than compressing, the deflater is set to level zero, so that the data is sent in stored blocks and the
+ * zlib stream the client decompresses is unbroken.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class AdaptiveZlibCompression extends BaseCompression {
+
+    /**
+     * The name negotiated with the client.
+     */
+    static final String NAME = "zlib@openssh.com";
+
+    private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME =
+            THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+
+    private final CompressionPolicy policy;
+
+    private final byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+
+    private byte[] input = new byte[0];
+
+    private Deflater deflater;
+
+    private Inflater inflater;
+
+    private volatile CompressionCounters counters = new CompressionCounters();
+
+    private int level;
+
+    private int pendingLevel;
+
+    private boolean bypassed;
+
+    private long sampledBytes;
+
+    private long sampledCompressedBytes;
+
+    private long bypassedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param policy The compression level and when to stop and restart compressing
+     */
+    AdaptiveZlibCompression(final CompressionPolicy policy) {
+        super(NAME);
+        this.policy = policy;
+    }
+
+    private static long cpuTime() {
+        if (CPU_TIME) {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the bytes compressed and decompressed from now on in the counters given.
+     *
+     * @param counters The counters of the session
+     */
+    void recordTo(@NonNull final CompressionCounters counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public boolean isDelayed() {
+        return true;
+    }
+
+    @Override
+    public void init(final Type type, final int ignoredLevel) {
+        if (type == Type.Deflater) {
+            level = policy.getLevel();
+            pendingLevel = level;
+            deflater = new Deflater(level);
+        } else {
+            inflater = new Inflater();
+        }
+    }
+
+    /**
+     * Compress the buffer in place.
+     *
+     * <p>The content is copied out first, as a stored block is larger than its content and would overwrite content
+     * not yet read.</p>
+     *
+     * @param buffer The buffer
+     *
+     * @throws IOException never
+     */
+    @Override
+    public void compress(final Buffer buffer) throws IOException {
+        final long started = cpuTime();
+        final int length = buffer.available();
+        if (input.length < length) {
+            input = new byte[length];
+        }
+        System.arraycopy(buffer.array(), buffer.rpos(), input, 0, length);
+        buffer.wpos(buffer.rpos());
+        if (pendingLevel != level) {
+            // the new level is applied by the next call to deflate, without deflating any input
+            deflater.setLevel(pendingLevel);
+            deflater.setInput(input, 0, 0);
+            deflate(buffer);
+            level = pendingLevel;
+        }
+        deflater.setInput(input, 0, length);
+        deflate(buffer);
+        final int compressedLength = buffer.available();
+        counters.sent(length, compressedLength, cpuTime() - started);
+        sample(length, compressedLength);
+    }
+
+    private void deflate(final Buffer buffer) {
+        int length;
+        while ((length = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH)) > 0) {
+            buffer.putRawBytes(output, 0, length);
+        }
+    }
+
+    private void sample(final int length, final int compressedLength) {
+        if (bypassed) {
+            bypassedBytes += length;
+            if (bypassedBytes >= policy.getProbeInterval()) {
+                bypass(false);
+            }
+            return;
+        }
+        sampledBytes += length;
+        sampledCompressedBytes += compressedLength;
+        if (sampledBytes >= policy.getSampleSize()) {
+            if (sampledCompressedBytes > sampledBytes * policy.getBypassRatio()) {
+                bypass(true);
+            }
+            sampledBytes = 0;
+            sampledCompressedBytes = 0;
+        }
+    }
+
+    private void bypass(final boolean bypass) {
+        bypassed = bypass;
+        bypassedBytes = 0;
+        if (bypass) {
+            pendingLevel = Deflater.NO_COMPRESSION;
+        } else {
+            pendingLevel = policy.getLevel();
+        }
+        counters.bypassed(bypass);
+    }
+
+    @Override
+    public void uncompress(final Buffer from, final Buffer to) throws IOException {
+        final long started = cpuTime();
+        final int compressedLength = from.available();
+        final int start = to.wpos();
+        inflater.setInput(from.array(), from.rpos(), compressedLength);
+        try {
+            int length;
+            while ((length = inflater.inflate(output)) > 0) {
+                to.putRawBytes(output, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Error decompressing data", e);
+        }
+        counters.received(compressedLength, to.wpos() - start, cpuTime() - started);
+    }
+
+    /**
+     * Whether what is sent is currently left uncompressed.
+     *
+     * @return true if not compressing
+     */
+    boolean isBypassed() {
+        return bypassed;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bytes compressed and decompressed for a session, and the CPU time spent on them.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class CompressionCounters {
+
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    private final AtomicLong sentCompressedBytes = new AtomicLong();
+
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    private final AtomicLong receivedBytes = new AtomicLong();
+
+    private final AtomicLong receivedCompressedBytes = new AtomicLong();
+
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    private final AtomicLong bypasses = new AtomicLong();
+
+    private volatile boolean bypassed;
+
+    /**
+     * Record a packet compressed.
+     *
+     * @param bytes           The size of the packet
+     * @param compressedBytes The size of the packet once compressed
+     * @param nanos           The CPU time taken
+     */
+    void sent(final long bytes, final long compressedBytes, final long nanos) {
+        sentBytes.addAndGet(bytes);
+        sentCompressedBytes.addAndGet(compressedBytes);
+        compressNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Record a packet decompressed.
+     *
+     * @param compressedBytes The size of the packet as received
+     * @param bytes           The size of the packet once decompressed
+     * @param nanos           The CPU time taken
+     */
+    void received(final long compressedBytes, final long bytes, final long nanos) {
+        receivedCompressedBytes.addAndGet(compressedBytes);
+        receivedBytes.addAndGet(bytes);
+        decompressNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Record that sending has stopped or restarted compressing.
+     *
+     * @param bypassed true if sending has stopped compressing
+     */
+    void bypassed(final boolean bypassed) {
+        if (bypassed) {
+            bypasses.incrementAndGet();
+        }
+        this.bypassed = bypassed;
+    }
+
+    /**
+     * Take a snapshot of the counters.
+     *
+     * @param username      The user of the session
+     * @param remoteAddress The address of the client
+     *
+     * @return the snapshot
+     */
+    CompressionStats snapshot(final String username, final String remoteAddress) {
+        final long sent = sentBytes.get();
+        final long sentCompressed = sentCompressedBytes.get();
+        final long received = receivedBytes.get();
+        final long receivedCompressed = receivedCompressedBytes.get();
+        return new CompressionStats(username, remoteAddress, sent, sentCompressed, ratio(sentCompressed, sent),
+                                    TimeUnit.NANOSECONDS.toMicros(compressNanos.get()), received,
+                                    receivedCompressed, ratio(receivedCompressed, received),
+                                    TimeUnit.NANOSECONDS.toMicros(decompressNanos.get()), bypassed, bypasses.get()
+        );
+    }
+
+    private static double ratio(final long compressed, final long bytes) {
+        if (bytes == 0) {
+            return 1;
+        }
+        return (double) compressed / bytes;
+    }
+}
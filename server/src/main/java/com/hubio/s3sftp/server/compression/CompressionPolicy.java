@@ -0,0 +1,111 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.zip.Deflater;
+
+/**
+ * The compression level, and when to stop and restart compressing, for an adaptive {@link SessionCompression}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class CompressionPolicy {
+
+    /**
+     * The zlib compression level, from 1 (fastest) to 9 (smallest), or -1 for the zlib default.
+     */
+    private final int level;
+
+    /**
+     * The number of bytes sent in each sample.
+     */
+    private final int sampleSize;
+
+    /**
+     * The compressed size, as a fraction of the original size, above which a sample is not compressing well.
+     */
+    private final double bypassRatio;
+
+    /**
+     * The number of bytes sent uncompressed after a poor sample before compression is tried again.
+     */
+    private final long probeInterval;
+
+    private CompressionPolicy(
+            final int level, final int sampleSize, final double bypassRatio, final long probeInterval
+                             ) {
+        if (level != Deflater.DEFAULT_COMPRESSION
+            && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("level must be between 1 and 9, or -1: " + level);
+        }
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+        }
+        if (bypassRatio <= 0) {
+            throw new IllegalArgumentException("bypassRatio must be positive: " + bypassRatio);
+        }
+        if (probeInterval < 1) {
+            throw new IllegalArgumentException("probeInterval must be positive: " + probeInterval);
+        }
+        this.level = level;
+        this.sampleSize = sampleSize;
+        this.bypassRatio = bypassRatio;
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Builder for {@link CompressionPolicy}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>level: 6, the zlib default</li>
+     *     <li>sampleSize: 256 KiB</li>
+     *     <li>bypassRatio: 0.9, i.e. less than a tenth saved</li>
+     *     <li>probeInterval: 16 MiB</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class CompressionPolicyBuilder {
+
+        private static final int DEFAULT_SAMPLE_SIZE = 256 * 1024;
+
+        private static final double DEFAULT_BYPASS_RATIO = 0.9;
+
+        private static final long DEFAULT_PROBE_INTERVAL = 16L * 1024 * 1024;
+
+        private int level = Deflater.DEFAULT_COMPRESSION;
+
+        private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+        private double bypassRatio = DEFAULT_BYPASS_RATIO;
+
+        private long probeInterval = DEFAULT_PROBE_INTERVAL;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A snapshot of the compression of a session, as published over JMX.
+ *
+ * <p>Ratios are the compressed size as a fraction of the original size, so smaller is better. CPU times are in
+ * microseconds.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@RequiredArgsConstructor
+public class CompressionStats {
+
+    private final String username;
+
+    private final String remoteAddress;
+
+    private final long sentBytes;
+
+    private final long sentCompressedBytes;
+
+    private final double sentRatio;
+
+    private final long compressMicros;
+
+    private final long receivedBytes;
+
+    private final long receivedCompressedBytes;
+
+    private final double receivedRatio;
+
+    private final long decompressMicros;
+
+    /**
+     * Whether what is sent is currently left uncompressed.
+     */
+    private final boolean bypassed;
+
+    /**
+     * The number of times sending has stopped compressing.
+     */
+    private final long bypasses;
+}
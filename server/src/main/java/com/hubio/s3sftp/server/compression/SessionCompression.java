@@ -0,0 +1,95 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.compression;
+
+import org.apache.sshd.server.SshServer;
+
+/**
+ * The compression the server offers to clients.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface SessionCompression {
+
+    /**
+     * Offer no compression.
+     *
+     * @return the compression
+     */
+    static SessionCompression none() {
+        return server -> {
+        };
+    }
+
+    /**
+     * Offer delayed zlib compression ({@code zlib@openssh.com}) with the default {@link CompressionPolicy}.
+     *
+     * @return the compression
+     *
+     * @see #adaptive(CompressionPolicy)
+     */
+    static SessionCompression adaptive() {
+        return adaptive(CompressionPolicy.builder()
+                                         .build());
+    }
+
+    /**
+     * Offer delayed zlib compression ({@code zlib@openssh.com}), which starts once the client has logged in.
+     *
+     * <p>The data the server sends is sampled, and while it does not compress well, e.g. while downloading gzipped
+     * archives, it is sent in stored deflate blocks, which cost next to no CPU. Compression is tried again after a
+     * while, in case the data has changed. Clients need no changes, as the stream is still valid zlib. What the client
+     * sends is compressed, or not, by the client.</p>
+     *
+     * <p>The compression ratio and CPU time of each session are published over JMX as
+     * {@value AdaptiveSessionCompression#OBJECT_NAME} while the server is running.</p>
+     *
+     * @param policy The compression level and when to stop and restart compressing
+     *
+     * @return the compression
+     */
+    static SessionCompression adaptive(final CompressionPolicy policy) {
+        return new AdaptiveSessionCompression(policy);
+    }
+
+    /**
+     * Set the compression the server offers.
+     *
+     * @param server The server
+     */
+    void apply(SshServer server);
+
+    /**
+     * Start publishing the metrics.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stop publishing the metrics.
+     */
+    default void stop() {
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link ChannelThrottle} that reserves bytes from token buckets and parks the caller until the reservation is due.
+ *
+ * <p>Parking, rather than sleeping while holding a lock, means a virtual thread releases its carrier thread while it
+ * waits, and other channels are never held up by a throttled one.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class BandwidthChannelThrottle implements ChannelThrottle {
+
+    private final KeyedRateLimiter upload;
+
+    private final KeyedRateLimiter download;
+
+    private final String key;
+
+    @Override
+    public void afterRead(final long bytes) throws InterruptedIOException {
+        delay(download, bytes);
+    }
+
+    @Override
+    public void beforeWrite(final long bytes) throws InterruptedIOException {
+        delay(upload, bytes);
+    }
+
+    private void delay(final KeyedRateLimiter limiter, final long bytes) throws InterruptedIOException {
+        if (limiter == null || bytes < 1) {
+            return;
+        }
+        val wait = limiter.reserve(key, bytes);
+        if (wait > 0) {
+            log.trace("delay({}) {}ns for {}", bytes, wait, key);
+            parkNanos(wait);
+        }
+    }
+
+    private static void parkNanos(final long nanos) throws InterruptedIOException {
+        val deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread()
+                      .isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of equally sized blocks of off-heap memory, shared by every reader, holding the blocks of objects
+ * most recently read.
+ *
+ * <p>The memory for each slot is allocated the first time it is used, and never more than the capacity, however many
+ * readers there are. Slots are reused by the CLOCK algorithm: a slot read since the hand last passed is given a second
+ * chance, otherwise its block is evicted. A slot being read is pinned and never evicted, so if every slot is pinned a
+ * block is loaded into memory of its own, which isn't shared.</p>
+ *
+ * <p>Readers asking for a block that is already being loaded wait for that load rather than loading it again, so
+ * however many sessions read a block at once, it is fetched from S3 once.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class BlockCache {
+
+    private final int blockSize;
+
+    private final Slot[] slots;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<BlockKey, Slot> index = new HashMap<>();
+
+    private final Map<BlockKey, CompletableFuture<Void>> loading = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private int hand;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes  The most memory the blocks may take
+     * @param blockSize The size of each block
+     */
+    BlockCache(final long maxBytes, final int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        if (maxBytes < blockSize) {
+            throw new IllegalArgumentException("maxBytes must be at least one block: " + maxBytes);
+        }
+        val count = maxBytes / blockSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxBytes must be fewer than 2^31 blocks: " + maxBytes);
+        }
+        this.blockSize = blockSize;
+        this.slots = new Slot[(int) count];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * The size of each block.
+     *
+     * @return the number of bytes
+     */
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Get a block, loading it if it isn't in the cache.
+     *
+     * @param key    The block
+     * @param loader Loads the block if needed
+     *
+     * @return the block, to be released once read
+     *
+     * @throws IOException if the block could not be loaded
+     */
+    Block get(final BlockKey key, final Loader loader) throws IOException {
+        while (true) {
+            final CompletableFuture<Void> pending;
+            lock.lock();
+            try {
+                val cached = index.get(key);
+                if (cached != null) {
+                    cached.pins++;
+                    cached.referenced = true;
+                    hits.incrementAndGet();
+                    return new Block(cached);
+                }
+                pending = loading.get(key);
+                if (pending == null) {
+                    loading.put(key, new CompletableFuture<>());
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (pending == null) {
+                return load(key, loader);
+            }
+            await(pending);
+        }
+    }
+
+    /**
+     * The number of blocks found in the cache.
+     *
+     * @return the number of hits
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of blocks loaded.
+     *
+     * @return the number of loads
+     */
+    long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * The memory allocated to blocks so far.
+     *
+     * @return the number of bytes
+     */
+    long getAllocatedBytes() {
+        lock.lock();
+        try {
+            long allocated = 0L;
+            for (final Slot slot : slots) {
+                if (slot.buffer != null) {
+                    allocated += blockSize;
+                }
+            }
+            return allocated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Block load(final BlockKey key, final Loader loader) throws IOException {
+        loads.incrementAndGet();
+        val slot = claim();
+        try {
+            val buffer = slot.buffer;
+            buffer.clear();
+            loader.load(buffer);
+            buffer.flip();
+        } catch (IOException | RuntimeException e) {
+            finishLoad(key, slot, e);
+            throw e;
+        }
+        finishLoad(key, slot, null);
+        return new Block(slot);
+    }
+
+    private void finishLoad(final BlockKey key, final Slot slot, final Exception failure) {
+        final CompletableFuture<Void> pending;
+        lock.lock();
+        try {
+            pending = loading.remove(key);
+            if (failure == null && slot.shared) {
+                slot.key = key;
+                slot.referenced = true;
+                index.put(key, slot);
+            } else if (failure != null) {
+                slot.pins--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (failure == null) {
+            pending.complete(null);
+        } else {
+            pending.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Take a slot to load a block into, evicting the block in it if needed.
+     */
+    private Slot claim() {
+        lock.lock();
+        try {
+            for (int swept = 0; swept < slots.length * 2; swept++) {
+                val slot = slots[hand];
+                hand = (hand + 1) % slots.length;
+                if (slot.pins > 0) {
+                    continue;
+                }
+                if (slot.referenced) {
+                    slot.referenced = false;
+                    continue;
+                }
+                if (slot.key != null) {
+                    log.trace("evict: {}", slot.key);
+                    index.remove(slot.key);
+                    slot.key = null;
+                }
+                if (slot.buffer == null) {
+                    slot.buffer = ByteBuffer.allocateDirect(blockSize);
+                }
+                slot.pins = 1;
+                return slot;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Every block is being read, loading a block that won't be shared");
+        val unshared = new Slot();
+        unshared.shared = false;
+        unshared.buffer = ByteBuffer.allocate(blockSize);
+        unshared.pins = 1;
+        return unshared;
+    }
+
+    private void release(final Slot slot) {
+        lock.lock();
+        try {
+            slot.pins--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void await(final CompletableFuture<Void> pending) throws IOException {
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a block to load");
+        } catch (ExecutionException e) {
+            val cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Loads the content of a block.
+     */
+    @FunctionalInterface
+    interface Loader {
+
+        /**
+         * Load the block's content into the buffer.
+         *
+         * @param buffer The buffer to fill, with room for a whole block
+         *
+         * @throws IOException if the block could not be loaded
+         */
+        void load(ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * Memory for a single block.
+     */
+    private static final class Slot {
+
+        private ByteBuffer buffer;
+
+        private BlockKey key;
+
+        private int pins;
+
+        private boolean referenced;
+
+        private boolean shared = true;
+    }
+
+    /**
+     * A block, pinned in the cache until released.
+     */
+    final class Block implements AutoCloseable {
+
+        private final Slot slot;
+
+        private boolean released;
+
+        private Block(final Slot slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * The content of the block.
+         *
+         * @return a read-only view of the content
+         */
+        ByteBuffer content() {
+            return slot.buffer.asReadOnlyBuffer();
+        }
+
+        /**
+         * Release the block, so that it may be evicted.
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(slot);
+            }
+        }
+    }
+}
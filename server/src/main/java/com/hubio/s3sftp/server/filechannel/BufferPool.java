@@ -0,0 +1,135 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lends out {@link ByteBuffer}s for channel I/O.
+ *
+ * <p>Each buffer is borrowed as a {@link Lease} and must be given back by closing the lease, after which the buffer
+ * must not be used.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface BufferPool {
+
+    /**
+     * The most memory kept for reuse by {@link #direct()}.
+     */
+    long DEFAULT_MAX_POOLED_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * A pool that keeps nothing, allocating a new heap buffer for each lease.
+     *
+     * @return the pool
+     */
+    static BufferPool none() {
+        return capacity -> {
+            final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            return () -> buffer;
+        };
+    }
+
+    /**
+     * A pool of direct buffers, keeping up to {@value #DEFAULT_MAX_POOLED_BYTES} bytes for reuse.
+     *
+     * @return the pool
+     *
+     * @see #direct(long)
+     */
+    static BufferPool direct() {
+        return direct(DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+     * A pool of direct buffers, in size classes of powers of two from 4 KiB to 1 MiB.
+     *
+     * <p>Direct buffers are read into and written from by the operating system without being copied, and live outside
+     * the heap, so long transfers through them don't add to garbage collection. Buffers given back are kept for reuse
+     * while the pool holds no more than {@code maxPooledBytes}. Larger buffers are never pooled.</p>
+     *
+     * <p>A lease that is garbage collected without being closed is counted as a leak and logged. While started, the
+     * pool publishes its usage over JMX as {@value DirectBufferPool#OBJECT_NAME}, see {@link BufferPoolMXBean}.</p>
+     *
+     * @param maxPooledBytes The most memory to keep for reuse
+     *
+     * @return the pool
+     */
+    static BufferPool direct(final long maxPooledBytes) {
+        return new DirectBufferPool(maxPooledBytes);
+    }
+
+    /**
+     * Borrow a buffer.
+     *
+     * @param capacity The number of bytes needed
+     *
+     * @return the lease of a cleared buffer with {@code capacity} bytes remaining
+     */
+    Lease acquire(int capacity);
+
+    /**
+     * Whether the buffers lent out are direct buffers, so that reading into or writing from them saves the JDK copying
+     * through a temporary direct buffer of its own.
+     *
+     * @return true if the buffers are direct
+     */
+    default boolean isDirect() {
+        return false;
+    }
+
+    /**
+     * Start publishing the usage of the pool.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stop publishing the usage of the pool.
+     */
+    default void stop() {
+    }
+
+    /**
+     * A buffer borrowed from a pool, given back when closed.
+     */
+    @FunctionalInterface
+    interface Lease extends AutoCloseable {
+
+        /**
+         * The buffer borrowed.
+         *
+         * @return the buffer
+         */
+        ByteBuffer buffer();
+
+        /**
+         * Give the buffer back to the pool.
+         */
+        @Override
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+/**
+ * JMX view of the usage of a {@link BufferPool}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface BufferPoolMXBean {
+
+    /**
+     * The number of buffers lent out.
+     *
+     * @return the number of leases
+     */
+    long getAcquired();
+
+    /**
+     * The number of buffers allocated because none could be reused.
+     *
+     * @return the number of buffers
+     */
+    long getAllocated();
+
+    /**
+     * The number of buffers lent out and not yet given back.
+     *
+     * @return the number of leases
+     */
+    int getOutstanding();
+
+    /**
+     * The number of leases garbage collected without being given back.
+     *
+     * @return the number of leases
+     */
+    long getLeaked();
+
+    /**
+     * The memory held by buffers kept for reuse.
+     *
+     * @return the number of bytes
+     */
+    long getPooledBytes();
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.upplication.s3fs.S3Path;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystemException;
+
+/**
+ * Limits the bytes and objects uploaded under a prefix, such as a user's home directory, using the counts kept by a
+ * {@link BucketUsage}.
+ *
+ * <p>Each upload reserves space as it grows, so concurrent uploads by the same user share the quota, and checking a
+ * write against the quota never waits for S3.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface ChannelQuota {
+
+    /**
+     * A quota that never refuses an upload.
+     *
+     * @return the quota
+     */
+    static ChannelQuota unlimited() {
+        return UnlimitedChannelQuota.INSTANCE;
+    }
+
+    /**
+     * A quota for the objects under a prefix.
+     *
+     * @param usage      The usage of each prefix
+     * @param prefix     The prefix the quota applies to, e.g. {@code users/alice/}; objects outside it are not limited
+     * @param maxBytes   The most bytes that may be stored under the prefix
+     * @param maxObjects The most objects that may be stored under the prefix
+     *
+     * @return the quota
+     */
+    static ChannelQuota of(final BucketUsage usage, final String prefix, final long maxBytes, final long maxObjects) {
+        return new UsageChannelQuota(usage, prefix, maxBytes, maxObjects);
+    }
+
+    /**
+     * Starts an upload, reserving an object for it if it creates one.
+     *
+     * @param path         The path being uploaded
+     * @param previousSize The size of the object being replaced, or 0 if it is new
+     * @param existed      Whether an object, even an empty one, is being replaced
+     *
+     * @return the upload, to check writes against the quota
+     *
+     * @throws FileSystemException if a new object would exceed the object quota
+     */
+    Upload open(S3Path path, long previousSize, boolean existed) throws FileSystemException;
+
+    /**
+     * Starts a copy of an object to the path, reserving the space and object it will take up.
+     *
+     * @param path         The path being copied to
+     * @param size         The size of the object being copied
+     * @param previousSize The size of the object being replaced, or 0 if it is new
+     * @param existed      Whether an object, even an empty one, is being replaced
+     *
+     * @return the copy, to complete once the object has been copied
+     *
+     * @throws FileSystemException if the copy would exceed the quota
+     */
+    Upload copy(S3Path path, long size, long previousSize, boolean existed) throws FileSystemException;
+
+    /**
+     * Whether the objects at the path are counted against the quota.
+     *
+     * @param path The path
+     *
+     * @return true if the path is under the prefix
+     */
+    boolean limits(S3Path path);
+
+    /**
+     * Accounts for an object deleted from under the prefix.
+     *
+     * @param path The path deleted
+     * @param size The size of the object deleted
+     */
+    void deleted(S3Path path, long size);
+
+    /**
+     * An upload in progress.
+     */
+    interface Upload {
+
+        /**
+         * Checks that bytes about to be written to the channel fit within the quota, reserving space for them.
+         *
+         * @param channel The channel being written to, at the position of the write
+         * @param bytes   The number of bytes to be written
+         *
+         * @throws IOException if the write would exceed the quota
+         */
+        void beforeWrite(SeekableByteChannel channel, long bytes) throws IOException;
+
+        /**
+         * Accounts for the object once it has been uploaded, releasing the space reserved for it.
+         *
+         * @param size The size of the object uploaded
+         */
+        void completed(long size);
+
+        /**
+         * Releases the space reserved for an upload that did not complete. Does nothing once completed.
+         */
+        void abandoned();
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * What the file channels opened for a user are opened through, and limited by.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class ChannelResources {
+
+    @NonNull
+    private final ChannelThrottle throttle;
+
+    @NonNull
+    private final ObjectCache objectCache;
+
+    @NonNull
+    private final BufferPool bufferPool;
+
+    @NonNull
+    private final OpenTransfers openTransfers;
+
+    @NonNull
+    private final ChannelQuota quota;
+
+    @NonNull
+    private final WorkScheduler workScheduler;
+
+    @NonNull
+    private final String username;
+
+    /**
+     * Builder for {@link ChannelResources}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>throttle: unlimited</li>
+     *     <li>objectCache: none</li>
+     *     <li>bufferPool: none, allocating a heap buffer for each vectored read or write</li>
+     *     <li>openTransfers: a new, unshared, instance</li>
+     *     <li>quota: unlimited</li>
+     *     <li>workScheduler: unlimited</li>
+     *     <li>username: empty, as the unlimited scheduler doesn't share work out between users</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class ChannelResourcesBuilder {
+
+        private ChannelThrottle throttle = ChannelThrottle.unlimited();
+
+        private ObjectCache objectCache = ObjectCache.none();
+
+        private BufferPool bufferPool = BufferPool.none();
+
+        private OpenTransfers openTransfers = new OpenTransfers();
+
+        private ChannelQuota quota = ChannelQuota.unlimited();
+
+        private WorkScheduler workScheduler = WorkScheduler.unlimited();
+
+        private String username = "";
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.ratelimit.Bandwidth;
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Delays reads and writes on a file channel to keep within a {@link Bandwidth}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface ChannelThrottle {
+
+    /**
+     * A throttle that never delays.
+     *
+     * @return the throttle
+     */
+    static ChannelThrottle unlimited() {
+        return UnlimitedChannelThrottle.INSTANCE;
+    }
+
+    /**
+     * A throttle that keeps the reads and writes for a key (e.g. a username) within the bandwidth.
+     *
+     * @param bandwidth The bandwidth allowed
+     * @param key       The key the bandwidth is shared by
+     *
+     * @return the throttle
+     */
+    static ChannelThrottle of(final Bandwidth bandwidth, final String key) {
+        final KeyedRateLimiter upload = bandwidth.getUpload()
+                                                 .map(KeyedRateLimiter::new)
+                                                 .orElse(null);
+        final KeyedRateLimiter download = bandwidth.getDownload()
+                                                   .map(KeyedRateLimiter::new)
+                                                   .orElse(null);
+        if (upload == null && download == null) {
+            return unlimited();
+        }
+        return new BandwidthChannelThrottle(upload, download, key);
+    }
+
+    /**
+     * Account for bytes that have been read from the channel, delaying the caller if the download rate is exceeded.
+     *
+     * @param bytes The number of bytes read
+     *
+     * @throws InterruptedIOException if the thread is interrupted while delayed
+     */
+    void afterRead(long bytes) throws InterruptedIOException;
+
+    /**
+     * Account for bytes about to be written to the channel, delaying the caller if the upload rate is exceeded.
+     *
+     * @param bytes The number of bytes to be written
+     *
+     * @throws InterruptedIOException if the thread is interrupted while delayed
+     */
+    void beforeWrite(long bytes) throws InterruptedIOException;
+}
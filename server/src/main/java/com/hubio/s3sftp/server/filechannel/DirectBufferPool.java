@@ -0,0 +1,280 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BufferPool} of direct buffers in size classes of powers of two.
+ *
+ * <p>Buffers given back are reused most recently used first. Leaks are found by tracking each lease with a weak
+ * reference: a lease collected before being closed is reported the next time a buffer is borrowed. The buffer of a
+ * leaked lease may still be in use by whoever dropped the lease, so it is never reused.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class DirectBufferPool implements BufferPool, BufferPoolMXBean {
+
+    /**
+     * The JMX name the pool is published under while started.
+     */
+    static final String OBJECT_NAME = "com.hubio.s3sftp:type=BufferPool";
+
+    /**
+     * The size of the smallest buffers, as a power of two.
+     */
+    static final int MIN_SHIFT = 12;
+
+    /**
+     * The size of the largest buffers pooled, as a power of two.
+     */
+    static final int MAX_SHIFT = 20;
+
+    /**
+     * The size of the largest buffers pooled.
+     */
+    static final int MAX_POOLED_CAPACITY = 1 << MAX_SHIFT;
+
+    private final long maxPooledBytes;
+
+    private final List<Deque<ByteBuffer>> free = new ArrayList<>();
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final AtomicLong acquired = new AtomicLong();
+
+    private final AtomicLong allocated = new AtomicLong();
+
+    private final AtomicLong leaked = new AtomicLong();
+
+    private final Set<LeaseReference> outstanding = ConcurrentHashMap.newKeySet();
+
+    private final ReferenceQueue<PooledLease> collected = new ReferenceQueue<>();
+
+    private ObjectName registeredName;
+
+    /**
+     * Constructor.
+     *
+     * @param maxPooledBytes The most memory to keep for reuse
+     */
+    DirectBufferPool(final long maxPooledBytes) {
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("maxPooledBytes must not be negative: " + maxPooledBytes);
+        }
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            free.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    @Override
+    public boolean isDirect() {
+        return true;
+    }
+
+    @Override
+    public Lease acquire(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        reportLeaks();
+        acquired.incrementAndGet();
+        if (capacity > MAX_POOLED_CAPACITY) {
+            allocated.incrementAndGet();
+            final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            return () -> buffer;
+        }
+        val sizeClass = sizeClass(capacity);
+        ByteBuffer buffer = free.get(sizeClass)
+                                 .pollFirst();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(1 << (MIN_SHIFT + sizeClass));
+        } else {
+            pooledBytes.addAndGet(-buffer.capacity());
+        }
+        buffer.clear()
+              .limit(capacity);
+        return new PooledLease(buffer, sizeClass);
+    }
+
+    /**
+     * The size class for a capacity: the index of the smallest power of two, no smaller than the smallest buffer,
+     * that holds it.
+     */
+    static int sizeClass(final int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    private void release(final ByteBuffer buffer, final int sizeClass) {
+        val capacity = buffer.capacity();
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        free.get(sizeClass)
+            .offerFirst(buffer);
+    }
+
+    private void reportLeaks() {
+        Reference<? extends PooledLease> reference;
+        while ((reference = collected.poll()) != null) {
+            if (outstanding.remove(reference)) {
+                leaked.incrementAndGet();
+                val lease = (LeaseReference) reference;
+                log.warn("A {} byte buffer borrowed by {} was never given back", lease.capacity, lease.borrower);
+            }
+        }
+    }
+
+    @Override
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    @Override
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    @Override
+    public int getOutstanding() {
+        return outstanding.size();
+    }
+
+    @Override
+    public long getLeaked() {
+        reportLeaks();
+        return leaked.get();
+    }
+
+    @Override
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            val name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, name);
+            registeredName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Another buffer pool is already registered as {}", OBJECT_NAME);
+        } catch (JMException e) {
+            log.warn("Could not register buffer pool with JMX as {}", OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .unregisterMBean(registeredName);
+        } catch (JMException e) {
+            log.warn("Could not unregister buffer pool from JMX as {}", registeredName, e);
+        }
+        registeredName = null;
+    }
+
+    /**
+     * A lease of a pooled buffer.
+     */
+    private final class PooledLease implements Lease {
+
+        private final ByteBuffer buffer;
+
+        private final int sizeClass;
+
+        private final LeaseReference reference;
+
+        private boolean released;
+
+        PooledLease(final ByteBuffer buffer, final int sizeClass) {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.reference = new LeaseReference(this, collected);
+            outstanding.add(reference);
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            outstanding.remove(reference);
+            reference.clear();
+            release(buffer, sizeClass);
+        }
+    }
+
+    /**
+     * Tracks a lease, to find it if it is collected without being closed.
+     */
+    private static final class LeaseReference extends WeakReference<PooledLease> {
+
+        private final int capacity;
+
+        private final String borrower;
+
+        LeaseReference(final PooledLease lease, final ReferenceQueue<PooledLease> queue) {
+            super(lease, queue);
+            this.capacity = lease.buffer.capacity();
+            this.borrower = Thread.currentThread()
+                                  .getName();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.upplication.s3fs.S3Path;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ObjectCache} that keeps the objects most recently read in files in a local directory.
+ *
+ * <p>Objects are identified by bucket and key, and each copy is tagged with the ETag it was downloaded with. Opening
+ * a cached object sends a GET with {@code If-None-Match} for that ETag: S3 answers 304 Not Modified if the object is
+ * unchanged, and the copy is served, otherwise it sends the new content, which replaces the copy.</p>
+ *
+ * <p>Copies are evicted least recently used first. An evicted copy is deleted at once, but any channel already
+ * reading it keeps its mapping until closed. Objects larger than the whole cache are downloaded to a file that is
+ * deleted when the channel is closed, as they are without a cache. Channels opened for writing always bypass the
+ * cache.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class DiskObjectCache implements ObjectCache {
+
+    private static final int NOT_FOUND = 404;
+
+    private static final String OBJECT_SUFFIX = ".object";
+
+    private static final String DOWNLOAD_SUFFIX = ".download";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long usedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to keep the objects in
+     * @param maxBytes  The space the cached objects may take in the directory
+     */
+    DiskObjectCache(final Path directory, final long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            removeLeftovers();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not prepare cache directory: " + directory, e);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel open(final S3Path path, final Set<? extends OpenOption> options) throws IOException {
+        if (!RangedObjectCache.isReadOnly(options)) {
+            return new S3UploadChannel(path, options);
+        }
+        val bucket = path.getFileStore()
+                         .name();
+        val key = path.getKey();
+        val id = bucket + "/" + key;
+        val cached = lookup(id);
+        val request = new GetObjectRequest(bucket, key);
+        if (cached != null) {
+            request.withNonmatchingETagConstraint(cached.entry.eTag);
+        }
+        final S3Object object;
+        try {
+            object = path.getFileSystem()
+                         .getClient()
+                         .getObject(request);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                remove(id);
+                throw new NoSuchFileException(path.toString());
+            }
+            throw e;
+        }
+        if (object == null) {
+            log.trace("hit: {}", id);
+            hits.incrementAndGet();
+            return cached.channel;
+        }
+        log.trace("miss: {}", id);
+        misses.incrementAndGet();
+        return store(id, object);
+    }
+
+    /**
+     * The number of reads served from the cache.
+     *
+     * @return the number of hits
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of reads that downloaded the object.
+     *
+     * @return the number of misses
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The space taken by the cached objects.
+     *
+     * @return the number of bytes
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Map the cached copy of the object, if there is one, so that it can be served even if evicted while being
+     * revalidated.
+     */
+    private Cached lookup(final String id) throws IOException {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+        }
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return new Cached(entry, channelFor(entry.file, entry.size));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private SeekableByteChannel store(final String id, final S3Object object) throws IOException {
+        val download = Files.createTempFile(directory, "", DOWNLOAD_SUFFIX);
+        final long size;
+        try (S3Object content = object) {
+            size = Files.copy(content.getObjectContent(), download, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(download);
+            throw e;
+        }
+        if (size > maxBytes) {
+            log.debug("Not caching {}: {} bytes is larger than the cache", id, size);
+            remove(id);
+            return Files.newByteChannel(download, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        val file = directory.resolve(UUID.randomUUID() + OBJECT_SUFFIX);
+        Files.move(download, file, StandardCopyOption.ATOMIC_MOVE);
+        val channel = channelFor(file, size);
+        put(id, new Entry(object.getObjectMetadata()
+                                .getETag(), file, size));
+        return channel;
+    }
+
+    private synchronized void put(final String id, final Entry entry) throws IOException {
+        val replaced = entries.put(id, entry);
+        if (replaced != null) {
+            discard(replaced);
+        }
+        usedBytes += entry.size;
+        val eldest = entries.values()
+                            .iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            evict(eldest);
+        }
+    }
+
+    private synchronized void remove(final String id) throws IOException {
+        val removed = entries.remove(id);
+        if (removed != null) {
+            discard(removed);
+        }
+    }
+
+    private void evict(final Iterator<Entry> eldest) throws IOException {
+        val entry = eldest.next();
+        eldest.remove();
+        log.trace("evict: {}", entry.file);
+        discard(entry);
+    }
+
+    private void discard(final Entry entry) throws IOException {
+        usedBytes -= entry.size;
+        Files.deleteIfExists(entry.file);
+    }
+
+    private static SeekableByteChannel channelFor(final Path file, final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedObjectChannel(mapping);
+        }
+    }
+
+    private void removeLeftovers() throws IOException {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory,
+                                                                        "*{" + OBJECT_SUFFIX + "," + DOWNLOAD_SUFFIX
+                                                                        + "}"
+                                                                       )) {
+            for (final Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * A copy of an object.
+     */
+    @RequiredArgsConstructor
+    private static final class Entry {
+
+        private final String eTag;
+
+        private final Path file;
+
+        private final long size;
+    }
+
+    /**
+     * A copy of an object, mapped ready to be read.
+     */
+    @RequiredArgsConstructor
+    private static final class Cached {
+
+        private final Entry entry;
+
+        private final SeekableByteChannel channel;
+    }
+}
@@ -27,6 +27,7 @@ import com.upplication.s3fs.S3Path;
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.OpenOption;
 import java.util.Set;
 
@@ -48,6 +49,48 @@ public interface FileChannelFactory {
      * @throws IOException if an I/O error occurs
      */
     static FileChannel of(final S3Path path, final Set<? extends OpenOption> openOptions) throws IOException {
-        return new S3FileChannel(path, openOptions);
+        return of(path, openOptions, ChannelResources.builder()
+                                                     .build());
+    }
+
+    /**
+     * Create a {@link FileChannel} for the path with the specific open options, opened through the resources' object
+     * cache, with reads and writes limited by its throttle, vectored reads and writes gathered through buffers from
+     * its pool, kept in its open transfers until closed, and uploads limited by its quota.
+     *
+     * @param path        The path of the file to open an channel to
+     * @param openOptions The options for opening the file channel
+     * @param resources   The resources to open the channel through
+     *
+     * @return The file channel
+     *
+     * @throws IOException if an I/O error occurs, the open transfers are draining, or the upload would exceed the
+     *                     quota
+     */
+    static FileChannel of(
+            final S3Path path, final Set<? extends OpenOption> openOptions, final ChannelResources resources
+                         ) throws IOException {
+        final OpenTransfers transfers = resources.getOpenTransfers();
+        transfers.checkAccepting(path);
+        final SeekableByteChannel byteChannel = resources.getObjectCache()
+                                                         .open(path, openOptions, resources.getWorkScheduler(),
+                                                               resources.getUsername()
+                                                              );
+        ChannelQuota.Upload upload = UnlimitedChannelQuota.INSTANCE;
+        if (byteChannel instanceof S3UploadChannel) {
+            upload = ((S3UploadChannel) byteChannel).reserve(resources.getQuota());
+        }
+        return transfers.opened(new S3FileChannel(byteChannel, resources, upload));
+    }
+
+    /**
+     * Create a {@link FileChannel} that reads and writes through an existing channel.
+     *
+     * @param byteChannel The channel to read and write through
+     *
+     * @return The file channel
+     */
+    static FileChannel of(final SeekableByteChannel byteChannel) {
+        return new S3FileChannel(byteChannel);
     }
 }
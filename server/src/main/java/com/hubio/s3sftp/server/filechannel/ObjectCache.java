@@ -0,0 +1,147 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3SeekableByteChannel;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Opens the channels that file channels read and write S3 objects through, keeping copies of the objects that are
+ * read.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface ObjectCache {
+
+    /**
+     * The size of the blocks read by {@link #offHeap(long)}.
+     */
+    int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * A cache that keeps nothing, downloading each object every time it is read.
+     *
+     * @return the cache
+     */
+    static ObjectCache none() {
+        return (path, options) -> {
+            if (RangedObjectCache.isReadOnly(options)) {
+                return new S3SeekableByteChannel(path, options);
+            }
+            return new S3UploadChannel(path, options);
+        };
+    }
+
+    /**
+     * A cache that keeps the objects most recently read in files in a local directory.
+     *
+     * <p>Each time a cached object is read it is revalidated with a conditional GET, so a changed object is never
+     * served from the cache, but an unchanged one costs a single request with no content. When the objects in the
+     * cache take more than the space allowed, those least recently read are removed. Objects are read from the cache
+     * through a memory mapping, so popular objects are served from the page cache.</p>
+     *
+     * <p>Any files left in the directory from an earlier run are removed.</p>
+     *
+     * @param directory The directory to keep the objects in
+     * @param maxBytes  The space the cached objects may take in the directory
+     *
+     * @return the cache
+     */
+    static ObjectCache onDisk(final Path directory, final long maxBytes) {
+        return new DiskObjectCache(directory, maxBytes);
+    }
+
+    /**
+     * A cache that reads objects in 1 MiB blocks with ranged GETs, keeping the blocks most recently read in off-heap
+     * memory shared by every session.
+     *
+     * @param maxBytes The memory the blocks may take
+     *
+     * @return the cache
+     *
+     * @see #offHeap(long, int)
+     */
+    static ObjectCache offHeap(final long maxBytes) {
+        return offHeap(maxBytes, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * A cache that reads objects in blocks with ranged GETs, keeping the blocks most recently read in off-heap memory
+     * shared by every session.
+     *
+     * <p>Sessions reading the same object at once share the blocks fetched, and a block wanted by several sessions
+     * while it is being fetched is fetched once. Memory is allocated a block at a time as needed, up to the limit, and
+     * blocks are evicted by the CLOCK algorithm. Objects are opened with a HEAD request, and their blocks fetched only
+     * if their ETag is unchanged.</p>
+     *
+     * @param maxBytes  The memory the blocks may take
+     * @param blockSize The size of each block
+     *
+     * @return the cache
+     */
+    static ObjectCache offHeap(final long maxBytes, final int blockSize) {
+        return new RangedObjectCache(new BlockCache(maxBytes, blockSize));
+    }
+
+    /**
+     * Open a channel to an object.
+     *
+     * @param path    The path of the object
+     * @param options The options for opening the channel
+     *
+     * @return the channel
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    SeekableByteChannel open(S3Path path, Set<? extends OpenOption> options) throws IOException;
+
+    /**
+     * Open a channel to an object, for a user whose S3 work is shared out by the scheduler.
+     *
+     * <p>The caller schedules opening the channel. A cache that fetches more of the object from S3 as it is read holds
+     * a permit from the scheduler for each fetch; other caches ignore the scheduler.</p>
+     *
+     * @param path          The path of the object
+     * @param options       The options for opening the channel
+     * @param workScheduler The scheduler to get permits from
+     * @param username      The user reading the object
+     *
+     * @return the channel
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default SeekableByteChannel open(
+            final S3Path path, final Set<? extends OpenOption> options, final WorkScheduler workScheduler,
+            final String username
+                                    ) throws IOException {
+        return open(path, options);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.util.BinaryUtils;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The checksums of an object's content that are known without reading it.
+ *
+ * <p>The entity tag of an object uploaded in a single part is the MD5 of its content, unless the object is encrypted
+ * with KMS or a customer's key. Objects uploaded through the server also carry the checksums of their content in their
+ * user metadata, e.g. {@code x-amz-meta-s3sftp-sha256}, computed as they were written.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public final class ObjectChecksums {
+
+    /**
+     * The attributes to read from a file to get its checksums, keyed by algorithm, e.g. {@code md5}, each a {@code
+     * byte[]}, with its {@link #SIZE}.
+     */
+    public static final String ATTRIBUTES = "checksum:*";
+
+    /**
+     * The attribute holding the size of the file the checksums are of, a {@code Long}.
+     */
+    public static final String SIZE = "size";
+
+    /**
+     * The name of the MD5 algorithm, as used by the SFTP {@code check-file} extension.
+     */
+    public static final String MD5 = "md5";
+
+    /**
+     * The name of the SHA-256 algorithm, as used by the SFTP {@code check-file} extension.
+     */
+    public static final String SHA256 = "sha256";
+
+    /**
+     * The algorithms computed as objects are uploaded.
+     */
+    static final List<String> UPLOADED = Collections.unmodifiableList(Arrays.asList(MD5, SHA256));
+
+    /**
+     * The prefix of the user metadata holding each checksum, in hex.
+     */
+    static final String METADATA_PREFIX = "s3sftp-";
+
+    private static final int MD5_HEX_LENGTH = 32;
+
+    private ObjectChecksums() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the checksums known from an object's metadata.
+     *
+     * @param metadata The object's metadata
+     *
+     * @return the checksums, keyed by algorithm, empty if none are known
+     */
+    public static Map<String, byte[]> of(final ObjectMetadata metadata) {
+        val checksums = new HashMap<String, byte[]>();
+        val md5 = eTagMd5(metadata);
+        if (md5 != null) {
+            checksums.put(MD5, md5);
+        }
+        val userMetadata = metadata.getUserMetadata();
+        for (final String algorithm : UPLOADED) {
+            val hex = userMetadata.get(METADATA_PREFIX + algorithm);
+            if (hex != null) {
+                try {
+                    checksums.put(algorithm, BinaryUtils.fromHex(hex));
+                } catch (RuntimeException e) {
+                    // not ours, ignore it
+                }
+            }
+        }
+        return checksums;
+    }
+
+    private static byte[] eTagMd5(final ObjectMetadata metadata) {
+        val eTag = metadata.getETag();
+        if (eTag == null || metadata.getSSECustomerAlgorithm() != null
+            || SSEAlgorithm.KMS.getAlgorithm()
+                               .equals(metadata.getSSEAlgorithm())) {
+            return null;
+        }
+        val unquoted = eTag.replace("\"", "");
+        // multipart entity tags end with '-' and the number of parts
+        if (unquoted.length() != MD5_HEX_LENGTH || !unquoted.matches("[0-9a-fA-F]+")) {
+            return null;
+        }
+        return BinaryUtils.fromHex(unquoted);
+    }
+}
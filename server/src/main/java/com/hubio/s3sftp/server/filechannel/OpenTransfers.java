@@ -0,0 +1,137 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.upplication.s3fs.S3Path;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The file channels open for transfers, so that the server can let them finish before it stops.
+ *
+ * <p>Once draining, no more channels may be opened.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+public class OpenTransfers {
+
+    private final Set<S3FileChannel> channels = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean draining;
+
+    /**
+     * Check that a channel may be opened.
+     *
+     * @param path The path the channel is to be opened to
+     *
+     * @throws FileSystemException if draining
+     */
+    void checkAccepting(final S3Path path) throws FileSystemException {
+        if (draining) {
+            throw new FileSystemException(path.toString(), null, "Server is shutting down");
+        }
+    }
+
+    /**
+     * Record a channel as open.
+     *
+     * @param channel The channel
+     *
+     * @return the channel
+     */
+    S3FileChannel opened(final S3FileChannel channel) {
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * Record a channel as closed.
+     *
+     * @param channel The channel
+     */
+    void closed(final S3FileChannel channel) {
+        channels.remove(channel);
+    }
+
+    /**
+     * Refuse to open any more channels.
+     */
+    public void drain() {
+        draining = true;
+    }
+
+    /**
+     * Whether channels are being refused.
+     *
+     * @return true if draining
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * The number of channels open.
+     *
+     * @return the number of channels
+     */
+    public int getOpen() {
+        return channels.size();
+    }
+
+    /**
+     * The number of channels open for writing, whose objects will be uploaded when they are closed.
+     *
+     * @return the number of channels
+     */
+    public int getUploads() {
+        return (int) channels.stream()
+                             .filter(S3FileChannel::isUpload)
+                             .count();
+    }
+
+    /**
+     * Close every channel open for writing without uploading what has been written to it.
+     *
+     * @return the number of uploads aborted
+     */
+    public int abortUploads() {
+        int aborted = 0;
+        for (final S3FileChannel channel : channels) {
+            if (channel.isUpload()) {
+                try {
+                    channel.abortUpload();
+                    aborted++;
+                } catch (IOException e) {
+                    log.warn("Could not abort upload", e);
+                }
+            }
+        }
+        return aborted;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.upplication.s3fs.S3Path;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * {@link ObjectCache} that reads objects a block at a time with ranged GETs, through a {@link BlockCache} shared by
+ * every session.
+ *
+ * <p>Opening an object for reading fetches only its metadata. Blocks are then fetched as they are read, so a client
+ * reading part of a large object, or starting to stream it, needn't wait for the whole object to be downloaded. Blocks
+ * are identified by the object's ETag, and fetched only if the object still has that ETag, so a reader never sees a
+ * mix of two versions of an object. Each fetch holds a permit from the reader's {@link WorkScheduler}.</p>
+ *
+ * <p>Channels opened for writing bypass the cache.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class RangedObjectCache implements ObjectCache {
+
+    private static final int NOT_FOUND = 404;
+
+    private final BlockCache blockCache;
+
+    @Override
+    public SeekableByteChannel open(final S3Path path, final Set<? extends OpenOption> options) throws IOException {
+        // no user's S3 work to share out
+        return open(path, options, WorkScheduler.unlimited(), "");
+    }
+
+    @Override
+    public SeekableByteChannel open(
+            final S3Path path, final Set<? extends OpenOption> options, final WorkScheduler workScheduler,
+            final String username
+                                   ) throws IOException {
+        if (!isReadOnly(options)) {
+            return new S3UploadChannel(path, options);
+        }
+        val bucket = path.getFileStore()
+                         .name();
+        val key = path.getKey();
+        val client = path.getFileSystem()
+                         .getClient();
+        try {
+            val metadata = client.getObjectMetadata(bucket, key);
+            return new RangedObjectChannel(client, bucket, key, metadata.getETag(), metadata.getContentLength(),
+                                           blockCache, workScheduler, username
+            );
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                throw new NoSuchFileException(path.toString());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The cache the blocks are kept in.
+     *
+     * @return the block cache
+     */
+    BlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    static boolean isReadOnly(final Set<? extends OpenOption> options) {
+        for (final OpenOption option : options) {
+            if (option != StandardOpenOption.READ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only {@link SeekableByteChannel} over one version of an object, read a block at a time through a
+ * {@link BlockCache}.
+ *
+ * <p>Each block fetched from S3 is fetched under a permit from the {@link WorkScheduler}, as the reader's other S3
+ * operations are. Blocks already in the cache are read without one.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class RangedObjectChannel implements SeekableByteChannel {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final AmazonS3 client;
+
+    private final String bucket;
+
+    private final String key;
+
+    private final String eTag;
+
+    private final long size;
+
+    private final BlockCache blockCache;
+
+    private final WorkScheduler workScheduler;
+
+    private final String username;
+
+    private long position;
+
+    private volatile boolean open = true;
+
+    /**
+     * Constructor.
+     *
+     * @param client        The client to fetch blocks with
+     * @param bucket        The bucket
+     * @param key           The key of the object
+     * @param eTag          The ETag of the version of the object to read
+     * @param size          The size of the object
+     * @param blockCache    The cache to read blocks through
+     * @param workScheduler The scheduler to get a permit from for each block fetched
+     * @param username      The user reading the object
+     */
+    @SuppressWarnings("parameternumber")
+    RangedObjectChannel(
+            final AmazonS3 client, final String bucket, final String key, final String eTag, final long size,
+            final BlockCache blockCache, final WorkScheduler workScheduler, final String username
+                       ) {
+        this.client = client;
+        this.bucket = bucket;
+        this.key = key;
+        this.eTag = eTag;
+        this.size = size;
+        this.blockCache = blockCache;
+        this.workScheduler = workScheduler;
+        this.username = username;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        val blockSize = blockCache.getBlockSize();
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            val blockIndex = position / blockSize;
+            val offset = (int) (position - blockIndex * blockSize);
+            try (BlockCache.Block block = blockCache.get(new BlockKey(bucket, key, eTag, blockIndex),
+                                                         buffer -> scheduledFetch(blockIndex, buffer)
+                                                        )) {
+                val content = block.content();
+                content.position(offset);
+                if (content.remaining() > dst.remaining()) {
+                    content.limit(offset + dst.remaining());
+                }
+                val length = content.remaining();
+                dst.put(content);
+                position += length;
+                total += length;
+            }
+        }
+        return total;
+    }
+
+    private void scheduledFetch(final long blockIndex, final ByteBuffer buffer) throws IOException {
+        val permit = workScheduler.acquire(username);
+        try {
+            fetch(blockIndex, buffer);
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Fetch a block with a ranged GET, only if the object is still the version being read.
+     */
+    private void fetch(final long blockIndex, final ByteBuffer buffer) throws IOException {
+        val start = blockIndex * buffer.capacity();
+        val end = Math.min(size, start + buffer.capacity()) - 1;
+        log.trace("fetch({}/{}, {}-{})", bucket, key, start, end);
+        val request = new GetObjectRequest(bucket, key).withRange(start, end)
+                                                       .withMatchingETagConstraint(eTag);
+        final S3Object object = client.getObject(request);
+        if (object == null) {
+            throw new IOException(String.format("%s/%s has changed while being read", bucket, key));
+        }
+        try (S3Object closing = object; InputStream content = closing.getObjectContent()) {
+            val copy = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while (buffer.hasRemaining() && (read = content.read(copy, 0, Math.min(copy.length, buffer.remaining())))
+                                            >= 0) {
+                buffer.put(copy, 0, read);
+            }
+        }
+        if (buffer.position() != end - start + 1) {
+            throw new IOException(String.format("%s/%s ended early at %d of %d bytes", bucket, key,
+                                                start + buffer.position(), size
+                                               ));
+        }
+    }
+
+    @Override
+    public int write(final ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("position must not be negative: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long newSize) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
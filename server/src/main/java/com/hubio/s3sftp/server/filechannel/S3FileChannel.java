@@ -23,26 +23,31 @@
 
 package com.hubio.s3sftp.server.filechannel;
 
-import com.upplication.s3fs.S3Path;
 import com.upplication.s3fs.S3SeekableByteChannel;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
-import java.nio.file.OpenOption;
-import java.util.Set;
 
 /**
  * Presents an {@link S3SeekableByteChannel} as a {@link FileChannel}.
  *
- * <p>A {@link FileChannel} that simply directs calls to
- * {@link S3SeekableByteChannel} so that Apache MINA can work with s3fs.</p>
+ * <p>A {@link FileChannel} that reads and writes through an {@link S3SeekableByteChannel} so that Apache MINA can work
+ * with s3fs. Reads and writes are limited by the channel's throttle, vectored ones are gathered, and single heap ones
+ * staged, through direct buffers borrowed from its pool, and writes are checked against the upload's quota.</p>
+ *
+ * <p>Closing the channel uploads what was written and accounts for it in the quota. If the upload was aborted, or
+ * fails, the space reserved for it is released instead. The channel is removed from its open transfers either
+ * way.</p>
  *
  * @author Ross W. Drew (ross.drew@hubio.com)
  * @author Paul Campbell (paul.campbell@hubio.com)
@@ -52,46 +57,175 @@ class S3FileChannel extends FileChannel {
 
     private final SeekableByteChannel byteChannel;
 
+    private final ChannelThrottle throttle;
+
+    /**
+     * The pool to gather vectored reads and writes, and stage single ones, through, or null to read and write each
+     * buffer as it is.
+     */
+    private final BufferPool pool;
+
+    /**
+     * The transfers to remove the channel from when it is closed, or null if not tracked.
+     */
+    private final OpenTransfers transfers;
+
+    private final ChannelQuota.Upload upload;
+
+    private volatile boolean aborting;
+
     /**
      * Constructor.
      *
      * @param byteChannel The channel for reading and writing
      */
     S3FileChannel(final SeekableByteChannel byteChannel) {
-        log.trace("new({})", byteChannel);
-        this.byteChannel = byteChannel;
+        this(byteChannel, ChannelThrottle.unlimited(), null, null, UnlimitedChannelQuota.INSTANCE);
     }
 
     /**
      * Constructor.
      *
-     * @param path    The path of the local file
-     * @param options The options to use when opening the file
+     * <p>Vectored reads and writes are gathered through a buffer borrowed from the resources' pool, so that each is
+     * one read or write of the underlying channel, rather than one for each buffer. Heap buffers read and written
+     * one at a time from the local file of an s3fs channel are staged through a buffer from the pool.</p>
+     *
+     * @param byteChannel The channel for reading and writing
+     * @param resources   The throttle, pool and open transfers for the channel
+     * @param upload      The upload to check writes against the quota with
+     */
+    S3FileChannel(
+            final SeekableByteChannel byteChannel, final ChannelResources resources, final ChannelQuota.Upload upload
+                 ) {
+        this(byteChannel, resources.getThrottle(), resources.getBufferPool(), resources.getOpenTransfers(), upload);
+    }
+
+    private S3FileChannel(
+            final SeekableByteChannel byteChannel, final ChannelThrottle throttle, final BufferPool pool,
+            final OpenTransfers transfers, final ChannelQuota.Upload upload
+                         ) {
+        log.trace("new({}, {}, {}, {}, {})", byteChannel, throttle, pool, transfers, upload);
+        this.byteChannel = byteChannel;
+        this.throttle = throttle;
+        this.pool = pool;
+        this.transfers = transfers;
+        this.upload = upload;
+    }
+
+    /**
+     * Whether closing the channel uploads what was written to it.
+     *
+     * @return true if the channel is open for writing
+     */
+    boolean isUpload() {
+        return byteChannel instanceof S3UploadChannel;
+    }
+
+    /**
+     * Close the channel without uploading what was written to it.
      *
      * @throws IOException if an I/O error occurs
      */
-    S3FileChannel(final S3Path path, final Set<? extends OpenOption> options) throws IOException {
-        log.trace("new({}, {})", path, options);
-        this.byteChannel = new S3SeekableByteChannel(path, options);
+    void abortUpload() throws IOException {
+        aborting = true;
+        close();
+    }
+
+    /**
+     * Checks that bytes about to be written fit within the quota. Once a write is refused, the upload is aborted when
+     * the channel is closed, rather than storing a partly written object.
+     */
+    private void checkQuota(final long bytes) throws IOException {
+        try {
+            upload.beforeWrite(byteChannel, bytes);
+        } catch (IOException e) {
+            aborting = true;
+            throw e;
+        }
     }
 
     @Override
     public int read(final ByteBuffer dst) throws IOException {
         log.trace("read({})", dst);
-        return byteChannel.read(dst);
+        final int read;
+        if (isStaged(dst)) {
+            read = stagedRead(dst);
+        } else {
+            read = byteChannel.read(dst);
+        }
+        throttle.afterRead(read);
+        return read;
+    }
+
+    /**
+     * Whether to read into, or write from, the buffer through a pooled direct buffer.
+     *
+     * <p>The local files of s3fs channels are read and written by the JDK, which copies heap buffers through a
+     * temporary direct buffer of its own, cached for each thread at the size of the largest transfer the thread has
+     * made. The SFTP subsystem reads and writes heap buffers one at a time, so staging them through the pool keeps
+     * that memory within the pool's bounds. Other channels read and write memory, and need no staging.</p>
+     */
+    private boolean isStaged(final ByteBuffer buffer) {
+        return pool != null && pool.isDirect() && !buffer.isDirect() && buffer.hasRemaining()
+               && byteChannel instanceof S3SeekableByteChannel;
+    }
+
+    /**
+     * Read once into a pooled buffer, then copy what was read into the destination.
+     */
+    private int stagedRead(final ByteBuffer dst) throws IOException {
+        try (BufferPool.Lease lease = pool.acquire(Math.min(dst.remaining(), DirectBufferPool.MAX_POOLED_CAPACITY))) {
+            val buffer = lease.buffer();
+            val read = byteChannel.read(buffer);
+            buffer.flip();
+            dst.put(buffer);
+            return read;
+        }
     }
 
     @Override
     public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
         log.trace("read({}, {}, {})", dsts, offset, length);
-        long total = 0L;
-        final int end = offset + length;
-        for (int i = offset; i < end; i++) {
-            total += byteChannel.read(dsts[i]);
+        final long total;
+        if (pool != null) {
+            total = gatheredRead(dsts, offset, length);
+        } else if (byteChannel instanceof ScatteringByteChannel) {
+            total = ((ScatteringByteChannel) byteChannel).read(dsts, offset, length);
+        } else {
+            long read = 0L;
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                read += byteChannel.read(dsts[i]);
+            }
+            total = read;
         }
+        throttle.afterRead(total);
         return total;
     }
 
+    /**
+     * Read once into a pooled buffer, then scatter what was read into the destinations.
+     */
+    private long gatheredRead(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        val wanted = remaining(dsts, offset, length);
+        if (wanted == 0) {
+            return 0L;
+        }
+        try (BufferPool.Lease lease = pool.acquire((int) Math.min(wanted, DirectBufferPool.MAX_POOLED_CAPACITY))) {
+            val buffer = lease.buffer();
+            val read = byteChannel.read(buffer);
+            if (read <= 0) {
+                return read;
+            }
+            buffer.flip();
+            final int end = offset + length;
+            for (int i = offset; i < end && buffer.hasRemaining(); i++) {
+                transfer(buffer, dsts[i]);
+            }
+            return read;
+        }
+    }
+
     @Override
     public int read(final ByteBuffer dst, final long position) throws IOException {
         log.error("read({}, {})", dst, position);
@@ -107,20 +241,111 @@ class S3FileChannel extends FileChannel {
     @Override
     public int write(final ByteBuffer src) throws IOException {
         log.trace("write({})", src);
+        checkQuota(src.remaining());
+        throttle.beforeWrite(src.remaining());
+        if (isStaged(src)) {
+            return stagedWrite(src);
+        }
         return byteChannel.write(src);
     }
 
+    /**
+     * Copy the source into a pooled buffer, writing it each time it fills.
+     */
+    private int stagedWrite(final ByteBuffer src) throws IOException {
+        int total = 0;
+        try (BufferPool.Lease lease = pool.acquire(Math.min(src.remaining(), DirectBufferPool.MAX_POOLED_CAPACITY))) {
+            val buffer = lease.buffer();
+            val capacity = buffer.limit();
+            while (src.hasRemaining()) {
+                buffer.clear()
+                      .limit(capacity);
+                transfer(src, buffer);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += byteChannel.write(buffer);
+                }
+            }
+        }
+        return total;
+    }
+
     @Override
     public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
         log.trace("write({}, {}, {})", srcs, offset, length);
+        if (pool != null) {
+            return gatheredWrite(srcs, offset, length);
+        }
+        if (byteChannel instanceof GatheringByteChannel) {
+            val wanted = remaining(srcs, offset, length);
+            checkQuota(wanted);
+            throttle.beforeWrite(wanted);
+            return ((GatheringByteChannel) byteChannel).write(srcs, offset, length);
+        }
         long total = 0L;
         final int end = offset + length;
         for (int i = offset; i < end; i++) {
+            checkQuota(srcs[i].remaining());
+            throttle.beforeWrite(srcs[i].remaining());
             total += byteChannel.write(srcs[i]);
         }
         return total;
     }
 
+    /**
+     * Gather the sources into a pooled buffer, writing it each time it fills.
+     */
+    private long gatheredWrite(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        val wanted = remaining(srcs, offset, length);
+        if (wanted == 0) {
+            return 0L;
+        }
+        checkQuota(wanted);
+        throttle.beforeWrite(wanted);
+        long total = 0L;
+        try (BufferPool.Lease lease = pool.acquire((int) Math.min(wanted, DirectBufferPool.MAX_POOLED_CAPACITY))) {
+            val buffer = lease.buffer();
+            val capacity = buffer.limit();
+            final int end = offset + length;
+            int i = offset;
+            while (i < end) {
+                buffer.clear()
+                      .limit(capacity);
+                for (; i < end && buffer.hasRemaining(); i++) {
+                    transfer(srcs[i], buffer);
+                    if (srcs[i].hasRemaining()) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += byteChannel.write(buffer);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Copy as much as fits from one buffer to another.
+     */
+    private static void transfer(final ByteBuffer from, final ByteBuffer to) {
+        val count = Math.min(from.remaining(), to.remaining());
+        val slice = from.duplicate();
+        slice.limit(slice.position() + count);
+        to.put(slice);
+        from.position(from.position() + count);
+    }
+
+    private static long remaining(final ByteBuffer[] buffers, final int offset, final int length) {
+        long remaining = 0L;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            remaining += buffers[i].remaining();
+        }
+        return remaining;
+    }
+
     @Override
     public long position() throws IOException {
         log.trace("position()");
@@ -130,7 +355,7 @@ class S3FileChannel extends FileChannel {
     @Override
     public FileChannel position(final long newPosition) throws IOException {
         log.trace("position({})", newPosition);
-        return new S3FileChannel(byteChannel.position(newPosition));
+        return new S3FileChannel(byteChannel.position(newPosition), throttle, pool, null, upload);
     }
 
     @Override
@@ -142,7 +367,7 @@ class S3FileChannel extends FileChannel {
     @Override
     public FileChannel truncate(final long size) throws IOException {
         log.trace("truncate({})", size);
-        return new S3FileChannel(byteChannel.truncate(size));
+        return new S3FileChannel(byteChannel.truncate(size), throttle, pool, null, upload);
     }
 
     @Override
@@ -184,6 +409,21 @@ class S3FileChannel extends FileChannel {
     @Override
     protected void implCloseChannel() throws IOException {
         log.trace("implCloseChannel()");
-        byteChannel.close();
+        try {
+            if (aborting && isUpload()) {
+                ((S3UploadChannel) byteChannel).abort();
+            } else if (isUpload()) {
+                val size = byteChannel.size();
+                byteChannel.close();
+                upload.completed(size);
+            } else {
+                byteChannel.close();
+            }
+        } finally {
+            upload.abandoned();
+            if (transfers != null) {
+                transfers.closed(this);
+            }
+        }
     }
 }
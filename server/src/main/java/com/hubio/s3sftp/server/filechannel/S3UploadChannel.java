@@ -0,0 +1,266 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3SeekableByteChannel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.tika.Tika;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An {@link S3SeekableByteChannel} whose upload may be aborted.
+ *
+ * <p>Writes are spooled to a local file, which is uploaded when the channel is closed. Closing a channel that has
+ * been aborted deletes the local file without uploading it, so that a partly written object is never stored. The
+ * upload is put from the local file itself, so the client can read it again should the request be retried.</p>
+ *
+ * <p>The checksums of an upload written from start to end are computed as it is written, and stored with the object in
+ * its user metadata, see {@link ObjectChecksums}.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class S3UploadChannel extends S3SeekableByteChannel {
+
+    private static final Tika TIKA = new Tika();
+
+    /**
+     * The local file of an {@link S3SeekableByteChannel}, which s3fs doesn't otherwise expose.
+     */
+    private static final Field LOCAL_FILE = localFileField();
+
+    private final S3Path path;
+
+    private final Path localFile;
+
+    /**
+     * The size of the object being replaced, or 0 if there is none.
+     */
+    @Getter
+    private final long previousSize;
+
+    /**
+     * Whether there was an object being replaced, which may have been empty.
+     */
+    @Getter
+    private final boolean existed;
+
+    private final boolean deleteOnClose;
+
+    /**
+     * Whether the caller may read from the channel, as well as write to it.
+     */
+    private final boolean readable;
+
+    /**
+     * Whether the local file can be read back to upload it with its checksums. A file opened for appending can't be,
+     * and is uploaded without them.
+     */
+    private final boolean checksummed;
+
+    private final UploadChecksums checksums = new UploadChecksums();
+
+    private volatile boolean aborted;
+
+    /**
+     * Constructor.
+     *
+     * <p>The object being replaced is opened without truncating it, so that its size is known for the quota, and is
+     * then truncated if the options ask for it. The local file is opened for reading as well, so that it can be read
+     * back to upload it.</p>
+     *
+     * @param path    The path of the object to write
+     * @param options The options to use when opening the object
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    S3UploadChannel(final S3Path path, final Set<? extends OpenOption> options) throws IOException {
+        super(path, localOptions(options));
+        this.path = path;
+        this.localFile = localFile(this);
+        this.deleteOnClose = options.contains(StandardOpenOption.DELETE_ON_CLOSE);
+        this.readable = options.contains(StandardOpenOption.READ);
+        this.checksummed = !options.contains(StandardOpenOption.APPEND);
+        this.previousSize = size();
+        this.existed = previousSize > 0L || objectExists(path);
+        if (options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            truncate(0L);
+        }
+    }
+
+    /**
+     * Whether the object is in S3, which only needs asking when the local copy of it is empty, as s3fs doesn't say
+     * whether it found one to download.
+     */
+    private static boolean objectExists(final S3Path path) {
+        return path.getFileSystem()
+                   .getClient()
+                   .doesObjectExist(path.getFileStore()
+                                        .name(), path.getKey());
+    }
+
+    private static Field localFileField() {
+        try {
+            val field = S3SeekableByteChannel.class.getDeclaredField("tempFile");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported s3fs version: no local file for uploads", e);
+        }
+    }
+
+    private static Path localFile(final S3SeekableByteChannel channel) {
+        try {
+            return (Path) LOCAL_FILE.get(channel);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unsupported s3fs version: no local file for uploads", e);
+        }
+    }
+
+    private static Set<? extends OpenOption> localOptions(final Set<? extends OpenOption> options) {
+        val local = new HashSet<OpenOption>(options);
+        local.remove(StandardOpenOption.TRUNCATE_EXISTING);
+        if (!local.contains(StandardOpenOption.APPEND)) {
+            local.add(StandardOpenOption.READ);
+        }
+        return local;
+    }
+
+    /**
+     * Starts the upload against the quota, aborting it if the quota refuses it.
+     *
+     * @param quota The quota to upload within
+     *
+     * @return the upload
+     *
+     * @throws IOException if the quota refuses the upload
+     */
+    ChannelQuota.Upload reserve(final ChannelQuota quota) throws IOException {
+        try {
+            return quota.open(path, previousSize, existed);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the channel without uploading what has been written.
+     *
+     * @throws IOException if the local file could not be deleted
+     */
+    void abort() throws IOException {
+        aborted = true;
+        close();
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        val position = position();
+        val written = src.duplicate();
+        val count = super.write(src);
+        written.limit(written.position() + count);
+        checksums.written(position, written);
+        return count;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        if (!readable) {
+            throw new NonReadableChannelException();
+        }
+        return super.read(dst);
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size) throws IOException {
+        super.truncate(size);
+        checksums.truncated(size);
+        return this;
+    }
+
+    /**
+     * Uploads what has been written, with its checksums, unless aborted, then deletes the local file.
+     *
+     * @throws IOException if the upload fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (isOpen() && !aborted && !deleteOnClose && checksummed) {
+                upload();
+            }
+        } finally {
+            super.close();
+        }
+    }
+
+    private void upload() throws IOException {
+        val size = size();
+        val metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        metadata.setUserMetadata(checksums.toUserMetadata(size));
+        try (InputStream content = new BufferedInputStream(Files.newInputStream(localFile))) {
+            metadata.setContentType(TIKA.detect(content, path.getFileName()
+                                                             .toString()));
+        }
+        val request = new PutObjectRequest(path.getFileStore()
+                                               .name(), path.getKey(), localFile.toFile()).withMetadata(metadata);
+        path.getFileSystem()
+            .getClient()
+            .putObject(request);
+    }
+
+    /**
+     * Uploads a file opened for appending, any other upload having been made by {@link #close()}.
+     *
+     * @throws IOException if the upload fails
+     */
+    @Override
+    protected void sync() throws IOException {
+        if (aborted) {
+            log.warn("Upload of {} aborted", path);
+        } else if (!checksummed) {
+            super.sync();
+        }
+    }
+}
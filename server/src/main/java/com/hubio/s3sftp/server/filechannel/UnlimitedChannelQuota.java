@@ -0,0 +1,73 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.upplication.s3fs.S3Path;
+
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * {@link ChannelQuota} that never refuses an upload.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+enum UnlimitedChannelQuota implements ChannelQuota, ChannelQuota.Upload {
+
+    INSTANCE;
+
+    @Override
+    public Upload open(final S3Path path, final long previousSize, final boolean existed) {
+        return this;
+    }
+
+    @Override
+    public Upload copy(final S3Path path, final long size, final long previousSize, final boolean existed) {
+        return this;
+    }
+
+    @Override
+    public boolean limits(final S3Path path) {
+        return false;
+    }
+
+    @Override
+    public void deleted(final S3Path path, final long size) {
+        // not counted
+    }
+
+    @Override
+    public void beforeWrite(final SeekableByteChannel channel, final long bytes) {
+        // no limit
+    }
+
+    @Override
+    public void completed(final long size) {
+        // not counted
+    }
+
+    @Override
+    public void abandoned() {
+        // nothing reserved
+    }
+}
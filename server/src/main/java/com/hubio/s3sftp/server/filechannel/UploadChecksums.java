@@ -0,0 +1,119 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.util.BinaryUtils;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The checksums of an upload, computed as it is written.
+ *
+ * <p>Only uploads written from start to end, as SFTP clients write them, can be checksummed this way. Once a write
+ * goes anywhere other than the end of what has been checksummed, or the upload is truncated below it, no checksums
+ * are given.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class UploadChecksums {
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+
+    private long checksummed;
+
+    private boolean sequential = true;
+
+    /**
+     * Constructor.
+     */
+    UploadChecksums() {
+        digests.put(ObjectChecksums.MD5, digest("MD5"));
+        digests.put(ObjectChecksums.SHA256, digest("SHA-256"));
+    }
+
+    private static MessageDigest digest(final String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support MD5 and SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds bytes that have been written to the checksums.
+     *
+     * @param position The position they were written at
+     * @param written  The bytes written, between the buffer's position and limit
+     */
+    void written(final long position, final ByteBuffer written) {
+        if (!sequential) {
+            return;
+        }
+        if (position != checksummed) {
+            sequential = false;
+            return;
+        }
+        val length = written.remaining();
+        digests.values()
+               .forEach(digest -> digest.update(written.duplicate()));
+        checksummed += length;
+    }
+
+    /**
+     * Notes that the upload has been truncated.
+     *
+     * @param size The size it was truncated to
+     */
+    void truncated(final long size) {
+        if (size < checksummed) {
+            sequential = false;
+        }
+    }
+
+    /**
+     * Returns the checksums as user metadata for the object, in hex.
+     *
+     * @param size The size of the upload
+     *
+     * @return the user metadata, empty if the upload was not written from start to end
+     */
+    Map<String, String> toUserMetadata(final long size) {
+        if (!sequential || size != checksummed) {
+            return Collections.emptyMap();
+        }
+        val userMetadata = new HashMap<String, String>();
+        digests.forEach((algorithm, digest) -> userMetadata.put(ObjectChecksums.METADATA_PREFIX + algorithm,
+                                                                BinaryUtils.toHex(digest.digest())
+                                                               ));
+        return userMetadata;
+    }
+}
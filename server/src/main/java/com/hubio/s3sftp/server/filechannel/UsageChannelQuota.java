@@ -0,0 +1,170 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.SessionQuota;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.hubio.s3sftp.server.usage.PrefixUsage;
+import com.upplication.s3fs.S3Path;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystemException;
+
+/**
+ * Default implementation of {@link ChannelQuota}, reserving space against the counts of a {@link BucketUsage}.
+ *
+ * <p>Space is reserved {@value #RESERVE_AHEAD} bytes ahead of each upload, so that most writes are checked without
+ * taking the lock on the counts.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class UsageChannelQuota implements ChannelQuota {
+
+    private static final long RESERVE_AHEAD = 1024L * 1024L;
+
+    private final BucketUsage usage;
+
+    private final String prefix;
+
+    private final long maxBytes;
+
+    private final long maxObjects;
+
+    @Override
+    public Upload open(final S3Path path, final long previousSize, final boolean existed)
+            throws FileSystemException {
+        if (!limits(path)) {
+            return UnlimitedChannelQuota.INSTANCE;
+        }
+        val prefixUsage = track(path);
+        // a replaced object is already counted
+        val objects = existed ? 0L : 1L;
+        if (!prefixUsage.tryReserve(0L, objects, maxBytes, maxObjects)) {
+            throw new FileSystemException(path.toString(), null, "Object quota exceeded");
+        }
+        return new QuotaUpload(path, prefixUsage, previousSize, objects);
+    }
+
+    @Override
+    public Upload copy(final S3Path path, final long size, final long previousSize, final boolean existed)
+            throws FileSystemException {
+        if (!limits(path)) {
+            return UnlimitedChannelQuota.INSTANCE;
+        }
+        val prefixUsage = track(path);
+        val growth = Math.max(0L, size - previousSize);
+        val objects = existed ? 0L : 1L;
+        if (!prefixUsage.tryReserve(growth, objects, maxBytes, maxObjects)) {
+            throw new FileSystemException(path.toString(), null, "Quota exceeded");
+        }
+        val upload = new QuotaUpload(path, prefixUsage, previousSize, objects);
+        upload.reservedBytes = growth;
+        return upload;
+    }
+
+    @Override
+    public boolean limits(final S3Path path) {
+        return path.getKey()
+                   .startsWith(prefix);
+    }
+
+    @Override
+    public void deleted(final S3Path path, final long size) {
+        if (limits(path)) {
+            track(path).add(-size, -1L);
+        }
+    }
+
+    private PrefixUsage track(final S3Path path) {
+        val client = path.getFileSystem()
+                         .getClient();
+        val bucket = path.getFileStore()
+                         .name();
+        return usage.track(client, bucket, prefix);
+    }
+
+    /**
+     * The space reserved for one upload.
+     */
+    @RequiredArgsConstructor
+    private final class QuotaUpload implements Upload {
+
+        private final S3Path path;
+
+        private final PrefixUsage prefixUsage;
+
+        private final long previousSize;
+
+        private final long objects;
+
+        /**
+         * The bytes reserved for the upload to grow beyond the previous size of the object.
+         */
+        private long reservedBytes;
+
+        private boolean finished;
+
+        @Override
+        public synchronized void beforeWrite(final SeekableByteChannel channel, final long bytes) throws IOException {
+            if (maxBytes == SessionQuota.UNLIMITED) {
+                // only the number of objects is limited
+                return;
+            }
+            val growth = channel.position() + bytes - previousSize;
+            if (growth <= reservedBytes) {
+                return;
+            }
+            val needed = growth - reservedBytes;
+            val ahead = Math.max(needed, RESERVE_AHEAD);
+            if (prefixUsage.tryReserve(ahead, 0L, maxBytes, maxObjects)) {
+                reservedBytes += ahead;
+            } else if (ahead > needed && prefixUsage.tryReserve(needed, 0L, maxBytes, maxObjects)) {
+                reservedBytes += needed;
+            } else {
+                throw new FileSystemException(path.toString(), null, "Quota exceeded");
+            }
+        }
+
+        @Override
+        public synchronized void completed(final long size) {
+            if (!finished) {
+                finished = true;
+                prefixUsage.release(reservedBytes, objects);
+                prefixUsage.add(size - previousSize, objects);
+            }
+        }
+
+        @Override
+        public synchronized void abandoned() {
+            if (!finished) {
+                finished = true;
+                prefixUsage.release(reservedBytes, objects);
+            }
+        }
+    }
+}
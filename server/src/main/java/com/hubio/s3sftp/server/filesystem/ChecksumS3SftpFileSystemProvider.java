@@ -0,0 +1,82 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.AmazonServiceException;
+import com.hubio.s3sftp.server.filechannel.ObjectChecksums;
+import com.upplication.s3fs.S3Path;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds the {@link ObjectChecksums#ATTRIBUTES checksum} attributes, read from the object's metadata with a single HEAD
+ * request, without reading its content.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class ChecksumS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
+
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The provider to add the checksum attributes to
+     */
+    ChecksumS3SftpFileSystemProvider(final S3SftpFileSystemProvider provider) {
+        super(provider);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path, final String attributes, final LinkOption... options)
+            throws IOException {
+        if (!ObjectChecksums.ATTRIBUTES.equals(attributes) || !(path instanceof S3Path)) {
+            return super.readAttributes(path, attributes, options);
+        }
+        log.trace("readAttributes({}, {}, {})", path, attributes, options);
+        val s3Path = (S3Path) path;
+        try {
+            val metadata = s3Path.getFileSystem()
+                                 .getClient()
+                                 .getObjectMetadata(s3Path.getFileStore()
+                                                          .name(), s3Path.getKey());
+            final Map<String, Object> checksums = new HashMap<>(ObjectChecksums.of(metadata));
+            checksums.put(ObjectChecksums.SIZE, metadata.getContentLength());
+            return checksums;
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                throw new NoSuchFileException(path.toString());
+            }
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.attribute.S3BasicFileAttributes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.file.AccessMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one S3 request between concurrent sessions asking for the same metadata.
+ *
+ * <p>When many sessions log in at once they read the attributes of, and list, the same folders. Reading attributes,
+ * checking access and listing a directory are each run once for the bucket and key at a time, however many sessions
+ * ask while the request is running, and the result, or failure, is given to all of them. Nothing is kept once the
+ * request completes.</p>
+ *
+ * <p>A listing is read in full before being shared, and each session is given its own paths for the entries, in its
+ * own filesystem, so the shared listing may be filtered differently by each.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@SuppressWarnings("classfanoutcomplexity")
+class CoalescingS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
+
+    private static final DirectoryStream.Filter<Path> ALL = entry -> true;
+
+    private final SingleFlight<String, Object> flights;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The provider to coalesce the requests of
+     * @param flights  The requests running, shared by the providers for every session
+     */
+    CoalescingS3SftpFileSystemProvider(
+            final S3SftpFileSystemProvider provider, final SingleFlight<String, Object> flights
+                                      ) {
+        super(provider);
+        this.flights = flights;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(
+            final Path path, final Class<A> type, final LinkOption... options
+                                                           ) throws IOException {
+        if (!(path instanceof S3Path)) {
+            return super.readAttributes(path, type, options);
+        }
+        val key = key("attributes:" + type.getName() + Arrays.toString(options), (S3Path) path);
+        return (A) flights.execute(key, () -> super.readAttributes(path, type, options));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> readAttributes(
+            final Path path, final String attributes, final LinkOption... options
+                                             ) throws IOException {
+        if (!(path instanceof S3Path)) {
+            return super.readAttributes(path, attributes, options);
+        }
+        val key = key("attributes:" + attributes + Arrays.toString(options), (S3Path) path);
+        return new HashMap<>((Map<String, Object>) flights.execute(key, () -> super.readAttributes(path, attributes,
+                                                                                                     options
+                                                                                                    )));
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        if (!(path instanceof S3Path)) {
+            super.checkAccess(path, modes);
+            return;
+        }
+        flights.execute(key("access:" + Arrays.toString(modes), (S3Path) path), () -> {
+            super.checkAccess(path, modes);
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DirectoryStream<Path> newDirectoryStream(
+            final Path dir, final DirectoryStream.Filter<? super Path> filter
+                                                   ) throws IOException {
+        if (!(dir instanceof S3Path)) {
+            return super.newDirectoryStream(dir, filter);
+        }
+        val entries = (List<Entry>) flights.execute(key("list", (S3Path) dir), () -> list(dir));
+        val paths = new ArrayList<Path>(entries.size());
+        for (final Entry entry : entries) {
+            val path = entry.resolve(dir);
+            if (filter.accept(path)) {
+                paths.add(path);
+            }
+        }
+        return new ListedDirectoryStream(paths);
+    }
+
+    private List<Entry> list(final Path dir) throws IOException {
+        log.trace("list({})", dir);
+        val entries = new ArrayList<Entry>();
+        try (DirectoryStream<Path> stream = super.newDirectoryStream(dir, ALL)) {
+            for (final Path path : stream) {
+                S3BasicFileAttributes attributes = null;
+                if (path instanceof S3Path) {
+                    attributes = ((S3Path) path).getFileAttributes();
+                }
+                entries.add(new Entry(path.getFileName()
+                                          .toString(), attributes));
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    private static String key(final String operation, final S3Path path) {
+        return operation + " " + path.getFileSystem()
+                                     .getEndpoint() + "/" + path.getFileStore()
+                                                                .name() + "/" + path.getKey();
+    }
+
+    /**
+     * An entry in a shared listing.
+     */
+    @RequiredArgsConstructor
+    private static final class Entry {
+
+        private final String name;
+
+        private final S3BasicFileAttributes attributes;
+
+        /**
+         * The path of the entry within a session's directory, with the attributes read by the listing.
+         */
+        Path resolve(final Path dir) {
+            val path = dir.resolve(name);
+            if (attributes != null && path instanceof S3Path) {
+                ((S3Path) path).setFileAttributes(attributes);
+            }
+            return path;
+        }
+    }
+
+    /**
+     * A directory stream over entries already listed.
+     */
+    @RequiredArgsConstructor
+    private static final class ListedDirectoryStream implements DirectoryStream<Path> {
+
+        private final List<Path> paths;
+
+        private boolean iterated;
+
+        @Override
+        public Iterator<Path> iterator() {
+            if (iterated) {
+                throw new IllegalStateException("Iterator already obtained");
+            }
+            iterated = true;
+            return Collections.unmodifiableList(paths)
+                              .iterator();
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
@@ -24,9 +24,18 @@
 package com.hubio.s3sftp.server.filesystem;
 
 import com.hubio.s3sftp.server.S3PathEnhancer;
+import com.hubio.s3sftp.server.SessionQuota;
+import com.hubio.s3sftp.server.SftpSession;
+import com.hubio.s3sftp.server.filechannel.ChannelQuota;
+import com.hubio.s3sftp.server.filechannel.ChannelResources;
+import com.hubio.s3sftp.server.filechannel.ChannelThrottle;
+import com.hubio.s3sftp.server.ratelimit.Bandwidth;
+import com.hubio.s3sftp.server.usage.BucketUsage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 import org.apache.sshd.common.session.Session;
+import org.apache.sshd.server.session.ServerSession;
 
 /**
  * Factory for creating an {@link S3SftpFileSystemProvider}.
@@ -38,17 +47,80 @@ import org.apache.sshd.common.session.Session;
 @RequiredArgsConstructor
 class DefaultS3SftpFileSystemProviderFactory implements S3SftpFileSystemProviderFactory {
 
+    private final ProviderResources resources;
+
+    private final SingleFlight<String, Object> flights = new SingleFlight<>();
+
     @Override
     public S3SftpFileSystemProvider createWith(final S3PathEnhancer s3PathEnhancer, final Session session) {
         log.trace("createWith({})", s3PathEnhancer);
-        S3SftpFileSystemProvider provider = new DelegatableS3FileSystemProvider(session);
-        provider = new S3SftpFileSystemProviderDecorator(provider);
-        provider = new FileChannelS3SftpFileSystemProvider(provider);
+        val delegatable = new DelegatableS3FileSystemProvider(session);
+        delegatable.setRequestMetricCollector(resources.getMetricsRegistry()
+                                                       .s3Requests());
+        delegatable.setS3Admission(resources.getS3Admission());
+        S3SftpFileSystemProvider provider = new S3SftpFileSystemProviderDecorator(delegatable);
+        val quota = quotaFor(session);
+        val channelResources = ChannelResources.builder()
+                                               .throttle(throttleFor(session))
+                                               .objectCache(resources.getObjectCache())
+                                               .bufferPool(resources.getBufferPool())
+                                               .openTransfers(resources.getOpenTransfers())
+                                               .quota(quota)
+                                               .workScheduler(resources.getWorkScheduler())
+                                               .username(session.getUsername())
+                                               .build();
+        provider = new FileChannelS3SftpFileSystemProvider(provider, channelResources);
+        if (quota != ChannelQuota.unlimited()) {
+            provider = new QuotaS3SftpFileSystemProvider(provider, quota);
+        }
+        provider = new ChecksumS3SftpFileSystemProvider(provider);
+        provider = new ScheduledS3SftpFileSystemProvider(provider, resources.getWorkScheduler());
+        provider = new CoalescingS3SftpFileSystemProvider(provider, flights);
         provider = new PathEnhancingS3SftpFileSystemProvider(provider, s3PathEnhancer);
         provider = new PosixPermissionsS3SftpFileSystemProvider(provider);
         provider = new JailedS3SftpFileSystemProvider(provider);
         provider = new PerUserS3SftpFileSystemProvider(provider);
+        provider = new InstrumentedS3SftpFileSystemProvider(provider, resources.getMetricsRegistry(),
+                                                            session.getUsername()
+        );
         provider = new SingleBucketS3SftpFileSystemProvider(provider);
         return provider;
     }
+
+    /**
+     * The throttle for the session's user. Filesystems, and so their providers, are shared by all of the user's
+     * sessions, so the limit applies to the user as a whole.
+     */
+    private ChannelThrottle throttleFor(final Session session) {
+        if (!(session instanceof ServerSession)) {
+            return ChannelThrottle.unlimited();
+        }
+        final Bandwidth bandwidth = resources.getSessionBandwidth()
+                                             .getBandwidth(SftpSession.of((ServerSession) session));
+        log.debug("Bandwidth for {}: {}", session.getUsername(), bandwidth);
+        return ChannelThrottle.of(bandwidth, session.getUsername());
+    }
+
+    /**
+     * The quota for the session's user, on the objects under their home directory. Like the throttle, it applies to
+     * the user as a whole.
+     */
+    private ChannelQuota quotaFor(final Session session) {
+        if (!(session instanceof ServerSession)) {
+            return ChannelQuota.unlimited();
+        }
+        val sftpSession = SftpSession.of((ServerSession) session);
+        val sessionQuota = resources.getSessionQuota();
+        val maxBytes = sessionQuota.getQuota(sftpSession);
+        val maxObjects = sessionQuota.getObjectQuota(sftpSession);
+        if (maxBytes == SessionQuota.UNLIMITED && maxObjects == SessionQuota.UNLIMITED) {
+            return ChannelQuota.unlimited();
+        }
+        val prefix = BucketUsage.homePrefix(resources.getSessionHome()
+                                                     .getHomePath(sftpSession));
+        log.debug("Quota for {}: {} bytes and {} objects under {}", session.getUsername(), maxBytes, maxObjects,
+                  prefix
+                 );
+        return ChannelQuota.of(resources.getBucketUsage(), prefix, maxBytes, maxObjects);
+    }
 }
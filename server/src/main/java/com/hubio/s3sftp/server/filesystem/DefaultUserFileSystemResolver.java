@@ -24,6 +24,7 @@
 package com.hubio.s3sftp.server.filesystem;
 
 import com.upplication.s3fs.S3FileSystem;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
@@ -42,20 +43,33 @@ import java.util.Optional;
 @Slf4j
 class DefaultUserFileSystemResolver implements UserFileSystemResolver {
 
-    private Map<String, WeakReference<S3FileSystem>> map = new HashMap<>();
+    private Map<Key, WeakReference<S3FileSystem>> map = new HashMap<>();
 
     @Override
-    public Optional<S3FileSystem> resolve(final String username) {
-        log.debug("resolve({})", username);
-        val fileSystem = Optional.ofNullable(map.get(username))
+    public Optional<S3FileSystem> resolve(final String username, final String bucket, final String jail) {
+        log.debug("resolve({}, {}, {})", username, bucket, jail);
+        val fileSystem = Optional.ofNullable(map.get(new Key(username, bucket, jail)))
                                  .map(WeakReference::get);
         log.trace(" <= filesystem: {}", fileSystem);
         return fileSystem;
     }
 
     @Override
-    public void put(final String username, final S3FileSystem fileSystem) {
-        log.trace("put({}, {})", username, fileSystem);
-        map.put(username, new WeakReference<>(fileSystem));
+    public void put(final String username, final String bucket, final String jail, final S3FileSystem fileSystem) {
+        log.trace("put({}, {}, {}, {})", username, bucket, jail, fileSystem);
+        map.put(new Key(username, bucket, jail), new WeakReference<>(fileSystem));
+    }
+
+    /**
+     * Identifies the filesystem shared by a user's sessions in one bucket and jail.
+     */
+    @Value
+    private static class Key {
+
+        private final String username;
+
+        private final String bucket;
+
+        private final String jail;
     }
 }
@@ -23,7 +23,9 @@
 
 package com.hubio.s3sftp.server.filesystem;
 
+import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.services.s3.AmazonS3;
+import com.hubio.s3sftp.server.admission.S3Admission;
 import com.upplication.s3fs.AmazonS3Factory;
 import com.upplication.s3fs.S3FileSystem;
 import com.upplication.s3fs.S3FileSystemProvider;
@@ -58,6 +60,19 @@ class DelegatableS3FileSystemProvider extends S3FileSystemProvider implements S3
     @Setter
     private AmazonS3 amazonS3;
 
+    /**
+     * The collector to give the S3 clients this provider creates, unless the filesystem's properties name an
+     * {@link AmazonS3Factory} of their own.
+     */
+    @Setter
+    private RequestMetricCollector requestMetricCollector = RequestMetricCollector.NONE;
+
+    /**
+     * The admission to wrap the S3 clients this provider creates in.
+     */
+    @Setter
+    private S3Admission s3Admission = S3Admission.none();
+
     @Override
     public String getFileSystemKey(final URI uri, final Properties props) {
         return super.getFileSystemKey(uri, props);
@@ -98,17 +113,46 @@ class DelegatableS3FileSystemProvider extends S3FileSystemProvider implements S3
         return Collections.unmodifiableList(new ArrayList<>(getFilesystems().values()));
     }
 
+    /**
+     * Creates the S3 client for a filesystem, subject to the admission.
+     *
+     * <p>When the admission retries requests itself, the client is told not to, unless the filesystem's properties or
+     * the system properties say otherwise, so that a throttled request isn't retried by both.</p>
+     *
+     * @param uri   The filesystem's URI
+     * @param props The filesystem's properties
+     *
+     * @return the client
+     */
     @Override
     public AmazonS3 getAmazonS3(final URI uri, final Properties props) {
         if (amazonS3 != null) {
             return amazonS3;
         }
-        return super.getAmazonS3(uri, props);
+        val retriesNamed = props.containsKey(AmazonS3Factory.MAX_ERROR_RETRY)
+                           || overloadPropertiesWithSystemProps(props, AmazonS3Factory.MAX_ERROR_RETRY);
+        if (s3Admission.retries() && !retriesNamed) {
+            props.setProperty(AmazonS3Factory.MAX_ERROR_RETRY, "0");
+        }
+        return s3Admission.wrap(super.getAmazonS3(uri, props));
     }
 
+    /**
+     * Selects the factory named in the filesystem's properties or, as s3fs would, in the system properties, otherwise
+     * one that gives its clients the request metric collector.
+     *
+     * @param props The filesystem's properties
+     *
+     * @return the factory
+     */
     @Override
     public AmazonS3Factory getAmazonS3Factory(final Properties props) {
-        return super.getAmazonS3Factory(props);
+        val named = props.containsKey(AMAZON_S3_FACTORY_CLASS)
+                    || overloadPropertiesWithSystemProps(props, AMAZON_S3_FACTORY_CLASS);
+        if (named) {
+            return super.getAmazonS3Factory(props);
+        }
+        return new MeteredAmazonS3ClientFactory(requestMetricCollector);
     }
 
     @Override
@@ -23,6 +23,7 @@
 
 package com.hubio.s3sftp.server.filesystem;
 
+import com.hubio.s3sftp.server.filechannel.ChannelResources;
 import com.hubio.s3sftp.server.filechannel.FileChannelFactory;
 import com.upplication.s3fs.S3Path;
 import lombok.extern.slf4j.Slf4j;
@@ -42,13 +43,29 @@ import java.util.Set;
 @Slf4j
 class FileChannelS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
 
+    private final ChannelResources resources;
+
     /**
      * Constructor.
      *
      * @param provider The provider to restore {@link FileChannel} support to.
      */
     FileChannelS3SftpFileSystemProvider(final S3SftpFileSystemProvider provider) {
+        this(provider, ChannelResources.builder()
+                                       .build());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param provider  The provider to restore {@link FileChannel} support to.
+     * @param resources The resources to open the file channels through
+     */
+    FileChannelS3SftpFileSystemProvider(
+            final S3SftpFileSystemProvider provider, final ChannelResources resources
+                                       ) {
         super(provider);
+        this.resources = resources;
     }
 
     @Override
@@ -57,7 +74,7 @@ class FileChannelS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecora
                                      ) throws IOException {
         log.trace("newFileChannel({}, {}, {})", path, options, attrs);
         if (path instanceof S3Path) {
-            return FileChannelFactory.of((S3Path) path, options);
+            return FileChannelFactory.of((S3Path) path, options, resources);
         }
         throw new IllegalArgumentException("path must be an instance of S3Path");
     }
@@ -47,7 +47,19 @@ public interface FileSystemProviderFactory {
      * @return a factory for creating an S3Sftp Filesystem
      */
     static S3SftpFileSystemProviderFactory s3SftpProviderFactory() {
-        return new DefaultS3SftpFileSystemProviderFactory();
+        return s3SftpProviderFactory(ProviderResources.builder()
+                                                      .build());
+    }
+
+    /**
+     * Create a default factory for creating S3Sftp Filesystems that share the resources.
+     *
+     * @param resources The resources shared by the filesystems for every session
+     *
+     * @return a factory for creating an S3Sftp Filesystem
+     */
+    static S3SftpFileSystemProviderFactory s3SftpProviderFactory(final ProviderResources resources) {
+        return new DefaultS3SftpFileSystemProviderFactory(resources);
     }
 
     /**
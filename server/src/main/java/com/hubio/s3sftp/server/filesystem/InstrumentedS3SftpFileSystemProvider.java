@@ -0,0 +1,504 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import com.hubio.s3sftp.server.metrics.OperationMetrics;
+import com.upplication.s3fs.S3FileSystem;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Records the count, errors and latency of each filesystem operation in a {@link MetricsRegistry}.
+ *
+ * <p>The {@link OperationMetrics} for each operation are looked up once, when the provider is created, so each call
+ * only adds two reads of the clock and the cost of recording. Methods that only handle configuration, such as
+ * {@link #overloadProperties(Properties, Map)}, are not recorded.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@SuppressWarnings({"classfanoutcomplexity", "methodcount"})
+class InstrumentedS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
+
+    private final OperationMetrics[] metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param provider        The provider to record the operations of
+     * @param metricsRegistry The registry to record the operations in
+     * @param username        The user the provider performs operations for
+     */
+    InstrumentedS3SftpFileSystemProvider(
+            final S3SftpFileSystemProvider provider, final MetricsRegistry metricsRegistry, final String username
+                                        ) {
+        super(provider);
+        final Operation[] operations = Operation.values();
+        metrics = new OperationMetrics[operations.length];
+        for (final Operation operation : operations) {
+            metrics[operation.ordinal()] = metricsRegistry.operation(operation.getName(), username);
+        }
+    }
+
+    private void record(final Operation operation, final long start, final boolean failed) {
+        metrics[operation.ordinal()].record(System.nanoTime() - start, failed);
+    }
+
+    @Override
+    public FileSystem getFileSystem(final URI uri, final Map<String, ?> env) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final FileSystem result = super.getFileSystem(uri, env);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.GET_FILE_SYSTEM, start, failed);
+        }
+    }
+
+    @Override
+    public boolean fileSystemExists(final URI uri, final Map<String, ?> env) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = super.fileSystemExists(uri, env);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.FILE_SYSTEM_EXISTS, start, failed);
+        }
+    }
+
+    @Override
+    public S3FileSystem newFileSystem(final URI uri, final Properties props) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final S3FileSystem result = super.newFileSystem(uri, props);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_FILE_SYSTEM, start, failed);
+        }
+    }
+
+    @Override
+    public FileSystem newFileSystem(final Path path, final Map<String, ?> env) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final FileSystem result = super.newFileSystem(path, env);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_FILE_SYSTEM_FROM_PATH, start, failed);
+        }
+    }
+
+    @Override
+    public AmazonS3 getAmazonS3(final URI uri, final Properties props) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final AmazonS3 result = super.getAmazonS3(uri, props);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.GET_AMAZON_S3, start, failed);
+        }
+    }
+
+    @Override
+    public Path getPath(final URI uri) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Path result = super.getPath(uri);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.GET_PATH, start, failed);
+        }
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(
+            final Path dir, final DirectoryStream.Filter<? super Path> filter
+                                                   ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final DirectoryStream<Path> result = super.newDirectoryStream(dir, filter);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_DIRECTORY_STREAM, start, failed);
+        }
+    }
+
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final InputStream result = super.newInputStream(path, options);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_INPUT_STREAM, start, failed);
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final OutputStream result = super.newOutputStream(path, options);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_OUTPUT_STREAM, start, failed);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(
+            final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>[] attrs
+                                             ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final SeekableByteChannel result = super.newByteChannel(path, options, attrs);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_BYTE_CHANNEL, start, failed);
+        }
+    }
+
+    @Override
+    public FileChannel newFileChannel(
+            final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs
+                                     ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final FileChannel result = super.newFileChannel(path, options, attrs);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_FILE_CHANNEL, start, failed);
+        }
+    }
+
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(
+            final Path path, final Set<? extends OpenOption> options, final ExecutorService executor,
+            final FileAttribute<?>[] attrs
+                                                             ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final AsynchronousFileChannel result = super.newAsynchronousFileChannel(path, options, executor, attrs);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.NEW_ASYNCHRONOUS_FILE_CHANNEL, start, failed);
+        }
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>[] attrs) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.createDirectory(dir, attrs);
+            failed = false;
+        } finally {
+            record(Operation.CREATE_DIRECTORY, start, failed);
+        }
+    }
+
+    @Override
+    public void createSymbolicLink(
+            final Path link, final Path target, final FileAttribute<?>[] attrs
+                                  ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.createSymbolicLink(link, target, attrs);
+            failed = false;
+        } finally {
+            record(Operation.CREATE_SYMBOLIC_LINK, start, failed);
+        }
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.createLink(link, existing);
+            failed = false;
+        } finally {
+            record(Operation.CREATE_LINK, start, failed);
+        }
+    }
+
+    @Override
+    public Path readSymbolicLink(final Path link) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Path result = super.readSymbolicLink(link);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.READ_SYMBOLIC_LINK, start, failed);
+        }
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.delete(path);
+            failed = false;
+        } finally {
+            record(Operation.DELETE, start, failed);
+        }
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = super.deleteIfExists(path);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.DELETE_IF_EXISTS, start, failed);
+        }
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.copy(source, target, options);
+            failed = false;
+        } finally {
+            record(Operation.COPY, start, failed);
+        }
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.move(source, target, options);
+            failed = false;
+        } finally {
+            record(Operation.MOVE, start, failed);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(final Path path1, final Path path2) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = super.isSameFile(path1, path2);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.IS_SAME_FILE, start, failed);
+        }
+    }
+
+    @Override
+    public boolean isHidden(final Path path) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = super.isHidden(path);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.IS_HIDDEN, start, failed);
+        }
+    }
+
+    @Override
+    public FileStore getFileStore(final Path path) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final FileStore result = super.getFileStore(path);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.GET_FILE_STORE, start, failed);
+        }
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.checkAccess(path, modes);
+            failed = false;
+        } finally {
+            record(Operation.CHECK_ACCESS, start, failed);
+        }
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(
+            final Path path, final Class<V> type, final LinkOption... options
+                                                               ) {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final V result = super.getFileAttributeView(path, type, options);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.GET_FILE_ATTRIBUTE_VIEW, start, failed);
+        }
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(
+            final Path path, final Class<A> type, final LinkOption... options
+                                                           ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final A result = super.readAttributes(path, type, options);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.READ_ATTRIBUTES, start, failed);
+        }
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(
+            final Path path, final String attributes, final LinkOption... options
+                                             ) throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Map<String, Object> result = super.readAttributes(path, attributes, options);
+            failed = false;
+            return result;
+        } finally {
+            record(Operation.READ_ATTRIBUTES_BY_NAME, start, failed);
+        }
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute, final Object value, final LinkOption... options)
+            throws IOException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            super.setAttribute(path, attribute, value, options);
+            failed = false;
+        } finally {
+            record(Operation.SET_ATTRIBUTE, start, failed);
+        }
+    }
+
+    /**
+     * The operations that are recorded.
+     */
+    @RequiredArgsConstructor
+    enum Operation {
+
+        GET_FILE_SYSTEM("getFileSystem"),
+        FILE_SYSTEM_EXISTS("fileSystemExists"),
+        NEW_FILE_SYSTEM("newFileSystem"),
+        NEW_FILE_SYSTEM_FROM_PATH("newFileSystemFromPath"),
+        GET_AMAZON_S3("getAmazonS3"),
+        GET_PATH("getPath"),
+        NEW_DIRECTORY_STREAM("newDirectoryStream"),
+        NEW_INPUT_STREAM("newInputStream"),
+        NEW_OUTPUT_STREAM("newOutputStream"),
+        NEW_BYTE_CHANNEL("newByteChannel"),
+        NEW_FILE_CHANNEL("newFileChannel"),
+        NEW_ASYNCHRONOUS_FILE_CHANNEL("newAsynchronousFileChannel"),
+        CREATE_DIRECTORY("createDirectory"),
+        CREATE_SYMBOLIC_LINK("createSymbolicLink"),
+        CREATE_LINK("createLink"),
+        READ_SYMBOLIC_LINK("readSymbolicLink"),
+        DELETE("delete"),
+        DELETE_IF_EXISTS("deleteIfExists"),
+        COPY("copy"),
+        MOVE("move"),
+        IS_SAME_FILE("isSameFile"),
+        IS_HIDDEN("isHidden"),
+        GET_FILE_STORE("getFileStore"),
+        CHECK_ACCESS("checkAccess"),
+        GET_FILE_ATTRIBUTE_VIEW("getFileAttributeView"),
+        READ_ATTRIBUTES("readAttributes"),
+        READ_ATTRIBUTES_BY_NAME("readAttributesByName"),
+        SET_ATTRIBUTE("setAttribute");
+
+        @Getter
+        private final String name;
+    }
+}
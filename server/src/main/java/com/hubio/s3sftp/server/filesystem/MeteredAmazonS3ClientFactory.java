@@ -0,0 +1,53 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.upplication.s3fs.AmazonS3ClientFactory;
+import com.upplication.s3fs.AmazonS3Factory;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Properties;
+
+/**
+ * {@link AmazonS3ClientFactory} that gives each client it creates a {@link RequestMetricCollector}.
+ *
+ * <p>s3fs only accepts a collector by class name, through {@link AmazonS3Factory#REQUEST_METRIC_COLLECTOR_CLASS}, which
+ * leaves no way to share the server's collector. A collector named that way still takes precedence.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class MeteredAmazonS3ClientFactory extends AmazonS3ClientFactory {
+
+    private final RequestMetricCollector requestMetricCollector;
+
+    @Override
+    protected RequestMetricCollector getRequestMetricsCollector(final Properties props) {
+        if (props.containsKey(REQUEST_METRIC_COLLECTOR_CLASS)) {
+            return super.getRequestMetricsCollector(props);
+        }
+        return requestMetricCollector;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.SessionBandwidth;
+import com.hubio.s3sftp.server.SessionHome;
+import com.hubio.s3sftp.server.SessionQuota;
+import com.hubio.s3sftp.server.admission.S3Admission;
+import com.hubio.s3sftp.server.filechannel.BufferPool;
+import com.hubio.s3sftp.server.filechannel.ObjectCache;
+import com.hubio.s3sftp.server.filechannel.OpenTransfers;
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Resources shared by the {@link S3SftpFileSystemProvider}s created for every session.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder
+public class ProviderResources {
+
+    @NonNull
+    private final WorkScheduler workScheduler;
+
+    @NonNull
+    private final SessionBandwidth sessionBandwidth;
+
+    @NonNull
+    private final MetricsRegistry metricsRegistry;
+
+    @NonNull
+    private final S3Admission s3Admission;
+
+    @NonNull
+    private final ObjectCache objectCache;
+
+    @NonNull
+    private final BufferPool bufferPool;
+
+    @NonNull
+    private final OpenTransfers openTransfers;
+
+    @NonNull
+    private final SessionQuota sessionQuota;
+
+    @NonNull
+    private final BucketUsage bucketUsage;
+
+    @NonNull
+    private final SessionHome sessionHome;
+
+    /**
+     * Builder for {@link ProviderResources}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>workScheduler: unlimited</li>
+     *     <li>sessionBandwidth: unlimited</li>
+     *     <li>metricsRegistry: records nothing</li>
+     *     <li>s3Admission: none, leaving retries to the S3 client</li>
+     *     <li>objectCache: none</li>
+     *     <li>bufferPool: none, allocating a heap buffer for each vectored read or write</li>
+     *     <li>openTransfers: a new, unshared, instance</li>
+     *     <li>sessionQuota: unlimited</li>
+     *     <li>bucketUsage: a new, unshared, instance listing every 5 minutes</li>
+     *     <li>sessionHome: the root of the bucket</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class ProviderResourcesBuilder {
+
+        private WorkScheduler workScheduler = WorkScheduler.unlimited();
+
+        private SessionBandwidth sessionBandwidth = SessionBandwidth.unlimited();
+
+        private MetricsRegistry metricsRegistry = MetricsRegistry.noop();
+
+        private S3Admission s3Admission = S3Admission.none();
+
+        private ObjectCache objectCache = ObjectCache.none();
+
+        private BufferPool bufferPool = BufferPool.none();
+
+        private OpenTransfers openTransfers = new OpenTransfers();
+
+        private SessionQuota sessionQuota = SessionQuota.unlimited();
+
+        private BucketUsage bucketUsage = BucketUsage.listedEvery(Duration.ofMinutes(5));
+
+        private SessionHome sessionHome = session -> "";
+
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.filechannel.ChannelQuota;
+import com.upplication.s3fs.S3Path;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Returns the space of deleted files to the quota, and checks copies and moves of files against it.
+ *
+ * <p>The size of each file is read before it is deleted, copied or moved, so each costs one more request to S3, and
+ * one more again to read the size of an object being replaced. Uploads are accounted for by the file channels.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class QuotaS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
+
+    private final ChannelQuota quota;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The provider to account for deletes through
+     * @param quota    The quota to return the space of deleted files to
+     */
+    QuotaS3SftpFileSystemProvider(final S3SftpFileSystemProvider provider, final ChannelQuota quota) {
+        super(provider);
+        this.quota = quota;
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        log.trace("delete({})", path);
+        if (!(path instanceof S3Path)) {
+            super.delete(path);
+            return;
+        }
+        val attributes = super.readAttributes(path, BasicFileAttributes.class);
+        super.delete(path);
+        if (attributes.isRegularFile()) {
+            quota.deleted((S3Path) path, attributes.size());
+        }
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        log.trace("copy({}, {}, {})", source, target, options);
+        if (!(source instanceof S3Path && target instanceof S3Path)) {
+            super.copy(source, target, options);
+            return;
+        }
+        val attributes = super.readAttributes(source, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            super.copy(source, target, options);
+            return;
+        }
+        val upload = reserve((S3Path) target, attributes.size(), options);
+        try {
+            super.copy(source, target, options);
+        } catch (IOException | RuntimeException e) {
+            upload.abandoned();
+            throw e;
+        }
+        upload.completed(attributes.size());
+    }
+
+    /**
+     * Moves the file, counting it against the quota if it is moved under the prefix and returning its space if it is
+     * moved out. A file renamed within the prefix only returns the space of any file it replaces.
+     */
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        log.trace("move({}, {}, {})", source, target, options);
+        if (!(source instanceof S3Path && target instanceof S3Path)) {
+            super.move(source, target, options);
+            return;
+        }
+        val attributes = super.readAttributes(source, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            super.move(source, target, options);
+            return;
+        }
+        val from = (S3Path) source;
+        val to = (S3Path) target;
+        if (quota.limits(from) && quota.limits(to)) {
+            val replaced = replacedSize(to, options);
+            super.move(source, target, options);
+            if (replaced != null) {
+                quota.deleted(to, replaced);
+            }
+            return;
+        }
+        val upload = reserve(to, attributes.size(), options);
+        try {
+            super.move(source, target, options);
+        } catch (IOException | RuntimeException e) {
+            upload.abandoned();
+            throw e;
+        }
+        upload.completed(attributes.size());
+        quota.deleted(from, attributes.size());
+    }
+
+    private ChannelQuota.Upload reserve(final S3Path target, final long size, final CopyOption... options)
+            throws IOException {
+        val replaced = replacedSize(target, options);
+        if (replaced == null) {
+            return quota.copy(target, size, 0L, false);
+        }
+        return quota.copy(target, size, replaced, true);
+    }
+
+    /**
+     * The size of the file the target would replace, or null if there is none. Without
+     * {@link StandardCopyOption#REPLACE_EXISTING} an existing target fails the copy, so isn't looked for.
+     */
+    private Long replacedSize(final S3Path target, final CopyOption... options) throws IOException {
+        if (!quota.limits(target) || !Arrays.asList(options)
+                                            .contains(StandardCopyOption.REPLACE_EXISTING)) {
+            return null;
+        }
+        try {
+            val attributes = super.readAttributes(target, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes.size() : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.filechannel.FileChannelFactory;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs each S3 operation under a permit from a {@link WorkScheduler}, so that S3 work is shared fairly between users.
+ *
+ * <p>Opening a channel downloads the file, or its metadata, and closing it uploads the file, so both are scheduled.
+ * Reads and writes on an open channel are not scheduled here. Most only touch the local copy; an off-heap
+ * {@link com.hubio.s3sftp.server.filechannel.ObjectCache} fetches blocks as they are read, and schedules each fetch
+ * itself.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@SuppressWarnings("classfanoutcomplexity")
+class ScheduledS3SftpFileSystemProvider extends S3SftpFileSystemProviderDecorator {
+
+    private final WorkScheduler workScheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param provider      The provider to schedule the operations of
+     * @param workScheduler The scheduler to get permits from
+     */
+    ScheduledS3SftpFileSystemProvider(final S3SftpFileSystemProvider provider, final WorkScheduler workScheduler) {
+        super(provider);
+        this.workScheduler = workScheduler;
+    }
+
+    @Override
+    public FileChannel newFileChannel(
+            final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs
+                                     ) throws IOException {
+        final FileChannel channel = scheduled(() -> super.newFileChannel(path, options, attrs));
+        return FileChannelFactory.of(new ScheduledSeekableByteChannel(channel, workScheduler, username()));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(
+            final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>[] attrs
+                                             ) throws IOException {
+        final SeekableByteChannel channel = scheduled(() -> super.newByteChannel(path, options, attrs));
+        return new ScheduledSeekableByteChannel(channel, workScheduler, username());
+    }
+
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        return scheduled(() -> super.newInputStream(path, options));
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        return scheduled(() -> super.newOutputStream(path, options));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(
+            final Path dir, final DirectoryStream.Filter<? super Path> filter
+                                                   ) throws IOException {
+        return scheduled(() -> super.newDirectoryStream(dir, filter));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(
+            final Path path, final String attributes, final LinkOption... options
+                                             ) throws IOException {
+        return scheduled(() -> super.readAttributes(path, attributes, options));
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(
+            final Path path, final Class<A> type, final LinkOption... options
+                                                           ) throws IOException {
+        return scheduled(() -> super.readAttributes(path, type, options));
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute, final Object value, final LinkOption... options)
+            throws IOException {
+        scheduled(() -> {
+            super.setAttribute(path, attribute, value, options);
+            return null;
+        });
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        scheduled(() -> {
+            super.checkAccess(path, modes);
+            return null;
+        });
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>[] attrs) throws IOException {
+        scheduled(() -> {
+            super.createDirectory(dir, attrs);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        scheduled(() -> {
+            super.delete(path);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        return scheduled(() -> super.deleteIfExists(path));
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        scheduled(() -> {
+            super.copy(source, target, options);
+            return null;
+        });
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        scheduled(() -> {
+            super.move(source, target, options);
+            return null;
+        });
+    }
+
+    private String username() {
+        return getSession().getUsername();
+    }
+
+    private <T> T scheduled(final S3Operation<T> operation) throws IOException {
+        val permit = workScheduler.acquire(username());
+        try {
+            return operation.call();
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * An operation that makes S3 requests.
+     *
+     * @param <T> The type of the result
+     */
+    @FunctionalInterface
+    private interface S3Operation<T> {
+
+        /**
+         * Perform the operation.
+         *
+         * @return the result of the operation
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.filesystem;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs at most one call at a time for each key, sharing its outcome with every caller that asks for the same key while
+ * it is running.
+ *
+ * <p>Nothing is remembered once a call completes: a caller arriving afterwards starts a new call.</p>
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the results
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Run the call, or wait for the one already running for the key.
+     *
+     * @param key  The key identifying the call
+     * @param call The call to run if none is running for the key
+     *
+     * @return the result of the call
+     *
+     * @throws IOException if the call failed
+     */
+    V execute(final K key, final Call<V> call) throws IOException {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            log.trace("execute({}): joining", key);
+            return await(running);
+        }
+        try {
+            final V result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // even an Error is shared, so that callers waiting on the flight are released
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * The number of calls running.
+     *
+     * @return the number of calls
+     */
+    int inFlight() {
+        return flights.size();
+    }
+
+    private static <V> V await(final CompletableFuture<V> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Interrupted waiting for request");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A call whose outcome may be shared.
+     *
+     * @param <V> The type of the result
+     */
+    @FunctionalInterface
+    interface Call<V> {
+
+        /**
+         * Make the call.
+         *
+         * @return the result
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        V call() throws IOException;
+    }
+}
@@ -28,7 +28,11 @@ import com.upplication.s3fs.S3FileSystem;
 import java.util.Optional;
 
 /**
- * Resolves a FileSystem from a username.
+ * Resolves a FileSystem from a username, and the bucket and jail of the user's session.
+ *
+ * <p>A user's sessions share a filesystem while they are given the same bucket and jail. A session started after the
+ * session configuration is reloaded with a different bucket or jail for the user gets a filesystem of its own, while
+ * sessions already open keep theirs.</p>
  *
  * <p>Implementations are responsible for expiring filesystems after they are no longer needed.</p>
  *
@@ -37,19 +41,23 @@ import java.util.Optional;
 public interface UserFileSystemResolver {
 
     /**
-     * Resolve the S3FileSystem for the username.
+     * Resolve the S3FileSystem for the username in the bucket and jail.
      *
      * @param username the username
+     * @param bucket   the bucket of the user's session
+     * @param jail     the jail of the user's session
      *
      * @return An Optional containing user's filesystem
      */
-    Optional<S3FileSystem> resolve(String username);
+    Optional<S3FileSystem> resolve(String username, String bucket, String jail);
 
     /**
-     * Adds a username/filesystem mapping to the resolver.
+     * Adds a username/filesystem mapping to the resolver, for the bucket and jail.
      *
-     * @param username the username
+     * @param username   the username
+     * @param bucket     the bucket of the user's session
+     * @param jail       the jail of the user's session
      * @param fileSystem The filesystem
      */
-    void put(String username, S3FileSystem fileSystem);
+    void put(String username, String bucket, String jail, S3FileSystem fileSystem);
 }
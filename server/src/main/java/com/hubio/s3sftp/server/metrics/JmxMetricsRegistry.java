@@ -0,0 +1,139 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.metrics.RequestMetricCollector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link MetricsRegistry} that keeps a {@link HistogramOperationMetrics} for each operation, and optionally each user,
+ * and publishes them as a {@link ProviderMetricsMXBean}, along with a {@link JmxS3RequestMetricCollector}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class JmxMetricsRegistry implements MetricsRegistry, ProviderMetricsMXBean {
+
+    /**
+     * The JMX name the registry is published under while started.
+     */
+    static final String OBJECT_NAME = "com.hubio.s3sftp:type=ProviderMetrics";
+
+    private static final Comparator<OperationStats> ORDER =
+            Comparator.comparing(OperationStats::getOperation)
+                      .thenComparing(OperationStats::getUsername, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ConcurrentMap<String, HistogramOperationMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final JmxS3RequestMetricCollector s3Requests = new JmxS3RequestMetricCollector();
+
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    private final boolean perUser;
+
+    @Override
+    public OperationMetrics operation(final String operation, final String username) {
+        final String user;
+        if (perUser) {
+            user = username;
+        } else {
+            user = null;
+        }
+        return metrics.computeIfAbsent(operation + '\u0000' + Objects.toString(user, ""),
+                                       key -> new HistogramOperationMetrics(operation, user)
+                                      );
+    }
+
+    @Override
+    public RequestMetricCollector s3Requests() {
+        return s3Requests;
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        return metrics.values()
+                      .stream()
+                      .map(HistogramOperationMetrics::snapshot)
+                      .sorted(ORDER)
+                      .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reset() {
+        metrics.values()
+               .forEach(HistogramOperationMetrics::reset);
+    }
+
+    @Override
+    public void start() {
+        register(this, OBJECT_NAME);
+        register(s3Requests, JmxS3RequestMetricCollector.OBJECT_NAME);
+    }
+
+    @Override
+    public void stop() {
+        registeredNames.forEach(JmxMetricsRegistry::unregister);
+        registeredNames.clear();
+    }
+
+    private void register(final Object bean, final String objectName) {
+        try {
+            val name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(bean, name);
+            registeredNames.add(name);
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Other metrics are already registered as {}", objectName);
+        } catch (JMException e) {
+            log.warn("Could not register metrics with JMX as {}", objectName, e);
+        }
+    }
+
+    private static void unregister(final ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            log.debug("Metrics were already unregistered from {}", name, e);
+        } catch (JMException e) {
+            log.warn("Could not unregister metrics from JMX as {}", name, e);
+        }
+    }
+}
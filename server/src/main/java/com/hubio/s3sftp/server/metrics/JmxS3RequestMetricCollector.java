@@ -0,0 +1,85 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link RequestMetricCollector} that keeps an {@link S3ApiMetrics} for each API and bucket, and publishes them as an
+ * {@link S3RequestMetricsMXBean}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class JmxS3RequestMetricCollector extends RequestMetricCollector implements S3RequestMetricsMXBean {
+
+    /**
+     * The JMX name the metrics are published under while the registry is started.
+     */
+    static final String OBJECT_NAME = "com.hubio.s3sftp:type=S3RequestMetrics";
+
+    private static final Comparator<S3RequestStats> ORDER = Comparator.comparing(S3RequestStats::getApi)
+                                                                      .thenComparing(S3RequestStats::getBucket);
+
+    private final ConcurrentMap<String, S3ApiMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void collectMetrics(final Request<?> request, final Response<?> response) {
+        try {
+            val details = S3Request.of(request, response);
+            metrics.computeIfAbsent(details.getApi() + '\u0000' + details.getBucket(),
+                                    key -> new S3ApiMetrics(details.getApi(), details.getBucket())
+                                   )
+                   .record(details);
+        } catch (RuntimeException e) {
+            // never let metrics break a request
+            log.debug("Could not collect metrics for S3 request", e);
+        }
+    }
+
+    @Override
+    public List<S3RequestStats> getRequests() {
+        return metrics.values()
+                      .stream()
+                      .map(S3ApiMetrics::snapshot)
+                      .sorted(ORDER)
+                      .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reset() {
+        metrics.values()
+               .forEach(S3ApiMetrics::reset);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.metrics.RequestMetricCollector;
+
+/**
+ * Supplies the {@link OperationMetrics} for each filesystem provider operation.
+ *
+ * <p>Implement this to publish the metrics to a metrics library of your choice.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface MetricsRegistry {
+
+    /**
+     * A registry that records nothing.
+     *
+     * @return the registry
+     */
+    static MetricsRegistry noop() {
+        return (operation, username) -> OperationMetrics.noop();
+    }
+
+    /**
+     * A registry that keeps latency histograms and publishes them over JMX as
+     * {@value JmxMetricsRegistry#OBJECT_NAME}. Requests made to S3 are published as
+     * {@value JmxS3RequestMetricCollector#OBJECT_NAME}.
+     *
+     * @param perUser true to keep separate metrics for each user; false to combine all users
+     *
+     * @return the registry
+     */
+    static MetricsRegistry jmx(final boolean perUser) {
+        return new JmxMetricsRegistry(perUser);
+    }
+
+    /**
+     * Get the metrics for an operation.
+     *
+     * <p>Called when a user's filesystem provider is created, not on each call, so may allocate.</p>
+     *
+     * @param operation The name of the operation
+     * @param username  The user the operation is performed for
+     *
+     * @return the metrics to record calls to the operation in
+     */
+    OperationMetrics operation(String operation, String username);
+
+    /**
+     * Get the collector for the metrics of the requests made to S3.
+     *
+     * <p>The collector is given to each S3 client the server creates.</p>
+     *
+     * @return the collector
+     */
+    default RequestMetricCollector s3Requests() {
+        return RequestMetricCollector.NONE;
+    }
+
+    /**
+     * Start publishing the metrics.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stop publishing the metrics.
+     */
+    default void stop() {
+    }
+}
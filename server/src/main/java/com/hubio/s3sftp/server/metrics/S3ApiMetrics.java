@@ -0,0 +1,106 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics for the requests made to an S3 API for a bucket.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class S3ApiMetrics {
+
+    private static final double P50 = 50.0;
+
+    private static final double P99 = 99.0;
+
+    @Getter
+    private final String api;
+
+    @Getter
+    private final String bucket;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder throttled = new LongAdder();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    /**
+     * Record a request.
+     *
+     * @param request The details of the request
+     */
+    void record(final S3Request request) {
+        latency.record(request.getNanos());
+        if (request.isFailed()) {
+            errors.increment();
+        }
+        retries.add(request.getRetries());
+        throttled.add(request.getThrottled());
+        bytesSent.add(request.getBytesSent());
+        bytesReceived.add(request.getBytesReceived());
+    }
+
+    /**
+     * Take a snapshot of the metrics.
+     *
+     * @return the snapshot
+     */
+    S3RequestStats snapshot() {
+        return new S3RequestStats(api, bucket, latency.getCount(), errors.sum(), retries.sum(), throttled.sum(),
+                                  bytesSent.sum(), bytesReceived.sum(), micros((long) latency.getMean()),
+                                  micros(latency.getValueAtPercentile(P50)), micros(latency.getValueAtPercentile(P99)),
+                                  micros(latency.getMax())
+        );
+    }
+
+    /**
+     * Clear the recorded metrics.
+     */
+    void reset() {
+        latency.reset();
+        errors.reset();
+        retries.reset();
+        throttled.reset();
+        bytesSent.reset();
+        bytesReceived.reset();
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListNextBatchOfObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.TimingInfo;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * The details of a request made to S3, as reported by the AWS SDK once the request has completed.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@RequiredArgsConstructor
+class S3Request {
+
+    /**
+     * The bucket reported for requests that are not made to a bucket, e.g. listing the buckets.
+     */
+    static final String NO_BUCKET = "";
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private static final ClassValue<Method> BUCKET_NAME_GETTER = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(final Class<?> type) {
+            try {
+                return type.getMethod("getBucketName");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    private final String api;
+
+    private final String bucket;
+
+    private final boolean failed;
+
+    private final long nanos;
+
+    private final long retries;
+
+    private final long throttled;
+
+    private final long bytesSent;
+
+    private final long bytesReceived;
+
+    /**
+     * Extract the details of a completed request.
+     *
+     * @param request  The request
+     * @param response The response, or null if the request failed
+     *
+     * @return the details
+     */
+    static S3Request of(final Request<?> request, final Response<?> response) {
+        val timing = request.getAWSRequestMetrics()
+                            .getTimingInfo();
+        val attempts = counter(timing, AWSRequestMetrics.Field.RequestCount);
+        return new S3Request(api(request), bucket(request.getOriginalRequest()), response == null, nanos(timing),
+                             Math.max(0L, attempts - 1), counter(timing, AWSRequestMetrics.Field.ThrottleException),
+                             contentLength(request.getHeaders()), bytesReceived(request, response)
+        );
+    }
+
+    /**
+     * The API called. The HTTP method, except where that would hide a distinct S3 operation.
+     */
+    private static String api(final Request<?> request) {
+        val original = request.getOriginalRequest();
+        if (original instanceof ListObjectsRequest || original instanceof ListObjectsV2Request
+            || original instanceof ListNextBatchOfObjectsRequest || original instanceof ListVersionsRequest) {
+            return "LIST";
+        }
+        if (original instanceof CopyObjectRequest || original instanceof CopyPartRequest) {
+            return "COPY";
+        }
+        if (original instanceof DeleteObjectsRequest) {
+            return "DELETE";
+        }
+        return request.getHttpMethod()
+                      .name();
+    }
+
+    /**
+     * The bucket named by the request. The S3 request types have no common supertype that names the bucket, but they
+     * all follow the same naming convention.
+     */
+    private static String bucket(final AmazonWebServiceRequest original) {
+        if (original == null) {
+            return NO_BUCKET;
+        }
+        val getter = BUCKET_NAME_GETTER.get(original.getClass());
+        if (getter == null) {
+            return NO_BUCKET;
+        }
+        try {
+            val bucket = getter.invoke(original);
+            if (bucket == null) {
+                return NO_BUCKET;
+            }
+            return bucket.toString();
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return NO_BUCKET;
+        }
+    }
+
+    private static long nanos(final TimingInfo timing) {
+        val end = timing.getEndTimeNanoIfKnown();
+        if (end == null) {
+            return 0L;
+        }
+        return Math.max(0L, end - timing.getStartTimeNano());
+    }
+
+    private static long counter(final TimingInfo timing, final AWSRequestMetrics.Field field) {
+        val counter = timing.getCounter(field.name());
+        if (counter == null) {
+            return 0L;
+        }
+        return counter.longValue();
+    }
+
+    /**
+     * The size of the response body. A HEAD response reports the length of the object it describes, without sending
+     * it.
+     */
+    private static long bytesReceived(final Request<?> request, final Response<?> response) {
+        if (response == null || response.getHttpResponse() == null
+            || request.getHttpMethod() == HttpMethodName.HEAD) {
+            return 0L;
+        }
+        return contentLength(response.getHttpResponse()
+                                     .getHeaders());
+    }
+
+    private static long contentLength(final Map<String, String> headers) {
+        if (headers == null) {
+            return 0L;
+        }
+        val length = headers.get(CONTENT_LENGTH);
+        if (length == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A snapshot of the metrics for the requests made to an S3 API for a bucket, as published over JMX.
+ *
+ * <p>Latencies are in microseconds and include any retries.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@RequiredArgsConstructor
+public class S3RequestStats {
+
+    /**
+     * The API, e.g. GET, PUT, HEAD, LIST, COPY or DELETE.
+     */
+    private final String api;
+
+    private final String bucket;
+
+    private final long count;
+
+    /**
+     * The number of requests that failed after any retries.
+     */
+    private final long errors;
+
+    private final long retries;
+
+    /**
+     * The number of attempts that S3 refused with a throttling error, e.g. 503 SlowDown.
+     */
+    private final long throttled;
+
+    private final long bytesSent;
+
+    private final long bytesReceived;
+
+    private final long meanMicros;
+
+    private final long p50Micros;
+
+    private final long p99Micros;
+
+    private final long maxMicros;
+}
@@ -0,0 +1,114 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Optional;
+
+/**
+ * Limits on the rate of bytes uploaded and downloaded.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Bandwidth {
+
+    private static final Bandwidth UNLIMITED = new Bandwidth(null, null);
+
+    private final RateLimit upload;
+
+    private final RateLimit download;
+
+    /**
+     * No limit on uploads or downloads.
+     *
+     * @return the unlimited bandwidth
+     */
+    public static Bandwidth unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Create limits from rates in bytes per second, each allowing a burst of up to one second's worth of bytes.
+     *
+     * @param uploadBytesPerSecond   The upload limit, or zero for no limit
+     * @param downloadBytesPerSecond The download limit, or zero for no limit
+     *
+     * @return the bandwidth
+     */
+    public static Bandwidth bytesPerSecond(final long uploadBytesPerSecond, final long downloadBytesPerSecond) {
+        return of(perSecond(uploadBytesPerSecond), perSecond(downloadBytesPerSecond));
+    }
+
+    /**
+     * Create limits from rate limits measured in bytes.
+     *
+     * @param upload   The upload limit, or null for no limit
+     * @param download The download limit, or null for no limit
+     *
+     * @return the bandwidth
+     */
+    public static Bandwidth of(final RateLimit upload, final RateLimit download) {
+        return new Bandwidth(upload, download);
+    }
+
+    private static RateLimit perSecond(final long bytesPerSecond) {
+        if (bytesPerSecond < 1) {
+            return null;
+        }
+        return RateLimit.perSecond(bytesPerSecond, bytesPerSecond);
+    }
+
+    /**
+     * The limit on bytes written by the client.
+     *
+     * @return the upload limit, or empty if unlimited
+     */
+    public Optional<RateLimit> getUpload() {
+        return Optional.ofNullable(upload);
+    }
+
+    /**
+     * The limit on bytes read by the client.
+     *
+     * @return the download limit, or empty if unlimited
+     */
+    public Optional<RateLimit> getDownload() {
+        return Optional.ofNullable(download);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("upload: %s, download: %s", describe(upload), describe(download));
+    }
+
+    private static String describe(final RateLimit rateLimit) {
+        if (rateLimit == null) {
+            return "unlimited";
+        }
+        return rateLimit.toString();
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket for each of an open-ended set of keys (e.g. client addresses or usernames).
+ *
+ * <p>Each bucket is held as a single theoretical arrival time (the generic cell rate algorithm), updated with a
+ * compare-and-set, so callers never block one another. A bucket that has refilled completely carries no information
+ * and is forgotten by {@link #purge()}.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+public class KeyedRateLimiter {
+
+    private final ConcurrentMap<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+
+    private final double nanosPerPermit;
+
+    private final long burstTolerance;
+
+    private final LongSupplier clock;
+
+    /**
+     * Constructor.
+     *
+     * @param rateLimit The limit to apply to each key
+     */
+    public KeyedRateLimiter(final RateLimit rateLimit) {
+        this(rateLimit, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rateLimit The limit to apply to each key
+     * @param clock     The source of the current time in nanoseconds
+     */
+    KeyedRateLimiter(final RateLimit rateLimit, final LongSupplier clock) {
+        this.nanosPerPermit = rateLimit.nanosPerPermit();
+        this.burstTolerance = cost(rateLimit.getBurst());
+        this.clock = clock;
+    }
+
+    /**
+     * Take permits from the key's bucket if they are all available.
+     *
+     * <p>Nothing is taken if the request is refused.</p>
+     *
+     * @param key     The key
+     * @param permits The number of permits required
+     *
+     * @return true if the permits were taken
+     */
+    public boolean tryAcquire(final String key, final long permits) {
+        val increment = cost(permits);
+        val arrival = arrivalFor(key);
+        while (true) {
+            val now = clock.getAsLong();
+            val current = arrival.get();
+            val next = later(current, now) + increment;
+            if (next - now > burstTolerance) {
+                log.trace("tryAcquire({}, {}) refused", key, permits);
+                return false;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the key's bucket holds the permits, without taking them.
+     *
+     * <p>A key that is not being tracked has a full bucket, and checking it does not start tracking it.</p>
+     *
+     * @param key     The key
+     * @param permits The number of permits required
+     *
+     * @return true if the permits could be taken
+     */
+    public boolean isAvailable(final String key, final long permits) {
+        val now = clock.getAsLong();
+        val arrival = arrivals.get(key);
+        long current = now;
+        if (arrival != null) {
+            current = later(arrival.get(), now);
+        }
+        return current + cost(permits) - now <= burstTolerance;
+    }
+
+    /**
+     * Take permits from the key's bucket, borrowing against future refills if required.
+     *
+     * @param key     The key
+     * @param permits The number of permits required
+     *
+     * @return the number of nanoseconds the caller should wait before using the permits; zero if they may be used
+     * immediately
+     */
+    public long reserve(final String key, final long permits) {
+        val increment = cost(permits);
+        val arrival = arrivalFor(key);
+        while (true) {
+            val now = clock.getAsLong();
+            val current = arrival.get();
+            val next = later(current, now) + increment;
+            if (arrival.compareAndSet(current, next)) {
+                return Math.max(0L, next - now - burstTolerance);
+            }
+        }
+    }
+
+    /**
+     * Forget the keys whose buckets have refilled completely.
+     *
+     * <p>A caller racing with the purge may find its bucket was forgotten, in which case it starts again with a full
+     * bucket.</p>
+     *
+     * @return the number of keys forgotten
+     */
+    public int purge() {
+        val now = clock.getAsLong();
+        int purged = 0;
+        for (val entry : arrivals.entrySet()) {
+            val arrival = entry.getValue();
+            if (arrival.get() - now <= 0 && arrivals.remove(entry.getKey(), arrival)) {
+                purged++;
+            }
+        }
+        log.trace("purge() => {}", purged);
+        return purged;
+    }
+
+    /**
+     * The number of keys currently being tracked.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return arrivals.size();
+    }
+
+    private AtomicLong arrivalFor(final String key) {
+        val existing = arrivals.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        val created = new AtomicLong(clock.getAsLong());
+        val raced = arrivals.putIfAbsent(key, created);
+        if (raced == null) {
+            return created;
+        }
+        return raced;
+    }
+
+    private long cost(final long permits) {
+        return (long) Math.ceil(permits * nanosPerPermit);
+    }
+
+    private static long later(final long time, final long now) {
+        if (time - now > 0) {
+            return time;
+        }
+        return now;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * A sustained rate of permits per period, with an allowance for bursts.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+public final class RateLimit {
+
+    private final long permits;
+
+    private final Duration period;
+
+    private final long burst;
+
+    private RateLimit(final long permits, final Duration period, final long burst) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        }
+        this.permits = permits;
+        this.period = period;
+        this.burst = burst;
+    }
+
+    /**
+     * Create a rate limit.
+     *
+     * @param permits The number of permits that become available each period
+     * @param period  The period over which the permits become available
+     * @param burst   The number of permits that may be taken at once after a quiet spell
+     *
+     * @return the rate limit
+     */
+    public static RateLimit of(final long permits, final Duration period, final long burst) {
+        return new RateLimit(permits, period, burst);
+    }
+
+    /**
+     * Create a rate limit measured per second.
+     *
+     * @param permitsPerSecond The number of permits that become available each second
+     * @param burst            The number of permits that may be taken at once after a quiet spell
+     *
+     * @return the rate limit
+     */
+    public static RateLimit perSecond(final long permitsPerSecond, final long burst) {
+        return new RateLimit(permitsPerSecond, Duration.ofSeconds(1), burst);
+    }
+
+    /**
+     * The interval between permits becoming available.
+     *
+     * @return the interval in nanoseconds
+     */
+    double nanosPerPermit() {
+        return (double) period.toNanos() / permits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d per %s (burst %d)", permits, period, burst);
+    }
+}
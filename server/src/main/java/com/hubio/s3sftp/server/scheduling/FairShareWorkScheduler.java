@@ -0,0 +1,361 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.scheduling;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link WorkScheduler} that shares a fixed number of permits between per-user queues using stride scheduling.
+ *
+ * <p>Each user has a virtual 'pass' that advances by {@code 1 / weight} each time they are given a permit. A released
+ * permit goes to the waiting user with the lowest pass, so over time each busy user receives permits in proportion to
+ * their weight. A user joining the queue starts from the pass of the last user served, so time spent idle earns no
+ * credit.</p>
+ *
+ * <p>A user with nothing running or waiting is forgotten once the virtual time catches up with their pass, or once no
+ * one is waiting, as their debt only matters to users who are. Users are checked as they finish and on each dispatch,
+ * so the scheduler only holds the users that are active, or in debt to users that are waiting.</p>
+ *
+ * <p>Permits are handed directly to a waiting thread, so no dispatcher thread is needed and the scheduler works the same
+ * on platform and virtual threads.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+class FairShareWorkScheduler implements WorkScheduler, WorkSchedulerMXBean {
+
+    /**
+     * The JMX name the server's scheduler is registered under while started. A listener's own scheduler adds a
+     * {@code listener} key with its port.
+     */
+    static final String OBJECT_NAME = "com.hubio.s3sftp:type=WorkScheduler";
+
+    private final int maxConcurrent;
+
+    private final int maxPerUser;
+
+    private final UserWeight userWeight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<String, UserQueue> users = new HashMap<>();
+
+    private int running;
+
+    private int queued;
+
+    private double virtualTime;
+
+    private ObjectName registeredName;
+
+    /**
+     * Constructor.
+     *
+     * @param maxConcurrent The maximum number of operations that may run at once across all users
+     * @param maxPerUser    The maximum number of operations that may run at once for any one user
+     * @param userWeight    The relative weight of each user
+     */
+    FairShareWorkScheduler(final int maxConcurrent, final int maxPerUser, final UserWeight userWeight) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        }
+        if (maxPerUser < 1) {
+            throw new IllegalArgumentException("maxPerUser must be at least 1");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerUser = maxPerUser;
+        this.userWeight = userWeight;
+    }
+
+    @Override
+    public Permit acquire(final String username) throws InterruptedIOException {
+        lock.lock();
+        try {
+            val user = users.computeIfAbsent(username, this::newUserQueue);
+            if (user.waiting.isEmpty()) {
+                user.pass = Math.max(user.pass, virtualTime);
+            }
+            val waiter = new Waiter(lock.newCondition());
+            user.waiting.add(waiter);
+            queued++;
+            dispatch();
+            awaitGrant(user, waiter);
+        } finally {
+            lock.unlock();
+        }
+        return new GrantedPermit(username);
+    }
+
+    private void awaitGrant(final UserQueue user, final Waiter waiter) throws InterruptedIOException {
+        while (!waiter.granted) {
+            try {
+                waiter.condition.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                if (!waiter.granted) {
+                    user.waiting.remove(waiter);
+                    queued--;
+                    forgetIfIdle(user);
+                    throw new InterruptedIOException("Interrupted waiting for S3 work permit");
+                }
+            }
+        }
+    }
+
+    private UserQueue newUserQueue(final String username) {
+        return new UserQueue(username, Math.max(1, userWeight.weightOf(username)));
+    }
+
+    /**
+     * Hands out free permits to the waiting users with the lowest pass, forgetting idle users found on the way. Must be
+     * called while holding the lock.
+     */
+    private void dispatch() {
+        while (running < maxConcurrent) {
+            UserQueue next = null;
+            val iterator = users.values()
+                                .iterator();
+            while (iterator.hasNext()) {
+                val user = iterator.next();
+                if (isIdle(user)) {
+                    iterator.remove();
+                } else if (!user.waiting.isEmpty() && user.running < maxPerUser
+                           && (next == null || user.pass < next.pass)) {
+                    next = user;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            val waiter = next.waiting.remove();
+            queued--;
+            running++;
+            next.running++;
+            virtualTime = next.pass;
+            next.pass += 1.0 / next.weight;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private void release(final String username) {
+        lock.lock();
+        try {
+            val user = users.get(username);
+            user.running--;
+            running--;
+            forgetIfIdle(user);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the user if they have nothing running or waiting and no outstanding debt to a waiting user.
+     */
+    private void forgetIfIdle(final UserQueue user) {
+        if (isIdle(user)) {
+            users.remove(user.username);
+        }
+    }
+
+    private boolean isIdle(final UserQueue user) {
+        return user.running == 0 && user.waiting.isEmpty() && (queued == 0 || user.pass <= virtualTime);
+    }
+
+    /**
+     * The number of users the scheduler is holding state for.
+     *
+     * @return the number of users
+     */
+    int getTrackedUsers() {
+        lock.lock();
+        try {
+            return users.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        register(OBJECT_NAME);
+    }
+
+    /**
+     * Registers under the name of the server's scheduler, with the listener's port added, so that the schedulers of
+     * each listener can be told apart.
+     */
+    @Override
+    public void start(final int port) {
+        register(OBJECT_NAME + ",listener=" + port);
+    }
+
+    private void register(final String objectName) {
+        try {
+            val name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, name);
+            registeredName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Another work scheduler is already registered as {}", objectName);
+        } catch (JMException e) {
+            log.warn("Could not register work scheduler with JMX", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .unregisterMBean(registeredName);
+        } catch (InstanceNotFoundException e) {
+            log.debug("Work scheduler was already unregistered", e);
+        } catch (JMException e) {
+            log.warn("Could not unregister work scheduler from JMX", e);
+        }
+        registeredName = null;
+    }
+
+    @Override
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        return snapshot(user -> user.waiting.size());
+    }
+
+    @Override
+    public Map<String, Integer> getRunningByUser() {
+        return snapshot(user -> user.running);
+    }
+
+    private Map<String, Integer> snapshot(final ToIntFunction<UserQueue> count) {
+        lock.lock();
+        try {
+            val result = new TreeMap<String, Integer>();
+            users.values()
+                 .forEach(user -> {
+                     val value = count.applyAsInt(user);
+                     if (value > 0) {
+                         result.put(user.username, value);
+                     }
+                 });
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The waiting operations and scheduling state for one user. Guarded by the scheduler's lock.
+     */
+    @RequiredArgsConstructor
+    private static final class UserQueue {
+
+        private final String username;
+
+        private final int weight;
+
+        private final Queue<Waiter> waiting = new ArrayDeque<>();
+
+        private int running;
+
+        private double pass;
+    }
+
+    /**
+     * A thread waiting for a permit. Guarded by the scheduler's lock.
+     */
+    @RequiredArgsConstructor
+    private static final class Waiter {
+
+        private final Condition condition;
+
+        private boolean granted;
+    }
+
+    /**
+     * A permit that is only released once, however many times it is closed.
+     */
+    @RequiredArgsConstructor
+    private final class GrantedPermit implements Permit {
+
+        private final String username;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(username);
+            }
+        }
+    }
+}
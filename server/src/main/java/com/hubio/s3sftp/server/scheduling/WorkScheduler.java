@@ -0,0 +1,113 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.scheduling;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Controls how many S3 operations may run at once, and which user's operation runs next.
+ *
+ * <p>Each S3 operation must hold a {@link Permit} while it runs. A caller that can't be given a permit waits in a queue
+ * for its user until one is released.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface WorkScheduler {
+
+    /**
+     * Creates a scheduler that never makes a caller wait.
+     *
+     * @return the scheduler
+     */
+    static WorkScheduler unlimited() {
+        return username -> () -> {
+        };
+    }
+
+    /**
+     * Creates a scheduler that shares a fixed number of permits between users in proportion to their weight.
+     *
+     * <p>When permits are released they are given to the waiting user who has had the smallest weighted share so far,
+     * so a user with many parallel transfers can't starve other users. Users who have been idle don't build up credit
+     * while idle.</p>
+     *
+     * <p>While the server is running the scheduler is published over JMX as
+     * {@value FairShareWorkScheduler#OBJECT_NAME}, with a {@code listener} key for one given to a listener.</p>
+     *
+     * @param maxConcurrent The maximum number of operations that may run at once across all users
+     * @param maxPerUser    The maximum number of operations that may run at once for any one user
+     * @param userWeight    The relative weight of each user
+     *
+     * @return the scheduler
+     */
+    static WorkScheduler fairShare(final int maxConcurrent, final int maxPerUser, final UserWeight userWeight) {
+        return new FairShareWorkScheduler(maxConcurrent, maxPerUser, userWeight);
+    }
+
+    /**
+     * Waits until the user may start an S3 operation.
+     *
+     * @param username The user the operation is for
+     *
+     * @return the permit, to be closed when the operation completes
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    Permit acquire(String username) throws InterruptedIOException;
+
+    /**
+     * Start any background work needed by the scheduler.
+     */
+    default void start() {
+    }
+
+    /**
+     * Start any background work needed by a scheduler given to a listener instead of the server's own, naming it after
+     * the listener's port wherever the scheduler is published.
+     *
+     * @param port The port of the listener the scheduler was given to
+     */
+    default void start(final int port) {
+        start();
+    }
+
+    /**
+     * Stop any background work started by {@link #start()}.
+     */
+    default void stop() {
+    }
+
+    /**
+     * Permission to run a single S3 operation.
+     */
+    @FunctionalInterface
+    interface Permit extends AutoCloseable {
+
+        /**
+         * Release the permit so that it can be given to the next waiting operation.
+         */
+        @Override
+        void close();
+    }
+}
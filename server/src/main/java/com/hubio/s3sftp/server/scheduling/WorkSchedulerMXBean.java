@@ -0,0 +1,69 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.scheduling;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link WorkScheduler}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface WorkSchedulerMXBean {
+
+    /**
+     * The maximum number of operations that may run at once across all users.
+     *
+     * @return the global concurrency cap
+     */
+    int getMaxConcurrent();
+
+    /**
+     * The number of operations currently running.
+     *
+     * @return the number of permits held
+     */
+    int getRunning();
+
+    /**
+     * The number of operations waiting for a permit.
+     *
+     * @return the total queue depth
+     */
+    int getQueued();
+
+    /**
+     * The number of operations waiting for a permit for each user that has any waiting.
+     *
+     * @return the queue depth for each user
+     */
+    Map<String, Integer> getQueueDepths();
+
+    /**
+     * The number of operations running for each user that has any running.
+     *
+     * @return the permits held by each user
+     */
+    Map<String, Integer> getRunningByUser();
+}
@@ -0,0 +1,113 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.usage;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The bytes and objects stored under each prefix of a bucket.
+ *
+ * <p>Answers come from counts kept up to date in the background, and adjusted as this server writes and deletes
+ * objects, so asking never waits for S3.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface BucketUsage {
+
+    /**
+     * Returns the usage of the prefix, as last counted and adjusted since.
+     *
+     * <p>A prefix that has not been asked about before is counted in the background and reported as empty until
+     * then.</p>
+     *
+     * @param client The client to count the objects with
+     * @param bucket The bucket
+     * @param prefix The prefix of the keys to count, e.g. {@code users/alice/}, or empty for the whole bucket
+     *
+     * @return the usage of the prefix
+     */
+    PrefixUsage track(AmazonS3 client, String bucket, String prefix);
+
+    /**
+     * Start any background work needed to keep the counts up to date.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stop any background work started by {@link #start()}.
+     */
+    default void stop() {
+    }
+
+    /**
+     * Creates a bucket usage that lists each prefix again after each interval, for as long as it is being asked about.
+     *
+     * <p>Objects written or deleted by other clients, or on other servers, are counted at the next listing.</p>
+     *
+     * @param refreshInterval The time between the listings of each prefix
+     *
+     * @return the bucket usage
+     */
+    static BucketUsage listedEvery(final Duration refreshInterval) {
+        return listedEvery(refreshInterval, null);
+    }
+
+    /**
+     * Creates a bucket usage that lists each prefix again after each interval, for as long as it is being asked about,
+     * and keeps the counts in a snapshot file.
+     *
+     * <p>The snapshot is written after each round of listings and when stopped, and read when started, so that after
+     * a restart quotas are enforced straight away, from the counts as they were, rather than once each prefix has
+     * been listed again.</p>
+     *
+     * @param refreshInterval The time between the listings of each prefix
+     * @param snapshotFile    The file to keep the counts in, or null for none
+     *
+     * @return the bucket usage
+     */
+    static BucketUsage listedEvery(final Duration refreshInterval, final Path snapshotFile) {
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("refreshInterval must be positive: " + refreshInterval);
+        }
+        return new ListingBucketUsage(refreshInterval, snapshotFile);
+    }
+
+    /**
+     * Returns the prefix of the keys within a home directory.
+     *
+     * @param homeKey The home directory, from the root of the bucket, e.g. {@code users/alice}
+     *
+     * @return the prefix, e.g. {@code users/alice/}, or empty for the root of the bucket
+     */
+    static String homePrefix(final String homeKey) {
+        if (homeKey.isEmpty() || homeKey.endsWith("/")) {
+            return homeKey;
+        }
+        return homeKey + "/";
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.usage;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.hubio.s3sftp.server.SessionQuota;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link BucketUsage} that lists each prefix on a background thread.
+ *
+ * <p>A prefix is first listed as soon as it is asked about, then again after each refresh interval. Between listings
+ * the counts are adjusted as objects are written and deleted. Prefixes that have not been asked about for
+ * {@value #IDLE_INTERVALS} intervals, e.g. once the user has logged out, are forgotten and no longer listed, unless an
+ * upload still holds a reservation against them.</p>
+ *
+ * <p>Adjustments made while a prefix is being listed are added to the count the listing finds. An object written
+ * while the listing is under way may be counted twice, until the next listing.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class ListingBucketUsage implements BucketUsage {
+
+    private static final long IDLE_INTERVALS = 3L;
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private static final int FIELDS = 3;
+
+    private final Duration refreshInterval;
+
+    /**
+     * The file to keep the counts in between restarts, or null.
+     */
+    private final Path snapshotFile;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    @Override
+    public PrefixUsage track(final AmazonS3 client, final String bucket, final String prefix) {
+        val name = bucket + "/" + prefix;
+        while (true) {
+            val counter = counters.get(name);
+            if (counter == null) {
+                val created = new Counter(name, bucket, prefix);
+                created.ask(client);
+                if (counters.putIfAbsent(name, created) == null) {
+                    countSoon(created);
+                    return created;
+                }
+            } else if (counter.ask(client)) {
+                return counter;
+            } else {
+                // forgotten by a refresh since it was looked up
+                counters.remove(name, counter);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (scheduler == null) {
+            loadSnapshot();
+            val executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                val thread = Executors.defaultThreadFactory()
+                                      .newThread(runnable);
+                thread.setName("s3sftp-bucket-usage");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            val interval = refreshInterval.toMillis();
+            executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+            scheduler = executor;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            saveSnapshot();
+        }
+        counters.clear();
+    }
+
+    private void countSoon(final Counter counter) {
+        val executor = scheduler;
+        if (executor != null) {
+            executor.execute(() -> count(counter));
+        }
+    }
+
+    /**
+     * Lists each prefix that has been asked about recently, or has space reserved, forgets the others, then writes
+     * the snapshot.
+     */
+    void refresh() {
+        val idleSince = System.nanoTime() - refreshInterval.toNanos() * IDLE_INTERVALS;
+        counters.values()
+                .forEach(counter -> {
+                    if (counter.forgetIfIdle(idleSince)) {
+                        log.debug("Forgetting usage of {}", counter.getName());
+                        counters.remove(counter.getName(), counter);
+                    } else {
+                        count(counter);
+                    }
+                });
+        saveSnapshot();
+    }
+
+    private static void count(final Counter counter) {
+        val client = counter.getClient();
+        if (client == null) {
+            // loaded from the snapshot, and not asked about since
+            return;
+        }
+        try {
+            counter.startListing();
+            long bytes = 0L;
+            long objects = 0L;
+            val request = new ListObjectsRequest().withBucketName(counter.getBucket())
+                                                  .withPrefix(counter.getPrefix());
+            ObjectListing listing = client.listObjects(request);
+            while (true) {
+                for (final S3ObjectSummary summary : listing.getObjectSummaries()) {
+                    bytes += summary.getSize();
+                    objects++;
+                }
+                if (!listing.isTruncated()) {
+                    break;
+                }
+                listing = client.listNextBatchOfObjects(listing);
+            }
+            counter.listed(bytes, objects);
+            log.debug("Counted {} bytes in {} objects under {}", bytes, objects, counter.getName());
+        } catch (RuntimeException e) {
+            // keep the last count, and try again at the next refresh
+            log.warn("Could not count the bytes under {}", counter.getName(), e);
+        }
+    }
+
+    private void loadSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        try {
+            for (final String line : Files.readAllLines(snapshotFile, StandardCharsets.UTF_8)) {
+                val fields = line.split(FIELD_SEPARATOR, FIELDS);
+                val name = fields[FIELDS - 1];
+                val bucketEnd = name.indexOf('/');
+                val counter = new Counter(name, name.substring(0, bucketEnd), name.substring(bucketEnd + 1));
+                counter.listed(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+                counters.putIfAbsent(name, counter);
+            }
+            log.info("Loaded the usage of {} prefixes from {}", counters.size(), snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load the usage snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        val lines = counters.values()
+                            .stream()
+                            .map(counter -> counter.getBytes() + FIELD_SEPARATOR + counter.getObjects()
+                                            + FIELD_SEPARATOR + counter.getName())
+                            .collect(Collectors.toList());
+        val temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE
+                      );
+        } catch (IOException e) {
+            log.warn("Could not save the usage snapshot {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * The counts for a prefix. Updates are guarded by the counter's lock, so that reservations are checked against
+     * consistent counts; reads are not. Deletions never take the counts below zero, e.g. when an object is deleted
+     * before the prefix has first been listed.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static final class Counter implements PrefixUsage {
+
+        private final String name;
+
+        private final String bucket;
+
+        private final String prefix;
+
+        private volatile AmazonS3 client;
+
+        private volatile long askedAt = System.nanoTime();
+
+        private volatile long bytes;
+
+        private volatile long objects;
+
+        private long reservedBytes;
+
+        private long reservedObjects;
+
+        private long bytesSinceListing;
+
+        private long objectsSinceListing;
+
+        private boolean forgotten;
+
+        /**
+         * Notes that the prefix is in use.
+         *
+         * @return false if the counter has been forgotten, and a new one must be tracked instead
+         */
+        synchronized boolean ask(final AmazonS3 amazonS3) {
+            if (forgotten) {
+                return false;
+            }
+            client = amazonS3;
+            askedAt = System.nanoTime();
+            return true;
+        }
+
+        /**
+         * Forgets the counter if it has not been asked about since the time given, and no space is reserved against
+         * it.
+         *
+         * @return true if the counter was forgotten
+         */
+        synchronized boolean forgetIfIdle(final long idleSince) {
+            forgotten = askedAt - idleSince < 0 && reservedBytes == 0L && reservedObjects == 0L;
+            return forgotten;
+        }
+
+        synchronized void startListing() {
+            bytesSinceListing = 0L;
+            objectsSinceListing = 0L;
+        }
+
+        synchronized void listed(final long listedBytes, final long listedObjects) {
+            bytes = Math.max(0L, listedBytes + bytesSinceListing);
+            objects = Math.max(0L, listedObjects + objectsSinceListing);
+        }
+
+        @Override
+        public synchronized void add(final long addedBytes, final long addedObjects) {
+            bytes = Math.max(0L, bytes + addedBytes);
+            objects = Math.max(0L, objects + addedObjects);
+            bytesSinceListing += addedBytes;
+            objectsSinceListing += addedObjects;
+        }
+
+        @Override
+        public synchronized boolean tryReserve(
+                final long wantedBytes, final long wantedObjects, final long maxBytes, final long maxObjects
+                                              ) {
+            if (wantedBytes > 0 && maxBytes != SessionQuota.UNLIMITED
+                && wantedBytes > maxBytes - bytes - reservedBytes) {
+                return false;
+            }
+            if (wantedObjects > 0 && maxObjects != SessionQuota.UNLIMITED
+                && wantedObjects > maxObjects - objects - reservedObjects) {
+                return false;
+            }
+            reservedBytes += wantedBytes;
+            reservedObjects += wantedObjects;
+            return true;
+        }
+
+        @Override
+        public synchronized void release(final long releasedBytes, final long releasedObjects) {
+            reservedBytes -= releasedBytes;
+            reservedObjects -= releasedObjects;
+        }
+    }
+}
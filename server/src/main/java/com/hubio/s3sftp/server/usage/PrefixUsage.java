@@ -0,0 +1,77 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.server.usage;
+
+/**
+ * The bytes and objects stored under a prefix of a bucket, as last counted and adjusted since.
+ *
+ * <p>Reading the counts, and reserving space against a quota, never waits for S3.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public interface PrefixUsage {
+
+    /**
+     * Returns the number of bytes stored under the prefix.
+     *
+     * @return the number of bytes
+     */
+    long getBytes();
+
+    /**
+     * Returns the number of objects stored under the prefix.
+     *
+     * @return the number of objects
+     */
+    long getObjects();
+
+    /**
+     * Adjusts the counts for objects written or deleted by this server, until the prefix is next listed.
+     *
+     * @param bytes   The number of bytes added, or negative if removed
+     * @param objects The number of objects added, or negative if removed
+     */
+    void add(long bytes, long objects);
+
+    /**
+     * Reserves space for an upload in progress, if the counts and the other reservations leave room for it within
+     * the limits. A limit of {@link com.hubio.s3sftp.server.SessionQuota#UNLIMITED} is not checked.
+     *
+     * @param bytes      The number of bytes to reserve
+     * @param objects    The number of objects to reserve
+     * @param maxBytes   The most bytes that may be stored under the prefix
+     * @param maxObjects The most objects that may be stored under the prefix
+     *
+     * @return true if the space was reserved; false if it would exceed either limit
+     */
+    boolean tryReserve(long bytes, long objects, long maxBytes, long maxObjects);
+
+    /**
+     * Releases space reserved by {@link #tryReserve}.
+     *
+     * @param bytes   The number of bytes to release
+     * @param objects The number of objects to release
+     */
+    void release(long bytes, long objects);
+}
@@ -0,0 +1,91 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.cipher.BuiltinCiphers;
+import org.apache.sshd.common.mac.BuiltinMacs;
+import org.apache.sshd.server.SshServer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link CryptoProfile}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class CryptoProfileTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void sshdDefaultsShouldLeaveServerUnchanged() {
+        //given
+        val server = SshServer.setUpDefaultServer();
+        val ciphers = NamedResource.getNames(server.getCipherFactories());
+        val macs = NamedResource.getNames(server.getMacFactories());
+        //when
+        CryptoProfile.sshdDefaults()
+                     .apply(server);
+        //then
+        assertThat(NamedResource.getNames(server.getCipherFactories())).isEqualTo(ciphers);
+        assertThat(NamedResource.getNames(server.getMacFactories())).isEqualTo(macs);
+    }
+
+    @Test
+    public void throughputShouldOfferOnlyCounterModeCiphers() {
+        //given
+        val server = SshServer.setUpDefaultServer();
+        //when
+        CryptoProfile.throughput()
+                     .apply(server);
+        //then
+        assertThat(server.getCipherFactories()).isNotEmpty()
+                                               .allMatch(cipher -> cipher.getName()
+                                                                         .endsWith("-ctr"));
+        assertThat(server.getCipherFactories()
+                         .get(0)).isEqualTo(BuiltinCiphers.aes128ctr);
+    }
+
+    @Test
+    public void throughputShouldNotOfferMd5OrTruncatedMacs() {
+        //given
+        val server = SshServer.setUpDefaultServer();
+        //when
+        CryptoProfile.throughput()
+                     .apply(server);
+        //then
+        assertThat(server.getMacFactories()).containsExactly(BuiltinMacs.hmacsha256, BuiltinMacs.hmacsha512,
+                                                             BuiltinMacs.hmacsha1
+                                                            );
+    }
+
+    @Test
+    public void ofShouldOfferInOrderGiven() {
+        //given
+        val server = SshServer.setUpDefaultServer();
+        //when
+        CryptoProfile.of(Arrays.asList(BuiltinCiphers.aes256ctr, BuiltinCiphers.aes128ctr),
+                         Collections.singletonList(BuiltinMacs.hmacsha512)
+                        )
+                     .apply(server);
+        //then
+        assertThat(server.getCipherFactories()).containsExactly(BuiltinCiphers.aes256ctr, BuiltinCiphers.aes128ctr);
+        assertThat(server.getMacFactories()).containsExactly(BuiltinMacs.hmacsha512);
+    }
+
+    @Test
+    public void ofShouldErrorWhenNoCiphers() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("cipher");
+        //when
+        CryptoProfile.of(Collections.emptyList(), Collections.singletonList(BuiltinMacs.hmacsha256));
+    }
+}
@@ -0,0 +1,165 @@
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+import com.hubio.s3sftp.server.ratelimit.RateLimit;
+import lombok.val;
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link DefaultLoginThrottle}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class DefaultLoginThrottleTest {
+
+    private static final RateLimit ONCE_A_MINUTE = RateLimit.of(1, Duration.ofMinutes(1), 1);
+
+    private static final RateLimit UNLIMITED = RateLimit.perSecond(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private DefaultLoginThrottle subject;
+
+    @Mock
+    private ServerSession session;
+
+    @Mock
+    private ServerSession otherSession;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(session.getClientAddress()).willReturn(new InetSocketAddress("10.0.0.1", 1234));
+        given(otherSession.getClientAddress()).willReturn(new InetSocketAddress("10.0.0.2", 1234));
+    }
+
+    @After
+    public void tearDown() {
+        subject.stop();
+    }
+
+    private void throttle(final RateLimit perAddress, final RateLimit perUser) {
+        subject = new DefaultLoginThrottle(new KeyedRateLimiter(perAddress), new KeyedRateLimiter(perUser),
+                                           Duration.ofMillis(10)
+        );
+        subject.start();
+    }
+
+    @Test
+    public void shouldAllowFirstAttempt() {
+        //given
+        throttle(ONCE_A_MINUTE, ONCE_A_MINUTE);
+        //when
+        val result = subject.isPermitted("bob", session);
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void shouldNotChargeAttemptsThatSucceed() {
+        //given
+        throttle(ONCE_A_MINUTE, ONCE_A_MINUTE);
+        subject.isPermitted("bob", session);
+        //when
+        val result = subject.isPermitted("bob", session);
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void shouldRefuseAttemptsFromAddressAfterFailure() {
+        //given
+        throttle(ONCE_A_MINUTE, UNLIMITED);
+        subject.failed("bob", session);
+        //when
+        val result = subject.isPermitted("alice", session);
+        //then
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void shouldRefuseAttemptsForUserAfterFailure() {
+        //given
+        throttle(UNLIMITED, ONCE_A_MINUTE);
+        subject.failed("bob", session);
+        //when
+        val result = subject.isPermitted("bob", otherSession);
+        //then
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void shouldAllowOtherAddresses() {
+        //given
+        throttle(ONCE_A_MINUTE, UNLIMITED);
+        subject.failed("bob", session);
+        //when
+        val result = subject.isPermitted("bob", otherSession);
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void shouldNotChargeUserWhenAddressIsThrottled() {
+        //given
+        throttle(ONCE_A_MINUTE, ONCE_A_MINUTE);
+        subject.failed("bob", session);
+        //when
+        subject.failed("alice", session);
+        //then
+        assertThat(subject.isPermitted("alice", otherSession)).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDisconnectThrottledSessionAfterTarpit() {
+        //given
+        throttle(ONCE_A_MINUTE, UNLIMITED);
+        subject.failed("bob", session);
+        //when
+        subject.isPermitted("bob", session);
+        //then
+        verify(session).setAttribute(any(AttributeStore.AttributeKey.class), eq(Boolean.TRUE));
+        verify(session, timeout(1000)).close(false);
+    }
+
+    @Test
+    public void shouldRefuseAttemptsOnTarpittedSession() {
+        //given
+        throttle(UNLIMITED, UNLIMITED);
+        given(session.getAttribute(any())).willReturn(Boolean.TRUE);
+        //when
+        val result = subject.isPermitted("bob", session);
+        //then
+        assertThat(result).isFalse();
+        verify(session, never()).close(false);
+    }
+
+    @Test
+    public void unlimitedShouldAllowEveryAttempt() {
+        //given
+        throttle(UNLIMITED, UNLIMITED);
+        val unlimited = LoginThrottle.unlimited();
+        val anySession = mock(ServerSession.class);
+        //then
+        unlimited.failed("bob", anySession);
+        assertThat(unlimited.isPermitted("bob", anySession)).isTrue();
+        assertThat(unlimited.isPermitted("bob", anySession)).isTrue();
+    }
+}
@@ -1,6 +1,12 @@
 package com.hubio.s3sftp.server;
 
+import com.hubio.s3sftp.server.compression.SessionCompression;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
 import lombok.val;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.subsystem.sftp.SftpClient;
 import org.apache.sshd.server.auth.pubkey.AcceptAllPublickeyAuthenticator;
 import org.apache.sshd.server.session.ServerSession;
 import org.hamcrest.core.IsInstanceOf;
@@ -12,15 +18,28 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
 
 /**
  * Tests for {@link DefaultS3SftpServer}.
@@ -76,6 +95,18 @@ public class DefaultS3SftpServerTest {
 
     private Map<String, String> users;
 
+    private boolean virtualThreads;
+
+    private int windowSize = 2 * 1024 * 1024;
+
+    private WindowTuning windowTuning = WindowTuning.fixed();
+
+    private CryptoProfile cryptoProfile = CryptoProfile.sshdDefaults();
+
+    private SessionCompression compression = SessionCompression.none();
+
+    private List<ListenerConfiguration> listeners = new ArrayList<>();
+
     private String bucket;
 
     private String home;
@@ -114,6 +145,12 @@ public class DefaultS3SftpServerTest {
                                                            .sessionBucket(sessionBucket)
                                                            .sessionHome(sessionHome)
                                                            .uri(uri)
+                                                           .virtualThreads(virtualThreads)
+                                                           .windowSize(windowSize)
+                                                           .windowTuning(windowTuning)
+                                                           .cryptoProfile(cryptoProfile)
+                                                           .compression(compression)
+                                                           .listeners(listeners)
                                                            .build());
     }
 
@@ -133,6 +170,17 @@ public class DefaultS3SftpServerTest {
         subject.stop();
     }
 
+    @Test
+    public void startAndStopWithSeveralHostKeys() {
+        //given
+        hostKeyPrivate = HOSTKEY + "\n" + HostKeysTest.OPENSSH_EC;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        subject = createServer();
+        //when
+        subject.start();
+        subject.stop();
+    }
+
     @Test
     public void startAndStopWithHostKeyFileAndPasswordAuth() throws IOException {
         //given
@@ -155,6 +203,223 @@ public class DefaultS3SftpServerTest {
         subject.stop();
     }
 
+    @Test
+    public void startAndStopWithVirtualThreads() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        virtualThreads = true;
+        subject = createServer();
+        //when
+        subject.start();
+        subject.stop();
+    }
+
+    @Test
+    public void startAndStopWithWindowTuning() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        windowTuning = WindowTuning.roundTrip(100L * 1024 * 1024, 64 * 1024 * 1024);
+        subject = createServer();
+        //when
+        subject.start();
+        subject.stop();
+    }
+
+    @Test
+    public void startAndStopWithThroughputCryptoProfile() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        cryptoProfile = CryptoProfile.throughput();
+        subject = createServer();
+        //when
+        subject.start();
+        subject.stop();
+    }
+
+    @Test
+    public void startAndStopWithAdaptiveCompression() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        compression = SessionCompression.adaptive();
+        subject = createServer();
+        //when
+        subject.start();
+        subject.stop();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String banner(final int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+                    .readLine();
+        }
+    }
+
+    @Test
+    public void shouldListenOnEachListenerPort() throws IOException {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        port = freePort();
+        val partnerPort = freePort();
+        listeners.add(ListenerConfiguration.builder()
+                                           .port(partnerPort)
+                                           .authenticationProvider(S3SftpServer.publicKeyAuthenticator(
+                                                   AcceptAllPublickeyAuthenticator.INSTANCE))
+                                           .sessionBucket(S3SftpServer.simpleSessionBucket("partners"))
+                                           .build());
+        subject = createServer();
+        //when
+        subject.start();
+        //then
+        try {
+            assertThat(banner(port)).startsWith("SSH-2.0");
+            assertThat(banner(partnerPort)).startsWith("SSH-2.0");
+        } finally {
+            subject.stop();
+        }
+    }
+
+    @Test
+    public void shouldStopStartedListenersAndServicesWhenAListenerFailsToStart() throws IOException {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        port = freePort();
+        compression = mock(SessionCompression.class);
+        val failingProvider = mock(AuthenticationProvider.class);
+        willThrow(new IllegalStateException("failed")).given(failingProvider)
+                                                      .setHomeDirExistsChecker(any());
+        listeners.add(ListenerConfiguration.builder()
+                                           .port(freePort())
+                                           .authenticationProvider(failingProvider)
+                                           .sessionBucket(S3SftpServer.simpleSessionBucket("partners"))
+                                           .build());
+        subject = createServer();
+        //when
+        try {
+            subject.start();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        //then
+        then(compression).should()
+                         .stop();
+        new ServerSocket(port).close();
+    }
+
+    @Test
+    public void shouldErrorWhenTwoListenersShareAPort() throws IOException {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        port = freePort();
+        listeners.add(ListenerConfiguration.builder()
+                                           .port(port)
+                                           .authenticationProvider(S3SftpServer.simpleAuthenticator(users))
+                                           .build());
+        subject = createServer();
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("More than one listener on port " + port);
+        //when
+        subject.start();
+    }
+
+    @Test
+    public void shouldErrorWhenListenersWithDifferentBucketsShareAnAuthenticationProvider() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        listeners.add(ListenerConfiguration.builder()
+                                           .sessionBucket(S3SftpServer.simpleSessionBucket("partners"))
+                                           .build());
+        subject = createServer();
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Listeners with different session mappings need their own authenticationProvider");
+        //when
+        subject.start();
+    }
+
+    @Test
+    public void drainWithNoTransfersShouldStopStraightAway() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        subject = createServer();
+        subject.start();
+        val reports = new ArrayList<DrainProgress>();
+        //when
+        val drained = subject.drain(Duration.ofSeconds(5), reports::add);
+        //then
+        assertThat(drained).isTrue();
+        assertThat(reports).hasSize(1);
+        assertThat(reports.get(0)
+                          .isComplete()).isTrue();
+        assertThat(reports.get(0)
+                          .getSessions()).isZero();
+    }
+
+    @Test
+    public void shouldAcceptTransfersWhenStartedAgainAfterDraining() throws IOException {
+        //given
+        val amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(bucket);
+        amazonS3.putObject(bucket, home + "/bob/", "");
+        InMemoryAmazonS3Factory.use(amazonS3);
+        System.setProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        hostKeyPrivate = HOSTKEY;
+        users.put("bob", "secret");
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        port = freePort();
+        uri = "s3://" + bucket + "/";
+        subject = createServer();
+        subject.start();
+        subject.drain(Duration.ofSeconds(5), progress -> {
+        });
+        //when
+        subject.start();
+        //then
+        try (SshClient client = SshClient.setUpDefaultClient()) {
+            client.start();
+            val session = client.connect("bob", "localhost", port)
+                                .verify(10, TimeUnit.SECONDS)
+                                .getSession();
+            session.addPasswordIdentity("secret");
+            session.auth()
+                   .verify(10, TimeUnit.SECONDS);
+            try (SftpClient sftpClient = session.createSftpClient();
+                 OutputStream output = sftpClient.write("file.txt")) {
+                output.write("content".getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            subject.stop();
+            System.clearProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS);
+        }
+        assertThat(amazonS3.getObjectAsString(bucket, home + "/bob/file.txt")).isEqualTo("content");
+    }
+
+    @Test
+    public void shouldErrorWhenWindowIsSmallerThanPacket() {
+        //given
+        hostKeyPrivate = HOSTKEY;
+        authenticationProvider = S3SftpServer.simpleAuthenticator(users);
+        windowSize = 1024;
+        subject = createServer();
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("windowSize");
+        //when
+        subject.start();
+    }
+
     @Test
     public void shouldErrorWhenNoHostKey() {
         //given
@@ -1,6 +1,7 @@
 package com.hubio.s3sftp.server;
 
 import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
+import com.hubio.s3sftp.server.usage.BucketUsage;
 import lombok.val;
 import org.apache.sshd.server.subsystem.sftp.SftpEventListener;
 import org.apache.sshd.server.subsystem.sftp.SftpEventListenerManager;
@@ -35,11 +36,16 @@ public class JailedSftpSubsystemFactoryTest {
     @Mock
     private UserFileSystemResolver userFileSystemResolver;
 
+    @Mock
+    private BucketUsage bucketUsage;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
         sftpSubsystemFactory =
-                new JailedSftpSubsystemFactory(sessionBucket, sessionHome, sessionJail, userFileSystemResolver);
+                new JailedSftpSubsystemFactory(sessionBucket, sessionHome, sessionJail, userFileSystemResolver,
+                                               SessionQuota.unlimited(), bucketUsage
+                );
     }
 
     @Test
@@ -1,11 +1,18 @@
 package com.hubio.s3sftp.server;
 
+import com.amazonaws.services.s3.AmazonS3;
+import com.hubio.s3sftp.server.filechannel.ObjectChecksums;
 import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.hubio.s3sftp.server.usage.PrefixUsage;
 import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3FileSystemProvider;
 import de.bechte.junit.runners.context.HierarchicalContextRunner;
 import lombok.val;
 import org.apache.sshd.common.Factory;
 import org.apache.sshd.common.random.Random;
+import org.apache.sshd.common.subsystem.sftp.SftpConstants;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
 import org.apache.sshd.server.ServerFactoryManager;
 import org.apache.sshd.server.session.ServerSession;
 import org.apache.sshd.server.subsystem.sftp.AbstractSftpEventListenerAdapter;
@@ -18,6 +25,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,7 +36,11 @@ import java.util.concurrent.ExecutorService;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 /**
  * Tests for {@link JailedSftpSubsystem}.
@@ -72,6 +84,15 @@ public class JailedSftpSubsystemTest {
     @Mock
     private S3FileSystem s3FileSystem;
 
+    @Mock
+    private SessionQuota sessionQuota;
+
+    @Mock
+    private BucketUsage bucketUsage;
+
+    @Mock
+    private AmazonS3 amazonS3;
+
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
@@ -82,7 +103,7 @@ public class JailedSftpSubsystemTest {
         val shutdownOnExit = false;
         sftpSubsystem =
                 new JailedSftpSubsystem(executorService, shutdownOnExit, unsupportedAttributePolicy, sessionBucket,
-                                        sessionHome, sessionJail, userFileSystemResolver
+                                        sessionHome, sessionJail, userFileSystemResolver, sessionQuota, bucketUsage
                 );
     }
 
@@ -128,7 +149,7 @@ public class JailedSftpSubsystemTest {
             given(sessionBucket.getBucket(anyObject())).willReturn(bucket);
             given(sessionJail.getJail(anyObject())).willReturn("");
             given(sessionHome.getHomePath(anyObject())).willReturn("");
-            given(userFileSystemResolver.resolve(username)).willReturn(Optional.of(s3FileSystem));
+            given(userFileSystemResolver.resolve(eq(username), anyString(), anyString())).willReturn(Optional.of(s3FileSystem));
             given(s3FileSystem.getSeparator()).willReturn("/");
         }
 
@@ -344,11 +365,220 @@ public class JailedSftpSubsystemTest {
         @Test
         public void filesystemForUserIsMissing() throws Exception {
             //given
-            given(userFileSystemResolver.resolve(username)).willReturn(Optional.empty());
+            given(userFileSystemResolver.resolve(eq(username), anyString(), anyString())).willReturn(Optional.empty());
             exception.expect(RuntimeException.class);
             exception.expectMessage("Error finding filesystem.");
             //when
             sftpSubsystem.resolveFile("path");
         }
+
+        public class FreeSpace {
+
+            @Mock
+            private PrefixUsage prefixUsage;
+
+            @Before
+            public void setUp() throws Exception {
+                MockitoAnnotations.initMocks(this);
+                given(sessionHome.getHomePath(anyObject())).willReturn("users/bob");
+                given(s3FileSystem.getClient()).willReturn(amazonS3);
+                given(sessionQuota.getQuota(anyObject())).willReturn(10_000_000L);
+                given(bucketUsage.track(amazonS3, bucket, "users/bob/")).willReturn(prefixUsage);
+                given(prefixUsage.getBytes()).willReturn(4_000_000L);
+            }
+
+            @Test
+            public void spaceAvailableShouldBeQuotaLessBytesUsedUnderHome() throws Exception {
+                //when
+                val space = sftpSubsystem.doSpaceAvailable(1, ".");
+                //then
+                assertThat(space.bytesAvailableToUser).isEqualTo(10_000_000L);
+                assertThat(space.unusedBytesAvailableToUser).isEqualTo(6_000_000L);
+                assertThat(space.bytesPerAllocationUnit).isEqualTo(SessionSpace.BLOCK_SIZE);
+            }
+
+            @Test
+            public void spaceAvailableShouldNotCountUsageWhenUnlimited() throws Exception {
+                //given
+                given(sessionQuota.getQuota(anyObject())).willReturn(SessionQuota.UNLIMITED);
+                //when
+                val space = sftpSubsystem.doSpaceAvailable(1, ".");
+                //then
+                assertThat(space.unusedBytesAvailableToUser).isEqualTo(Long.MAX_VALUE);
+                verifyZeroInteractions(bucketUsage);
+            }
+
+            @Test
+            public void shouldAdvertiseStatVfs() throws Exception {
+                //when
+                val extensions = sftpSubsystem.resolveOpenSSHExtensions(serverSession);
+                //then
+                assertThat(extensions).extracting("name")
+                                      .contains("statvfs@openssh.com", "fstatvfs@openssh.com");
+            }
+
+            @Test
+            public void statVfsShouldReplyWithBlocksOfQuota() throws Exception {
+                //given
+                val out = new ByteArrayOutputStream();
+                sftpSubsystem.setOutputStream(out);
+                val request = new ByteArrayBuffer();
+                request.putString(".");
+                //when
+                sftpSubsystem.executeExtendedCommand(request, 7, "statvfs@openssh.com");
+                //then
+                val reply = new ByteArrayBuffer(out.toByteArray());
+                reply.getInt();
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_EXTENDED_REPLY);
+                assertThat(reply.getInt()).isEqualTo(7);
+                assertThat(reply.getLong()).as("f_bsize")
+                                           .isEqualTo(SessionSpace.BLOCK_SIZE);
+                assertThat(reply.getLong()).as("f_frsize")
+                                           .isEqualTo(SessionSpace.BLOCK_SIZE);
+                assertThat(reply.getLong()).as("f_blocks")
+                                           .isEqualTo(10_000_000L / SessionSpace.BLOCK_SIZE);
+                assertThat(reply.getLong()).as("f_bfree")
+                                           .isEqualTo(6_000_000L / SessionSpace.BLOCK_SIZE);
+                assertThat(reply.getLong()).as("f_bavail")
+                                           .isEqualTo(6_000_000L / SessionSpace.BLOCK_SIZE);
+            }
+
+            @Test
+            public void fstatVfsShouldReplyWithErrorForUnknownHandle() throws Exception {
+                //given
+                val out = new ByteArrayOutputStream();
+                sftpSubsystem.setOutputStream(out);
+                val request = new ByteArrayBuffer();
+                request.putString("no-such-handle");
+                //when
+                sftpSubsystem.executeExtendedCommand(request, 8, "fstatvfs@openssh.com");
+                //then
+                val reply = new ByteArrayBuffer(out.toByteArray());
+                reply.getInt();
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_STATUS);
+                assertThat(reply.getInt()).isEqualTo(8);
+                assertThat(reply.getInt()).isNotEqualTo(SftpConstants.SSH_FX_OK);
+                verifyZeroInteractions(bucketUsage);
+            }
+        }
+
+        public class StoredHashes {
+
+            private final byte[] md5 = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+            private final byte[] sha256 = new byte[32];
+
+            private final Map<String, Object> checksums = new HashMap<>();
+
+            @Mock
+            private S3FileSystemProvider provider;
+
+            private ByteArrayOutputStream out;
+
+            @Before
+            public void setUp() throws Exception {
+                MockitoAnnotations.initMocks(this);
+                given(s3FileSystem.provider()).willReturn(provider);
+                given(provider.readAttributes(any(Path.class), eq(ObjectChecksums.ATTRIBUTES))).willReturn(checksums);
+                checksums.put(ObjectChecksums.SIZE, 100L);
+                checksums.put(ObjectChecksums.MD5, md5);
+                out = new ByteArrayOutputStream();
+                sftpSubsystem.setOutputStream(out);
+            }
+
+            private ByteArrayBuffer checkFile(final String algorithms, final long offset, final long length)
+                    throws IOException {
+                val request = new ByteArrayBuffer();
+                request.putString("file.txt");
+                request.putString(algorithms);
+                request.putLong(offset);
+                request.putLong(length);
+                request.putInt(0);
+                sftpSubsystem.executeExtendedCommand(request, 9, SftpConstants.EXT_CHECK_FILE_NAME);
+                val reply = new ByteArrayBuffer(out.toByteArray());
+                reply.getInt();
+                return reply;
+            }
+
+            private ByteArrayBuffer md5Hash(final byte[] quickCheckHash) throws IOException {
+                val request = new ByteArrayBuffer();
+                request.putString("file.txt");
+                request.putLong(0L);
+                request.putLong(100L);
+                request.putBytes(quickCheckHash);
+                sftpSubsystem.executeExtendedCommand(request, 10, SftpConstants.EXT_MD5_HASH);
+                val reply = new ByteArrayBuffer(out.toByteArray());
+                reply.getInt();
+                return reply;
+            }
+
+            @Test
+            public void checkFileShouldAnswerFromStoredChecksum() throws Exception {
+                //given
+                checksums.put(ObjectChecksums.SHA256, sha256);
+                //when
+                val reply = checkFile("sha256,md5", 0L, 0L);
+                //then
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_EXTENDED_REPLY);
+                assertThat(reply.getInt()).isEqualTo(9);
+                assertThat(reply.getString()).isEqualTo(SftpConstants.EXT_CHECK_FILE);
+                assertThat(reply.getString()).isEqualTo("sha256");
+                assertThat(reply.getBytes()).isEqualTo(sha256);
+            }
+
+            @Test
+            public void checkFileShouldUseFirstStoredAlgorithmRequested() throws Exception {
+                //when
+                val reply = checkFile("sha1,md5", 0L, 100L);
+                //then
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_EXTENDED_REPLY);
+                reply.getInt();
+                reply.getString();
+                assertThat(reply.getString()).isEqualTo("md5");
+                assertThat(reply.getBytes()).isEqualTo(md5);
+            }
+
+            @Test
+            public void checkFileOfPartShouldNotUseStoredChecksum() throws Exception {
+                //when
+                val reply = checkFile("md5", 10L, 50L);
+                //then
+                // the file is read instead, which the mocked file system can't do
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_STATUS);
+            }
+
+            @Test
+            public void md5HashShouldAnswerFromStoredChecksum() throws Exception {
+                //when
+                val reply = md5Hash(new byte[0]);
+                //then
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_EXTENDED_REPLY);
+                assertThat(reply.getInt()).isEqualTo(10);
+                assertThat(reply.getString()).isEqualTo(SftpConstants.EXT_MD5_HASH);
+                assertThat(reply.getBytes()).isEqualTo(md5);
+            }
+
+            @Test
+            public void md5HashShouldBeEmptyWhenQuickCheckDiffers() throws Exception {
+                //when
+                val reply = md5Hash(new byte[16]);
+                //then
+                assertThat(reply.getUByte()).isEqualTo(SftpConstants.SSH_FXP_EXTENDED_REPLY);
+                reply.getInt();
+                reply.getString();
+                assertThat(reply.getBytes()).isEmpty();
+            }
+
+            @Test
+            public void md5HashShouldMatchQuickCheckOfSmallFile() throws Exception {
+                //when
+                val reply = md5Hash(md5);
+                //then
+                reply.getUByte();
+                reply.getInt();
+                reply.getString();
+                assertThat(reply.getBytes()).isEqualTo(md5);
+            }
+        }
     }
 }
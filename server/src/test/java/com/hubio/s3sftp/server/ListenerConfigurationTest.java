@@ -0,0 +1,70 @@
+package com.hubio.s3sftp.server;
+
+import com.hubio.s3sftp.server.scheduling.UserWeight;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ListenerConfiguration}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ListenerConfigurationTest {
+
+    private S3SftpServerConfiguration server;
+
+    @Before
+    public void setUp() {
+        server = S3SftpServerConfiguration.builder()
+                                          .authenticationProvider(S3SftpServer.simpleAuthenticator(new HashMap<>()))
+                                          .sessionBucket(session -> "bucket")
+                                          .uri("uri")
+                                          .virtualThreads(true)
+                                          .build();
+    }
+
+    @Test
+    public void unsetSettingsShouldBeTheServers() {
+        //when
+        val listener = ListenerConfiguration.builder()
+                                            .port(2222)
+                                            .build()
+                                            .orElse(server);
+        //then
+        assertThat(listener.getPort()).isEqualTo(2222);
+        assertThat(listener.getAuthenticationProvider()).isSameAs(server.getAuthenticationProvider());
+        assertThat(listener.getSessionBucket()).isSameAs(server.getSessionBucket());
+        assertThat(listener.getSessionHome()).isSameAs(server.getSessionHome());
+        assertThat(listener.getSessionJail()).isSameAs(server.getSessionJail());
+        assertThat(listener.getLoginThrottle()).isSameAs(server.getLoginThrottle());
+        assertThat(listener.getVirtualThreads()).isTrue();
+        assertThat(listener.getWorkScheduler()).isSameAs(server.getWorkScheduler());
+        assertThat(listener.getSessionBandwidth()).isSameAs(server.getSessionBandwidth());
+        assertThat(listener.getSessionQuota()).isSameAs(server.getSessionQuota());
+    }
+
+    @Test
+    public void listenerSettingsShouldOverrideTheServers() {
+        //given
+        final SessionBucket sessionBucket = session -> "partners";
+        val workScheduler = WorkScheduler.fairShare(4, 1, UserWeight.equal());
+        //when
+        val listener = ListenerConfiguration.builder()
+                                            .sessionBucket(sessionBucket)
+                                            .virtualThreads(false)
+                                            .workScheduler(workScheduler)
+                                            .build()
+                                            .orElse(server);
+        //then
+        assertThat(listener.getSessionBucket()).isSameAs(sessionBucket);
+        assertThat(listener.getVirtualThreads()).isFalse();
+        assertThat(listener.getWorkScheduler()).isSameAs(workScheduler);
+        assertThat(listener.getAuthenticationProvider()).isSameAs(server.getAuthenticationProvider());
+    }
+}
@@ -0,0 +1,155 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link ReloadableSessionConfiguration}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ReloadableSessionConfigurationTest {
+
+    private ReloadableSessionConfiguration subject;
+
+    @Mock
+    private ServerSession serverSession;
+
+    @Mock
+    private ServerSession otherServerSession;
+
+    @Mock
+    private HomeDirExistsChecker homeDirExistsChecker;
+
+    private SimpleAuthenticator before;
+
+    private SimpleAuthenticator after;
+
+    private static void holdAttributes(final ServerSession session) {
+        val attributes = new HashMap<Object, Object>();
+        given(session.getAttribute(any(AttributeStore.AttributeKey.class))).willAnswer(
+                invocation -> attributes.get(invocation.getArguments()[0]));
+        given(session.setAttribute(any(AttributeStore.AttributeKey.class), any())).willAnswer(
+                invocation -> attributes.put(invocation.getArguments()[0], invocation.getArguments()[1]));
+    }
+
+    private static SessionConfiguration configuration(final String bucket, final AuthenticationProvider provider) {
+        return SessionConfiguration.builder()
+                                   .authenticationProvider(provider)
+                                   .sessionBucket(session -> bucket)
+                                   .sessionHome(session -> bucket + "-home")
+                                   .sessionJail(session -> bucket + "-jail")
+                                   .build();
+    }
+
+    private static SimpleAuthenticator authenticator(final String username, final String password) {
+        final Map<String, String> users = new HashMap<>();
+        users.put(username, password);
+        return (SimpleAuthenticator) S3SftpServer.simpleAuthenticator(users);
+    }
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        holdAttributes(serverSession);
+        holdAttributes(otherServerSession);
+        given(homeDirExistsChecker.check(any(), any())).willReturn(true);
+        before = authenticator("bob", "before");
+        after = authenticator("bob", "after");
+        subject = ReloadableSessionConfiguration.of(configuration("before", before));
+    }
+
+    @Test
+    public void newSessionsShouldUseReloadedConfiguration() {
+        //given
+        subject.reload(configuration("after", after));
+        val session = SftpSession.of(serverSession);
+        //then
+        assertThat(subject.getSessionBucket()
+                          .getBucket(session)).isEqualTo("after");
+        assertThat(subject.getSessionHome()
+                          .getHomePath(session)).isEqualTo("after-home");
+        assertThat(subject.getSessionJail()
+                          .getJail(session)).isEqualTo("after-jail");
+    }
+
+    @Test
+    public void existingSessionsShouldKeepTheirConfiguration() {
+        //given
+        val existing = SftpSession.of(serverSession);
+        subject.getSessionBucket()
+               .getBucket(existing);
+        //when
+        subject.reload(configuration("after", after));
+        //then
+        assertThat(subject.getSessionBucket()
+                          .getBucket(existing)).isEqualTo("before");
+        assertThat(subject.getSessionHome()
+                          .getHomePath(existing)).isEqualTo("before-home");
+        assertThat(subject.getSessionBucket()
+                          .getBucket(SftpSession.of(otherServerSession))).isEqualTo("after");
+        assertThat(subject.getCurrent()
+                          .getAuthenticationProvider()).isSameAs(after);
+    }
+
+    @Test
+    public void shouldAuthenticateWithReloadedProvider() {
+        //given
+        val authenticator = (PasswordAuthenticator) subject.getAuthenticationProvider();
+        subject.getAuthenticationProvider()
+               .setHomeDirExistsChecker(homeDirExistsChecker);
+        //when
+        subject.reload(configuration("after", after));
+        //then
+        assertThat(authenticator.authenticate("bob", "before", serverSession)).isFalse();
+        assertThat(authenticator.authenticate("bob", "after", serverSession)).isTrue();
+        assertThat(after.getHomeDirExistsChecker()).isSameAs(homeDirExistsChecker);
+    }
+
+    @Test
+    public void shouldRejectPublicKeyWhenProviderOnlyAcceptsPasswords() {
+        //given
+        val authenticator = (PublickeyAuthenticator) subject.getAuthenticationProvider();
+        //then
+        assertThat(authenticator.authenticate("bob", mock(PublicKey.class), serverSession)).isFalse();
+    }
+
+    @Test
+    public void shouldAuthenticatePublicKeyAfterReloadToPublicKeyProvider() {
+        //given
+        val authenticator = (PublickeyAuthenticator) subject.getAuthenticationProvider();
+        subject.reload(configuration("after", S3SftpServer.publicKeyAuthenticator((username, key, session) -> true)));
+        //then
+        assertThat(authenticator.authenticate("bob", mock(PublicKey.class), serverSession)).isTrue();
+    }
+
+    @Test
+    public void builderShouldTakeSessionSettingsFromReloadableConfiguration() {
+        //when
+        val configuration = S3SftpServerConfiguration.builder()
+                                                     .sessionConfiguration(subject)
+                                                     .uri("uri")
+                                                     .build();
+        //then
+        assertThat(configuration.getAuthenticationProvider()).isSameAs(subject.getAuthenticationProvider());
+        assertThat(configuration.getSessionBucket()).isSameAs(subject.getSessionBucket());
+        assertThat(configuration.getSessionHome()).isSameAs(subject.getSessionHome());
+        assertThat(configuration.getSessionJail()).isSameAs(subject.getSessionJail());
+    }
+}
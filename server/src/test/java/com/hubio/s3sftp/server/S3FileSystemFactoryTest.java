@@ -1,23 +1,31 @@
 package com.hubio.s3sftp.server;
 
+import com.hubio.s3sftp.server.filesystem.FileSystemProviderFactory;
 import com.hubio.s3sftp.server.filesystem.S3SftpFileSystemProvider;
 import com.hubio.s3sftp.server.filesystem.S3SftpFileSystemProviderFactory;
 import com.hubio.s3sftp.server.filesystem.UserFileSystemResolver;
 import com.upplication.s3fs.S3FileSystem;
 import lombok.val;
+import org.apache.sshd.common.AttributeStore;
 import org.apache.sshd.server.session.ServerSession;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests for {@link }.
@@ -59,7 +67,7 @@ public class S3FileSystemFactoryTest {
         //given
         val username = "newUser";
         given(serverSession.getUsername()).willReturn(username);
-        given(userFileSystemResolver.resolve(username)).willReturn(Optional.empty());
+        given(userFileSystemResolver.resolve(username, "bucket", "")).willReturn(Optional.empty());
         given(fileSystemProviderFactory.createWith(any(), eq(serverSession))).willReturn(s3SftpFileSystemProvider);
         given(s3SftpFileSystemProvider.getFileSystem(any(), any())).willReturn(s3FileSystem);
         given(s3SftpFileSystemProvider.getSession()).willReturn(serverSession);
@@ -68,4 +76,52 @@ public class S3FileSystemFactoryTest {
         //then
         assertThat(result).isSameAs(s3FileSystem);
     }
+
+    @Test
+    public void shouldCreateFileSystemForSessionReloadedToOtherBucket() throws Exception {
+        //given
+        val configuration = ReloadableSessionConfiguration.of(configuration("before"));
+        subject = new S3FileSystemFactory(configuration.getSessionBucket(), configuration.getSessionHome(),
+                                          configuration.getSessionJail(), URI.create("uri"),
+                                          fileSystemProviderFactory, FileSystemProviderFactory.userResolver()
+        );
+        val openSession = session("bob");
+        val newSession = session("bob");
+        val reloaded = mock(S3FileSystem.class);
+        given(fileSystemProviderFactory.createWith(any(), any())).willReturn(s3SftpFileSystemProvider);
+        given(s3SftpFileSystemProvider.getFileSystem(any(), any())).willReturn(s3FileSystem, reloaded);
+        val open = subject.createFileSystem(openSession);
+        //when
+        configuration.reload(configuration("after"));
+        val result = subject.createFileSystem(newSession);
+        //then
+        assertThat(result).isSameAs(reloaded);
+        assertThat(subject.createFileSystem(openSession)).isSameAs(open)
+                                                          .isSameAs(s3FileSystem);
+        val env = ArgumentCaptor.forClass(Map.class);
+        verify(s3SftpFileSystemProvider, times(2)).getFileSystem(any(), env.capture());
+        assertThat(env.getAllValues()
+                      .get(1)).containsEntry(S3SftpServer.BUCKET, "after")
+                              .containsEntry(S3SftpServer.JAIL, "after-jail");
+    }
+
+    private static SessionConfiguration configuration(final String bucket) {
+        return SessionConfiguration.builder()
+                                   .authenticationProvider(mock(AuthenticationProvider.class))
+                                   .sessionBucket(session -> bucket)
+                                   .sessionHome(session -> bucket + "-jail/home")
+                                   .sessionJail(session -> bucket + "-jail")
+                                   .build();
+    }
+
+    private static ServerSession session(final String username) {
+        val session = mock(ServerSession.class);
+        given(session.getUsername()).willReturn(username);
+        val attributes = new HashMap<Object, Object>();
+        given(session.getAttribute(any(AttributeStore.AttributeKey.class))).willAnswer(
+                invocation -> attributes.get(invocation.getArguments()[0]));
+        given(session.setAttribute(any(AttributeStore.AttributeKey.class), any())).willAnswer(
+                invocation -> attributes.put(invocation.getArguments()[0], invocation.getArguments()[1]));
+        return session;
+    }
 }
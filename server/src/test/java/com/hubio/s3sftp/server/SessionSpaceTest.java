@@ -0,0 +1,39 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SessionSpace}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class SessionSpaceTest {
+
+    @Test
+    public void freeSpaceShouldBeQuotaLessUsed() {
+        //when
+        val space = SessionSpace.of(1000L, 300L);
+        //then
+        assertThat(space.getTotalBytes()).isEqualTo(1000L);
+        assertThat(space.getFreeBytes()).isEqualTo(700L);
+    }
+
+    @Test
+    public void freeSpaceShouldNotBeNegativeWhenOverQuota() {
+        //when
+        val space = SessionSpace.of(1000L, 1500L);
+        //then
+        assertThat(space.getFreeBytes()).isZero();
+    }
+
+    @Test
+    public void unlimitedQuotaShouldAlwaysBeFree() {
+        //when
+        val space = SessionSpace.of(SessionQuota.UNLIMITED, 1500L);
+        //then
+        assertThat(space.getFreeBytes()).isEqualTo(SessionQuota.UNLIMITED);
+    }
+}
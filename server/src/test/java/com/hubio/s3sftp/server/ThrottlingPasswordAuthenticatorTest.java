@@ -0,0 +1,78 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link ThrottlingPasswordAuthenticator}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ThrottlingPasswordAuthenticatorTest {
+
+    private ThrottlingPasswordAuthenticator subject;
+
+    @Mock
+    private PasswordAuthenticator authenticator;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    @Mock
+    private ServerSession session;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        subject = new ThrottlingPasswordAuthenticator(authenticator, loginThrottle);
+    }
+
+    @Test
+    public void shouldAuthenticateWhenPermitted() throws Exception {
+        //given
+        given(loginThrottle.isPermitted("bob", session)).willReturn(true);
+        given(authenticator.authenticate("bob", "secret", session)).willReturn(true);
+        //when
+        val result = subject.authenticate("bob", "secret", session);
+        //then
+        assertThat(result).isTrue();
+        verify(authenticator).authenticate("bob", "secret", session);
+        verify(loginThrottle, never()).failed(any(), any());
+    }
+
+    @Test
+    public void shouldChargeThrottleWhenPasswordIsRefused() throws Exception {
+        //given
+        given(loginThrottle.isPermitted("bob", session)).willReturn(true);
+        given(authenticator.authenticate("bob", "secret", session)).willReturn(false);
+        //when
+        val result = subject.authenticate("bob", "secret", session);
+        //then
+        assertThat(result).isFalse();
+        verify(loginThrottle).failed("bob", session);
+    }
+
+    @Test
+    public void shouldRejectWithoutCheckingPasswordWhenThrottled() throws Exception {
+        //given
+        given(loginThrottle.isPermitted(any(), any())).willReturn(false);
+        //when
+        val result = subject.authenticate("bob", "secret", session);
+        //then
+        assertThat(result).isFalse();
+        verifyZeroInteractions(authenticator);
+        verify(loginThrottle, never()).failed(any(), any());
+    }
+}
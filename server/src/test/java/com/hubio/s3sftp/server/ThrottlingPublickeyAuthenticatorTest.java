@@ -0,0 +1,83 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.security.PublicKey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link ThrottlingPublickeyAuthenticator}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ThrottlingPublickeyAuthenticatorTest {
+
+    private ThrottlingPublickeyAuthenticator subject;
+
+    @Mock
+    private PublickeyAuthenticator authenticator;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
+    @Mock
+    private ServerSession session;
+
+    @Mock
+    private PublicKey key;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        subject = new ThrottlingPublickeyAuthenticator(authenticator, loginThrottle);
+    }
+
+    @Test
+    public void shouldAuthenticateWhenPermitted() {
+        //given
+        given(loginThrottle.isPermitted("bob", session)).willReturn(true);
+        given(authenticator.authenticate("bob", key, session)).willReturn(true);
+        //when
+        val result = subject.authenticate("bob", key, session);
+        //then
+        assertThat(result).isTrue();
+        verify(authenticator).authenticate("bob", key, session);
+        verify(loginThrottle, never()).failed(any(), any());
+    }
+
+    @Test
+    public void shouldChargeThrottleWhenKeyIsRefused() {
+        //given
+        given(loginThrottle.isPermitted("bob", session)).willReturn(true);
+        given(authenticator.authenticate("bob", key, session)).willReturn(false);
+        //when
+        val result = subject.authenticate("bob", key, session);
+        //then
+        assertThat(result).isFalse();
+        verify(loginThrottle).failed("bob", session);
+    }
+
+    @Test
+    public void shouldRejectWithoutCheckingKeyWhenThrottled() {
+        //given
+        given(loginThrottle.isPermitted(any(), any())).willReturn(false);
+        //when
+        val result = subject.authenticate("bob", key, session);
+        //then
+        assertThat(result).isFalse();
+        verifyZeroInteractions(authenticator);
+        verify(loginThrottle, never()).failed(any(), any());
+    }
+}
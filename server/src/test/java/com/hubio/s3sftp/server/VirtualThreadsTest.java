@@ -0,0 +1,41 @@
+package com.hubio.s3sftp.server;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link VirtualThreads}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class VirtualThreadsTest {
+
+    @Test
+    public void executorShouldOnlyBeCreatedWhenAvailable() {
+        //when
+        val result = VirtualThreads.newThreadPerTaskExecutor();
+        //then
+        assertThat(result.isPresent()).isEqualTo(VirtualThreads.isAvailable());
+        result.ifPresent(ExecutorService::shutdown);
+    }
+
+    @Test
+    public void executorShouldRunTasks() throws Exception {
+        //given
+        val executor = VirtualThreads.newThreadPerTaskExecutor();
+        if (!executor.isPresent()) {
+            return;
+        }
+        //when
+        val result = CompletableFuture.supplyAsync(() -> "ran", executor.get());
+        //then
+        assertThat(result.get()).isEqualTo("ran");
+        executor.get()
+                .shutdown();
+    }
+}
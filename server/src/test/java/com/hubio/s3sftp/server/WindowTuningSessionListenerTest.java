@@ -0,0 +1,102 @@
+package com.hubio.s3sftp.server;
+
+import org.apache.sshd.common.AttributeStore;
+import org.apache.sshd.common.FactoryManager;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link WindowTuningSessionListener}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class WindowTuningSessionListenerTest {
+
+    private static final int WINDOW_SIZE = 2 * 1024 * 1024;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private WindowTuning windowTuning;
+
+    private final Map<String, Object> properties = new HashMap<>();
+
+    private WindowTuningSessionListener subject;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(session.getProperties()).willReturn(properties);
+        subject = new WindowTuningSessionListener(windowTuning, WINDOW_SIZE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSetTunedWindowSizeOnSessionOnceKeysAreEstablished() {
+        //given
+        given(session.removeAttribute(any(AttributeStore.AttributeKey.class))).willReturn(System.nanoTime());
+        given(windowTuning.windowSize(anyInt(), any(Duration.class))).willReturn(8 * WINDOW_SIZE);
+        //when
+        subject.sessionEvent(session, SessionListener.Event.KeyEstablished);
+        //then
+        verify(windowTuning).windowSize(anyInt(), any(Duration.class));
+        assertThat(properties).containsEntry(FactoryManager.WINDOW_SIZE, 8 * WINDOW_SIZE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLeaveWindowSizeWhenUnchanged() {
+        //given
+        given(session.removeAttribute(any(AttributeStore.AttributeKey.class))).willReturn(System.nanoTime());
+        given(windowTuning.windowSize(anyInt(), any(Duration.class))).willReturn(WINDOW_SIZE);
+        //when
+        subject.sessionEvent(session, SessionListener.Event.KeyEstablished);
+        //then
+        assertThat(properties).doesNotContainKey(FactoryManager.WINDOW_SIZE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldTuneOnlyAfterFirstKeyExchange() {
+        //given
+        given(session.removeAttribute(any(AttributeStore.AttributeKey.class))).willReturn(null);
+        //when
+        subject.sessionEvent(session, SessionListener.Event.KexCompleted);
+        //then
+        verify(windowTuning, never()).windowSize(anyInt(), any(Duration.class));
+    }
+
+    @Test
+    public void shouldIgnoreAuthentication() {
+        //when
+        subject.sessionEvent(session, SessionListener.Event.Authenticated);
+        //then
+        verify(windowTuning, never()).windowSize(anyInt(), any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRecordWhenSessionWasCreated() {
+        //when
+        subject.sessionCreated(session);
+        //then
+        verify(session).setAttribute(any(AttributeStore.AttributeKey.class), anyLong());
+    }
+}
@@ -0,0 +1,67 @@
+package com.hubio.s3sftp.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WindowTuning}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class WindowTuningTest {
+
+    private static final int MIB = 1024 * 1024;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void fixedShouldKeepWindowSize() {
+        assertThat(WindowTuning.fixed()
+                               .windowSize(2 * MIB, Duration.ofSeconds(1))).isEqualTo(2 * MIB);
+    }
+
+    @Test
+    public void roundTripShouldGrowWindowToBandwidthDelayProduct() {
+        //given
+        final WindowTuning subject = WindowTuning.roundTrip(100L * MIB, 64 * MIB);
+        //when
+        final int result = subject.windowSize(2 * MIB, Duration.ofMillis(100));
+        //then
+        assertThat(result).isEqualTo(10 * MIB);
+    }
+
+    @Test
+    public void roundTripShouldNotShrinkWindow() {
+        //given
+        final WindowTuning subject = WindowTuning.roundTrip(100L * MIB, 64 * MIB);
+        //when
+        final int result = subject.windowSize(2 * MIB, Duration.ofMillis(1));
+        //then
+        assertThat(result).isEqualTo(2 * MIB);
+    }
+
+    @Test
+    public void roundTripShouldNotGrowWindowBeyondMax() {
+        //given
+        final WindowTuning subject = WindowTuning.roundTrip(100L * MIB, 64 * MIB);
+        //when
+        final int result = subject.windowSize(2 * MIB, Duration.ofSeconds(30));
+        //then
+        assertThat(result).isEqualTo(64 * MIB);
+    }
+
+    @Test
+    public void roundTripShouldRejectNonPositiveBandwidth() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("bytesPerSecond");
+        //when
+        WindowTuning.roundTrip(0, 64 * MIB);
+    }
+}
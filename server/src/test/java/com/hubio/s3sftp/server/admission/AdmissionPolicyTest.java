@@ -0,0 +1,49 @@
+package com.hubio.s3sftp.server.admission;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link AdmissionPolicy}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class AdmissionPolicyTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldErrorWhenInitialConcurrencyAboveMaximum() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("initialConcurrency must be between minConcurrency and maxConcurrency");
+        //when
+        AdmissionPolicy.builder()
+                       .initialConcurrency(300)
+                       .build();
+    }
+
+    @Test
+    public void shouldErrorWhenDecreaseIsNotAFraction() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("decrease must be between 0 and 1");
+        //when
+        AdmissionPolicy.builder()
+                       .decrease(1)
+                       .build();
+    }
+
+    @Test
+    public void shouldErrorWhenNoAttempts() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("maxAttempts must be at least 1");
+        //when
+        AdmissionPolicy.builder()
+                       .maxAttempts(0)
+                       .build();
+    }
+}
@@ -0,0 +1,258 @@
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.RequestClientOptions;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link AdmittingAmazonS3}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class AdmittingAmazonS3Test {
+
+    private static final String BUCKET = "bucket";
+
+    private static final String KEY = "users/alice/file";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Mock
+    private AmazonS3 amazonS3;
+
+    private AdaptiveS3Admission admission;
+
+    private AmazonS3 subject;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        admission = new AdaptiveS3Admission(AdmissionPolicy.builder()
+                                                           .baseBackoff(Duration.ofMillis(1))
+                                                           .maxBackoff(Duration.ofMillis(5))
+                                                           .build());
+        subject = admission.wrap(amazonS3);
+    }
+
+    @Test
+    public void shouldPassRequestThrough() {
+        //given
+        given(amazonS3.getObjectAsString(BUCKET, KEY)).willReturn("content");
+        //when
+        val result = subject.getObjectAsString(BUCKET, KEY);
+        //then
+        assertThat(result).isEqualTo("content");
+    }
+
+    @Test
+    public void shouldRetryWhenThrottled() {
+        //given
+        given(amazonS3.getObjectAsString(BUCKET, KEY)).willThrow(slowDown())
+                                                      .willReturn("content");
+        //when
+        val result = subject.getObjectAsString(BUCKET, KEY);
+        //then
+        assertThat(result).isEqualTo("content");
+        assertThat(admission.getLimiter()
+                            .getLimit("bucket/users/alice/")).isEqualTo(8.0);
+    }
+
+    @Test
+    public void shouldRetryWhenConnectionFails() {
+        //given
+        given(amazonS3.doesObjectExist(BUCKET, KEY)).willThrow(
+                new SdkClientException("Unable to execute HTTP request", new SocketException("Connection reset")))
+                                                    .willReturn(true);
+        //when
+        val result = subject.doesObjectExist(BUCKET, KEY);
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() {
+        //given
+        given(amazonS3.getObjectAsString(BUCKET, KEY)).willThrow(slowDown());
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("SlowDown");
+        //when
+        try {
+            subject.getObjectAsString(BUCKET, KEY);
+        } finally {
+            //then
+            verify(amazonS3, times(4)).getObjectAsString(BUCKET, KEY);
+        }
+    }
+
+    @Test
+    public void shouldStopRetryingWhenBudgetIsSpent() {
+        //given
+        subject = new AdaptiveS3Admission(AdmissionPolicy.builder()
+                                                         .baseBackoff(Duration.ofMillis(1))
+                                                         .retryRatio(0)
+                                                         .retryBurst(2)
+                                                         .build()).wrap(amazonS3);
+        given(amazonS3.getObjectAsString(BUCKET, KEY)).willThrow(slowDown());
+        //when
+        for (int i = 0; i < 2; i++) {
+            try {
+                subject.getObjectAsString(BUCKET, KEY);
+            } catch (AmazonS3Exception e) {
+                // expected
+            }
+        }
+        //then
+        verify(amazonS3, times(4)).getObjectAsString(BUCKET, KEY);
+    }
+
+    @Test
+    public void shouldNotRetryClientErrors() {
+        //given
+        val notFound = new AmazonS3Exception("Not Found");
+        notFound.setStatusCode(404);
+        notFound.setErrorCode("NoSuchKey");
+        given(amazonS3.getObjectAsString(BUCKET, KEY)).willThrow(notFound);
+        exception.expect(AmazonS3Exception.class);
+        //when
+        try {
+            subject.getObjectAsString(BUCKET, KEY);
+        } finally {
+            //then
+            verify(amazonS3, times(1)).getObjectAsString(BUCKET, KEY);
+        }
+    }
+
+    @Test
+    public void shouldRetryUploadFromStreamFromItsStart() {
+        //given
+        val sent = new ArrayList<String>();
+        given(amazonS3.putObject(eq(BUCKET), eq(KEY), any(InputStream.class), any(ObjectMetadata.class))).willAnswer(
+                invocation -> {
+                    sent.add(read(invocation.getArgumentAt(2, InputStream.class)));
+                    if (sent.size() == 1) {
+                        throw slowDown();
+                    }
+                    return new PutObjectResult();
+                });
+        //when
+        subject.putObject(BUCKET, KEY, unmarkable("content"), new ObjectMetadata());
+        //then
+        assertThat(sent).containsExactly("content", "content");
+    }
+
+    @Test
+    public void shouldRetryUploadRequestFromStream() {
+        //given
+        val sent = new ArrayList<String>();
+        given(amazonS3.putObject(any(PutObjectRequest.class))).willAnswer(invocation -> {
+            sent.add(read(invocation.getArgumentAt(0, PutObjectRequest.class)
+                                    .getInputStream()));
+            if (sent.size() == 1) {
+                throw slowDown();
+            }
+            return new PutObjectResult();
+        });
+        val request = new PutObjectRequest(BUCKET, KEY, unmarkable("content"), new ObjectMetadata());
+        //when
+        subject.putObject(request);
+        //then
+        assertThat(sent).containsExactly("content", "content");
+    }
+
+    @Test
+    public void shouldNotRetryUploadFromStreamBeyondReadLimit() {
+        //given
+        val content = new String(new char[RequestClientOptions.DEFAULT_STREAM_BUFFER_SIZE * 2]).replace('\0', 'x');
+        val request = new PutObjectRequest(BUCKET, KEY, unmarkable(content), new ObjectMetadata());
+        given(amazonS3.putObject(any(PutObjectRequest.class))).willAnswer(invocation -> {
+            read(invocation.getArgumentAt(0, PutObjectRequest.class)
+                           .getInputStream());
+            throw slowDown();
+        });
+        exception.expect(AmazonS3Exception.class);
+        //when
+        try {
+            subject.putObject(request);
+        } finally {
+            //then
+            verify(amazonS3, times(1)).putObject(request);
+        }
+    }
+
+    @Test
+    public void shouldRetryUploadFromFile() {
+        //given
+        val request = new PutObjectRequest(BUCKET, KEY, new File("content"));
+        given(amazonS3.putObject(request)).willThrow(slowDown())
+                                          .willReturn(new PutObjectResult());
+        //when
+        subject.putObject(request);
+        //then
+        verify(amazonS3, times(2)).putObject(request);
+    }
+
+    @Test
+    public void shouldPassLocalMethodsThrough() {
+        //when
+        subject.getUrl(BUCKET, KEY);
+        //then
+        verify(amazonS3).getUrl(BUCKET, KEY);
+    }
+
+    private static InputStream unmarkable(final String content) {
+        return new FilterInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    private static String read(final InputStream stream) throws IOException {
+        val content = new ByteArrayOutputStream();
+        val buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static AmazonServiceException slowDown() {
+        val slowDown = new AmazonS3Exception("Please reduce your request rate.");
+        slowDown.setStatusCode(503);
+        slowDown.setErrorCode("SlowDown");
+        return slowDown;
+    }
+}
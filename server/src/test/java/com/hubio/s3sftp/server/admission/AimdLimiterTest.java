@@ -0,0 +1,145 @@
+package com.hubio.s3sftp.server.admission;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AimdLimiter}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class AimdLimiterTest {
+
+    private static final String PREFIX = "bucket/users/alice/";
+
+    private final AimdLimiter subject = new AimdLimiter(AdmissionPolicy.builder()
+                                                                       .initialConcurrency(4)
+                                                                       .minConcurrency(1)
+                                                                       .maxConcurrency(8)
+                                                                       .decrease(0.5)
+                                                                       .build());
+
+    @Test
+    public void throttlingShouldHalveLimit() {
+        //given
+        val permit = subject.acquire(PREFIX);
+        //when
+        permit.release(AimdLimiter.Outcome.THROTTLED);
+        //then
+        assertThat(subject.getLimit(PREFIX)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void throttlingOfRequestsInFlightTogetherShouldCutLimitOnce() {
+        //given
+        val permits = new ArrayList<AimdLimiter.Permit>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(subject.acquire(PREFIX));
+        }
+        //when
+        permits.forEach(permit -> permit.release(AimdLimiter.Outcome.THROTTLED));
+        //then
+        assertThat(subject.getLimit(PREFIX)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void limitShouldNotFallBelowMinimum() {
+        //when
+        for (int i = 0; i < 10; i++) {
+            subject.acquire(PREFIX)
+                   .release(AimdLimiter.Outcome.THROTTLED);
+        }
+        //then
+        assertThat(subject.getLimit(PREFIX)).isEqualTo(1.0);
+    }
+
+    @Test
+    public void busySuccessShouldRaiseLimit() {
+        //given
+        subject.acquire(PREFIX)
+               .release(AimdLimiter.Outcome.THROTTLED);
+        //when
+        for (int i = 0; i < 4; i++) {
+            val first = subject.acquire(PREFIX);
+            val second = subject.acquire(PREFIX);
+            first.release(AimdLimiter.Outcome.SUCCESS);
+            second.release(AimdLimiter.Outcome.SUCCESS);
+        }
+        //then
+        assertThat(subject.getLimit(PREFIX)).isGreaterThan(3.0);
+    }
+
+    @Test
+    public void idleSuccessShouldNotRaiseLimit() {
+        //given
+        val limiter = new AimdLimiter(AdmissionPolicy.builder()
+                                                     .initialConcurrency(16)
+                                                     .decrease(0.5)
+                                                     .build());
+        limiter.acquire(PREFIX)
+               .release(AimdLimiter.Outcome.THROTTLED);
+        //when
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(PREFIX)
+                   .release(AimdLimiter.Outcome.SUCCESS);
+        }
+        //then
+        assertThat(limiter.getLimit(PREFIX)).isEqualTo(8.0);
+    }
+
+    @Test
+    public void failureShouldNotChangeLimit() {
+        //given
+        val permit = subject.acquire(PREFIX);
+        subject.acquire(PREFIX);
+        //when
+        permit.release(AimdLimiter.Outcome.FAILED);
+        //then
+        assertThat(subject.getLimit(PREFIX)).isEqualTo(4.0);
+    }
+
+    @Test
+    public void shouldWaitWhileLimitIsReached() throws InterruptedException {
+        //given
+        val permits = new ArrayList<AimdLimiter.Permit>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(subject.acquire(PREFIX));
+        }
+        val acquired = new CountDownLatch(1);
+        val waiter = new Thread(() -> {
+            subject.acquire(PREFIX);
+            acquired.countDown();
+        });
+        waiter.start();
+        //when
+        assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        permits.get(0)
+               .release(AimdLimiter.Outcome.FAILED);
+        //then
+        assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void prefixesShouldBeLimitedSeparately() {
+        //given
+        subject.acquire(PREFIX)
+               .release(AimdLimiter.Outcome.THROTTLED);
+        //then
+        assertThat(subject.getLimit("bucket/users/bob/")).isEqualTo(4.0);
+    }
+
+    @Test
+    public void shouldForgetIdlePrefixAtInitialLimit() {
+        //when
+        subject.acquire(PREFIX)
+               .release(AimdLimiter.Outcome.SUCCESS);
+        //then
+        assertThat(subject.size()).isZero();
+    }
+}
@@ -0,0 +1,78 @@
+package com.hubio.s3sftp.server.admission;
+
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RequestPrefix}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class RequestPrefixTest {
+
+    @Test
+    public void shouldUseLeadingSegmentsOfKey() {
+        //when
+        val result = RequestPrefix.of(new Object[]{"bucket", "users/alice/docs/report.txt"}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/users/alice/");
+    }
+
+    @Test
+    public void shouldUseWholeSegmentsOfShortKey() {
+        //when
+        val result = RequestPrefix.of(new Object[]{"bucket", "users/report.txt"}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/users/");
+    }
+
+    @Test
+    public void shouldUseBucketWhenNoKey() {
+        //when
+        val result = RequestPrefix.of(new Object[]{"bucket"}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/");
+    }
+
+    @Test
+    public void shouldUseBucketAndKeyOfRequest() {
+        //when
+        val result = RequestPrefix.of(new Object[]{new GetObjectRequest("bucket", "users/bob/file")}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/users/bob/");
+    }
+
+    @Test
+    public void shouldUsePrefixOfListing() {
+        //given
+        val request = new ListObjectsV2Request().withBucketName("bucket")
+                                                .withPrefix("users/carol/dir/");
+        //when
+        val result = RequestPrefix.of(new Object[]{request}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/users/carol/");
+    }
+
+    @Test
+    public void shouldUseDestinationOfCopy() {
+        //given
+        val request = new CopyObjectRequest("source", "users/alice/a", "bucket", "users/dave/b");
+        //when
+        val result = RequestPrefix.of(new Object[]{request}, 2);
+        //then
+        assertThat(result).isEqualTo("bucket/users/dave/");
+    }
+
+    @Test
+    public void shouldBeEmptyWhenNoBucket() {
+        //when
+        val result = RequestPrefix.of(new Object[0], 2);
+        //then
+        assertThat(result).isEmpty();
+    }
+}
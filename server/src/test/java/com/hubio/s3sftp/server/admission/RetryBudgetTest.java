@@ -0,0 +1,59 @@
+package com.hubio.s3sftp.server.admission;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RetryBudget}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void shouldAllowBurstOfRetries() {
+        //given
+        val subject = new RetryBudget(AdmissionPolicy.builder()
+                                                     .retryBurst(2)
+                                                     .build());
+        //then
+        assertThat(subject.tryWithdraw()).isTrue();
+        assertThat(subject.tryWithdraw()).isTrue();
+        assertThat(subject.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    public void shouldAllowOneRetryForEachTenRequests() {
+        //given
+        val subject = new RetryBudget(AdmissionPolicy.builder()
+                                                     .retryRatio(0.1)
+                                                     .retryBurst(0)
+                                                     .build());
+        //when
+        for (int i = 0; i < 9; i++) {
+            subject.deposit();
+        }
+        //then
+        assertThat(subject.tryWithdraw()).isFalse();
+        subject.deposit();
+        assertThat(subject.tryWithdraw()).isTrue();
+        assertThat(subject.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    public void shouldNotSaveMoreThanBurst() {
+        //given
+        val subject = new RetryBudget(AdmissionPolicy.builder()
+                                                     .retryRatio(1)
+                                                     .retryBurst(3)
+                                                     .build());
+        //when
+        for (int i = 0; i < 100; i++) {
+            subject.deposit();
+        }
+        //then
+        assertThat(subject.getAvailable()).isEqualTo(3.0);
+    }
+}
@@ -0,0 +1,110 @@
+package com.hubio.s3sftp.server.compression;
+
+import lombok.val;
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.compression.BuiltinCompressions;
+import org.apache.sshd.common.io.IoSession;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Tests for {@link AdaptiveSessionCompression}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class AdaptiveSessionCompressionTest {
+
+    private final CompressionPolicy policy = CompressionPolicy.builder()
+                                                              .build();
+
+    private final AdaptiveSessionCompression subject = new AdaptiveSessionCompression(policy);
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private IoSession ioSession;
+
+    private AdaptiveZlibCompression outgoing;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        outgoing = new AdaptiveZlibCompression(policy);
+        given(session.getUsername()).willReturn("bob");
+        given(session.getIoSession()).willReturn(ioSession);
+        given(ioSession.getRemoteAddress()).willReturn(new InetSocketAddress("127.0.0.1", 2222));
+    }
+
+    @Test
+    public void shouldOfferDelayedZlibThenNone() {
+        //given
+        val server = SshServer.setUpDefaultServer();
+        //when
+        subject.apply(server);
+        //then
+        assertThat(NamedResource.getNames(server.getCompressionFactories())).isEqualTo(
+                "zlib@openssh.com," + BuiltinCompressions.none.getName());
+        assertThat(server.getCompressionFactories()
+                         .get(0)
+                         .create()).isInstanceOf(AdaptiveZlibCompression.class);
+    }
+
+    @Test
+    public void shouldListSessionsUsingCompression() throws Exception {
+        //given
+        given(session.getCompressionInformation(false)).willReturn(outgoing);
+        //when
+        subject.sessionEvent(session, SessionListener.Event.Authenticated);
+        //then
+        assertThat(subject.getSessions()).hasSize(1);
+        val stats = subject.getSessions()
+                           .get(0);
+        assertThat(stats.getUsername()).isEqualTo("bob");
+        assertThat(stats.getRemoteAddress()).contains("127.0.0.1");
+    }
+
+    @Test
+    public void shouldNotListSessionsWithoutCompression() {
+        //given
+        given(session.getCompressionInformation(false)).willReturn(BuiltinCompressions.none.create());
+        //when
+        subject.sessionEvent(session, SessionListener.Event.Authenticated);
+        //then
+        assertThat(subject.getSessions()).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepCountersWhenKeysAreExchangedAgain() {
+        //given
+        given(session.getCompressionInformation(false)).willReturn(outgoing);
+        subject.sessionEvent(session, SessionListener.Event.Authenticated);
+        val rekeyed = new AdaptiveZlibCompression(policy);
+        given(session.getCompressionInformation(false)).willReturn(rekeyed);
+        //when
+        subject.sessionEvent(session, SessionListener.Event.KexCompleted);
+        //then
+        assertThat(subject.getSessions()).hasSize(1);
+    }
+
+    @Test
+    public void shouldForgetClosedSessions() {
+        //given
+        given(session.getCompressionInformation(false)).willReturn(outgoing);
+        subject.sessionEvent(session, SessionListener.Event.Authenticated);
+        //when
+        subject.sessionClosed(session);
+        //then
+        assertThat(subject.getSessions()).isEmpty();
+    }
+}
@@ -0,0 +1,146 @@
+package com.hubio.s3sftp.server.compression;
+
+import lombok.val;
+import org.apache.sshd.common.compression.Compression;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link AdaptiveZlibCompression}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class AdaptiveZlibCompressionTest {
+
+    private static final int PACKET_SIZE = 32 * 1024;
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    private static final int PROBE_INTERVAL = 256 * 1024;
+
+    private final Random random = new Random(1);
+
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    private CompressionCounters counters;
+
+    private AdaptiveZlibCompression deflater;
+
+    private AdaptiveZlibCompression inflater;
+
+    @Before
+    public void setUp() {
+        val policy = CompressionPolicy.builder()
+                                      .sampleSize(SAMPLE_SIZE)
+                                      .probeInterval(PROBE_INTERVAL)
+                                      .build();
+        counters = new CompressionCounters();
+        deflater = new AdaptiveZlibCompression(policy);
+        deflater.init(Compression.Type.Deflater, -1);
+        deflater.recordTo(counters);
+        inflater = new AdaptiveZlibCompression(policy);
+        inflater.init(Compression.Type.Inflater, -1);
+        inflater.recordTo(counters);
+    }
+
+    private byte[] compressible() {
+        val packet = new StringBuilder();
+        while (packet.length() < PACKET_SIZE) {
+            packet.append("2017-06-01,")
+                  .append(random.nextInt(10))
+                  .append(",widget,GBP\n");
+        }
+        return packet.substring(0, PACKET_SIZE)
+                     .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] incompressible() {
+        val packet = new byte[PACKET_SIZE];
+        random.nextBytes(packet);
+        return packet;
+    }
+
+    /**
+     * Send the packet through the deflater and inflater.
+     *
+     * @return the size of the packet once compressed
+     */
+    private int send(final byte[] packet) throws IOException {
+        sent.write(packet);
+        val buffer = new ByteArrayBuffer();
+        buffer.putRawBytes(packet);
+        deflater.compress(buffer);
+        val compressedLength = buffer.available();
+        val decompressed = new ByteArrayBuffer();
+        inflater.uncompress(buffer, decompressed);
+        received.write(decompressed.getCompactData());
+        return compressedLength;
+    }
+
+    @Test
+    public void shouldBeDelayedZlib() {
+        assertThat(deflater.getName()).isEqualTo("zlib@openssh.com");
+        assertThat(deflater.isDelayed()).isTrue();
+    }
+
+    @Test
+    public void shouldCompressCompressibleData() throws IOException {
+        //when
+        for (int i = 0; i < 8; i++) {
+            send(compressible());
+        }
+        //then
+        assertThat(received.toByteArray()).isEqualTo(sent.toByteArray());
+        assertThat(deflater.isBypassed()).isFalse();
+        val stats = counters.snapshot("bob", "client");
+        assertThat(stats.getSentBytes()).isEqualTo(8L * PACKET_SIZE);
+        assertThat(stats.getSentRatio()).isLessThan(0.5);
+        assertThat(stats.getReceivedBytes()).isEqualTo(8L * PACKET_SIZE);
+        assertThat(stats.getReceivedCompressedBytes()).isEqualTo(stats.getSentCompressedBytes());
+        assertThat(stats.getBypasses()).isZero();
+    }
+
+    @Test
+    public void shouldStopCompressingIncompressibleData() throws IOException {
+        //given
+        send(incompressible());
+        send(incompressible());
+        //when
+        val compressedLength = send(incompressible());
+        //then
+        assertThat(deflater.isBypassed()).isTrue();
+        assertThat(compressedLength).isBetween(PACKET_SIZE, PACKET_SIZE + 64);
+        assertThat(received.toByteArray()).isEqualTo(sent.toByteArray());
+        val stats = counters.snapshot("bob", "client");
+        assertThat(stats.isBypassed()).isTrue();
+        assertThat(stats.getBypasses()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCompressAgainAfterProbeInterval() throws IOException {
+        //given
+        send(incompressible());
+        send(incompressible());
+        for (int sent = 0; sent < PROBE_INTERVAL; sent += PACKET_SIZE) {
+            send(compressible());
+        }
+        //when
+        val compressedLength = send(compressible());
+        //then
+        assertThat(deflater.isBypassed()).isFalse();
+        assertThat(compressedLength).isLessThan(PACKET_SIZE / 2);
+        assertThat(received.toByteArray()).isEqualTo(sent.toByteArray());
+        assertThat(counters.snapshot("bob", "client")
+                           .isBypassed()).isFalse();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hubio.s3sftp.server.compression;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link CompressionPolicy}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class CompressionPolicyTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldErrorWhenLevelIsNotAZlibLevel() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("level must be between 1 and 9, or -1");
+        //when
+        CompressionPolicy.builder()
+                         .level(0)
+                         .build();
+    }
+
+    @Test
+    public void shouldErrorWhenSampleSizeIsNotPositive() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("sampleSize must be positive");
+        //when
+        CompressionPolicy.builder()
+                         .sampleSize(0)
+                         .build();
+    }
+
+    @Test
+    public void shouldErrorWhenBypassRatioIsNotPositive() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("bypassRatio must be positive");
+        //when
+        CompressionPolicy.builder()
+                         .bypassRatio(0)
+                         .build();
+    }
+}
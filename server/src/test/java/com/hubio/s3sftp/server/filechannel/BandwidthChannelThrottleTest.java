@@ -0,0 +1,112 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.ratelimit.KeyedRateLimiter;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link BandwidthChannelThrottle}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class BandwidthChannelThrottleTest {
+
+    private static final long DELAY = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Mock
+    private KeyedRateLimiter upload;
+
+    @Mock
+    private KeyedRateLimiter download;
+
+    private BandwidthChannelThrottle subject;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        subject = new BandwidthChannelThrottle(upload, download, "bob");
+    }
+
+    @After
+    public void tearDown() {
+        // clear any interrupt left by a test
+        Thread.interrupted();
+    }
+
+    @Test
+    public void afterReadShouldReserveFromDownload() throws Exception {
+        //when
+        subject.afterRead(100);
+        //then
+        verify(download).reserve("bob", 100);
+        verify(upload, never()).reserve(anyString(), anyLong());
+    }
+
+    @Test
+    public void beforeWriteShouldReserveFromUpload() throws Exception {
+        //when
+        subject.beforeWrite(100);
+        //then
+        verify(upload).reserve("bob", 100);
+        verify(download, never()).reserve(anyString(), anyLong());
+    }
+
+    @Test
+    public void shouldNotReserveForEndOfStream() throws Exception {
+        //when
+        subject.afterRead(-1);
+        //then
+        verify(download, never()).reserve(anyString(), anyLong());
+    }
+
+    @Test
+    public void shouldDelayUntilReservationIsDue() throws Exception {
+        //given
+        given(upload.reserve("bob", 100)).willReturn(DELAY);
+        val start = System.nanoTime();
+        //when
+        subject.beforeWrite(100);
+        //then
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(DELAY);
+    }
+
+    @Test
+    public void shouldNotDelayWhenUnlimitedInThatDirection() throws Exception {
+        //given
+        subject = new BandwidthChannelThrottle(null, download, "bob");
+        //when
+        subject.beforeWrite(100);
+        //then
+        verify(download, never()).reserve(anyString(), anyLong());
+    }
+
+    @Test
+    public void shouldErrorWhenInterruptedWhileDelayed() throws Exception {
+        //given
+        given(download.reserve("bob", 100)).willReturn(TimeUnit.SECONDS.toNanos(10));
+        Thread.currentThread()
+              .interrupt();
+        exception.expect(InterruptedIOException.class);
+        //when
+        subject.afterRead(100);
+    }
+}
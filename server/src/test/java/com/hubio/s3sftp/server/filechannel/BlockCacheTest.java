@@ -0,0 +1,221 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link BlockCache}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class BlockCacheTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static BlockKey key(final long index) {
+        return new BlockKey("bucket", "key", "etag", index);
+    }
+
+    private static String read(final BlockCache.Block block) {
+        val content = block.content();
+        val bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private BlockCache.Loader loader(final String content) {
+        return buffer -> {
+            loads.incrementAndGet();
+            buffer.put(content.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private String get(final BlockCache cache, final long index) throws IOException {
+        try (BlockCache.Block block = cache.get(key(index), loader("b" + index))) {
+            return read(block);
+        }
+    }
+
+    @Test
+    public void shouldLoadBlockOnce() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        //when
+        val first = get(cache, 0);
+        val second = get(cache, 0);
+        //then
+        assertThat(first).isEqualTo("b0");
+        assertThat(second).isEqualTo("b0");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1L);
+        assertThat(cache.getLoads()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldAllocateMemoryOnlyAsNeeded() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 4, BLOCK_SIZE);
+        //when
+        get(cache, 0);
+        //then
+        assertThat(cache.getAllocatedBytes()).isEqualTo(BLOCK_SIZE);
+    }
+
+    @Test
+    public void shouldNotAllocateMoreThanMaxBytes() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        //when
+        for (int i = 0; i < 10; i++) {
+            get(cache, i);
+        }
+        //then
+        assertThat(cache.getAllocatedBytes()).isEqualTo(BLOCK_SIZE * 2);
+    }
+
+    @Test
+    public void shouldEvictOldestBlockWhenFull() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        get(cache, 0);
+        get(cache, 1);
+        //when
+        get(cache, 2);
+        //then
+        get(cache, 1);
+        get(cache, 2);
+        assertThat(cache.getHits()).isEqualTo(2L);
+        get(cache, 0);
+        assertThat(cache.getLoads()).isEqualTo(4L);
+    }
+
+    @Test
+    public void shouldNotEvictBlockBeingRead() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        try (BlockCache.Block pinned = cache.get(key(0), loader("b0"))) {
+            //when
+            for (int i = 1; i < 10; i++) {
+                get(cache, i);
+            }
+            //then
+            assertThat(read(pinned)).isEqualTo("b0");
+            assertThat(get(cache, 0)).isEqualTo("b0");
+            assertThat(cache.getHits()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void shouldServeBlockWhenEveryBlockIsBeingRead() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE, BLOCK_SIZE);
+        try (BlockCache.Block pinned = cache.get(key(0), loader("b0"))) {
+            //when
+            val result = get(cache, 1);
+            //then
+            assertThat(result).isEqualTo("b1");
+            assertThat(read(pinned)).isEqualTo("b0");
+            assertThat(cache.getAllocatedBytes()).isEqualTo(BLOCK_SIZE);
+        }
+    }
+
+    @Test
+    public void shouldLoadBlockWantedByConcurrentReadersOnce() throws Exception {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        val started = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        final BlockCache.Loader slow = buffer -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            buffer.put("slow".getBytes(StandardCharsets.UTF_8));
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> {
+                try (BlockCache.Block block = cache.get(key(0), slow)) {
+                    return read(block);
+                }
+            });
+            started.await();
+            final Future<String> second = executor.submit(() -> {
+                try (BlockCache.Block block = cache.get(key(0), slow)) {
+                    return read(block);
+                }
+            });
+            //when
+            release.countDown();
+            //then
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldLoadAgainAfterFailedLoad() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE * 2, BLOCK_SIZE);
+        try {
+            cache.get(key(0), buffer -> {
+                throw new IOException("failed");
+            });
+        } catch (IOException e) {
+            assertThat(e).hasMessage("failed");
+        }
+        //when
+        val result = get(cache, 0);
+        //then
+        assertThat(result).isEqualTo("b0");
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    public void shouldRejectMaxBytesSmallerThanBlock() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("maxBytes");
+        //when
+        new BlockCache(BLOCK_SIZE - 1, BLOCK_SIZE);
+    }
+
+    @Test
+    public void contentShouldBeReadOnly() throws IOException {
+        //given
+        val cache = new BlockCache(BLOCK_SIZE, BLOCK_SIZE);
+        try (BlockCache.Block block = cache.get(key(0), loader("b0"))) {
+            //when
+            final ByteBuffer content = block.content();
+            //then
+            assertThat(content.isReadOnly()).isTrue();
+            assertThat(content.remaining()).isEqualTo(2);
+        }
+    }
+}
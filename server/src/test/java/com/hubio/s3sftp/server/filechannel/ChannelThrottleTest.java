@@ -0,0 +1,31 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.ratelimit.Bandwidth;
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ChannelThrottle}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ChannelThrottleTest {
+
+    @Test
+    public void unlimitedBandwidthShouldNotThrottle() {
+        //when
+        val result = ChannelThrottle.of(Bandwidth.unlimited(), "bob");
+        //then
+        assertThat(result).isSameAs(ChannelThrottle.unlimited());
+    }
+
+    @Test
+    public void limitedBandwidthShouldThrottle() {
+        //when
+        val result = ChannelThrottle.of(Bandwidth.bytesPerSecond(0, 1024), "bob");
+        //then
+        assertThat(result).isInstanceOf(BandwidthChannelThrottle.class);
+    }
+}
@@ -0,0 +1,139 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DirectBufferPool}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class DirectBufferPoolTest {
+
+    private static final int KIB = 1024;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final DirectBufferPool subject = new DirectBufferPool(64 * KIB);
+
+    @Test
+    public void shouldLendDirectBufferWithCapacityRemaining() {
+        //when
+        try (BufferPool.Lease lease = subject.acquire(5000)) {
+            //then
+            val buffer = lease.buffer();
+            assertThat(buffer.isDirect()).isTrue();
+            assertThat(buffer.position()).isZero();
+            assertThat(buffer.remaining()).isEqualTo(5000);
+            assertThat(buffer.capacity()).isEqualTo(8 * KIB);
+        }
+    }
+
+    @Test
+    public void shouldReuseBufferGivenBack() {
+        //given
+        final ByteBuffer first;
+        try (BufferPool.Lease lease = subject.acquire(KIB)) {
+            first = lease.buffer();
+            first.put((byte) 1);
+        }
+        //when
+        try (BufferPool.Lease lease = subject.acquire(2 * KIB)) {
+            //then
+            assertThat(lease.buffer()).isSameAs(first);
+            assertThat(lease.buffer()
+                            .position()).isZero();
+            assertThat(lease.buffer()
+                            .remaining()).isEqualTo(2 * KIB);
+        }
+        assertThat(subject.getAcquired()).isEqualTo(2L);
+        assertThat(subject.getAllocated()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldNotShareBufferBetweenOutstandingLeases() {
+        //given
+        try (BufferPool.Lease first = subject.acquire(KIB);
+             BufferPool.Lease second = subject.acquire(KIB)) {
+            //then
+            assertThat(first.buffer()).isNotSameAs(second.buffer());
+            assertThat(subject.getOutstanding()).isEqualTo(2);
+        }
+        assertThat(subject.getOutstanding()).isZero();
+        assertThat(subject.getPooledBytes()).isEqualTo(8 * KIB);
+    }
+
+    @Test
+    public void shouldNotKeepMoreThanMaxPooledBytes() {
+        //given
+        val pool = new DirectBufferPool(4 * KIB);
+        val first = pool.acquire(KIB);
+        val second = pool.acquire(KIB);
+        //when
+        first.close();
+        second.close();
+        //then
+        assertThat(pool.getPooledBytes()).isEqualTo(4 * KIB);
+    }
+
+    @Test
+    public void shouldGiveBufferBackOnlyOnce() {
+        //given
+        val lease = subject.acquire(KIB);
+        lease.close();
+        //when
+        lease.close();
+        //then
+        assertThat(subject.getPooledBytes()).isEqualTo(4 * KIB);
+    }
+
+    @Test
+    public void shouldNotPoolLargeBuffers() {
+        //when
+        try (BufferPool.Lease lease = subject.acquire(DirectBufferPool.MAX_POOLED_CAPACITY + 1)) {
+            //then
+            assertThat(lease.buffer()
+                            .remaining()).isEqualTo(DirectBufferPool.MAX_POOLED_CAPACITY + 1);
+        }
+        assertThat(subject.getPooledBytes()).isZero();
+    }
+
+    @Test
+    public void shouldCountLeaseCollectedWithoutBeingGivenBack() throws InterruptedException {
+        //given
+        subject.acquire(KIB);
+        //when
+        for (int i = 0; i < 50 && subject.getLeaked() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        //then
+        assertThat(subject.getLeaked()).isEqualTo(1L);
+        assertThat(subject.getOutstanding()).isZero();
+        assertThat(subject.getPooledBytes()).isZero();
+    }
+
+    @Test
+    public void sizeClassShouldBeSmallestPowerOfTwoHoldingCapacity() {
+        assertThat(DirectBufferPool.sizeClass(0)).isEqualTo(0);
+        assertThat(DirectBufferPool.sizeClass(4 * KIB)).isEqualTo(0);
+        assertThat(DirectBufferPool.sizeClass(4 * KIB + 1)).isEqualTo(1);
+        assertThat(DirectBufferPool.sizeClass(KIB * KIB)).isEqualTo(8);
+    }
+
+    @Test
+    public void shouldRejectNegativeCapacity() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("capacity");
+        //when
+        subject.acquire(-1);
+    }
+}
@@ -0,0 +1,188 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DiskObjectCache}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class DiskObjectCacheTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final Set<OpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    private DiskObjectCache subject;
+
+    @Before
+    public void setUp() throws IOException {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+        subject = new DiskObjectCache(folder.getRoot()
+                                            .toPath(), 10);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldDownloadObjectOnFirstRead() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("content");
+        assertThat(subject.getMisses()).isEqualTo(1L);
+        assertThat(subject.getUsedBytes()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldServeUnchangedObjectFromCache() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        read("file");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("content");
+        assertThat(subject.getHits()).isEqualTo(1L);
+        assertThat(subject.getMisses()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldDownloadChangedObjectAgain() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        read("file");
+        amazonS3.putObject(BUCKET, "file", "changed");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("changed");
+        assertThat(subject.getMisses()).isEqualTo(2L);
+        assertThat(subject.getUsedBytes()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyRead() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "a", "aaaa");
+        amazonS3.putObject(BUCKET, "b", "bbbb");
+        amazonS3.putObject(BUCKET, "c", "cccc");
+        read("a");
+        read("b");
+        read("a");
+        //when
+        read("c");
+        //then
+        assertThat(subject.getUsedBytes()).isEqualTo(8L);
+        read("a");
+        assertThat(subject.getHits()).isEqualTo(2L);
+        read("b");
+        assertThat(subject.getMisses()).isEqualTo(4L);
+    }
+
+    @Test
+    public void shouldNotCacheObjectLargerThanCache() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "large", "larger than the cache");
+        //when
+        val result = read("large");
+        //then
+        assertThat(result).isEqualTo("larger than the cache");
+        assertThat(subject.getUsedBytes()).isZero();
+        assertThat(folder.getRoot()
+                         .list()).isEmpty();
+    }
+
+    @Test
+    public void shouldErrorWhenObjectIsMissing() throws IOException {
+        //given
+        exception.expect(NoSuchFileException.class);
+        //when
+        subject.open(path("missing"), READ);
+    }
+
+    @Test
+    public void shouldBypassCacheWhenWriting() throws IOException {
+        //given
+        val options = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        //when
+        try (SeekableByteChannel channel = subject.open(path("new"), options)) {
+            channel.write(ByteBuffer.wrap("written".getBytes(StandardCharsets.UTF_8)));
+        }
+        //then
+        assertThat(amazonS3.getObjectAsString(BUCKET, "new")).isEqualTo("written");
+        assertThat(subject.getMisses()).isZero();
+    }
+
+    @Test
+    public void shouldRemoveFilesLeftByEarlierRun() throws IOException {
+        //given
+        val leftover = folder.newFile("leftover.object");
+        //when
+        new DiskObjectCache(folder.getRoot()
+                                  .toPath(), 10);
+        //then
+        assertThat(Files.exists(leftover.toPath())).isFalse();
+    }
+
+    private String read(final String key) throws IOException {
+        try (SeekableByteChannel channel = subject.open(path(key), READ)) {
+            val buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                continue;
+            }
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private S3Path path(final String key) {
+        return (S3Path) fileSystem.getPath("/" + BUCKET, key);
+    }
+}
@@ -0,0 +1,88 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MappedObjectChannel}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class MappedObjectChannelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private MappedObjectChannel subject;
+
+    @Before
+    public void setUp() throws IOException {
+        val file = folder.newFile()
+                         .toPath();
+        Files.write(file, "0123456789".getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            subject = new MappedObjectChannel(channel.map(FileChannel.MapMode.READ_ONLY, 0, 10));
+        }
+    }
+
+    @Test
+    public void shouldReadFromPosition() throws IOException {
+        //given
+        val buffer = ByteBuffer.allocate(4);
+        subject.position(3);
+        //when
+        val result = subject.read(buffer);
+        //then
+        assertThat(result).isEqualTo(4);
+        assertThat(new String(buffer.array(), StandardCharsets.UTF_8)).isEqualTo("3456");
+        assertThat(subject.position()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldReadToEnd() throws IOException {
+        //given
+        val buffer = ByteBuffer.allocate(20);
+        subject.position(8);
+        //when
+        val first = subject.read(buffer);
+        val second = subject.read(buffer);
+        //then
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldRefuseWrites() {
+        //given
+        exception.expect(NonWritableChannelException.class);
+        //when
+        subject.write(ByteBuffer.allocate(1));
+    }
+
+    @Test
+    public void shouldRefuseReadsWhenClosed() throws IOException {
+        //given
+        subject.close();
+        exception.expect(ClosedChannelException.class);
+        //when
+        subject.read(ByteBuffer.allocate(1));
+    }
+}
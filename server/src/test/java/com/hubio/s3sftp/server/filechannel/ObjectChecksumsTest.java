@@ -0,0 +1,181 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.BinaryUtils;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ObjectChecksums} and {@link UploadChecksums}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ObjectChecksumsTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final String CONTENT = "the quick brown fox";
+
+    private static final Set<StandardOpenOption> WRITE =
+            EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    @Before
+    public void setUp() throws IOException {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fileSystem.close();
+    }
+
+    private FileChannel open(final String key, final Set<? extends OpenOption> options) throws IOException {
+        return FileChannelFactory.of((S3Path) fileSystem.getPath("/" + BUCKET, key), options);
+    }
+
+    private static ByteBuffer bytes(final String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] digest(final String algorithm, final String content) throws Exception {
+        return MessageDigest.getInstance(algorithm)
+                            .digest(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ObjectMetadata eTagged(final String eTag) {
+        val metadata = new ObjectMetadata();
+        metadata.setHeader(Headers.ETAG, eTag);
+        return metadata;
+    }
+
+    @Test
+    public void uploadShouldStoreChecksumsOfContent() throws Exception {
+        //given
+        val channel = open("file.txt", WRITE);
+        channel.write(bytes("the quick "));
+        channel.write(bytes("brown fox"));
+        //when
+        channel.close();
+        //then
+        val checksums = ObjectChecksums.of(amazonS3.getObjectMetadata(BUCKET, "file.txt"));
+        assertThat(checksums.get(ObjectChecksums.MD5)).isEqualTo(digest("MD5", CONTENT));
+        assertThat(checksums.get(ObjectChecksums.SHA256)).isEqualTo(digest("SHA-256", CONTENT));
+        assertThat(amazonS3.getObjectAsString(BUCKET, "file.txt")).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void uploadWrittenOutOfOrderShouldNotStoreChecksums() throws Exception {
+        //given
+        val channel = open("file.txt", WRITE);
+        channel.position(10L)
+               .write(bytes("brown fox"));
+        channel.position(0L)
+               .write(bytes("the quick "));
+        //when
+        channel.close();
+        //then
+        val metadata = amazonS3.getObjectMetadata(BUCKET, "file.txt");
+        assertThat(metadata.getUserMetadata()).isEmpty();
+        assertThat(amazonS3.getObjectAsString(BUCKET, "file.txt")).isEqualTo(CONTENT);
+        // the entity tag is still the MD5 of a single part upload
+        assertThat(ObjectChecksums.of(metadata)
+                                  .get(ObjectChecksums.MD5)).isEqualTo(digest("MD5", CONTENT));
+    }
+
+    @Test(expected = NonReadableChannelException.class)
+    public void uploadShouldNotBeReadableUnlessOpenedForReading() throws Exception {
+        //given
+        val channel = open("file.txt", WRITE);
+        channel.write(bytes(CONTENT));
+        channel.position(0L);
+        //when
+        channel.read(ByteBuffer.allocate(CONTENT.length()));
+    }
+
+    @Test
+    public void appendShouldUploadWithoutChecksums() throws Exception {
+        //given
+        amazonS3.putObject(BUCKET, "file.txt", "the quick ");
+        val channel = open("file.txt", EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        channel.write(bytes("brown fox"));
+        //when
+        channel.close();
+        //then
+        assertThat(amazonS3.getObjectAsString(BUCKET, "file.txt")).isEqualTo(CONTENT);
+        assertThat(amazonS3.getObjectMetadata(BUCKET, "file.txt")
+                           .getUserMetadata()).isEmpty();
+    }
+
+    @Test
+    public void singlePartETagShouldBeMd5() throws Exception {
+        //given
+        val md5 = digest("MD5", CONTENT);
+        //when
+        val checksums = ObjectChecksums.of(eTagged("\"" + BinaryUtils.toHex(md5) + "\""));
+        //then
+        assertThat(checksums.get(ObjectChecksums.MD5)).isEqualTo(md5);
+    }
+
+    @Test
+    public void multipartETagShouldNotBeMd5() {
+        //when
+        val checksums = ObjectChecksums.of(eTagged("0123456789abcdef0123456789abcdef-2"));
+        //then
+        assertThat(checksums).isEmpty();
+    }
+
+    @Test
+    public void kmsEncryptedETagShouldNotBeMd5() {
+        //given
+        val metadata = eTagged("0123456789abcdef0123456789abcdef");
+        metadata.setSSEAlgorithm("aws:kms");
+        //when
+        val checksums = ObjectChecksums.of(metadata);
+        //then
+        assertThat(checksums).isEmpty();
+    }
+
+    @Test
+    public void storedChecksumShouldBeUsedWhenETagIsNotMd5() {
+        //given
+        val metadata = eTagged("0123456789abcdef0123456789abcdef-2");
+        metadata.addUserMetadata("s3sftp-sha256", "00ff");
+        //when
+        val checksums = ObjectChecksums.of(metadata);
+        //then
+        assertThat(checksums).containsOnlyKeys(ObjectChecksums.SHA256);
+        assertThat(checksums.get(ObjectChecksums.SHA256)).containsExactly(0, -1);
+    }
+}
@@ -0,0 +1,170 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link OpenTransfers} and {@link S3UploadChannel}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class OpenTransfersTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final Set<OpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+
+    private static final Set<StandardOpenOption> WRITE =
+            EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final OpenTransfers subject = new OpenTransfers();
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    @Before
+    public void setUp() throws IOException {
+        amazonS3 = spy(new InMemoryAmazonS3());
+        amazonS3.createBucket(BUCKET);
+        amazonS3.putObject(BUCKET, "existing.txt", "content");
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fileSystem.close();
+    }
+
+    private FileChannel open(final String key, final Set<? extends OpenOption> options) throws IOException {
+        return FileChannelFactory.of((S3Path) fileSystem.getPath("/" + BUCKET, key), options,
+                                     ChannelResources.builder()
+                                                     .openTransfers(subject)
+                                                     .build()
+                                    );
+    }
+
+    private static void write(final FileChannel channel) throws IOException {
+        channel.write(ByteBuffer.wrap("partial".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldCountChannelsUntilClosed() throws IOException {
+        //given
+        val read = open("existing.txt", READ);
+        val upload = open("new.txt", WRITE);
+        //when
+        read.close();
+        //then
+        assertThat(subject.getOpen()).isEqualTo(1);
+        assertThat(subject.getUploads()).isEqualTo(1);
+        upload.close();
+        assertThat(subject.getOpen()).isZero();
+    }
+
+    @Test
+    public void shouldUploadWhenClosed() throws IOException {
+        //given
+        val upload = open("new.txt", WRITE);
+        write(upload);
+        //when
+        upload.close();
+        //then
+        assertThat(amazonS3.getObjectAsString(BUCKET, "new.txt")).isEqualTo("partial");
+    }
+
+    @Test
+    public void shouldUploadFromLocalFile() throws IOException {
+        //given
+        val upload = open("new.txt", WRITE);
+        write(upload);
+        val request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        //when
+        upload.close();
+        //then
+        // the last put is the upload, after the object put while setting up
+        verify(amazonS3, atLeastOnce()).putObject(request.capture());
+        assertThat(request.getValue()
+                          .getFile()).isNotNull();
+        assertThat(request.getValue()
+                          .getInputStream()).isNull();
+        assertThat(amazonS3.getObjectMetadata(BUCKET, "new.txt")
+                           .getContentType()).isEqualTo("text/plain");
+    }
+
+    @Test
+    public void shouldNotUploadWhenAborted() throws IOException {
+        //given
+        val read = open("existing.txt", READ);
+        val upload = open("new.txt", WRITE);
+        write(upload);
+        //when
+        val aborted = subject.abortUploads();
+        //then
+        assertThat(aborted).isEqualTo(1);
+        assertThat(upload.isOpen()).isFalse();
+        assertThat(read.isOpen()).isTrue();
+        assertThat(amazonS3.doesObjectExist(BUCKET, "new.txt")).isFalse();
+        assertThat(subject.getOpen()).isEqualTo(1);
+        assertThat(subject.getUploads()).isZero();
+    }
+
+    @Test
+    public void shouldRefuseChannelsWhenDraining() throws IOException {
+        //given
+        subject.drain();
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Server is shutting down");
+        //when
+        open("existing.txt", READ);
+    }
+
+    @Test
+    public void shouldLetOpenChannelsFinishWhenDraining() throws IOException {
+        //given
+        val upload = open("new.txt", WRITE);
+        write(upload);
+        //when
+        subject.drain();
+        upload.close();
+        //then
+        assertThat(subject.isDraining()).isTrue();
+        assertThat(subject.getOpen()).isZero();
+        assertThat(amazonS3.getObjectAsString(BUCKET, "new.txt")).isEqualTo("partial");
+    }
+}
@@ -0,0 +1,232 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import com.upplication.s3fs.S3SeekableByteChannel;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link RangedObjectCache} and {@link RangedObjectChannel}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class RangedObjectCacheTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final Set<OpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    private RangedObjectCache subject;
+
+    @Before
+    public void setUp() throws IOException {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+        subject = (RangedObjectCache) ObjectCache.offHeap(16, 4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fileSystem.close();
+    }
+
+    private S3Path path(final String key) {
+        return (S3Path) fileSystem.getPath("/" + BUCKET, key);
+    }
+
+    private String read(final String key) throws IOException {
+        try (SeekableByteChannel channel = subject.open(path(key), READ)) {
+            val buffer = ByteBuffer.allocate((int) channel.size() + 1);
+            while (channel.read(buffer) > 0) {
+                continue;
+            }
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void shouldReadObjectAcrossBlocks() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "0123456789");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("0123456789");
+        assertThat(subject.getBlockCache()
+                          .getLoads()).isEqualTo(3L);
+    }
+
+    @Test
+    public void shouldReuseBlocksOnSecondRead() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "0123456789");
+        read("file");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("0123456789");
+        assertThat(subject.getBlockCache()
+                          .getLoads()).isEqualTo(3L);
+        assertThat(subject.getBlockCache()
+                          .getHits()).isEqualTo(3L);
+    }
+
+    @Test
+    public void shouldFetchOnlyBlocksRead() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "0123456789");
+        val buffer = ByteBuffer.allocate(3);
+        //when
+        try (SeekableByteChannel channel = subject.open(path("file"), READ)) {
+            channel.position(5);
+            channel.read(buffer);
+        }
+        //then
+        assertThat(new String(buffer.array(), StandardCharsets.UTF_8)).isEqualTo("567");
+        assertThat(subject.getBlockCache()
+                          .getLoads()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldHoldPermitForEachBlockFetched() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "0123456789");
+        val workScheduler = mock(WorkScheduler.class);
+        val permit = mock(WorkScheduler.Permit.class);
+        given(workScheduler.acquire("alice")).willReturn(permit);
+        val buffer = ByteBuffer.allocate(10);
+        //when
+        try (SeekableByteChannel channel = subject.open(path("file"), READ, workScheduler, "alice")) {
+            channel.read(buffer);
+        }
+        //then
+        assertThat(new String(buffer.array(), StandardCharsets.UTF_8)).isEqualTo("0123456789");
+        verify(workScheduler, times(3)).acquire("alice");
+        verify(permit, times(3)).close();
+    }
+
+    @Test
+    public void shouldNotTakePermitForCachedBlocks() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "0123456789");
+        read("file");
+        val workScheduler = mock(WorkScheduler.class);
+        //when
+        try (SeekableByteChannel channel = subject.open(path("file"), READ, workScheduler, "alice")) {
+            channel.read(ByteBuffer.allocate(10));
+        }
+        //then
+        verify(workScheduler, never()).acquire("alice");
+    }
+
+    @Test
+    public void shouldReadChangedObjectAfresh() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        read("file");
+        amazonS3.putObject(BUCKET, "file", "changed");
+        //when
+        val result = read("file");
+        //then
+        assertThat(result).isEqualTo("changed");
+        assertThat(subject.getBlockCache()
+                          .getHits()).isZero();
+    }
+
+    @Test
+    public void shouldFailReadWhenObjectChangesWhileOpen() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        try (SeekableByteChannel channel = subject.open(path("file"), READ)) {
+            amazonS3.putObject(BUCKET, "file", "changed");
+            exception.expect(IOException.class);
+            exception.expectMessage("has changed");
+            //when
+            channel.read(ByteBuffer.allocate(7));
+        }
+    }
+
+    @Test
+    public void shouldReturnEndOfStreamAtEndOfObject() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        try (SeekableByteChannel channel = subject.open(path("file"), READ)) {
+            channel.position(7);
+            //when
+            val result = channel.read(ByteBuffer.allocate(1));
+            //then
+            assertThat(result).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void shouldThrowNoSuchFileWhenObjectIsMissing() throws IOException {
+        //given
+        exception.expect(NoSuchFileException.class);
+        //when
+        subject.open(path("missing"), READ);
+    }
+
+    @Test
+    public void shouldNotWrite() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, "file", "content");
+        try (SeekableByteChannel channel = subject.open(path("file"), READ)) {
+            exception.expect(NonWritableChannelException.class);
+            //when
+            channel.write(ByteBuffer.allocate(1));
+        }
+    }
+
+    @Test
+    public void shouldBypassCacheWhenWriting() throws IOException {
+        //given
+        val options = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        //when
+        try (SeekableByteChannel channel = subject.open(path("new"), options)) {
+            //then
+            assertThat(channel).isInstanceOf(S3SeekableByteChannel.class);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.hubio.s3sftp.server.filechannel;
 
 import com.hubio.s3sftp.server.filechannel.S3FileChannel;
+import com.upplication.s3fs.S3SeekableByteChannel;
+import lombok.val;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -9,10 +11,14 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.SeekableByteChannel;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -134,6 +140,45 @@ public class S3FileChannelTest {
                 .isEqualTo(123 + 321);
     }
 
+    @Test
+    public void readShouldBeThrottled() throws Exception {
+        //given
+        val throttle = mock(ChannelThrottle.class);
+        wrapper = channel(throttle, BufferPool.none());
+        given(content.read(dst)).willReturn(23);
+        //when
+        wrapper.read(dst);
+        //then
+        verify(throttle).afterRead(23);
+    }
+
+    @Test
+    public void writeShouldBeThrottled() throws Exception {
+        //given
+        val throttle = mock(ChannelThrottle.class);
+        wrapper = channel(throttle, BufferPool.none());
+        val buffer = ByteBuffer.allocate(42);
+        //when
+        wrapper.write(buffer);
+        //then
+        verify(throttle).beforeWrite(42);
+        verify(content).write(buffer);
+    }
+
+    @Test
+    public void repositionedChannelShouldKeepThrottle() throws Exception {
+        //given
+        val throttle = mock(ChannelThrottle.class);
+        wrapper = channel(throttle, BufferPool.none());
+        given(content.position(position)).willReturn(content);
+        given(content.read(dst)).willReturn(7);
+        //when
+        wrapper.position(position)
+               .read(dst);
+        //then
+        verify(throttle).afterRead(7);
+    }
+
     @Test
     public void readByBufferFromPosition() throws Exception {
         expectUnsupportedOperationException();
@@ -202,4 +247,126 @@ public class S3FileChannelTest {
         expectUnsupportedOperationException();
         wrapper.write(src, 456L);
     }
+
+    @Test
+    public void pooledReadShouldScatterOneRead() throws Exception {
+        //given
+        given(content.read(any(ByteBuffer.class))).willAnswer(invocation -> {
+            final ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            buffer.put("abcdefg".getBytes(StandardCharsets.UTF_8));
+            return 7;
+        });
+        wrapper = channel(ChannelThrottle.unlimited(), new DirectBufferPool(1024 * 1024));
+        val first = ByteBuffer.allocate(3);
+        val second = ByteBuffer.allocate(10);
+        //when
+        val result = wrapper.read(new ByteBuffer[]{first, second});
+        //then
+        assertThat(result).isEqualTo(7L);
+        assertThat(new String(first.array(), 0, first.position(), StandardCharsets.UTF_8)).isEqualTo("abc");
+        assertThat(new String(second.array(), 0, second.position(), StandardCharsets.UTF_8)).isEqualTo("defg");
+    }
+
+    @Test
+    public void pooledReadShouldReturnEndOfStream() throws Exception {
+        //given
+        given(content.read(any(ByteBuffer.class))).willReturn(-1);
+        wrapper = channel(ChannelThrottle.unlimited(), new DirectBufferPool(1024 * 1024));
+        //when
+        val result = wrapper.read(new ByteBuffer[]{ByteBuffer.allocate(3)});
+        //then
+        assertThat(result).isEqualTo(-1L);
+    }
+
+    @Test
+    public void pooledWriteShouldGatherIntoOneWrite() throws Exception {
+        //given
+        val throttle = mock(ChannelThrottle.class);
+        val pool = new DirectBufferPool(1024 * 1024);
+        given(content.write(any(ByteBuffer.class))).willAnswer(invocation -> {
+            final ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            final int written = buffer.remaining();
+            buffer.position(buffer.limit());
+            return written;
+        });
+        wrapper = channel(throttle, pool);
+        val first = ByteBuffer.wrap(new byte[3]);
+        val second = ByteBuffer.wrap(new byte[4]);
+        //when
+        val result = wrapper.write(new ByteBuffer[]{first, second});
+        //then
+        assertThat(result).isEqualTo(7L);
+        assertThat(first.hasRemaining()).isFalse();
+        assertThat(second.hasRemaining()).isFalse();
+        verify(content, times(1)).write(any(ByteBuffer.class));
+        verify(throttle).beforeWrite(7L);
+        assertThat(pool.getOutstanding()).isZero();
+    }
+
+    @Test
+    public void singleReadFromLocalFileShouldBeStagedThroughPooledBuffer() throws Exception {
+        //given
+        val local = mock(S3SeekableByteChannel.class);
+        val pool = new DirectBufferPool(1024 * 1024);
+        given(local.read(any(ByteBuffer.class))).willAnswer(invocation -> {
+            final ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            assertThat(buffer.isDirect()).isTrue();
+            buffer.put("abc".getBytes(StandardCharsets.UTF_8));
+            return 3;
+        });
+        wrapper = new S3FileChannel(local, ChannelResources.builder()
+                                                           .bufferPool(pool)
+                                                           .build(), UnlimitedChannelQuota.INSTANCE);
+        val buffer = ByteBuffer.allocate(10);
+        //when
+        val result = wrapper.read(buffer);
+        //then
+        assertThat(result).isEqualTo(3);
+        assertThat(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)).isEqualTo("abc");
+        assertThat(pool.getOutstanding()).isZero();
+    }
+
+    @Test
+    public void singleWriteToLocalFileShouldBeStagedThroughPooledBuffer() throws Exception {
+        //given
+        val local = mock(S3SeekableByteChannel.class);
+        val pool = new DirectBufferPool(1024 * 1024);
+        given(local.write(any(ByteBuffer.class))).willAnswer(invocation -> {
+            final ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            assertThat(buffer.isDirect()).isTrue();
+            final int written = buffer.remaining();
+            buffer.position(buffer.limit());
+            return written;
+        });
+        wrapper = new S3FileChannel(local, ChannelResources.builder()
+                                                           .bufferPool(pool)
+                                                           .build(), UnlimitedChannelQuota.INSTANCE);
+        val buffer = ByteBuffer.wrap(new byte[7]);
+        //when
+        val result = wrapper.write(buffer);
+        //then
+        assertThat(result).isEqualTo(7);
+        assertThat(buffer.hasRemaining()).isFalse();
+        assertThat(pool.getOutstanding()).isZero();
+    }
+
+    @Test
+    public void singleWriteShouldNotBeStagedThroughHeapPool() throws Exception {
+        //given
+        val local = mock(S3SeekableByteChannel.class);
+        wrapper = new S3FileChannel(local, ChannelResources.builder()
+                                                           .build(), UnlimitedChannelQuota.INSTANCE);
+        val buffer = ByteBuffer.wrap(new byte[7]);
+        //when
+        wrapper.write(buffer);
+        //then
+        verify(local).write(buffer);
+    }
+
+    private S3FileChannel channel(final ChannelThrottle throttle, final BufferPool pool) {
+        return new S3FileChannel(content, ChannelResources.builder()
+                                                          .throttle(throttle)
+                                                          .bufferPool(pool)
+                                                          .build(), UnlimitedChannelQuota.INSTANCE);
+    }
 }
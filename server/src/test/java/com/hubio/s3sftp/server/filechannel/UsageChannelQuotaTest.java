@@ -0,0 +1,258 @@
+package com.hubio.s3sftp.server.filechannel;
+
+import com.hubio.s3sftp.server.SessionQuota;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.hubio.s3sftp.server.usage.PrefixUsage;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link UsageChannelQuota}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class UsageChannelQuotaTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final String PREFIX = "users/alice/";
+
+    private static final Set<StandardOpenOption> WRITE =
+            EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+    private static final Set<StandardOpenOption> REPLACE =
+            EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final BucketUsage bucketUsage = BucketUsage.listedEvery(Duration.ofHours(1));
+
+    private final OpenTransfers transfers = new OpenTransfers();
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    private PrefixUsage usage;
+
+    @Before
+    public void setUp() throws IOException {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+        usage = bucketUsage.track(amazonS3, BUCKET, PREFIX);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        bucketUsage.stop();
+        fileSystem.close();
+    }
+
+    private S3Path path(final String key) {
+        return (S3Path) fileSystem.getPath("/" + BUCKET, key);
+    }
+
+    private FileChannel open(final String key, final Set<? extends OpenOption> options, final ChannelQuota quota)
+            throws IOException {
+        return FileChannelFactory.of(path(key), options, ChannelResources.builder()
+                                                                         .openTransfers(transfers)
+                                                                         .quota(quota)
+                                                                         .build());
+    }
+
+    private static void write(final FileChannel channel, final String content) throws IOException {
+        channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldAddUploadToUsageWhenClosed() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 10L);
+        val upload = open(PREFIX + "new.txt", WRITE, quota);
+        write(upload, "content");
+        //when
+        upload.close();
+        //then
+        assertThat(usage.getBytes()).isEqualTo(7L);
+        assertThat(usage.getObjects()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldAllowAnySizeWithOnlyObjectQuota() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, SessionQuota.UNLIMITED, 10L);
+        usage.add(Long.MAX_VALUE / 2, 1L);
+        val upload = open(PREFIX + "new.txt", WRITE, quota);
+        write(upload, "content");
+        //when
+        upload.close();
+        //then
+        assertThat(amazonS3.doesObjectExist(BUCKET, PREFIX + "new.txt")).isTrue();
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldRefuseWriteBeyondQuota() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 5L, 10L);
+        val upload = open(PREFIX + "new.txt", WRITE, quota);
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Quota exceeded");
+        //when
+        write(upload, "content");
+    }
+
+    @Test
+    public void shouldNotUploadWhenQuotaRefusedWrite() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 5L, 10L);
+        val upload = open(PREFIX + "new.txt", WRITE, quota);
+        try {
+            write(upload, "content");
+        } catch (FileSystemException e) {
+            // expected
+        }
+        //when
+        upload.close();
+        //then
+        assertThat(amazonS3.doesObjectExist(BUCKET, PREFIX + "new.txt")).isFalse();
+        assertThat(usage.getObjects()).isZero();
+    }
+
+    @Test
+    public void shouldRefuseNewObjectBeyondObjectQuota() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 1L);
+        open(PREFIX + "first.txt", WRITE, quota);
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Object quota exceeded");
+        //when
+        open(PREFIX + "second.txt", WRITE, quota);
+    }
+
+    @Test
+    public void shouldNotCountRefusedUploadAsOpen() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 1L);
+        open(PREFIX + "first.txt", WRITE, quota);
+        //when
+        try {
+            open(PREFIX + "second.txt", WRITE, quota);
+        } catch (FileSystemException e) {
+            // expected
+        }
+        //then
+        assertThat(transfers.getUploads()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldShareQuotaBetweenConcurrentUploads() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 10L, 10L);
+        val first = open(PREFIX + "first.txt", WRITE, quota);
+        val second = open(PREFIX + "second.txt", WRITE, quota);
+        write(first, "content");
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Quota exceeded");
+        //when
+        write(second, "content");
+    }
+
+    @Test
+    public void shouldReleaseReservationWhenAborted() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 10L, 1L);
+        val upload = open(PREFIX + "new.txt", WRITE, quota);
+        write(upload, "content");
+        //when
+        transfers.abortUploads();
+        //then
+        assertThat(usage.getBytes()).isZero();
+        assertThat(usage.getObjects()).isZero();
+        assertThat(usage.tryReserve(10L, 1L, 10L, 1L)).isTrue();
+    }
+
+    @Test
+    public void shouldCountOnlyGrowthOfReplacedObject() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, PREFIX + "existing.txt", "content");
+        usage.add(7L, 1L);
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 1L);
+        val upload = open(PREFIX + "existing.txt", REPLACE, quota);
+        write(upload, "new content");
+        //when
+        upload.close();
+        //then
+        assertThat(amazonS3.getObjectAsString(BUCKET, PREFIX + "existing.txt")).isEqualTo("new content");
+        assertThat(usage.getBytes()).isEqualTo(11L);
+        assertThat(usage.getObjects()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldNotCountReplacedEmptyObjectAsNew() throws IOException {
+        //given
+        amazonS3.putObject(BUCKET, PREFIX + ".keep", "");
+        usage.add(0L, 1L);
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 1L);
+        val upload = open(PREFIX + ".keep", REPLACE, quota);
+        //when
+        upload.close();
+        //then
+        assertThat(usage.getBytes()).isZero();
+        assertThat(usage.getObjects()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldNotLimitUploadsOutsidePrefix() throws IOException {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1L, 1L);
+        val upload = open("users/bob/new.txt", WRITE, quota);
+        write(upload, "content");
+        //when
+        upload.close();
+        //then
+        assertThat(amazonS3.getObjectAsString(BUCKET, "users/bob/new.txt")).isEqualTo("content");
+        assertThat(usage.getBytes()).isZero();
+    }
+
+    @Test
+    public void deletedShouldReturnSpaceToQuota() {
+        //given
+        val quota = ChannelQuota.of(bucketUsage, PREFIX, 1000L, 10L);
+        usage.add(7L, 1L);
+        //when
+        quota.deleted(path(PREFIX + "existing.txt"), 7L);
+        //then
+        assertThat(usage.getBytes()).isZero();
+        assertThat(usage.getObjects()).isZero();
+    }
+}
@@ -0,0 +1,115 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.hubio.s3sftp.server.filechannel.ObjectChecksums;
+import com.upplication.s3fs.S3FileStore;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link ChecksumS3SftpFileSystemProvider}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ChecksumS3SftpFileSystemProviderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ChecksumS3SftpFileSystemProvider subject;
+
+    @Mock
+    private S3SftpFileSystemProvider delegate;
+
+    @Mock
+    private S3Path path;
+
+    @Mock
+    private S3FileSystem fileSystem;
+
+    @Mock
+    private S3FileStore fileStore;
+
+    @Mock
+    private AmazonS3 amazonS3;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        subject = new ChecksumS3SftpFileSystemProvider(delegate);
+        given(path.getFileSystem()).willReturn(fileSystem);
+        given(path.getFileStore()).willReturn(fileStore);
+        given(path.getKey()).willReturn("users/bob/file.txt");
+        given(fileSystem.getClient()).willReturn(amazonS3);
+        given(fileStore.name()).willReturn("bucket");
+    }
+
+    @Test
+    public void readAttributesShouldReadChecksumsFromObjectMetadata() throws Exception {
+        //given
+        val metadata = new ObjectMetadata();
+        metadata.setContentLength(42L);
+        metadata.addUserMetadata("s3sftp-sha256", "00ff");
+        given(amazonS3.getObjectMetadata("bucket", "users/bob/file.txt")).willReturn(metadata);
+        //when
+        val result = subject.readAttributes(path, ObjectChecksums.ATTRIBUTES);
+        //then
+        assertThat(result).containsOnlyKeys(ObjectChecksums.SHA256, ObjectChecksums.SIZE)
+                          .containsEntry(ObjectChecksums.SIZE, 42L);
+        verifyZeroInteractions(delegate);
+    }
+
+    @Test
+    public void readAttributesShouldReportMissingObject() throws Exception {
+        //given
+        val notFound = new AmazonS3Exception("Not Found");
+        notFound.setStatusCode(404);
+        given(amazonS3.getObjectMetadata("bucket", "users/bob/file.txt")).willThrow(notFound);
+        exception.expect(NoSuchFileException.class);
+        //when
+        subject.readAttributes(path, ObjectChecksums.ATTRIBUTES);
+    }
+
+    @Test
+    public void readAttributesShouldDelegateOtherAttributes() throws Exception {
+        //given
+        final Map<String, Object> expected = new HashMap<>();
+        given(delegate.readAttributes(path, "basic:*")).willReturn(expected);
+        //when
+        val result = subject.readAttributes(path, "basic:*");
+        //then
+        assertThat(result).isSameAs(expected);
+        verifyZeroInteractions(amazonS3);
+    }
+
+    @Test
+    public void readAttributesShouldDelegateOtherPaths() throws Exception {
+        //given
+        final Path other = mock(Path.class);
+        final Map<String, Object> expected = new HashMap<>();
+        given(delegate.readAttributes(other, ObjectChecksums.ATTRIBUTES)).willReturn(expected);
+        //when
+        val result = subject.readAttributes(other, ObjectChecksums.ATTRIBUTES);
+        //then
+        assertThat(result).isSameAs(expected);
+    }
+}
@@ -0,0 +1,185 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link CoalescingS3SftpFileSystemProvider}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class CoalescingS3SftpFileSystemProviderTest {
+
+    private final SingleFlight<String, Object> flights = new SingleFlight<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Mock
+    private S3SftpFileSystemProvider provider;
+
+    private CoalescingS3SftpFileSystemProvider subject;
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket("bucket");
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val env = new HashMap<String, String>();
+        env.put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, InMemoryAmazonS3Factory.class.getName());
+        fileSystem = new S3FileSystemProvider().newFileSystem(URI.create("s3://in-memory/"), env);
+        subject = new CoalescingS3SftpFileSystemProvider(provider, flights);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        fileSystem.close();
+    }
+
+    private S3Path path(final String key) {
+        return (S3Path) fileSystem.getPath("/bucket", key);
+    }
+
+    private void block() throws InterruptedException {
+        started.countDown();
+        release.await();
+    }
+
+    @Test
+    public void shouldShareConcurrentReadAttributes() throws Exception {
+        //given
+        val attributes = mock(BasicFileAttributes.class);
+        given(provider.readAttributes(any(Path.class), eq(BasicFileAttributes.class))).willAnswer(invocation -> {
+            block();
+            return attributes;
+        });
+        final Future<BasicFileAttributes> first =
+                executor.submit(() -> subject.readAttributes(path("file"), BasicFileAttributes.class));
+        started.await();
+        final Future<BasicFileAttributes> second =
+                executor.submit(() -> subject.readAttributes(path("file"), BasicFileAttributes.class));
+        Thread.sleep(100);
+        //when
+        release.countDown();
+        //then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(attributes);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(attributes);
+        verify(provider, times(1)).readAttributes(any(Path.class), eq(BasicFileAttributes.class));
+    }
+
+    @Test
+    public void shouldNotShareReadAttributesOfDifferentKeys() throws Exception {
+        //given
+        given(provider.readAttributes(any(Path.class), eq(BasicFileAttributes.class))).willReturn(
+                mock(BasicFileAttributes.class));
+        //when
+        subject.readAttributes(path("a"), BasicFileAttributes.class);
+        subject.readAttributes(path("b"), BasicFileAttributes.class);
+        //then
+        verify(provider, times(2)).readAttributes(any(Path.class), eq(BasicFileAttributes.class));
+    }
+
+    @Test
+    public void shouldNotRememberCompletedReadAttributes() throws Exception {
+        //given
+        given(provider.readAttributes(any(Path.class), eq(BasicFileAttributes.class))).willReturn(
+                mock(BasicFileAttributes.class));
+        //when
+        subject.readAttributes(path("file"), BasicFileAttributes.class);
+        subject.readAttributes(path("file"), BasicFileAttributes.class);
+        //then
+        verify(provider, times(2)).readAttributes(any(Path.class), eq(BasicFileAttributes.class));
+    }
+
+    @Test
+    public void shouldPassThroughPathsNotInS3() throws Exception {
+        //given
+        val path = mock(Path.class);
+        val attributes = mock(BasicFileAttributes.class);
+        given(provider.readAttributes(path, BasicFileAttributes.class)).willReturn(attributes);
+        //when
+        val result = subject.readAttributes(path, BasicFileAttributes.class);
+        //then
+        assertThat(result).isSameAs(attributes);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldShareConcurrentListingWithEachCallerFilteringItsOwnPaths() throws Exception {
+        //given
+        val dir = path("dir/");
+        val listing = mock(DirectoryStream.class);
+        val children = new ArrayList<Path>();
+        children.add(dir.resolve("a.txt"));
+        children.add(dir.resolve("b.txt"));
+        given(listing.iterator()).willAnswer(invocation -> children.iterator());
+        given(provider.newDirectoryStream(any(Path.class), any(DirectoryStream.Filter.class))).willAnswer(
+                invocation -> {
+                    block();
+                    return listing;
+                });
+        final Future<List<String>> all = executor.submit(() -> list(dir, entry -> true));
+        started.await();
+        final Future<List<String>> filtered = executor.submit(() -> list(dir, entry -> entry.getFileName()
+                                                                                            .toString()
+                                                                                            .startsWith("b")));
+        Thread.sleep(100);
+        //when
+        release.countDown();
+        //then
+        assertThat(all.get(5, TimeUnit.SECONDS)).containsExactly("/bucket/dir/a.txt", "/bucket/dir/b.txt");
+        assertThat(filtered.get(5, TimeUnit.SECONDS)).containsExactly("/bucket/dir/b.txt");
+        verify(provider, times(1)).newDirectoryStream(any(Path.class), any(DirectoryStream.Filter.class));
+        verify(listing).close();
+    }
+
+    private List<String> list(final Path dir, final DirectoryStream.Filter<Path> filter) throws IOException {
+        val names = new ArrayList<String>();
+        try (DirectoryStream<Path> stream = subject.newDirectoryStream(dir, filter)) {
+            for (final Path entry : stream) {
+                names.add(entry.toString());
+            }
+        }
+        return names;
+    }
+}
@@ -10,6 +10,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
 
 /**
  * Tests for {@link DefaultS3SftpFileSystemProviderFactory}.
@@ -29,12 +30,14 @@ public class DefaultS3SftpFileSystemProviderFactoryTest {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        subject = new DefaultS3SftpFileSystemProviderFactory();
+        subject = new DefaultS3SftpFileSystemProviderFactory(ProviderResources.builder()
+                                                                              .build());
     }
 
     @Test
     public void createWith() throws Exception {
         //given
+        given(session.getUsername()).willReturn("bob");
         //when
         val result = subject.createWith(s3PathEnhancer, session);
         //then
@@ -32,19 +32,41 @@ public class DefaultUserFileSystemResolverTest {
     public void resolveKnownUser() throws Exception {
         //given
         val username = "username";
-        subject.put(username, fileSystem);
+        subject.put(username, "bucket", "jail", fileSystem);
         //when
-        val result = subject.resolve(username);
+        val result = subject.resolve(username, "bucket", "jail");
         //then
         assertThat(result).contains(fileSystem);
     }
 
+    @Test
+    public void resolveKnownUserInOtherBucket() throws Exception {
+        //given
+        val username = "username";
+        subject.put(username, "bucket", "jail", fileSystem);
+        //when
+        val result = subject.resolve(username, "other", "jail");
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void resolveKnownUserInOtherJail() throws Exception {
+        //given
+        val username = "username";
+        subject.put(username, "bucket", "jail", fileSystem);
+        //when
+        val result = subject.resolve(username, "bucket", "other");
+        //then
+        assertThat(result).isEmpty();
+    }
+
     @Test
     public void resolveUnknownUser() throws Exception {
         //given
         val username = "username";
         //when
-        val result = subject.resolve(username);
+        val result = subject.resolve(username, "bucket", "jail");
         //then
         assertThat(result).isEmpty();
     }
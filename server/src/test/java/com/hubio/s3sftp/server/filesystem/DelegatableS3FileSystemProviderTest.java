@@ -1,8 +1,13 @@
 package com.hubio.s3sftp.server.filesystem;
 
+import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.services.s3.AmazonS3;
+import com.hubio.s3sftp.server.TestAmazonS3Factory;
+import com.hubio.s3sftp.server.admission.AdmissionPolicy;
+import com.hubio.s3sftp.server.admission.S3Admission;
 import com.hubio.s3sftp.server.filesystem.DelegatableS3FileSystemProvider;
 import com.upplication.s3fs.AmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
 import lombok.val;
 import org.apache.sshd.common.session.Session;
 import org.junit.Before;
@@ -17,6 +22,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 /**
  * Tests for {@link DelegatableS3FileSystemProvider}.
@@ -149,6 +155,33 @@ public class DelegatableS3FileSystemProviderTest {
         assertThat(result).isNotNull();
     }
 
+    @Test
+    public void getAmazonS3ShouldTurnOffClientRetriesWhenAdmissionRetries() throws Exception {
+        //given
+        final URI uri = URI.create("S3://uri");
+        final Properties props = new Properties();
+        subject.setS3Admission(S3Admission.adaptive(AdmissionPolicy.builder()
+                                                                   .build()));
+        //when
+        subject.getAmazonS3(uri, props);
+        //then
+        assertThat(props.getProperty(AmazonS3Factory.MAX_ERROR_RETRY)).isEqualTo("0");
+    }
+
+    @Test
+    public void getAmazonS3ShouldKeepConfiguredClientRetries() throws Exception {
+        //given
+        final URI uri = URI.create("S3://uri");
+        final Properties props = new Properties();
+        props.setProperty(AmazonS3Factory.MAX_ERROR_RETRY, "3");
+        subject.setS3Admission(S3Admission.adaptive(AdmissionPolicy.builder()
+                                                                   .build()));
+        //when
+        subject.getAmazonS3(uri, props);
+        //then
+        assertThat(props.getProperty(AmazonS3Factory.MAX_ERROR_RETRY)).isEqualTo("3");
+    }
+
     @Test
     public void getAmazonS3Factory() throws Exception {
         //given
@@ -159,6 +192,44 @@ public class DelegatableS3FileSystemProviderTest {
         assertThat(result).isNotNull();
     }
 
+    @Test
+    public void getAmazonS3FactoryShouldGiveClientsTheRequestMetricCollector() throws Exception {
+        //given
+        final Properties props = new Properties();
+        final RequestMetricCollector collector = mock(RequestMetricCollector.class);
+        subject.setRequestMetricCollector(collector);
+        //when
+        val result = subject.getAmazonS3Factory(props);
+        //then
+        assertThat(result).isInstanceOf(MeteredAmazonS3ClientFactory.class);
+    }
+
+    @Test
+    public void getAmazonS3FactoryShouldUseConfiguredFactory() throws Exception {
+        //given
+        final Properties props = new Properties();
+        props.setProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, TestAmazonS3Factory.class.getName());
+        //when
+        val result = subject.getAmazonS3Factory(props);
+        //then
+        assertThat(result).isInstanceOf(TestAmazonS3Factory.class);
+    }
+
+    @Test
+    public void getAmazonS3FactoryShouldUseFactoryFromSystemProperties() throws Exception {
+        //given
+        final Properties props = new Properties();
+        System.setProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS, TestAmazonS3Factory.class.getName());
+        //when
+        try {
+            val result = subject.getAmazonS3Factory(props);
+            //then
+            assertThat(result).isInstanceOf(TestAmazonS3Factory.class);
+        } finally {
+            System.clearProperty(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS);
+        }
+    }
+
     @Test
     public void newFileSystem() throws Exception {
         //given
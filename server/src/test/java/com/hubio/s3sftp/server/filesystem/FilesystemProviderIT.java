@@ -46,7 +46,8 @@ public class FilesystemProviderIT {
     @Test
     public void shouldCreateFilteredS3FileSystem() {
         //given
-        val factory = new DefaultS3SftpFileSystemProviderFactory();
+        val factory = new DefaultS3SftpFileSystemProviderFactory(ProviderResources.builder()
+                                                                                  .build());
         val pathEnhancer = S3PathEnhancer.fixedPrefix("prefix");
         val env = new MapBuilder<String, String>().put(S3SftpServer.BUCKET, "bucket")
                                                   .put(S3SftpServer.USERNAME, "bob")
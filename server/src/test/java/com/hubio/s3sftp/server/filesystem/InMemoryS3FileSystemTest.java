@@ -0,0 +1,93 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import lombok.val;
+import me.andrz.builder.map.MapBuilder;
+import org.apache.sshd.common.session.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link DelegatableS3FileSystemProvider} against an {@link InMemoryAmazonS3}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class InMemoryS3FileSystemTest {
+
+    private InMemoryAmazonS3 amazonS3;
+
+    private FileSystem fileSystem;
+
+    @Before
+    public void setUp() throws Exception {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket("bucket");
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val provider = new DelegatableS3FileSystemProvider(mock(Session.class));
+        val env = new MapBuilder<String, String>().put(S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS,
+                                                       InMemoryAmazonS3Factory.class.getName()
+                                                      )
+                                                  .build();
+        fileSystem = provider.newFileSystem(URI.create("s3://in-memory/"), env);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldReadWhatWasWritten() throws Exception {
+        //given
+        val path = fileSystem.getPath("/bucket", "docs", "report.txt");
+        //when
+        Files.write(path, "content".getBytes(StandardCharsets.UTF_8));
+        //then
+        assertThat(Files.readAllBytes(path)).isEqualTo("content".getBytes(StandardCharsets.UTF_8));
+        assertThat(Files.size(path)).isEqualTo(7L);
+        assertThat(amazonS3.doesObjectExist("bucket", "docs/report.txt")).isTrue();
+    }
+
+    @Test
+    public void shouldListDirectory() throws Exception {
+        //given
+        Files.write(fileSystem.getPath("/bucket", "docs", "a.txt"), new byte[1]);
+        Files.write(fileSystem.getPath("/bucket", "docs", "sub", "b.txt"), new byte[1]);
+        val names = new ArrayList<String>();
+        //when
+        try (val stream = Files.newDirectoryStream(fileSystem.getPath("/bucket", "docs"))) {
+            for (final Path path : stream) {
+                names.add(path.getFileName()
+                              .toString());
+            }
+        }
+        //then
+        assertThat(names).containsExactlyInAnyOrder("a.txt", "sub");
+    }
+
+    @Test
+    public void shouldMoveFile() throws Exception {
+        //given
+        val source = fileSystem.getPath("/bucket", "source.txt");
+        val target = fileSystem.getPath("/bucket", "target.txt");
+        Files.write(source, "content".getBytes(StandardCharsets.UTF_8));
+        //when
+        Files.move(source, target);
+        //then
+        assertThat(Files.exists(source)).isFalse();
+        assertThat(Files.readAllBytes(target)).isEqualTo("content".getBytes(StandardCharsets.UTF_8));
+    }
+}
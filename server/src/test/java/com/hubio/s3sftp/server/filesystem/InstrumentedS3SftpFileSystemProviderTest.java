@@ -0,0 +1,109 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.metrics.MetricsRegistry;
+import com.hubio.s3sftp.server.metrics.OperationMetrics;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link InstrumentedS3SftpFileSystemProvider}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class InstrumentedS3SftpFileSystemProviderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private InstrumentedS3SftpFileSystemProvider subject;
+
+    @Mock
+    private S3SftpFileSystemProvider provider;
+
+    @Mock
+    private MetricsRegistry metricsRegistry;
+
+    @Mock
+    private OperationMetrics readAttributes;
+
+    @Mock
+    private OperationMetrics delete;
+
+    @Mock
+    private OperationMetrics other;
+
+    @Mock
+    private Path path;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(metricsRegistry.operation(anyString(), eq("bob"))).willReturn(other);
+        given(metricsRegistry.operation("readAttributes", "bob")).willReturn(readAttributes);
+        given(metricsRegistry.operation("delete", "bob")).willReturn(delete);
+        subject = new InstrumentedS3SftpFileSystemProvider(provider, metricsRegistry, "bob");
+    }
+
+    @Test
+    public void shouldLookUpMetricsForEveryOperationOnce() {
+        //then
+        verify(metricsRegistry, times(InstrumentedS3SftpFileSystemProvider.Operation.values().length)).operation(
+                anyString(), eq("bob"));
+    }
+
+    @Test
+    public void shouldRecordSuccessfulCall() throws Exception {
+        //given
+        val attributes = mock(BasicFileAttributes.class);
+        given(provider.readAttributes(path, BasicFileAttributes.class)).willReturn(attributes);
+        //when
+        val result = subject.readAttributes(path, BasicFileAttributes.class);
+        //then
+        assertThat(result).isSameAs(attributes);
+        verify(readAttributes).record(anyLong(), eq(false));
+    }
+
+    @Test
+    public void shouldRecordFailedCall() throws Exception {
+        //given
+        doThrow(new IOException("failed")).when(provider)
+                                          .delete(path);
+        exception.expect(IOException.class);
+        exception.expectMessage("failed");
+        //when
+        try {
+            subject.delete(path);
+        } finally {
+            //then
+            verify(delete).record(anyLong(), eq(true));
+        }
+    }
+
+    @Test
+    public void shouldNotRecordConfigurationMethods() {
+        //when
+        subject.getSession();
+        //then
+        verify(other, times(0)).record(anyLong(), anyBoolean());
+    }
+}
@@ -0,0 +1,62 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.upplication.s3fs.AmazonS3Factory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link MeteredAmazonS3ClientFactory}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class MeteredAmazonS3ClientFactoryTest {
+
+    private RequestMetricCollector collector;
+
+    private MeteredAmazonS3ClientFactory subject;
+
+    @Before
+    public void setUp() {
+        collector = mock(RequestMetricCollector.class);
+        subject = new MeteredAmazonS3ClientFactory(collector);
+    }
+
+    @Test
+    public void shouldUseGivenCollector() {
+        //when
+        val result = subject.getRequestMetricsCollector(new Properties());
+        //then
+        assertThat(result).isSameAs(collector);
+    }
+
+    @Test
+    public void shouldPreferCollectorNamedInProperties() {
+        //given
+        final Properties props = new Properties();
+        props.setProperty(AmazonS3Factory.REQUEST_METRIC_COLLECTOR_CLASS, NamedCollector.class.getName());
+        //when
+        val result = subject.getRequestMetricsCollector(props);
+        //then
+        assertThat(result).isInstanceOf(NamedCollector.class);
+    }
+
+    /**
+     * A collector that s3fs can create by name.
+     */
+    public static class NamedCollector extends RequestMetricCollector {
+
+        @Override
+        public void collectMetrics(final Request<?> request, final Response<?> response) {
+            // nothing
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.hubio.s3sftp.server.filechannel.ChannelQuota;
+import com.hubio.s3sftp.server.usage.BucketUsage;
+import com.hubio.s3sftp.server.usage.PrefixUsage;
+import com.upplication.s3fs.S3FileStore;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3Path;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+/**
+ * Tests for {@link QuotaS3SftpFileSystemProvider}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class QuotaS3SftpFileSystemProviderTest {
+
+    private static final String PREFIX = "users/alice/";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final BucketUsage bucketUsage = BucketUsage.listedEvery(Duration.ofHours(1));
+
+    private QuotaS3SftpFileSystemProvider subject;
+
+    @Mock
+    private S3SftpFileSystemProvider delegate;
+
+    @Mock
+    private S3FileSystem fileSystem;
+
+    @Mock
+    private S3FileStore fileStore;
+
+    @Mock
+    private AmazonS3 amazonS3;
+
+    private PrefixUsage usage;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(fileSystem.getClient()).willReturn(amazonS3);
+        given(fileStore.name()).willReturn("bucket");
+        usage = bucketUsage.track(amazonS3, "bucket", PREFIX);
+        subject = new QuotaS3SftpFileSystemProvider(delegate, ChannelQuota.of(bucketUsage, PREFIX, 100L, 2L));
+    }
+
+    @After
+    public void tearDown() {
+        bucketUsage.stop();
+    }
+
+    private S3Path path(final String key) {
+        val path = mock(S3Path.class);
+        given(path.getKey()).willReturn(key);
+        given(path.getFileSystem()).willReturn(fileSystem);
+        given(path.getFileStore()).willReturn(fileStore);
+        return path;
+    }
+
+    private S3Path file(final String key, final long size) throws IOException {
+        val path = path(key);
+        val attributes = mock(BasicFileAttributes.class);
+        given(attributes.isRegularFile()).willReturn(true);
+        given(attributes.size()).willReturn(size);
+        given(delegate.readAttributes(path, BasicFileAttributes.class)).willReturn(attributes);
+        return path;
+    }
+
+    private S3Path missing(final String key) throws IOException {
+        val path = path(key);
+        given(delegate.readAttributes(path, BasicFileAttributes.class)).willThrow(new NoSuchFileException(key));
+        return path;
+    }
+
+    @Test
+    public void copyShouldCountCopyAgainstQuota() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 40L);
+        val target = missing(PREFIX + "b");
+        usage.add(40L, 1L);
+        //when
+        subject.copy(source, target);
+        //then
+        then(delegate).should()
+                      .copy(source, target);
+        assertThat(usage.getBytes()).isEqualTo(80L);
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void copyShouldBeRefusedBeyondByteQuota() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 60L);
+        val target = missing(PREFIX + "b");
+        usage.add(60L, 1L);
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Quota exceeded");
+        //when
+        subject.copy(source, target);
+    }
+
+    @Test
+    public void refusedCopyShouldNotBeMade() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 60L);
+        val target = missing(PREFIX + "b");
+        usage.add(60L, 1L);
+        //when
+        try {
+            subject.copy(source, target);
+        } catch (FileSystemException e) {
+            // expected
+        }
+        //then
+        then(delegate).should(never())
+                      .copy(any(), any());
+    }
+
+    @Test
+    public void copyShouldBeRefusedBeyondObjectQuota() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 1L);
+        val target = missing(PREFIX + "c");
+        usage.add(2L, 2L);
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Quota exceeded");
+        //when
+        subject.copy(source, target);
+    }
+
+    @Test
+    public void copyShouldCountOnlyGrowthOfReplacedFile() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 40L);
+        val target = file(PREFIX + "b", 30L);
+        usage.add(70L, 2L);
+        //when
+        subject.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        //then
+        assertThat(usage.getBytes()).isEqualTo(80L);
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void failedCopyShouldReleaseReservation() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 40L);
+        val target = missing(PREFIX + "b");
+        usage.add(40L, 1L);
+        willThrow(new IOException("failed")).given(delegate)
+                                             .copy(source, target);
+        //when
+        try {
+            subject.copy(source, target);
+        } catch (IOException e) {
+            // expected
+        }
+        //then
+        assertThat(usage.getBytes()).isEqualTo(40L);
+        assertThat(usage.tryReserve(60L, 1L, 100L, 2L)).isTrue();
+    }
+
+    @Test
+    public void moveIntoPrefixShouldCountAgainstQuota() throws IOException {
+        //given
+        val source = file("shared/a", 60L);
+        val target = missing(PREFIX + "a");
+        usage.add(60L, 1L);
+        exception.expect(FileSystemException.class);
+        exception.expectMessage("Quota exceeded");
+        //when
+        subject.move(source, target);
+    }
+
+    @Test
+    public void moveOutOfPrefixShouldReturnSpace() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 60L);
+        val target = missing("shared/a");
+        usage.add(60L, 1L);
+        //when
+        subject.move(source, target);
+        //then
+        then(delegate).should()
+                      .move(source, target);
+        assertThat(usage.getBytes()).isZero();
+        assertThat(usage.getObjects()).isZero();
+    }
+
+    @Test
+    public void renameWithinPrefixShouldNotChangeUsage() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 60L);
+        val target = missing(PREFIX + "b");
+        usage.add(90L, 2L);
+        //when
+        subject.move(source, target);
+        //then
+        then(delegate).should()
+                      .move(source, target);
+        assertThat(usage.getBytes()).isEqualTo(90L);
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void renameOverFileWithinPrefixShouldReturnSpaceOfReplacedFile() throws IOException {
+        //given
+        val source = file(PREFIX + "a", 60L);
+        val target = file(PREFIX + "b", 30L);
+        usage.add(90L, 2L);
+        //when
+        subject.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        //then
+        assertThat(usage.getBytes()).isEqualTo(60L);
+        assertThat(usage.getObjects()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,149 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import com.hubio.s3sftp.server.filechannel.FileChannelFactory;
+import com.hubio.s3sftp.server.scheduling.WorkScheduler;
+import lombok.val;
+import org.apache.sshd.common.session.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ScheduledS3SftpFileSystemProvider}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ScheduledS3SftpFileSystemProviderTest {
+
+    private ScheduledS3SftpFileSystemProvider subject;
+
+    @Mock
+    private S3SftpFileSystemProvider provider;
+
+    @Mock
+    private WorkScheduler workScheduler;
+
+    @Mock
+    private WorkScheduler.Permit permit;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Path path;
+
+    private final Set<OpenOption> options = Collections.emptySet();
+
+    private final FileAttribute<?>[] attrs = new FileAttribute<?>[0];
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        given(provider.getSession()).willReturn(session);
+        given(session.getUsername()).willReturn("bob");
+        given(workScheduler.acquire("bob")).willReturn(permit);
+        subject = new ScheduledS3SftpFileSystemProvider(provider, workScheduler);
+    }
+
+    @Test
+    public void readAttributesShouldHoldPermitWhileRunning() throws Exception {
+        //given
+        val attributes = mock(BasicFileAttributes.class);
+        given(provider.readAttributes(path, BasicFileAttributes.class)).willReturn(attributes);
+        //when
+        val result = subject.readAttributes(path, BasicFileAttributes.class);
+        //then
+        assertThat(result).isSameAs(attributes);
+        val inOrder = inOrder(workScheduler, provider, permit);
+        inOrder.verify(workScheduler)
+               .acquire("bob");
+        inOrder.verify(provider)
+               .readAttributes(path, BasicFileAttributes.class);
+        inOrder.verify(permit)
+               .close();
+    }
+
+    @Test
+    public void deleteShouldReleasePermitWhenItFails() throws Exception {
+        //given
+        doThrow(new IOException("failed")).when(provider)
+                                          .delete(path);
+        //when
+        try {
+            subject.delete(path);
+        } catch (IOException e) {
+            assertThat(e).hasMessage("failed");
+        }
+        //then
+        verify(permit).close();
+    }
+
+    @Test
+    public void newByteChannelShouldScheduleOpenAndClose() throws Exception {
+        //given
+        val channel = mock(SeekableByteChannel.class);
+        given(channel.isOpen()).willReturn(true);
+        given(provider.newByteChannel(path, options, attrs)).willReturn(channel);
+        //when
+        val result = subject.newByteChannel(path, options, attrs);
+        verify(permit).close();
+        result.close();
+        //then
+        val inOrder = inOrder(workScheduler, channel, permit);
+        inOrder.verify(workScheduler)
+               .acquire("bob");
+        inOrder.verify(channel)
+               .close();
+        inOrder.verify(permit)
+               .close();
+    }
+
+    @Test
+    public void newFileChannelShouldScheduleClose() throws Exception {
+        //given
+        val channel = mock(SeekableByteChannel.class);
+        given(channel.isOpen()).willReturn(true);
+        val fileChannel = FileChannelFactory.of(channel);
+        given(provider.newFileChannel(path, options, attrs)).willReturn(fileChannel);
+        //when
+        val result = subject.newFileChannel(path, options, attrs);
+        result.close();
+        //then
+        assertThat(result).isInstanceOf(FileChannel.class);
+        verify(channel).close();
+        verify(permit, times(2)).close();
+    }
+
+    @Test
+    public void closedChannelShouldNotNeedPermit() throws Exception {
+        //given
+        val channel = mock(SeekableByteChannel.class);
+        given(channel.isOpen()).willReturn(false);
+        val scheduled = new ScheduledSeekableByteChannel(channel, workScheduler, "bob");
+        //when
+        scheduled.close();
+        //then
+        verify(workScheduler, never()).acquire(any());
+    }
+}
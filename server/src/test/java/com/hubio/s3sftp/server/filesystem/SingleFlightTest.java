@@ -0,0 +1,191 @@
+package com.hubio.s3sftp.server.filesystem;
+
+import lombok.val;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SingleFlight}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class SingleFlightTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final SingleFlight<String, String> subject = new SingleFlight<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private SingleFlight.Call<String> blocking(final String result) {
+        return () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            if (result == null) {
+                throw new NoSuchFileException("key");
+            }
+            return result;
+        };
+    }
+
+    private Future<String> submit(final String key, final SingleFlight.Call<String> call) {
+        return executor.submit(() -> subject.execute(key, call));
+    }
+
+    /**
+     * Wait until the second caller has joined the first call: it can only do so while the first is running.
+     */
+    private void awaitJoined(final int expectedCalls) throws InterruptedException {
+        started.await();
+        Thread.sleep(100);
+        assertThat(calls.get()).isEqualTo(expectedCalls);
+    }
+
+    @Test
+    public void shouldShareResultWithConcurrentCaller() throws Exception {
+        //given
+        val first = submit("key", blocking("first"));
+        started.await();
+        val second = submit("key", blocking("second"));
+        awaitJoined(1);
+        //when
+        release.countDown();
+        //then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(subject.inFlight()).isZero();
+    }
+
+    @Test
+    public void shouldNotShareBetweenKeys() throws Exception {
+        //given
+        val first = submit("a", blocking("a"));
+        val second = submit("b", blocking("b"));
+        started.await();
+        //when
+        release.countDown();
+        //then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("b");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldShareFailureWithConcurrentCaller() throws Exception {
+        //given
+        val first = submit("key", blocking(null));
+        started.await();
+        val second = submit("key", blocking("second"));
+        awaitJoined(1);
+        release.countDown();
+        try {
+            first.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(NoSuchFileException.class);
+        }
+        exception.expect(ExecutionException.class);
+        exception.expectCause(IsInstanceOf.instanceOf(NoSuchFileException.class));
+        //when
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldShareErrorWithConcurrentCaller() throws Exception {
+        //given
+        val first = submit("key", () -> {
+            blocking("first").call();
+            throw new AssertionError("failed");
+        });
+        started.await();
+        val second = submit("key", blocking("second"));
+        awaitJoined(1);
+        release.countDown();
+        try {
+            first.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(AssertionError.class);
+        }
+        exception.expect(ExecutionException.class);
+        exception.expectCause(IsInstanceOf.instanceOf(AssertionError.class));
+        //when
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldForgetCallThatFailedWithError() throws IOException {
+        //given
+        try {
+            subject.execute("key", () -> {
+                throw new AssertionError("failed");
+            });
+        } catch (AssertionError e) {
+            assertThat(e).hasMessage("failed");
+        }
+        //when
+        val result = subject.execute("key", () -> "retried");
+        //then
+        assertThat(result).isEqualTo("retried");
+        assertThat(subject.inFlight()).isZero();
+    }
+
+    @Test
+    public void shouldCallAgainOnceCallCompletes() throws IOException {
+        //given
+        subject.execute("key", () -> "first");
+        //when
+        val result = subject.execute("key", () -> "second");
+        //then
+        assertThat(result).isEqualTo("second");
+        assertThat(subject.inFlight()).isZero();
+    }
+
+    @Test
+    public void shouldForgetFailedCall() throws IOException {
+        //given
+        try {
+            subject.execute("key", () -> {
+                throw new IOException("failed");
+            });
+        } catch (IOException e) {
+            assertThat(e).hasMessage("failed");
+        }
+        //when
+        val result = subject.execute("key", () -> "retried");
+        //then
+        assertThat(result).isEqualTo("retried");
+    }
+}
@@ -0,0 +1,127 @@
+package com.hubio.s3sftp.server.metrics;
+
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Tests for {@link JmxMetricsRegistry}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class JmxMetricsRegistryTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private JmxMetricsRegistry subject;
+
+    @After
+    public void tearDown() {
+        if (subject != null) {
+            subject.stop();
+        }
+    }
+
+    @Test
+    public void shouldCombineUsersWhenNotPerUser() {
+        //given
+        subject = new JmxMetricsRegistry(false);
+        //when
+        val alice = subject.operation("delete", "alice");
+        val bob = subject.operation("delete", "bob");
+        //then
+        assertThat(alice).isSameAs(bob);
+    }
+
+    @Test
+    public void shouldSeparateUsersWhenPerUser() {
+        //given
+        subject = new JmxMetricsRegistry(true);
+        //when
+        subject.operation("delete", "alice")
+               .record(MILLISECOND, false);
+        subject.operation("delete", "bob")
+               .record(MILLISECOND, true);
+        //then
+        assertThat(subject.getOperations()).extracting("operation", "username", "count", "errors")
+                                           .containsExactly(tuple("delete", "alice", 1L, 0L),
+                                                            tuple("delete", "bob", 1L, 1L)
+                                                           );
+    }
+
+    @Test
+    public void shouldReportLatencyInMicroseconds() {
+        //given
+        subject = new JmxMetricsRegistry(false);
+        //when
+        subject.operation("copy", "alice")
+               .record(MILLISECOND, false);
+        //then
+        val stats = subject.getOperations()
+                           .get(0);
+        assertThat(stats.getMaxMicros()).isEqualTo(1000L);
+        assertThat(stats.getP50Micros()).isBetween(1000L, 1125L);
+    }
+
+    @Test
+    public void resetShouldClearCounts() {
+        //given
+        subject = new JmxMetricsRegistry(false);
+        subject.operation("copy", "alice")
+               .record(MILLISECOND, true);
+        //when
+        subject.reset();
+        //then
+        assertThat(subject.getOperations()).extracting("count", "errors")
+                                           .containsExactly(tuple(0L, 0L));
+    }
+
+    @Test
+    public void shouldPublishOverJmxWhileStarted() throws Exception {
+        //given
+        subject = new JmxMetricsRegistry(false);
+        subject.operation("delete", "alice")
+               .record(MILLISECOND, false);
+        val server = ManagementFactory.getPlatformMBeanServer();
+        val name = new ObjectName(JmxMetricsRegistry.OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            // left behind by a server started elsewhere in this JVM
+            server.unregisterMBean(name);
+        }
+        //when
+        subject.start();
+        //then
+        val operations = (CompositeData[]) server.getAttribute(name, "Operations");
+        assertThat(operations).hasSize(1);
+        assertThat(operations[0].get("operation")).isEqualTo("delete");
+        subject.stop();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    public void shouldPublishS3RequestMetricsOverJmxWhileStarted() throws Exception {
+        //given
+        subject = new JmxMetricsRegistry(false);
+        val server = ManagementFactory.getPlatformMBeanServer();
+        val name = new ObjectName(JmxS3RequestMetricCollector.OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            // left behind by a server started elsewhere in this JVM
+            server.unregisterMBean(name);
+        }
+        //when
+        subject.start();
+        //then
+        assertThat(subject.s3Requests()).isInstanceOf(JmxS3RequestMetricCollector.class);
+        assertThat(server.isRegistered(name)).isTrue();
+        subject.stop();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
@@ -0,0 +1,70 @@
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link JmxS3RequestMetricCollector}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class JmxS3RequestMetricCollectorTest {
+
+    private JmxS3RequestMetricCollector subject;
+
+    @Before
+    public void setUp() {
+        subject = new JmxS3RequestMetricCollector();
+    }
+
+    private static DefaultRequest<Void> get(final String bucket) {
+        final DefaultRequest<Void> request = new DefaultRequest<>(new GetObjectRequest(bucket, "key"), "Amazon S3");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setAWSRequestMetrics(new AWSRequestMetricsFullSupport());
+        request.getAWSRequestMetrics()
+               .setCounter(AWSRequestMetrics.Field.RequestCount, 1);
+        return request;
+    }
+
+    @Test
+    public void shouldSeparateBuckets() {
+        //when
+        subject.collectMetrics(get("alpha"), null);
+        subject.collectMetrics(get("beta"), null);
+        subject.collectMetrics(get("beta"), null);
+        //then
+        assertThat(subject.getRequests()).extracting("api", "bucket", "count", "errors")
+                                         .containsExactly(tuple("GET", "alpha", 1L, 1L), tuple("GET", "beta", 2L, 2L));
+    }
+
+    @Test
+    public void shouldIgnoreRequestsItCannotRead() {
+        //given
+        final Request<?> request = mock(Request.class);
+        //when
+        subject.collectMetrics(request, null);
+        //then
+        assertThat(subject.getRequests()).isEmpty();
+    }
+
+    @Test
+    public void resetShouldClearCounts() {
+        //given
+        subject.collectMetrics(get("alpha"), null);
+        //when
+        subject.reset();
+        //then
+        assertThat(subject.getRequests()).extracting("count", "errors")
+                                         .containsExactly(tuple(0L, 0L));
+    }
+}
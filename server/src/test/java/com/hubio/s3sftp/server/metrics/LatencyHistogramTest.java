@@ -0,0 +1,95 @@
+package com.hubio.s3sftp.server.metrics;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram subject = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        //then
+        assertThat(subject.getCount()).isZero();
+        assertThat(subject.getMean()).isZero();
+        assertThat(subject.getMax()).isZero();
+        assertThat(subject.getValueAtPercentile(99)).isZero();
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        //given
+        for (int value = 0; value < 8; value++) {
+            //then
+            assertThat(LatencyHistogram.highestValueIn(LatencyHistogram.indexOf(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void bucketsCoverEveryValueWithinPrecision() {
+        //given
+        long value = 8;
+        while (value > 0 && value < Long.MAX_VALUE / 2) {
+            //when
+            val index = LatencyHistogram.indexOf(value);
+            val highest = LatencyHistogram.highestValueIn(index);
+            //then
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat((double) (highest - value) / value).isLessThan(0.125);
+            assertThat(LatencyHistogram.indexOf(highest)).isEqualTo(index);
+            assertThat(LatencyHistogram.indexOf(highest + 1)).isEqualTo(index + 1);
+            value = value * 3 / 2 + 1;
+        }
+    }
+
+    @Test
+    public void largestValueFits() {
+        //when
+        subject.record(Long.MAX_VALUE);
+        //then
+        assertThat(subject.getMax()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void negativeValueIsRecordedAsZero() {
+        //when
+        subject.record(-5);
+        //then
+        assertThat(subject.getCount()).isEqualTo(1);
+        assertThat(subject.getMax()).isZero();
+    }
+
+    @Test
+    public void shouldReportPercentiles() {
+        //given
+        for (int i = 1; i <= 1000; i++) {
+            subject.record(i * 1000L);
+        }
+        //then
+        assertThat(subject.getCount()).isEqualTo(1000);
+        assertThat(subject.getMax()).isEqualTo(1_000_000L);
+        assertThat(subject.getMean()).isCloseTo(500_500.0, within(0.1));
+        assertThat(subject.getValueAtPercentile(50)).isBetween(500_000L, 562_500L);
+        assertThat(subject.getValueAtPercentile(99)).isBetween(990_000L, 1_000_000L);
+        assertThat(subject.getValueAtPercentile(100)).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    public void resetShouldClear() {
+        //given
+        subject.record(100);
+        //when
+        subject.reset();
+        //then
+        assertThat(subject.getCount()).isZero();
+        assertThat(subject.getValueAtPercentile(50)).isZero();
+    }
+}
@@ -0,0 +1,44 @@
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.metrics.RequestMetricCollector;
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MetricsRegistry}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void noopShouldAcceptRecords() {
+        //given
+        val subject = MetricsRegistry.noop();
+        //when
+        val result = subject.operation("delete", "alice");
+        result.record(1, true);
+        //then
+        assertThat(result).isNotNull();
+    }
+
+    @Test
+    public void noopShouldNotCollectS3Requests() {
+        //given
+        val subject = MetricsRegistry.noop();
+        //when
+        val result = subject.s3Requests();
+        //then
+        assertThat(result).isSameAs(RequestMetricCollector.NONE);
+    }
+
+    @Test
+    public void jmxShouldCreateJmxRegistry() {
+        //when
+        val result = MetricsRegistry.jmx(true);
+        //then
+        assertThat(result).isInstanceOf(JmxMetricsRegistry.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.hubio.s3sftp.server.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Response;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListBucketsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import lombok.val;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link S3Request}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class S3RequestTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static DefaultRequest<Void> request(final AmazonWebServiceRequest original, final HttpMethodName method) {
+        final DefaultRequest<Void> request = new DefaultRequest<>(original, "Amazon S3");
+        request.setHttpMethod(method);
+        request.setAWSRequestMetrics(new AWSRequestMetricsFullSupport());
+        request.getAWSRequestMetrics()
+               .setCounter(AWSRequestMetrics.Field.RequestCount, 1);
+        return request;
+    }
+
+    private static Response<Void> response(final DefaultRequest<Void> request, final String contentLength) {
+        val httpResponse = new HttpResponse(request, null);
+        httpResponse.addHeader("Content-Length", contentLength);
+        return new Response<>(null, httpResponse);
+    }
+
+    @Test
+    public void shouldReportGet() {
+        //given
+        val request = request(new GetObjectRequest(BUCKET, "key"), HttpMethodName.GET);
+        //when
+        val result = S3Request.of(request, response(request, "1024"));
+        //then
+        assertThat(result.getApi()).isEqualTo("GET");
+        assertThat(result.getBucket()).isEqualTo(BUCKET);
+        assertThat(result.isFailed()).isFalse();
+        assertThat(result.getBytesReceived()).isEqualTo(1024L);
+        assertThat(result.getBytesSent()).isZero();
+    }
+
+    @Test
+    public void shouldReportPutWithBytesSent() {
+        //given
+        val request = request(new PutObjectRequest(BUCKET, "key", new File("file")), HttpMethodName.PUT);
+        request.addHeader("Content-Length", "2048");
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getApi()).isEqualTo("PUT");
+        assertThat(result.getBytesSent()).isEqualTo(2048L);
+    }
+
+    @Test
+    public void shouldNotCountObjectLengthOfHeadAsReceived() {
+        //given
+        val request = request(new GetObjectMetadataRequest(BUCKET, "key"), HttpMethodName.HEAD);
+        //when
+        val result = S3Request.of(request, response(request, "1024"));
+        //then
+        assertThat(result.getApi()).isEqualTo("HEAD");
+        assertThat(result.getBytesReceived()).isZero();
+    }
+
+    @Test
+    public void shouldReportListRatherThanGet() {
+        //given
+        val request = request(new ListObjectsRequest().withBucketName(BUCKET), HttpMethodName.GET);
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getApi()).isEqualTo("LIST");
+    }
+
+    @Test
+    public void shouldReportCopyRatherThanPut() {
+        //given
+        val request = request(new CopyObjectRequest(BUCKET, "from", BUCKET, "to"), HttpMethodName.PUT);
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getApi()).isEqualTo("COPY");
+    }
+
+    @Test
+    public void shouldReportMultipleDeleteAsDelete() {
+        //given
+        val request = request(new DeleteObjectsRequest(BUCKET), HttpMethodName.POST);
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getApi()).isEqualTo("DELETE");
+    }
+
+    @Test
+    public void shouldReportNoBucketWhenRequestHasNone() {
+        //given
+        val request = request(new ListBucketsRequest(), HttpMethodName.GET);
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getBucket()).isEqualTo(S3Request.NO_BUCKET);
+    }
+
+    @Test
+    public void shouldReportRetriesAndThrottling() {
+        //given
+        val request = request(new GetObjectRequest(BUCKET, "key"), HttpMethodName.GET);
+        val metrics = request.getAWSRequestMetrics();
+        metrics.setCounter(AWSRequestMetrics.Field.RequestCount, 3);
+        metrics.incrementCounter(AWSRequestMetrics.Field.ThrottleException);
+        metrics.incrementCounter(AWSRequestMetrics.Field.ThrottleException);
+        //when
+        val result = S3Request.of(request, null);
+        //then
+        assertThat(result.isFailed()).isTrue();
+        assertThat(result.getRetries()).isEqualTo(2L);
+        assertThat(result.getThrottled()).isEqualTo(2L);
+        assertThat(result.getBytesReceived()).isZero();
+    }
+
+    @Test
+    public void shouldReportLatency() throws Exception {
+        //given
+        val request = request(new GetObjectRequest(BUCKET, "key"), HttpMethodName.GET);
+        Thread.sleep(2);
+        request.getAWSRequestMetrics()
+               .getTimingInfo()
+               .endTiming();
+        //when
+        val result = S3Request.of(request, response(request, "0"));
+        //then
+        assertThat(result.getNanos()).isGreaterThanOrEqualTo(2_000_000L);
+    }
+}
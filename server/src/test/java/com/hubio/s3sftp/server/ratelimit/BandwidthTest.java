@@ -0,0 +1,36 @@
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Bandwidth}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class BandwidthTest {
+
+    @Test
+    public void unlimitedHasNoLimits() {
+        //when
+        val result = Bandwidth.unlimited();
+        //then
+        assertThat(result.getUpload()).isEmpty();
+        assertThat(result.getDownload()).isEmpty();
+        assertThat(result).hasToString("upload: unlimited, download: unlimited");
+    }
+
+    @Test
+    public void bytesPerSecondAllowsOneSecondBurst() {
+        //when
+        val result = Bandwidth.bytesPerSecond(1024, 0);
+        //then
+        assertThat(result.getUpload()).hasValueSatisfying(limit -> {
+            assertThat(limit.getPermits()).isEqualTo(1024);
+            assertThat(limit.getBurst()).isEqualTo(1024);
+        });
+        assertThat(result.getDownload()).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link KeyedRateLimiter}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class KeyedRateLimiterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1)
+                                               .toNanos();
+
+    private final AtomicLong now = new AtomicLong(-SECOND);
+
+    private KeyedRateLimiter subject;
+
+    @Before
+    public void setUp() {
+        // one permit per second, up to three at once
+        subject = new KeyedRateLimiter(RateLimit.perSecond(1, 3), now::get);
+    }
+
+    @Test
+    public void shouldAllowBurstThenRefuse() {
+        //when
+        val first = subject.tryAcquire("key", 1);
+        val second = subject.tryAcquire("key", 1);
+        val third = subject.tryAcquire("key", 1);
+        val fourth = subject.tryAcquire("key", 1);
+        //then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isTrue();
+        assertThat(fourth).isFalse();
+    }
+
+    @Test
+    public void shouldRefillOverTime() {
+        //given
+        subject.tryAcquire("key", 3);
+        assertThat(subject.tryAcquire("key", 1)).isFalse();
+        //when
+        now.addAndGet(SECOND);
+        //then
+        assertThat(subject.tryAcquire("key", 1)).isTrue();
+        assertThat(subject.tryAcquire("key", 1)).isFalse();
+    }
+
+    @Test
+    public void shouldKeepKeysSeparate() {
+        //given
+        subject.tryAcquire("key", 3);
+        //when
+        val result = subject.tryAcquire("other", 1);
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void refusedRequestShouldTakeNothing() {
+        //given
+        subject.tryAcquire("key", 2);
+        //when
+        val refused = subject.tryAcquire("key", 2);
+        //then
+        assertThat(refused).isFalse();
+        assertThat(subject.tryAcquire("key", 1)).isTrue();
+    }
+
+    @Test
+    public void isAvailableShouldTakeNothing() {
+        //given
+        subject.tryAcquire("key", 2);
+        //when
+        val available = subject.isAvailable("key", 1);
+        //then
+        assertThat(available).isTrue();
+        assertThat(subject.tryAcquire("key", 1)).isTrue();
+        assertThat(subject.isAvailable("key", 1)).isFalse();
+    }
+
+    @Test
+    public void isAvailableShouldNotTrackUnknownKeys() {
+        //when
+        val available = subject.isAvailable("key", 3);
+        //then
+        assertThat(available).isTrue();
+        assertThat(subject.isAvailable("key", 4)).isFalse();
+        assertThat(subject.size()).isZero();
+    }
+
+    @Test
+    public void reserveShouldReturnNoDelayWithinBurst() {
+        //when
+        val result = subject.reserve("key", 3);
+        //then
+        assertThat(result).isZero();
+    }
+
+    @Test
+    public void reserveShouldReturnDelayBeyondBurst() {
+        //given
+        subject.reserve("key", 3);
+        //when
+        val result = subject.reserve("key", 2);
+        //then
+        assertThat(result).isEqualTo(2 * SECOND);
+    }
+
+    @Test
+    public void purgeShouldForgetRefilledKeys() {
+        //given
+        subject.tryAcquire("idle", 1);
+        subject.tryAcquire("busy", 3);
+        now.addAndGet(SECOND);
+        //when
+        val result = subject.purge();
+        //then
+        assertThat(result).isEqualTo(1);
+        assertThat(subject.size()).isEqualTo(1);
+    }
+}
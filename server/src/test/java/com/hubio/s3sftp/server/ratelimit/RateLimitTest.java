@@ -0,0 +1,59 @@
+package com.hubio.s3sftp.server.ratelimit;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RateLimit}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class RateLimitTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void perSecond() {
+        //when
+        val result = RateLimit.perSecond(4, 8);
+        //then
+        assertThat(result.getPermits()).isEqualTo(4);
+        assertThat(result.getPeriod()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(result.getBurst()).isEqualTo(8);
+        assertThat(result.nanosPerPermit()).isEqualTo(250_000_000D);
+    }
+
+    @Test
+    public void shouldErrorWhenPermitsIsZero() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("permits");
+        //when
+        RateLimit.of(0, Duration.ofSeconds(1), 1);
+    }
+
+    @Test
+    public void shouldErrorWhenPeriodIsZero() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("period");
+        //when
+        RateLimit.of(1, Duration.ZERO, 1);
+    }
+
+    @Test
+    public void shouldErrorWhenBurstIsZero() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("burst");
+        //when
+        RateLimit.of(1, Duration.ofSeconds(1), 0);
+    }
+}
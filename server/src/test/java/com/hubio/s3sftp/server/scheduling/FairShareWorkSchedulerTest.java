@@ -0,0 +1,302 @@
+package com.hubio.s3sftp.server.scheduling;
+
+import lombok.val;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.management.ObjectName;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Tests for {@link FairShareWorkScheduler}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class FairShareWorkSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private FairShareWorkScheduler subject;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (subject != null) {
+            subject.stop();
+        }
+    }
+
+    private Future<WorkScheduler.Permit> acquireAsync(final String username) throws InterruptedException {
+        val queued = subject.getQueued();
+        val future = executor.submit(() -> subject.acquire(username));
+        // wait until queued so the order of arrival is known
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!future.isDone() && subject.getQueued() == queued && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private WorkScheduler.Permit nextGranted(final List<Future<WorkScheduler.Permit>> waiting)
+            throws InterruptedException, ExecutionException {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            for (val future : waiting) {
+                if (future.isDone()) {
+                    waiting.remove(future);
+                    return future.get();
+                }
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("No permit granted");
+    }
+
+    @Test
+    public void shouldErrorWhenMaxConcurrentIsZero() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("maxConcurrent");
+        //when
+        new FairShareWorkScheduler(0, 1, UserWeight.equal());
+    }
+
+    @Test
+    public void shouldErrorWhenMaxPerUserIsZero() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("maxPerUser");
+        //when
+        new FairShareWorkScheduler(1, 0, UserWeight.equal());
+    }
+
+    @Test
+    public void shouldGrantImmediatelyWhenUnderCap() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(2, 2, UserWeight.equal());
+        //when
+        val first = subject.acquire("alice");
+        val second = subject.acquire("bob");
+        //then
+        assertThat(subject.getRunning()).isEqualTo(2);
+        assertThat(subject.getRunningByUser()).containsOnly(entry("alice", 1), entry("bob", 1));
+        first.close();
+        second.close();
+        assertThat(subject.getRunning()).isZero();
+        assertThat(subject.getRunningByUser()).isEmpty();
+    }
+
+    @Test
+    public void shouldQueueWhenAtGlobalCap() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val held = subject.acquire("alice");
+        //when
+        val waiting = acquireAsync("bob");
+        //then
+        assertThat(waiting.isDone()).isFalse();
+        assertThat(subject.getQueueDepths()).containsOnly(entry("bob", 1));
+        held.close();
+        waiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+               .close();
+        assertThat(subject.getQueued()).isZero();
+    }
+
+    @Test
+    public void shouldQueueWhenAtPerUserCapButServeOthers() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(3, 1, UserWeight.equal());
+        val held = subject.acquire("alice");
+        //when
+        val aliceWaiting = acquireAsync("alice");
+        val bob = subject.acquire("bob");
+        //then
+        assertThat(aliceWaiting.isDone()).isFalse();
+        assertThat(subject.getRunningByUser()).containsOnly(entry("alice", 1), entry("bob", 1));
+        held.close();
+        aliceWaiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .close();
+        bob.close();
+    }
+
+    @Test
+    public void shouldServeNewUserBeforeBusyUser() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val held = subject.acquire("alice");
+        val waiting = new ArrayList<Future<WorkScheduler.Permit>>();
+        waiting.add(acquireAsync("alice"));
+        waiting.add(acquireAsync("alice"));
+        val bob = acquireAsync("bob");
+        waiting.add(bob);
+        //when
+        held.close();
+        val next = nextGranted(waiting);
+        //then
+        assertThat(bob.isDone()).isTrue();
+        assertThat(subject.getRunningByUser()).containsOnly(entry("bob", 1));
+        next.close();
+        nextGranted(waiting).close();
+        nextGranted(waiting).close();
+    }
+
+    @Test
+    public void shouldShareInProportionToWeight() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, username -> "heavy".equals(username) ? 2 : 1);
+        val held = subject.acquire("holder");
+        val heavy = new ArrayList<Future<WorkScheduler.Permit>>();
+        val light = new ArrayList<Future<WorkScheduler.Permit>>();
+        for (int i = 0; i < 6; i++) {
+            heavy.add(acquireAsync("heavy"));
+            light.add(acquireAsync("light"));
+        }
+        val waiting = new ArrayList<Future<WorkScheduler.Permit>>();
+        waiting.addAll(heavy);
+        waiting.addAll(light);
+        //when
+        held.close();
+        WorkScheduler.Permit last = nextGranted(waiting);
+        for (int i = 1; i < 6; i++) {
+            last.close();
+            last = nextGranted(waiting);
+        }
+        //then
+        val heavyServed = heavy.stream()
+                               .filter(Future::isDone)
+                               .count();
+        val lightServed = light.stream()
+                               .filter(Future::isDone)
+                               .count();
+        assertThat(heavyServed).isEqualTo(4);
+        assertThat(lightServed).isEqualTo(2);
+        last.close();
+        while (!waiting.isEmpty()) {
+            nextGranted(waiting).close();
+        }
+    }
+
+    @Test
+    public void shouldForgetIdleUsersWhenNoOneIsWaiting() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(2, 2, UserWeight.equal());
+        val held = subject.acquire("alice");
+        //when
+        for (int i = 0; i < 10; i++) {
+            subject.acquire("user" + i)
+                   .close();
+        }
+        //then
+        assertThat(subject.getTrackedUsers()).isEqualTo(1);
+        held.close();
+        assertThat(subject.getTrackedUsers()).isZero();
+    }
+
+    @Test
+    public void shouldRememberDebtWhileOthersAreWaiting() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val held = subject.acquire("alice");
+        val bob = acquireAsync("bob");
+        //when
+        held.close();
+        //then
+        assertThat(subject.getTrackedUsers()).isEqualTo(2);
+        bob.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+           .close();
+        assertThat(subject.getTrackedUsers()).isZero();
+    }
+
+    @Test
+    public void interruptedWaiterShouldLeaveQueue() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val held = subject.acquire("alice");
+        val waiting = acquireAsync("bob");
+        //when
+        executor.shutdownNow();
+        //then
+        try {
+            waiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(InterruptedIOException.class);
+        }
+        assertThat(subject.getQueued()).isZero();
+        assertThat(subject.getQueueDepths()).isEmpty();
+        held.close();
+        assertThat(subject.getRunning()).isZero();
+    }
+
+    @Test
+    public void closingPermitTwiceShouldReleaseOnce() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(2, 2, UserWeight.equal());
+        val first = subject.acquire("alice");
+        subject.acquire("alice");
+        //when
+        first.close();
+        first.close();
+        //then
+        assertThat(subject.getRunning()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRegisterWithJmxWhileStarted() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val server = ManagementFactory.getPlatformMBeanServer();
+        val name = new ObjectName(FairShareWorkScheduler.OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            // left behind by a server started elsewhere in this JVM
+            server.unregisterMBean(name);
+        }
+        //when
+        subject.start();
+        //then
+        assertThat(server.isRegistered(name)).isTrue();
+        assertThat(server.getAttribute(name, "MaxConcurrent")).isEqualTo(1);
+        subject.stop();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    public void shouldRegisterListenersSchedulerUnderItsPort() throws Exception {
+        //given
+        subject = new FairShareWorkScheduler(1, 1, UserWeight.equal());
+        val other = new FairShareWorkScheduler(2, 1, UserWeight.equal());
+        val server = ManagementFactory.getPlatformMBeanServer();
+        val name = new ObjectName(FairShareWorkScheduler.OBJECT_NAME + ",listener=2222");
+        val otherName = new ObjectName(FairShareWorkScheduler.OBJECT_NAME + ",listener=3333");
+        //when
+        subject.start(2222);
+        other.start(3333);
+        //then
+        try {
+            assertThat(server.getAttribute(name, "MaxConcurrent")).isEqualTo(1);
+            assertThat(server.getAttribute(otherName, "MaxConcurrent")).isEqualTo(2);
+        } finally {
+            subject.stop();
+            other.stop();
+        }
+        assertThat(server.isRegistered(name)).isFalse();
+        assertThat(server.isRegistered(otherName)).isFalse();
+    }
+}
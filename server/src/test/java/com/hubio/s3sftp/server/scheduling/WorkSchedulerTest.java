@@ -0,0 +1,34 @@
+package com.hubio.s3sftp.server.scheduling;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WorkScheduler}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class WorkSchedulerTest {
+
+    @Test
+    public void unlimitedShouldNeverWait() throws Exception {
+        //given
+        val subject = WorkScheduler.unlimited();
+        //when
+        for (int i = 0; i < 1000; i++) {
+            subject.acquire("alice");
+        }
+        //then
+        assertThat(subject.acquire("alice")).isNotNull();
+    }
+
+    @Test
+    public void fairShareShouldCreateFairShareScheduler() {
+        //when
+        val result = WorkScheduler.fairShare(1, 1, UserWeight.equal());
+        //then
+        assertThat(result).isInstanceOf(FairShareWorkScheduler.class);
+    }
+}
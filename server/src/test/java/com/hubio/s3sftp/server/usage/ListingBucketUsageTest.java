@@ -0,0 +1,310 @@
+package com.hubio.s3sftp.server.usage;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.hubio.s3sftp.server.SessionQuota;
+import com.hubio.s3sftp.testkit.InMemoryAmazonS3;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ListingBucketUsage}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class ListingBucketUsageTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AmazonS3 amazonS3;
+
+    private ListingBucketUsage subject;
+
+    @Before
+    public void setUp() {
+        amazonS3 = spy(new InMemoryAmazonS3());
+        amazonS3.createBucket(BUCKET);
+        subject = new ListingBucketUsage(Duration.ofHours(1), null);
+    }
+
+    @After
+    public void tearDown() {
+        subject.stop();
+    }
+
+    private void put(final String key, final int size) {
+        val metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        amazonS3.putObject(BUCKET, key, new ByteArrayInputStream(new byte[size]), metadata);
+    }
+
+    @Test
+    public void shouldAnswerWithoutListing() {
+        //given
+        put("users/alice/a", 100);
+        //when
+        val used = subject.track(amazonS3, BUCKET, "users/alice/")
+                          .getBytes();
+        //then
+        assertThat(used).isZero();
+        verify(amazonS3, never()).listObjects(any(ListObjectsRequest.class));
+    }
+
+    @Test
+    public void refreshShouldCountBytesUnderPrefix() {
+        //given
+        put("users/alice/a", 100);
+        put("users/alice/dir/b", 250);
+        put("users/bob/c", 1000);
+        subject.track(amazonS3, BUCKET, "users/alice/");
+        //when
+        subject.refresh();
+        //then
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        assertThat(usage.getBytes()).isEqualTo(350L);
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void refreshShouldCountEveryPageOfListing() {
+        //given
+        for (int i = 0; i < 1500; i++) {
+            put("users/alice/" + i, 2);
+        }
+        subject.track(amazonS3, BUCKET, "users/alice/");
+        //when
+        subject.refresh();
+        //then
+        assertThat(subject.track(amazonS3, BUCKET, "users/alice/")
+                          .getBytes()).isEqualTo(3000L);
+    }
+
+    @Test
+    public void startedUsageShouldCountNewPrefixInBackground() throws Exception {
+        //given
+        put("users/alice/a", 100);
+        subject.start();
+        subject.track(amazonS3, BUCKET, "users/alice/");
+        //when
+        long used = 0L;
+        for (int i = 0; i < 100 && used == 0L; i++) {
+            Thread.sleep(10);
+            used = subject.track(amazonS3, BUCKET, "users/alice/")
+                          .getBytes();
+        }
+        //then
+        assertThat(used).isEqualTo(100L);
+    }
+
+    @Test
+    public void refreshShouldForgetIdlePrefixes() throws Exception {
+        //given
+        subject = new ListingBucketUsage(Duration.ofMillis(1), null);
+        put("users/alice/a", 100);
+        subject.track(amazonS3, BUCKET, "users/alice/");
+        Thread.sleep(10);
+        //when
+        subject.refresh();
+        //then
+        verify(amazonS3, never()).listObjects(any(ListObjectsRequest.class));
+        assertThat(subject.track(amazonS3, BUCKET, "users/alice/")
+                          .getBytes()).isZero();
+    }
+
+    @Test
+    public void refreshShouldKeepPrefixesWithReservations() throws Exception {
+        //given
+        subject = new ListingBucketUsage(Duration.ofMillis(1), null);
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.tryReserve(100L, 1L, 1000L, 10L);
+        Thread.sleep(10);
+        //when
+        subject.refresh();
+        //then
+        assertThat(subject.track(amazonS3, BUCKET, "users/alice/")).isSameAs(usage);
+    }
+
+    @Test
+    public void refreshShouldForgetPrefixesOnceReservationsAreReleased() throws Exception {
+        //given
+        subject = new ListingBucketUsage(Duration.ofMillis(1), null);
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.tryReserve(100L, 1L, 1000L, 10L);
+        Thread.sleep(10);
+        subject.refresh();
+        usage.release(100L, 1L);
+        Thread.sleep(10);
+        //when
+        subject.refresh();
+        //then
+        assertThat(subject.track(amazonS3, BUCKET, "users/alice/")).isNotSameAs(usage);
+    }
+
+    @Test
+    public void shouldRequirePositiveRefreshInterval() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("refreshInterval must be positive");
+        //when
+        BucketUsage.listedEvery(Duration.ZERO);
+    }
+
+    @Test
+    public void refreshShouldKeepAdjustmentsMadeSinceLastListing() {
+        //given
+        put("users/alice/a", 100);
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        subject.refresh();
+        //when
+        usage.add(50L, 1L);
+        //then
+        assertThat(usage.getBytes()).isEqualTo(150L);
+        assertThat(usage.getObjects()).isEqualTo(2L);
+    }
+
+    @Test
+    public void refreshShouldReplaceAdjustmentsWithListing() {
+        //given
+        put("users/alice/a", 100);
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(50L, 1L);
+        //when
+        subject.refresh();
+        //then
+        assertThat(usage.getBytes()).isEqualTo(100L);
+        assertThat(usage.getObjects()).isEqualTo(1L);
+    }
+
+    @Test
+    public void tryReserveShouldRefuseBeyondMaximum() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(600L, 1L);
+        //when
+        val first = usage.tryReserve(300L, 0L, 1000L, 10L);
+        val second = usage.tryReserve(200L, 0L, 1000L, 10L);
+        //then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+    }
+
+    @Test
+    public void tryReserveShouldRefuseObjectsBeyondMaximum() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(0L, 9L);
+        //when
+        val first = usage.tryReserve(0L, 1L, 1000L, 10L);
+        val second = usage.tryReserve(0L, 1L, 1000L, 10L);
+        //then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+    }
+
+    @Test
+    public void releaseShouldReturnReservation() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.tryReserve(1000L, 0L, 1000L, 10L);
+        //when
+        usage.release(1000L, 0L);
+        //then
+        assertThat(usage.tryReserve(1000L, 0L, 1000L, 10L)).isTrue();
+    }
+
+    @Test
+    public void tryReserveShouldNotOverflowWhenUnlimited() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(100L, 1L);
+        //when
+        val reserved = usage.tryReserve(1000L, 1L, Long.MAX_VALUE, Long.MAX_VALUE);
+        //then
+        assertThat(reserved).isTrue();
+    }
+
+    @Test
+    public void tryReserveShouldIgnoreUnlimitedBytes() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(100L, 1L);
+        //when
+        val reserved = usage.tryReserve(Long.MAX_VALUE, 1L, SessionQuota.UNLIMITED, 10L);
+        //then
+        assertThat(reserved).isTrue();
+    }
+
+    @Test
+    public void deletionsShouldNotTakeCountsBelowZero() {
+        //given
+        val usage = subject.track(amazonS3, BUCKET, "users/alice/");
+        usage.add(100L, 1L);
+        //when
+        usage.add(-500L, -3L);
+        //then
+        assertThat(usage.getBytes()).isZero();
+        assertThat(usage.getObjects()).isZero();
+    }
+
+    @Test
+    public void stopShouldSaveSnapshotForNextStart() throws Exception {
+        //given
+        val snapshot = folder.getRoot()
+                             .toPath()
+                             .resolve("usage");
+        put("users/alice/a", 100);
+        subject = new ListingBucketUsage(Duration.ofHours(1), snapshot);
+        subject.start();
+        subject.track(amazonS3, BUCKET, "users/alice/");
+        subject.refresh();
+        subject.stop();
+        val restarted = new ListingBucketUsage(Duration.ofHours(1), snapshot);
+        //when
+        restarted.start();
+        //then
+        try {
+            val usage = restarted.track(amazonS3, BUCKET, "users/alice/");
+            assertThat(usage.getBytes()).isEqualTo(100L);
+            assertThat(usage.getObjects()).isEqualTo(1L);
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void startShouldIgnoreUnreadableSnapshot() throws Exception {
+        //given
+        val snapshot = folder.newFile("usage")
+                             .toPath();
+        Files.write(snapshot, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        subject = new ListingBucketUsage(Duration.ofHours(1), snapshot);
+        //when
+        subject.start();
+        //then
+        assertThat(subject.track(amazonS3, BUCKET, "users/alice/")
+                          .getBytes()).isZero();
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Wraps an {@link AmazonS3} to make its requests slow or fail, as they might while S3 is struggling.
+ *
+ * <p>Before each request a delay is drawn from the request's {@link LatencyDistribution}. The request may then be
+ * refused with a 503 SlowDown error, or fail as if the connection were reset, before reaching the wrapped client. An
+ * object downloaded by {@code getObject} may have its connection reset part way through its content.</p>
+ *
+ * <p>Methods that configure the client or build URLs, rather than make requests, are passed straight through.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class FaultInjectingAmazonS3 implements InvocationHandler {
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private static final Set<String> LOCAL_METHODS = new HashSet<>(
+            Arrays.asList("setEndpoint", "setRegion", "setS3ClientOptions", "shutdown", "getRegion", "getRegionName",
+                          "getCachedResponseMetadata", "getUrl", "generatePresignedUrl"
+                         ));
+
+    private final AmazonS3 delegate;
+
+    private final FaultPlan plan;
+
+    /**
+     * Wrap a client.
+     *
+     * @param delegate The client to wrap
+     * @param plan     The faults to inject
+     *
+     * @return the wrapped client
+     */
+    public static AmazonS3 wrap(final AmazonS3 delegate, final FaultPlan plan) {
+        return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(), new Class<?>[]{AmazonS3.class},
+                                                 new FaultInjectingAmazonS3(delegate, plan)
+                                                );
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        val api = method.getName();
+        if (method.getDeclaringClass() == Object.class || LOCAL_METHODS.contains(api)) {
+            return call(method, args);
+        }
+        val faults = plan.forApi(api);
+        SimulatedNetwork.sleep(faults.getLatency()
+                                     .sampleNanos());
+        if (happens(faults.getSlowDownRate())) {
+            log.debug("{}: injecting SlowDown", api);
+            throw slowDown();
+        }
+        if (happens(faults.getConnectionResetRate())) {
+            log.debug("{}: injecting connection reset", api);
+            throw new SdkClientException("Unable to execute HTTP request: Connection reset",
+                                         new SocketException("Connection reset")
+            );
+        }
+        val result = call(method, args);
+        if (result instanceof S3Object && happens(faults.getPartialReadRate())) {
+            log.debug("{}: injecting partial read", api);
+            truncate((S3Object) result);
+        }
+        return result;
+    }
+
+    private Object call(final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean happens(final double rate) {
+        return rate > 0 && ThreadLocalRandom.current()
+                                            .nextDouble() < rate;
+    }
+
+    private static AmazonS3Exception slowDown() {
+        val exception = new AmazonS3Exception("Please reduce your request rate.");
+        exception.setStatusCode(SERVICE_UNAVAILABLE);
+        exception.setErrorCode("SlowDown");
+        exception.setErrorType(AmazonServiceException.ErrorType.Service);
+        exception.setServiceName("Amazon S3");
+        return exception;
+    }
+
+    /**
+     * Replace the content of an object with a stream that fails once a random part of it has been read.
+     */
+    private static void truncate(final S3Object object) {
+        val length = object.getObjectMetadata()
+                           .getContentLength();
+        val limit = ThreadLocalRandom.current()
+                                     .nextLong(Math.max(1L, length));
+        val content = new TruncatedInputStream(object.getObjectContent(), limit);
+        object.setObjectContent(new S3ObjectInputStream(content, new HttpGet()));
+    }
+
+    /**
+     * A stream that fails as if the connection were reset after a number of bytes.
+     */
+    private static final class TruncatedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        TruncatedInputStream(final InputStream in, final long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkRemaining();
+            final int read = super.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkRemaining();
+            final int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        private void checkRemaining() throws SocketException {
+            if (remaining <= 0) {
+                throw new SocketException("Connection reset");
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.s3.AmazonS3;
+import com.upplication.s3fs.AmazonS3ClientFactory;
+import com.upplication.s3fs.AmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+import lombok.val;
+
+import java.net.URI;
+import java.util.Properties;
+
+/**
+ * An {@link AmazonS3Factory} that wraps the clients of another factory with a {@link FaultInjectingAmazonS3}.
+ *
+ * <p>Select it by setting {@link S3FileSystemProvider#AMAZON_S3_FACTORY_CLASS} to {@code
+ * com.hubio.s3sftp.testkit.FaultInjectingAmazonS3Factory}. The factory that creates the clients is named by {@link
+ * #DELEGATE_FACTORY_CLASS}, defaulting to the s3fs {@link AmazonS3ClientFactory}, and the faults are read by {@link
+ * FaultPlan#fromProperties(Properties)}. Both may be given as filesystem or system properties.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class FaultInjectingAmazonS3Factory extends AmazonS3Factory {
+
+    /**
+     * Property naming the factory whose clients are wrapped.
+     */
+    public static final String DELEGATE_FACTORY_CLASS = "s3sftp_fault_delegate_factory";
+
+    @Override
+    public AmazonS3 getAmazonS3(final URI uri, final Properties props) {
+        return FaultInjectingAmazonS3.wrap(delegateFactory(props).getAmazonS3(uri, props),
+                                           FaultPlan.fromProperties(props)
+                                          );
+    }
+
+    @Override
+    protected AmazonS3 createAmazonS3(
+            final AWSCredentialsProvider credentialsProvider, final ClientConfiguration clientConfiguration,
+            final RequestMetricCollector requestMetricsCollector
+                                     ) {
+        throw new UnsupportedOperationException("Clients are created by the delegate factory");
+    }
+
+    private static AmazonS3Factory delegateFactory(final Properties props) {
+        val defaultClassName = System.getProperty(DELEGATE_FACTORY_CLASS, AmazonS3ClientFactory.class.getName());
+        val className = props.getProperty(DELEGATE_FACTORY_CLASS, defaultClassName);
+        try {
+            return (AmazonS3Factory) Class.forName(className)
+                                          .getDeclaredConstructor()
+                                          .newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Could not create delegate AmazonS3Factory: " + className, e);
+        }
+    }
+}
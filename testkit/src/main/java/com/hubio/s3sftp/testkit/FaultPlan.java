@@ -0,0 +1,190 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * The faults to inject into each kind of S3 request, named after the {@link com.amazonaws.services.s3.AmazonS3}
+ * method that makes it, e.g. {@code getObject}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Builder
+public class FaultPlan {
+
+    /**
+     * Property for the latency distribution, as parsed by {@link LatencyDistribution#parse(String)}.
+     */
+    public static final String LATENCY = "s3sftp_fault_latency";
+
+    /**
+     * Property for the rate of 503 SlowDown errors.
+     */
+    public static final String SLOW_DOWN_RATE = "s3sftp_fault_slow_down_rate";
+
+    /**
+     * Property for the rate of connection resets before a response.
+     */
+    public static final String CONNECTION_RESET_RATE = "s3sftp_fault_connection_reset_rate";
+
+    /**
+     * Property for the rate of connection resets part way through downloading an object.
+     */
+    public static final String PARTIAL_READ_RATE = "s3sftp_fault_partial_read_rate";
+
+    private static final String[] KEYS = {LATENCY, SLOW_DOWN_RATE, CONNECTION_RESET_RATE, PARTIAL_READ_RATE};
+
+    /**
+     * The faults for requests without faults of their own.
+     */
+    @NonNull
+    private final Faults defaults;
+
+    /**
+     * The faults for particular requests.
+     */
+    private final Map<String, Faults> apis;
+
+    /**
+     * No faults for any request.
+     *
+     * @return the plan
+     */
+    public static FaultPlan none() {
+        return builder().build();
+    }
+
+    /**
+     * Read a plan from properties, falling back to system properties.
+     *
+     * <p>Each of {@link #LATENCY}, {@link #SLOW_DOWN_RATE}, {@link #CONNECTION_RESET_RATE} and
+     * {@link #PARTIAL_READ_RATE} sets the default for every request. Add the name of a request to a property, e.g.
+     * {@code s3sftp_fault_slow_down_rate.putObject}, to override the default for that request alone.</p>
+     *
+     * @param props The properties
+     *
+     * @return the plan
+     */
+    public static FaultPlan fromProperties(final Properties props) {
+        val defaults = faults(props, "", Faults.none());
+        val builder = builder().defaults(defaults);
+        apiNames(props).forEach(api -> builder.api(api, faults(props, "." + api, defaults)));
+        return builder.build();
+    }
+
+    /**
+     * The faults for a request.
+     *
+     * @param api The name of the request
+     *
+     * @return the faults
+     */
+    public Faults forApi(final String api) {
+        return apis.getOrDefault(api, defaults);
+    }
+
+    private static Faults faults(final Properties props, final String suffix, final Faults inherited) {
+        val builder = inherited.toBuilder();
+        lookup(props, LATENCY + suffix, value -> builder.latency(LatencyDistribution.parse(value)));
+        lookup(props, SLOW_DOWN_RATE + suffix, value -> builder.slowDownRate(Double.parseDouble(value)));
+        lookup(props, CONNECTION_RESET_RATE + suffix,
+               value -> builder.connectionResetRate(Double.parseDouble(value))
+              );
+        lookup(props, PARTIAL_READ_RATE + suffix, value -> builder.partialReadRate(Double.parseDouble(value)));
+        return builder.build();
+    }
+
+    private static void lookup(final Properties props, final String key, final Consumer<String> consumer) {
+        val value = props.getProperty(key, System.getProperty(key));
+        if (value != null) {
+            consumer.accept(value);
+        }
+    }
+
+    private static Set<String> apiNames(final Properties props) {
+        val names = new TreeSet<String>();
+        names.addAll(props.stringPropertyNames());
+        names.addAll(System.getProperties()
+                           .stringPropertyNames());
+        val apis = new TreeSet<String>();
+        for (final String name : names) {
+            for (final String key : KEYS) {
+                if (name.startsWith(key + ".")) {
+                    apis.add(name.substring(key.length() + 1));
+                }
+            }
+        }
+        return apis;
+    }
+
+    /**
+     * Builder for {@link FaultPlan}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>defaults: no faults</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class FaultPlanBuilder {
+
+        private Faults defaults = Faults.none();
+
+        private Map<String, Faults> apis = new HashMap<>();
+
+        /**
+         * Sets the faults for a request.
+         *
+         * @param api    The name of the request
+         * @param faults The faults
+         *
+         * @return the builder
+         */
+        public FaultPlanBuilder api(final String api, final Faults faults) {
+            apis.put(api, faults);
+            return this;
+        }
+
+        /**
+         * Builds the plan, with its own copy of the faults for particular requests.
+         *
+         * @return the plan
+         */
+        public FaultPlan build() {
+            return new FaultPlan(defaults, Collections.unmodifiableMap(new HashMap<>(apis)));
+        }
+    }
+}
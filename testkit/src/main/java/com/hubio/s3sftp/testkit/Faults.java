@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The faults to inject into one kind of S3 request.
+ *
+ * <p>Each rate is the probability, from 0 to 1, that a request suffers that fault.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+@Builder(toBuilder = true)
+public class Faults {
+
+    private static final Faults NONE = builder().build();
+
+    /**
+     * The delay added before each request.
+     */
+    @NonNull
+    private final LatencyDistribution latency;
+
+    /**
+     * The rate of requests refused with a 503 SlowDown error.
+     */
+    private final double slowDownRate;
+
+    /**
+     * The rate of requests that fail as the connection is reset before a response.
+     */
+    private final double connectionResetRate;
+
+    /**
+     * The rate of object downloads whose connection is reset part way through the content.
+     */
+    private final double partialReadRate;
+
+    private Faults(
+            final LatencyDistribution latency, final double slowDownRate, final double connectionResetRate,
+            final double partialReadRate
+                  ) {
+        this.latency = latency;
+        this.slowDownRate = rate("slowDownRate", slowDownRate);
+        this.connectionResetRate = rate("connectionResetRate", connectionResetRate);
+        this.partialReadRate = rate("partialReadRate", partialReadRate);
+    }
+
+    /**
+     * No faults.
+     *
+     * @return the faults
+     */
+    public static Faults none() {
+        return NONE;
+    }
+
+    private static double rate(final String name, final double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1: " + rate);
+        }
+        return rate;
+    }
+
+    /**
+     * Builder for {@link Faults}.
+     *
+     * <p>Default values:</p>
+     * <ul>
+     *     <li>latency: none</li>
+     *     <li>slowDownRate: 0</li>
+     *     <li>connectionResetRate: 0</li>
+     *     <li>partialReadRate: 0</li>
+     * </ul>
+     */
+    // Default configuration values
+    //lombok @Builder will expand upon this class, using the default values provided
+    public static class FaultsBuilder {
+
+        private LatencyDistribution latency = LatencyDistribution.none();
+    }
+}
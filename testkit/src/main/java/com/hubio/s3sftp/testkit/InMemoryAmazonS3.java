@@ -0,0 +1,682 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CanonicalGrantee;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetBucketAclRequest;
+import com.amazonaws.services.s3.model.GetObjectAclRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListBucketsRequest;
+import com.amazonaws.services.s3.model.ListNextBatchOfObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.Permission;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.val;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link com.amazonaws.services.s3.AmazonS3} that holds its buckets in memory.
+ *
+ * <p>Supports the operations the server and s3fs use: creating and listing buckets; getting objects, whole or by
+ * range; putting, copying and deleting objects, singly or in bulk; getting metadata and access control lists; listing
+ * objects, v1 or v2, with pagination and delimiters; and multipart uploads. Other operations throw {@link
+ * UnsupportedOperationException}.</p>
+ *
+ * <p>Every object and bucket is owned by {@link #OWNER}, who has full control of them. Versioning, encryption and
+ * conditional requests are not supported.</p>
+ *
+ * <p>Requests are delayed as described by the {@link SimulatedNetwork}.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@SuppressWarnings({"classfanoutcomplexity", "classdataabstractioncoupling"})
+public class InMemoryAmazonS3 extends AbstractAmazonS3 {
+
+    /**
+     * The owner of every bucket and object.
+     */
+    public static final Owner OWNER = new Owner("in-memory-owner", "in-memory");
+
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    private final ConcurrentMap<String, InMemoryBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The latency and bandwidth to simulate, which may be changed between requests, e.g. to load content quickly
+     * before a test starts.
+     */
+    @Getter
+    @Setter
+    private volatile SimulatedNetwork network;
+
+    /**
+     * Constructor, with no latency and unlimited bandwidth.
+     */
+    public InMemoryAmazonS3() {
+        this(SimulatedNetwork.none());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param network The latency and bandwidth to simulate
+     */
+    public InMemoryAmazonS3(final SimulatedNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public void setEndpoint(final String endpoint) {
+        // there is only one endpoint
+    }
+
+    @Override
+    public Owner getS3AccountOwner() {
+        network.roundTrip();
+        return OWNER;
+    }
+
+    @Override
+    public Bucket createBucket(final String bucketName) {
+        return createBucket(new CreateBucketRequest(bucketName));
+    }
+
+    @Override
+    public Bucket createBucket(final CreateBucketRequest createBucketRequest) {
+        network.roundTrip();
+        val name = createBucketRequest.getBucketName();
+        val bucket = new InMemoryBucket(name);
+        if (buckets.putIfAbsent(name, bucket) != null) {
+            throw S3Errors.bucketAlreadyExists(name);
+        }
+        return asBucket(bucket);
+    }
+
+    @Override
+    public boolean doesBucketExist(final String bucketName) {
+        network.roundTrip();
+        return buckets.containsKey(bucketName);
+    }
+
+    @Override
+    public List<Bucket> listBuckets() {
+        return listBuckets(new ListBucketsRequest());
+    }
+
+    @Override
+    public List<Bucket> listBuckets(final ListBucketsRequest listBucketsRequest) {
+        network.roundTrip();
+        return buckets.values()
+                      .stream()
+                      .map(InMemoryAmazonS3::asBucket)
+                      .sorted((a, b) -> a.getName()
+                                         .compareTo(b.getName()))
+                      .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteBucket(final String bucketName) {
+        deleteBucket(new DeleteBucketRequest(bucketName));
+    }
+
+    @Override
+    public void deleteBucket(final DeleteBucketRequest deleteBucketRequest) {
+        network.roundTrip();
+        val name = deleteBucketRequest.getBucketName();
+        if (!bucket(name).isEmpty()) {
+            throw S3Errors.bucketNotEmpty(name);
+        }
+        buckets.remove(name);
+    }
+
+    @Override
+    public AccessControlList getBucketAcl(final String bucketName) {
+        return getBucketAcl(new GetBucketAclRequest(bucketName));
+    }
+
+    @Override
+    public AccessControlList getBucketAcl(final GetBucketAclRequest getBucketAclRequest) {
+        network.roundTrip();
+        bucket(getBucketAclRequest.getBucketName());
+        return fullControl();
+    }
+
+    @Override
+    public AccessControlList getObjectAcl(final String bucketName, final String key) {
+        return getObjectAcl(new GetObjectAclRequest(bucketName, key));
+    }
+
+    @Override
+    public AccessControlList getObjectAcl(final GetObjectAclRequest getObjectAclRequest) {
+        network.roundTrip();
+        object(getObjectAclRequest.getBucketName(), getObjectAclRequest.getKey());
+        return fullControl();
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final String bucketName, final String key) {
+        return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(final GetObjectMetadataRequest getObjectMetadataRequest) {
+        network.roundTrip();
+        return object(getObjectMetadataRequest.getBucketName(), getObjectMetadataRequest.getKey()).getMetadata();
+    }
+
+    @Override
+    public boolean doesObjectExist(final String bucketName, final String objectName) {
+        network.roundTrip();
+        return bucket(bucketName).get(objectName)
+                                 .isPresent();
+    }
+
+    @Override
+    public S3Object getObject(final String bucketName, final String key) {
+        return getObject(new GetObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public S3Object getObject(final GetObjectRequest getObjectRequest) {
+        network.roundTrip();
+        val bucketName = getObjectRequest.getBucketName();
+        val key = getObjectRequest.getKey();
+        val object = object(bucketName, key);
+        if (!meetsETagConstraints(getObjectRequest, object.getETag())) {
+            // as the SDK does when S3 answers 304 Not Modified or 412 Precondition Failed
+            return null;
+        }
+        val metadata = object.getMetadata();
+        val length = object.getLength();
+        long start = 0L;
+        long end = length - 1;
+        val range = getObjectRequest.getRange();
+        if (range != null) {
+            start = range[0];
+            if (start >= length) {
+                throw S3Errors.invalidRange(start, length);
+            }
+            end = Math.min(range[1], length - 1);
+            metadata.setHeader(Headers.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length));
+            metadata.setContentLength(end - start + 1);
+        }
+        val content = new ByteArrayInputStream(object.getContent(), (int) start, (int) (end - start + 1));
+        val s3Object = new S3Object();
+        s3Object.setBucketName(bucketName);
+        s3Object.setKey(key);
+        s3Object.setObjectMetadata(metadata);
+        s3Object.setObjectContent(new S3ObjectInputStream(network.receive(content), new HttpGet()));
+        return s3Object;
+    }
+
+    @Override
+    public ObjectMetadata getObject(final GetObjectRequest getObjectRequest, final File destinationFile) {
+        try (S3Object s3Object = getObject(getObjectRequest)) {
+            java.nio.file.Files.copy(s3Object.getObjectContent(), destinationFile.toPath(),
+                                     java.nio.file.StandardCopyOption.REPLACE_EXISTING
+                                    );
+            return s3Object.getObjectMetadata();
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to store object contents to disk: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getObjectAsString(final String bucketName, final String key) {
+        try (S3Object s3Object = getObject(bucketName, key)) {
+            return new String(readAll(s3Object.getObjectContent()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to read object contents: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PutObjectResult putObject(final String bucketName, final String key, final File file) {
+        return putObject(new PutObjectRequest(bucketName, key, file));
+    }
+
+    @Override
+    public PutObjectResult putObject(
+            final String bucketName, final String key, final InputStream input, final ObjectMetadata metadata
+                                    ) {
+        return putObject(new PutObjectRequest(bucketName, key, input, metadata));
+    }
+
+    @Override
+    public PutObjectResult putObject(final String bucketName, final String key, final String content) {
+        val bytes = content.getBytes(StandardCharsets.UTF_8);
+        val metadata = new ObjectMetadata();
+        metadata.setContentType("text/plain");
+        metadata.setContentLength(bytes.length);
+        return putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(bytes), metadata));
+    }
+
+    @Override
+    public PutObjectResult putObject(final PutObjectRequest putObjectRequest) {
+        network.roundTrip();
+        val bucket = bucket(putObjectRequest.getBucketName());
+        final ObjectMetadata metadata;
+        if (putObjectRequest.getMetadata() == null) {
+            metadata = new ObjectMetadata();
+        } else {
+            metadata = putObjectRequest.getMetadata();
+        }
+        val content = content(putObjectRequest.getInputStream(), putObjectRequest.getFile(), 0L, -1L);
+        network.transfer(content.length);
+        val object = StoredObject.of(content, metadata);
+        bucket.put(putObjectRequest.getKey(), object);
+        val result = new PutObjectResult();
+        result.setETag(object.getETag());
+        result.setMetadata(object.getMetadata());
+        return result;
+    }
+
+    @Override
+    public CopyObjectResult copyObject(
+            final String sourceBucketName, final String sourceKey, final String destinationBucketName,
+            final String destinationKey
+                                      ) {
+        return copyObject(new CopyObjectRequest(sourceBucketName, sourceKey, destinationBucketName, destinationKey));
+    }
+
+    @Override
+    public CopyObjectResult copyObject(final CopyObjectRequest copyObjectRequest) {
+        network.roundTrip();
+        val source = object(copyObjectRequest.getSourceBucketName(), copyObjectRequest.getSourceKey());
+        val destination = bucket(copyObjectRequest.getDestinationBucketName());
+        final ObjectMetadata metadata;
+        if (copyObjectRequest.getNewObjectMetadata() == null) {
+            metadata = source.getSuppliedMetadata();
+        } else {
+            metadata = copyObjectRequest.getNewObjectMetadata();
+        }
+        val copy = new StoredObject(source.getContent(), metadata, source.getETag());
+        destination.put(copyObjectRequest.getDestinationKey(), copy);
+        val result = new CopyObjectResult();
+        result.setETag(copy.getETag());
+        result.setLastModifiedDate(copy.getLastModified());
+        return result;
+    }
+
+    @Override
+    public void deleteObject(final String bucketName, final String key) {
+        deleteObject(new DeleteObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public void deleteObject(final DeleteObjectRequest deleteObjectRequest) {
+        network.roundTrip();
+        bucket(deleteObjectRequest.getBucketName()).delete(deleteObjectRequest.getKey());
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest deleteObjectsRequest) {
+        network.roundTrip();
+        val bucket = bucket(deleteObjectsRequest.getBucketName());
+        val deleted = deleteObjectsRequest.getKeys()
+                                          .stream()
+                                          .map(keyVersion -> {
+                                              bucket.delete(keyVersion.getKey());
+                                              val deletedObject = new DeleteObjectsResult.DeletedObject();
+                                              deletedObject.setKey(keyVersion.getKey());
+                                              return deletedObject;
+                                          })
+                                          .collect(Collectors.toList());
+        if (deleteObjectsRequest.getQuiet()) {
+            deleted.clear();
+        }
+        return new DeleteObjectsResult(deleted);
+    }
+
+    @Override
+    public ObjectListing listObjects(final String bucketName) {
+        return listObjects(new ListObjectsRequest(bucketName, null, null, null, null));
+    }
+
+    @Override
+    public ObjectListing listObjects(final String bucketName, final String prefix) {
+        return listObjects(new ListObjectsRequest(bucketName, prefix, null, null, null));
+    }
+
+    @Override
+    public ObjectListing listObjects(final ListObjectsRequest listObjectsRequest) {
+        network.roundTrip();
+        val bucketName = listObjectsRequest.getBucketName();
+        val maxKeys = maxKeys(listObjectsRequest.getMaxKeys());
+        val page = bucket(bucketName).list(listObjectsRequest.getPrefix(), listObjectsRequest.getDelimiter(),
+                                           listObjectsRequest.getMarker(), maxKeys
+                                          );
+        val listing = new ObjectListing();
+        listing.setBucketName(bucketName);
+        listing.setPrefix(listObjectsRequest.getPrefix());
+        listing.setDelimiter(listObjectsRequest.getDelimiter());
+        listing.setMarker(listObjectsRequest.getMarker());
+        listing.setMaxKeys(maxKeys);
+        listing.setEncodingType(listObjectsRequest.getEncodingType());
+        listing.setTruncated(page.isTruncated());
+        listing.setNextMarker(page.getNextMarker());
+        listing.setCommonPrefixes(page.getCommonPrefixes());
+        page.getObjects()
+            .forEach(entry -> listing.getObjectSummaries()
+                                     .add(summary(bucketName, entry)));
+        return listing;
+    }
+
+    @Override
+    public ObjectListing listNextBatchOfObjects(final ObjectListing previousObjectListing) {
+        return listNextBatchOfObjects(new ListNextBatchOfObjectsRequest(previousObjectListing));
+    }
+
+    @Override
+    public ObjectListing listNextBatchOfObjects(final ListNextBatchOfObjectsRequest listNextBatchOfObjectsRequest) {
+        val previous = listNextBatchOfObjectsRequest.getPreviousObjectListing();
+        if (!previous.isTruncated()) {
+            val empty = new ObjectListing();
+            empty.setBucketName(previous.getBucketName());
+            empty.setDelimiter(previous.getDelimiter());
+            empty.setMarker(previous.getNextMarker());
+            empty.setMaxKeys(previous.getMaxKeys());
+            empty.setPrefix(previous.getPrefix());
+            empty.setEncodingType(previous.getEncodingType());
+            empty.setTruncated(false);
+            return empty;
+        }
+        return listObjects(listNextBatchOfObjectsRequest.toListObjectsRequest());
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(final String bucketName) {
+        return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(final String bucketName, final String prefix) {
+        return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName)
+                                                       .withPrefix(prefix));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(final ListObjectsV2Request listObjectsV2Request) {
+        network.roundTrip();
+        val bucketName = listObjectsV2Request.getBucketName();
+        val maxKeys = maxKeys(listObjectsV2Request.getMaxKeys());
+        final String marker;
+        if (listObjectsV2Request.getContinuationToken() == null) {
+            marker = listObjectsV2Request.getStartAfter();
+        } else {
+            marker = fromToken(listObjectsV2Request.getContinuationToken());
+        }
+        val page = bucket(bucketName).list(listObjectsV2Request.getPrefix(), listObjectsV2Request.getDelimiter(),
+                                           marker, maxKeys
+                                          );
+        val result = new ListObjectsV2Result();
+        result.setBucketName(bucketName);
+        result.setPrefix(listObjectsV2Request.getPrefix());
+        result.setDelimiter(listObjectsV2Request.getDelimiter());
+        result.setMaxKeys(maxKeys);
+        result.setEncodingType(listObjectsV2Request.getEncodingType());
+        result.setStartAfter(listObjectsV2Request.getStartAfter());
+        result.setContinuationToken(listObjectsV2Request.getContinuationToken());
+        result.setTruncated(page.isTruncated());
+        if (page.isTruncated()) {
+            result.setNextContinuationToken(toToken(page.getNextMarker()));
+        }
+        result.setCommonPrefixes(page.getCommonPrefixes());
+        page.getObjects()
+            .forEach(entry -> {
+                val summary = summary(bucketName, entry);
+                if (!listObjectsV2Request.isFetchOwner()) {
+                    summary.setOwner(null);
+                }
+                result.getObjectSummaries()
+                      .add(summary);
+            });
+        result.setKeyCount(page.getObjects()
+                               .size() + page.getCommonPrefixes()
+                                             .size());
+        return result;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(final InitiateMultipartUploadRequest request) {
+        network.roundTrip();
+        final ObjectMetadata metadata;
+        if (request.getObjectMetadata() == null) {
+            metadata = new ObjectMetadata();
+        } else {
+            metadata = request.getObjectMetadata();
+        }
+        val uploadId = bucket(request.getBucketName()).initiateUpload(request.getKey(), metadata);
+        val result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(final UploadPartRequest uploadPartRequest) {
+        network.roundTrip();
+        val bucket = bucket(uploadPartRequest.getBucketName());
+        val content = content(uploadPartRequest.getInputStream(), uploadPartRequest.getFile(),
+                              uploadPartRequest.getFileOffset(), uploadPartRequest.getPartSize()
+                             );
+        network.transfer(content.length);
+        val eTag = bucket.uploadPart(uploadPartRequest.getKey(), uploadPartRequest.getUploadId(),
+                                     uploadPartRequest.getPartNumber(), content
+                                    );
+        val result = new UploadPartResult();
+        result.setPartNumber(uploadPartRequest.getPartNumber());
+        result.setETag(eTag);
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(final CompleteMultipartUploadRequest request) {
+        network.roundTrip();
+        val object = bucket(request.getBucketName()).completeUpload(request.getKey(), request.getUploadId(),
+                                                                    request.getPartETags()
+                                                                   );
+        val result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setETag(object.getETag());
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(final AbortMultipartUploadRequest request) {
+        network.roundTrip();
+        bucket(request.getBucketName()).abortUpload(request.getKey(), request.getUploadId());
+    }
+
+    /**
+     * The number of multipart uploads to a bucket that have been started but not completed or aborted.
+     *
+     * @param bucketName The name of the bucket
+     *
+     * @return the number of uploads
+     */
+    public int getUploadsInProgress(final String bucketName) {
+        return bucket(bucketName).getUploadsInProgress();
+    }
+
+    private InMemoryBucket bucket(final String name) {
+        val bucket = buckets.get(name);
+        if (bucket == null) {
+            throw S3Errors.noSuchBucket(name);
+        }
+        return bucket;
+    }
+
+    private static boolean meetsETagConstraints(final GetObjectRequest request, final String eTag) {
+        val matching = request.getMatchingETagConstraints();
+        if (!matching.isEmpty() && !matching.contains(eTag) && !matching.contains("*")) {
+            return false;
+        }
+        val nonMatching = request.getNonmatchingETagConstraints();
+        return !nonMatching.contains(eTag) && !nonMatching.contains("*");
+    }
+
+    private StoredObject object(final String bucketName, final String key) {
+        return bucket(bucketName).get(key)
+                                 .orElseThrow(() -> S3Errors.noSuchKey(key));
+    }
+
+    private static Bucket asBucket(final InMemoryBucket bucket) {
+        val result = new Bucket(bucket.getName());
+        result.setOwner(OWNER);
+        result.setCreationDate(bucket.getCreationDate());
+        return result;
+    }
+
+    private static AccessControlList fullControl() {
+        val acl = new AccessControlList();
+        acl.setOwner(OWNER);
+        acl.grantPermission(new CanonicalGrantee(OWNER.getId()), Permission.FullControl);
+        return acl;
+    }
+
+    private static S3ObjectSummary summary(final String bucketName, final Map.Entry<String, StoredObject> entry) {
+        val object = entry.getValue();
+        val summary = new S3ObjectSummary();
+        summary.setBucketName(bucketName);
+        summary.setKey(entry.getKey());
+        summary.setSize(object.getLength());
+        summary.setETag(object.getETag());
+        summary.setLastModified(object.getLastModified());
+        summary.setStorageClass(StorageClass.Standard.toString());
+        summary.setOwner(OWNER);
+        return summary;
+    }
+
+    private static int maxKeys(final Integer requested) {
+        if (requested == null || requested < 0 || requested > DEFAULT_MAX_KEYS) {
+            return DEFAULT_MAX_KEYS;
+        }
+        return requested;
+    }
+
+    private static String toToken(final String marker) {
+        return Base64.getEncoder()
+                     .encodeToString(marker.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fromToken(final String token) {
+        return new String(Base64.getDecoder()
+                                .decode(token), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the content of an upload from either its stream or its file.
+     *
+     * @param input  The stream, or null to read from the file
+     * @param file   The file, or null to read from the stream
+     * @param offset The offset into the file to start reading from
+     * @param length The number of bytes to read, or -1 to read to the end
+     */
+    private static byte[] content(final InputStream input, final File file, final long offset, final long length) {
+        try {
+            if (file == null) {
+                return limit(readAll(input), length);
+            }
+            try (InputStream fileInput = new FileInputStream(file)) {
+                long skipped = 0L;
+                while (skipped < offset) {
+                    skipped += fileInput.skip(offset - skipped);
+                }
+                return limit(readAll(fileInput), length);
+            }
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to read the content to upload: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] limit(final byte[] content, final long length) {
+        if (length < 0 || length >= content.length) {
+            return content;
+        }
+        return Arrays.copyOf(content, (int) length);
+    }
+
+    private static byte[] readAll(final InputStream input) throws IOException {
+        if (input == null) {
+            return new byte[0];
+        }
+        val output = new ByteArrayOutputStream();
+        val buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
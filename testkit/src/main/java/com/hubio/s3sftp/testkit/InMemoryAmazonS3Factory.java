@@ -0,0 +1,71 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.s3.AmazonS3;
+import com.upplication.s3fs.AmazonS3Factory;
+import com.upplication.s3fs.S3FileSystemProvider;
+
+/**
+ * An {@link AmazonS3Factory} that gives s3fs an {@link InMemoryAmazonS3}.
+ *
+ * <p>s3fs creates its factory by class name, so select this one by setting {@link
+ * S3FileSystemProvider#AMAZON_S3_FACTORY_CLASS} to {@code com.hubio.s3sftp.testkit.InMemoryAmazonS3Factory} in the
+ * filesystem environment. Every filesystem then shares the instance given to {@link #use(InMemoryAmazonS3)}.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class InMemoryAmazonS3Factory extends AmazonS3Factory {
+
+    private static volatile InMemoryAmazonS3 amazonS3 = new InMemoryAmazonS3();
+
+    /**
+     * Set the instance to give to every filesystem created from now on.
+     *
+     * @param instance The instance
+     */
+    public static void use(final InMemoryAmazonS3 instance) {
+        amazonS3 = instance;
+    }
+
+    /**
+     * The instance given to filesystems.
+     *
+     * @return the instance
+     */
+    public static InMemoryAmazonS3 current() {
+        return amazonS3;
+    }
+
+    @Override
+    protected AmazonS3 createAmazonS3(
+            final AWSCredentialsProvider credentialsProvider, final ClientConfiguration clientConfiguration,
+            final RequestMetricCollector requestMetricsCollector
+                                     ) {
+        return amazonS3;
+    }
+}
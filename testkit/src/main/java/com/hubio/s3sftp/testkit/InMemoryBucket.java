@@ -0,0 +1,299 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.io.ByteArrayOutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The objects, and the multipart uploads in progress, in a bucket of an {@link InMemoryAmazonS3}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@RequiredArgsConstructor
+class InMemoryBucket {
+
+    /**
+     * The smallest part S3 accepts in a multipart upload, except for the last part.
+     */
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final Date creationDate = new Date();
+
+    private final ConcurrentNavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * Get an object.
+     *
+     * @param key The key of the object
+     *
+     * @return the object, or empty if there is none
+     */
+    Optional<StoredObject> get(final String key) {
+        return Optional.ofNullable(objects.get(key));
+    }
+
+    /**
+     * Store an object, replacing any with the same key.
+     *
+     * @param key    The key of the object
+     * @param object The object
+     */
+    void put(final String key, final StoredObject object) {
+        objects.put(key, object);
+    }
+
+    /**
+     * Delete an object.
+     *
+     * @param key The key of the object
+     */
+    void delete(final String key) {
+        objects.remove(key);
+    }
+
+    /**
+     * Whether the bucket holds no objects.
+     *
+     * @return true if the bucket is empty
+     */
+    boolean isEmpty() {
+        return objects.isEmpty();
+    }
+
+    /**
+     * List a page of keys in order.
+     *
+     * <p>Keys that contain the delimiter after the prefix are rolled up into a single common prefix, which counts once
+     * towards the maximum.</p>
+     *
+     * @param prefix    The prefix the keys must start with, or null for all keys
+     * @param delimiter The delimiter to roll keys up at, or null to list every key
+     * @param marker    The key or common prefix to list after, or null to list from the start
+     * @param maxKeys   The most keys and common prefixes to return
+     *
+     * @return the page
+     */
+    ListingPage list(final String prefix, final String delimiter, final String marker, final int maxKeys) {
+        val effectivePrefix = emptyIfNull(prefix);
+        val rollUp = delimiter != null && !delimiter.isEmpty();
+        final ConcurrentNavigableMap<String, StoredObject> candidates;
+        if (marker == null || marker.isEmpty()) {
+            candidates = objects.tailMap(effectivePrefix, true);
+        } else {
+            candidates = objects.tailMap(max(marker, effectivePrefix), marker.compareTo(effectivePrefix) < 0);
+        }
+        val page = new ArrayList<Map.Entry<String, StoredObject>>();
+        final Set<String> commonPrefixes = new LinkedHashSet<>();
+        String last = null;
+        for (val entry : candidates.entrySet()) {
+            val key = entry.getKey();
+            if (!key.startsWith(effectivePrefix)) {
+                break;
+            }
+            final String commonPrefix = rollUp ? commonPrefix(key, effectivePrefix, delimiter) : null;
+            if (commonPrefix != null && (commonPrefixes.contains(commonPrefix)
+                                         || marker != null && commonPrefix.compareTo(marker) <= 0)) {
+                continue;
+            }
+            if (page.size() + commonPrefixes.size() == maxKeys) {
+                return new ListingPage(page, new ArrayList<>(commonPrefixes), true, last);
+            }
+            if (commonPrefix == null) {
+                page.add(new AbstractMap.SimpleImmutableEntry<>(key, entry.getValue()));
+                last = key;
+            } else {
+                commonPrefixes.add(commonPrefix);
+                last = commonPrefix;
+            }
+        }
+        return new ListingPage(page, new ArrayList<>(commonPrefixes), false, null);
+    }
+
+    /**
+     * Start a multipart upload.
+     *
+     * @param key      The key of the object to create
+     * @param metadata The metadata of the object to create
+     *
+     * @return the upload id
+     */
+    String initiateUpload(final String key, final ObjectMetadata metadata) {
+        val uploadId = UUID.randomUUID()
+                           .toString();
+        uploads.put(uploadId, new MultipartUpload(key, metadata.clone()));
+        return uploadId;
+    }
+
+    /**
+     * Store a part of a multipart upload, replacing any with the same part number.
+     *
+     * @param key        The key of the object being created
+     * @param uploadId   The upload id
+     * @param partNumber The part number
+     * @param content    The content of the part
+     *
+     * @return the entity tag of the part
+     */
+    String uploadPart(final String key, final String uploadId, final int partNumber, final byte[] content) {
+        val part = StoredObject.of(content, new ObjectMetadata());
+        upload(key, uploadId).parts.put(partNumber, part);
+        return part.getETag();
+    }
+
+    /**
+     * Complete a multipart upload, storing the object made of the parts.
+     *
+     * @param key      The key of the object being created
+     * @param uploadId The upload id
+     * @param partTags The parts to include, in ascending order of part number
+     *
+     * @return the object
+     */
+    StoredObject completeUpload(final String key, final String uploadId, final List<PartETag> partTags) {
+        val upload = upload(key, uploadId);
+        val content = new ByteArrayOutputStream();
+        val digests = new ByteArrayOutputStream();
+        int previous = 0;
+        for (int i = 0; i < partTags.size(); i++) {
+            val partTag = partTags.get(i);
+            if (partTag.getPartNumber() <= previous) {
+                throw S3Errors.invalidPartOrder();
+            }
+            previous = partTag.getPartNumber();
+            val part = upload.parts.get(partTag.getPartNumber());
+            if (part == null || !part.getETag()
+                                     .equals(unquote(partTag.getETag()))) {
+                throw S3Errors.invalidPart(partTag.getPartNumber());
+            }
+            if (i < partTags.size() - 1 && part.getLength() < MIN_PART_SIZE) {
+                throw S3Errors.entityTooSmall(partTag.getPartNumber());
+            }
+            content.write(part.getContent(), 0, part.getContent().length);
+            val digest = BinaryUtils.fromHex(part.getETag());
+            digests.write(digest, 0, digest.length);
+        }
+        val eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(digests.toByteArray())) + "-" + partTags.size();
+        val object = new StoredObject(content.toByteArray(), upload.metadata, eTag);
+        uploads.remove(uploadId);
+        objects.put(key, object);
+        return object;
+    }
+
+    /**
+     * Abandon a multipart upload, discarding its parts.
+     *
+     * @param key      The key of the object being created
+     * @param uploadId The upload id
+     */
+    void abortUpload(final String key, final String uploadId) {
+        upload(key, uploadId);
+        uploads.remove(uploadId);
+    }
+
+    /**
+     * The number of multipart uploads that have been started but not completed or aborted.
+     *
+     * @return the number of uploads
+     */
+    int getUploadsInProgress() {
+        return uploads.size();
+    }
+
+    private MultipartUpload upload(final String key, final String uploadId) {
+        val upload = uploads.get(uploadId);
+        if (upload == null || !upload.key.equals(key)) {
+            throw S3Errors.noSuchUpload(uploadId);
+        }
+        return upload;
+    }
+
+    private static String commonPrefix(final String key, final String prefix, final String delimiter) {
+        val index = key.indexOf(delimiter, prefix.length());
+        if (index < 0) {
+            return null;
+        }
+        return key.substring(0, index + delimiter.length());
+    }
+
+    private static String max(final String a, final String b) {
+        if (a.compareTo(b) >= 0) {
+            return a;
+        }
+        return b;
+    }
+
+    private static String emptyIfNull(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+
+    private static String unquote(final String eTag) {
+        if (eTag != null && eTag.length() > 1 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            return eTag.substring(1, eTag.length() - 1);
+        }
+        return eTag;
+    }
+
+    /**
+     * A multipart upload in progress.
+     */
+    @RequiredArgsConstructor
+    private static final class MultipartUpload {
+
+        private final String key;
+
+        private final ObjectMetadata metadata;
+
+        private final ConcurrentNavigableMap<Integer, StoredObject> parts = new ConcurrentSkipListMap<>();
+    }
+}
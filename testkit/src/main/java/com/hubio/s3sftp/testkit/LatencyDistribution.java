@@ -0,0 +1,135 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import lombok.val;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A distribution of delays to add to S3 requests.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Draw a delay from the distribution.
+     *
+     * @return the delay in nanoseconds
+     */
+    long sampleNanos();
+
+    /**
+     * No delay.
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution none() {
+        return () -> 0L;
+    }
+
+    /**
+     * The same delay every time.
+     *
+     * @param delay The delay
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution fixed(final Duration delay) {
+        val nanos = delay.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * Delays spread evenly between two bounds.
+     *
+     * @param min The shortest delay
+     * @param max The longest delay
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution uniform(final Duration min, final Duration max) {
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("max must not be less than min: " + min + " to " + max);
+        }
+        val minNanos = min.toNanos();
+        val maxNanos = max.toNanos();
+        return () -> ThreadLocalRandom.current()
+                                      .nextLong(minNanos, maxNanos + 1);
+    }
+
+    /**
+     * Mostly short delays with a long tail, as from a service that is struggling.
+     *
+     * @param mean The mean delay
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution exponential(final Duration mean) {
+        val meanNanos = mean.toNanos();
+        return () -> (long) (-meanNanos * Math.log(1.0 - ThreadLocalRandom.current()
+                                                                          .nextDouble()));
+    }
+
+    /**
+     * Parse a distribution.
+     *
+     * <p>Times are given in milliseconds: {@code fixed:50}, {@code uniform:10-200} or {@code exponential:50}. An empty
+     * value is no delay.</p>
+     *
+     * @param value The distribution to parse
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution parse(final String value) {
+        if (value.isEmpty()) {
+            return none();
+        }
+        val separator = value.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected type:milliseconds: " + value);
+        }
+        val type = value.substring(0, separator);
+        val millis = value.substring(separator + 1);
+        switch (type) {
+            case "fixed":
+                return fixed(Duration.ofMillis(Long.parseLong(millis)));
+            case "uniform":
+                val bounds = millis.split("-", 2);
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("Expected uniform:min-max: " + value);
+                }
+                return uniform(Duration.ofMillis(Long.parseLong(bounds[0])),
+                               Duration.ofMillis(Long.parseLong(bounds[1]))
+                              );
+            case "exponential":
+                return exponential(Duration.ofMillis(Long.parseLong(millis)));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + type);
+        }
+    }
+}
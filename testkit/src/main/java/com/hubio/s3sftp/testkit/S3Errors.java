@@ -0,0 +1,105 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+/**
+ * The errors that S3 reports, as the AWS SDK would present them.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+final class S3Errors {
+
+    private static final int BAD_REQUEST = 400;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int CONFLICT = 409;
+
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    private S3Errors() {
+        throw new UnsupportedOperationException();
+    }
+
+    static AmazonS3Exception noSuchBucket(final String bucket) {
+        return error(NOT_FOUND, "NoSuchBucket", "The specified bucket does not exist: " + bucket);
+    }
+
+    static AmazonS3Exception bucketAlreadyExists(final String bucket) {
+        return error(CONFLICT, "BucketAlreadyOwnedByYou", "The bucket already exists: " + bucket);
+    }
+
+    static AmazonS3Exception bucketNotEmpty(final String bucket) {
+        return error(CONFLICT, "BucketNotEmpty", "The bucket you tried to delete is not empty: " + bucket);
+    }
+
+    static AmazonS3Exception noSuchKey(final String key) {
+        return error(NOT_FOUND, "NoSuchKey", "The specified key does not exist: " + key);
+    }
+
+    static AmazonS3Exception noSuchUpload(final String uploadId) {
+        return error(NOT_FOUND, "NoSuchUpload", "The specified upload does not exist: " + uploadId);
+    }
+
+    static AmazonS3Exception invalidPart(final int partNumber) {
+        return error(BAD_REQUEST, "InvalidPart", "One or more of the specified parts could not be found: " + partNumber);
+    }
+
+    static AmazonS3Exception invalidPartOrder() {
+        return error(BAD_REQUEST, "InvalidPartOrder", "The list of parts was not in ascending order");
+    }
+
+    static AmazonS3Exception entityTooSmall(final int partNumber) {
+        return error(BAD_REQUEST, "EntityTooSmall",
+                     "Your proposed upload is smaller than the minimum allowed object size: part " + partNumber
+                    );
+    }
+
+    static AmazonS3Exception invalidRange(final long start, final long length) {
+        return error(RANGE_NOT_SATISFIABLE, "InvalidRange",
+                     String.format("The requested range is not satisfiable: %d of %d", start, length)
+                    );
+    }
+
+    /**
+     * Create an error.
+     *
+     * @param statusCode The HTTP status code
+     * @param errorCode  The S3 error code
+     * @param message    The message
+     *
+     * @return the error
+     */
+    static AmazonS3Exception error(final int statusCode, final String errorCode, final String message) {
+        final AmazonS3Exception exception = new AmazonS3Exception(message);
+        exception.setStatusCode(statusCode);
+        exception.setErrorCode(errorCode);
+        exception.setErrorType(AmazonServiceException.ErrorType.Client);
+        exception.setServiceName("Amazon S3");
+        return exception;
+    }
+}
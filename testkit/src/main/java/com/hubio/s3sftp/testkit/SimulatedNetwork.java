@@ -0,0 +1,166 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.AbortedException;
+import lombok.Getter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency and bandwidth of the network between the server and an {@link InMemoryAmazonS3}.
+ *
+ * <p>Each request waits for the latency before it is answered. Content is then sent or received at no more than the
+ * bandwidth, separately for each request, as each request to S3 is made over its own connection.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+@Getter
+public final class SimulatedNetwork {
+
+    private static final SimulatedNetwork NONE = new SimulatedNetwork(Duration.ZERO, 0L);
+
+    private final Duration latency;
+
+    /**
+     * The bandwidth in bytes per second, or zero if unlimited.
+     */
+    private final long bytesPerSecond;
+
+    private SimulatedNetwork(final Duration latency, final long bytesPerSecond) {
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("latency must not be negative: " + latency);
+        }
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("bytesPerSecond must not be negative: " + bytesPerSecond);
+        }
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * A network with no latency and unlimited bandwidth.
+     *
+     * @return the network
+     */
+    public static SimulatedNetwork none() {
+        return NONE;
+    }
+
+    /**
+     * A network with latency and limited bandwidth.
+     *
+     * @param latency        The time each request waits before it is answered
+     * @param bytesPerSecond The bandwidth of each request, or zero if unlimited
+     *
+     * @return the network
+     */
+    public static SimulatedNetwork of(final Duration latency, final long bytesPerSecond) {
+        return new SimulatedNetwork(latency, bytesPerSecond);
+    }
+
+    /**
+     * Wait for a request to reach S3 and be answered.
+     */
+    void roundTrip() {
+        sleep(latency.toNanos());
+    }
+
+    /**
+     * Wait for content to be sent.
+     *
+     * @param bytes The number of bytes sent
+     */
+    void transfer(final long bytes) {
+        if (bytesPerSecond > 0) {
+            sleep(nanosFor(bytes));
+        }
+    }
+
+    /**
+     * Limit the rate at which content can be read from a stream.
+     *
+     * @param content The stream of content
+     *
+     * @return the limited stream
+     */
+    InputStream receive(final InputStream content) {
+        if (bytesPerSecond == 0) {
+            return content;
+        }
+        return new FilterInputStream(content) {
+            @Override
+            public int read() throws IOException {
+                final int read = super.read();
+                if (read >= 0) {
+                    transfer(1);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int read = super.read(b, off, len);
+                if (read > 0) {
+                    transfer(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    private long nanosFor(final long bytes) {
+        return (long) ((double) bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+    }
+
+    /**
+     * Sleep, treating an interruption as the request being aborted.
+     *
+     * @param nanos The time to sleep in nanoseconds
+     */
+    static void sleep(final long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new AbortedException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (bytesPerSecond == 0) {
+            return String.format("latency %s, unlimited bandwidth", latency);
+        }
+        return String.format("latency %s, %d bytes per second", latency, bytesPerSecond);
+    }
+}
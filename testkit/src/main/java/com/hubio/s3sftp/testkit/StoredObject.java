@@ -0,0 +1,118 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Hubio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * An object held by an {@link InMemoryBucket}.
+ *
+ * <p>Immutable; replacing an object replaces the whole {@code StoredObject}.</p>
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+class StoredObject {
+
+    private final byte[] content;
+
+    private final ObjectMetadata metadata;
+
+    @Getter
+    private final String eTag;
+
+    @Getter
+    private final Date lastModified;
+
+    /**
+     * Constructor.
+     *
+     * @param content  The content of the object
+     * @param metadata The metadata supplied when the object was stored
+     * @param eTag     The entity tag
+     */
+    StoredObject(final byte[] content, final ObjectMetadata metadata, final String eTag) {
+        this.content = content;
+        this.metadata = metadata.clone();
+        this.eTag = eTag;
+        this.lastModified = new Date();
+    }
+
+    /**
+     * Create an object with the MD5 of its content as its entity tag, as S3 does for single part uploads.
+     *
+     * @param content  The content of the object
+     * @param metadata The metadata supplied when the object was stored
+     *
+     * @return the object
+     */
+    static StoredObject of(final byte[] content, final ObjectMetadata metadata) {
+        return new StoredObject(content, metadata, BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)));
+    }
+
+    /**
+     * The length of the content.
+     *
+     * @return the length in bytes
+     */
+    long getLength() {
+        return content.length;
+    }
+
+    /**
+     * The content. Callers must not modify it.
+     *
+     * @return the content
+     */
+    byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * The metadata, as it would be returned by S3.
+     *
+     * @return a copy of the metadata
+     */
+    ObjectMetadata getMetadata() {
+        final ObjectMetadata copy = metadata.clone();
+        copy.setContentLength(content.length);
+        copy.setHeader(Headers.ETAG, eTag);
+        copy.setLastModified(lastModified);
+        return copy;
+    }
+
+    /**
+     * The metadata supplied when the object was stored, for copying to another object.
+     *
+     * @return a copy of the metadata
+     */
+    ObjectMetadata getSuppliedMetadata() {
+        return metadata.clone();
+    }
+}
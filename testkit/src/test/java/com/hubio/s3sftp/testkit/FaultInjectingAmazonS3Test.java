@@ -0,0 +1,174 @@
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+
+/**
+ * Tests for {@link FaultInjectingAmazonS3} and {@link FaultInjectingAmazonS3Factory}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class FaultInjectingAmazonS3Test {
+
+    private static final String BUCKET = "bucket";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private InMemoryAmazonS3 amazonS3;
+
+    @Before
+    public void setUp() {
+        amazonS3 = new InMemoryAmazonS3();
+        amazonS3.createBucket(BUCKET);
+        amazonS3.putObject(BUCKET, "key", "0123456789");
+    }
+
+    @Test
+    public void shouldPassRequestsThroughWhenNoFaults() {
+        //given
+        val subject = FaultInjectingAmazonS3.wrap(amazonS3, FaultPlan.none());
+        //when
+        val result = subject.getObjectAsString(BUCKET, "key");
+        //then
+        assertThat(result).isEqualTo("0123456789");
+    }
+
+    @Test
+    public void shouldRefuseWithSlowDown() {
+        //given
+        val subject = wrap("getObjectMetadata", Faults.builder()
+                                                      .slowDownRate(1.0)
+                                                      .build());
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Status Code: 503; Error Code: SlowDown");
+        //when
+        subject.getObjectMetadata(BUCKET, "key");
+    }
+
+    @Test
+    public void shouldOnlyInjectFaultsIntoNamedApi() {
+        //given
+        val subject = wrap("getObjectMetadata", Faults.builder()
+                                                      .slowDownRate(1.0)
+                                                      .build());
+        //when
+        val result = subject.doesObjectExist(BUCKET, "key");
+        //then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void shouldResetConnection() {
+        //given
+        val subject = wrap("putObject", Faults.builder()
+                                              .connectionResetRate(1.0)
+                                              .build());
+        exception.expect(SdkClientException.class);
+        exception.expectCause(instanceOf(SocketException.class));
+        //when
+        subject.putObject(BUCKET, "other", "content");
+    }
+
+    @Test
+    public void shouldResetConnectionPartWayThroughContent() throws IOException {
+        //given
+        val subject = wrap("getObject", Faults.builder()
+                                              .partialReadRate(1.0)
+                                              .build());
+        val buffer = new byte[100];
+        int total = 0;
+        //when
+        try (InputStream content = subject.getObject(BUCKET, "key")
+                                          .getObjectContent()) {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                total += read;
+            }
+        } catch (SocketException e) {
+            //then
+            assertThat(e).hasMessage("Connection reset");
+            assertThat(total).isLessThan(10);
+            return;
+        }
+        throw new AssertionError("Expected the connection to be reset");
+    }
+
+    @Test
+    public void shouldDelayRequests() {
+        //given
+        val subject = wrap("listBuckets", Faults.builder()
+                                                .latency(LatencyDistribution.fixed(Duration.ofMillis(50)))
+                                                .build());
+        val start = System.nanoTime();
+        //when
+        subject.listBuckets();
+        //then
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(50)
+                                                                             .toNanos());
+    }
+
+    @Test
+    public void shouldPassDelegateErrorsThrough() {
+        //given
+        val subject = FaultInjectingAmazonS3.wrap(amazonS3, FaultPlan.none());
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Error Code: NoSuchKey");
+        //when
+        subject.getObject(BUCKET, "missing");
+    }
+
+    @Test
+    public void factoryShouldWrapClientsOfDelegateFactory() {
+        //given
+        InMemoryAmazonS3Factory.use(amazonS3);
+        val props = new Properties();
+        props.setProperty(FaultInjectingAmazonS3Factory.DELEGATE_FACTORY_CLASS,
+                          InMemoryAmazonS3Factory.class.getName()
+                         );
+        props.setProperty(FaultPlan.SLOW_DOWN_RATE + ".deleteObject", "1");
+        val subject = new FaultInjectingAmazonS3Factory().getAmazonS3(URI.create("s3://in-memory/"), props);
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Error Code: SlowDown");
+        //when
+        try {
+            subject.deleteObject(BUCKET, "key");
+        } finally {
+            //then
+            assertThat(subject.getObjectAsString(BUCKET, "key")).isEqualTo("0123456789");
+        }
+    }
+
+    @Test
+    public void factoryShouldErrorWhenDelegateFactoryIsUnknown() {
+        //given
+        val props = new Properties();
+        props.setProperty(FaultInjectingAmazonS3Factory.DELEGATE_FACTORY_CLASS, "com.example.Missing");
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Could not create delegate AmazonS3Factory: com.example.Missing");
+        //when
+        new FaultInjectingAmazonS3Factory().getAmazonS3(URI.create("s3://in-memory/"), props);
+    }
+
+    private AmazonS3 wrap(final String api, final Faults faults) {
+        return FaultInjectingAmazonS3.wrap(amazonS3, FaultPlan.builder()
+                                                              .api(api, faults)
+                                                              .build());
+    }
+}
@@ -0,0 +1,101 @@
+package com.hubio.s3sftp.testkit;
+
+import lombok.val;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link FaultPlan}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class FaultPlanTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        System.clearProperty(FaultPlan.SLOW_DOWN_RATE);
+    }
+
+    @Test
+    public void noneShouldInjectNothing() {
+        //when
+        val result = FaultPlan.none()
+                              .forApi("getObject");
+        //then
+        assertThat(result.getLatency()
+                         .sampleNanos()).isZero();
+        assertThat(result.getSlowDownRate()).isZero();
+        assertThat(result.getConnectionResetRate()).isZero();
+        assertThat(result.getPartialReadRate()).isZero();
+    }
+
+    @Test
+    public void shouldReadDefaultsFromProperties() {
+        //given
+        val props = new Properties();
+        props.setProperty(FaultPlan.LATENCY, "fixed:5");
+        props.setProperty(FaultPlan.SLOW_DOWN_RATE, "0.1");
+        props.setProperty(FaultPlan.CONNECTION_RESET_RATE, "0.2");
+        props.setProperty(FaultPlan.PARTIAL_READ_RATE, "0.3");
+        //when
+        val result = FaultPlan.fromProperties(props)
+                              .forApi("putObject");
+        //then
+        assertThat(result.getLatency()
+                         .sampleNanos()).isEqualTo(Duration.ofMillis(5)
+                                                           .toNanos());
+        assertThat(result.getSlowDownRate()).isEqualTo(0.1);
+        assertThat(result.getConnectionResetRate()).isEqualTo(0.2);
+        assertThat(result.getPartialReadRate()).isEqualTo(0.3);
+    }
+
+    @Test
+    public void apiShouldOverrideDefaults() {
+        //given
+        val props = new Properties();
+        props.setProperty(FaultPlan.SLOW_DOWN_RATE, "0.1");
+        props.setProperty(FaultPlan.CONNECTION_RESET_RATE, "0.2");
+        props.setProperty(FaultPlan.SLOW_DOWN_RATE + ".putObject", "0.5");
+        //when
+        val subject = FaultPlan.fromProperties(props);
+        //then
+        assertThat(subject.forApi("putObject")
+                          .getSlowDownRate()).isEqualTo(0.5);
+        assertThat(subject.forApi("putObject")
+                          .getConnectionResetRate()).isEqualTo(0.2);
+        assertThat(subject.forApi("getObject")
+                          .getSlowDownRate()).isEqualTo(0.1);
+    }
+
+    @Test
+    public void shouldFallBackToSystemProperties() {
+        //given
+        System.setProperty(FaultPlan.SLOW_DOWN_RATE, "0.4");
+        //when
+        val result = FaultPlan.fromProperties(new Properties())
+                              .forApi("getObject");
+        //then
+        assertThat(result.getSlowDownRate()).isEqualTo(0.4);
+    }
+
+    @Test
+    public void shouldErrorWhenRateIsNotAProbability() {
+        //given
+        val props = new Properties();
+        props.setProperty(FaultPlan.CONNECTION_RESET_RATE, "1.5");
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("connectionResetRate must be between 0 and 1");
+        //when
+        FaultPlan.fromProperties(props);
+    }
+}
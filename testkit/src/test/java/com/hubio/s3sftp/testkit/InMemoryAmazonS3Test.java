@@ -0,0 +1,346 @@
+package com.hubio.s3sftp.testkit;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link InMemoryAmazonS3}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class InMemoryAmazonS3Test {
+
+    private static final String BUCKET = "bucket";
+
+    private static final int PART_SIZE = (int) InMemoryBucket.MIN_PART_SIZE;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private InMemoryAmazonS3 subject;
+
+    @Before
+    public void setUp() {
+        subject = new InMemoryAmazonS3();
+        subject.createBucket(BUCKET);
+    }
+
+    @Test
+    public void shouldGetWhatWasPut() throws IOException {
+        //given
+        subject.putObject(BUCKET, "key", "content");
+        //when
+        val result = subject.getObject(BUCKET, "key");
+        //then
+        assertThat(read(result.getObjectContent())).isEqualTo("content");
+        assertThat(result.getObjectMetadata()
+                         .getContentLength()).isEqualTo(7L);
+        assertThat(result.getObjectMetadata()
+                         .getContentType()).isEqualTo("text/plain");
+    }
+
+    @Test
+    public void getShouldReturnRequestedRange() throws IOException {
+        //given
+        subject.putObject(BUCKET, "key", "0123456789");
+        //when
+        val result = subject.getObject(new GetObjectRequest(BUCKET, "key").withRange(2, 5));
+        //then
+        assertThat(read(result.getObjectContent())).isEqualTo("2345");
+        assertThat(result.getObjectMetadata()
+                         .getContentLength()).isEqualTo(4L);
+        assertThat(result.getObjectMetadata()
+                         .getRawMetadataValue("Content-Range")).isEqualTo("bytes 2-5/10");
+    }
+
+    @Test
+    public void getShouldClampRangeToEndOfObject() throws IOException {
+        //given
+        subject.putObject(BUCKET, "key", "0123456789");
+        //when
+        val result = subject.getObject(new GetObjectRequest(BUCKET, "key").withRange(8, 100));
+        //then
+        assertThat(read(result.getObjectContent())).isEqualTo("89");
+    }
+
+    @Test
+    public void getShouldRejectRangeBeyondEndOfObject() {
+        //given
+        subject.putObject(BUCKET, "key", "0123456789");
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Status Code: 416; Error Code: InvalidRange");
+        //when
+        subject.getObject(new GetObjectRequest(BUCKET, "key").withRange(10, 20));
+    }
+
+    @Test
+    public void getShouldReturnNothingWhenETagIsUnchanged() {
+        //given
+        val eTag = subject.putObject(BUCKET, "key", "content")
+                          .getETag();
+        //when
+        val result = subject.getObject(new GetObjectRequest(BUCKET, "key").withNonmatchingETagConstraint(eTag));
+        //then
+        assertThat(result).isNull();
+    }
+
+    @Test
+    public void getShouldReturnObjectWhenETagHasChanged() throws IOException {
+        //given
+        subject.putObject(BUCKET, "key", "content");
+        //when
+        val result = subject.getObject(new GetObjectRequest(BUCKET, "key").withNonmatchingETagConstraint("stale"));
+        //then
+        assertThat(read(result.getObjectContent())).isEqualTo("content");
+    }
+
+    @Test
+    public void getShouldFailWhenKeyIsMissing() {
+        //given
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Status Code: 404; Error Code: NoSuchKey");
+        //when
+        subject.getObject(BUCKET, "missing");
+    }
+
+    @Test
+    public void putShouldFailWhenBucketIsMissing() {
+        //given
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Error Code: NoSuchBucket");
+        //when
+        subject.putObject("missing", "key", "content");
+    }
+
+    @Test
+    public void headShouldReturnMetadata() {
+        //given
+        val metadata = new ObjectMetadata();
+        metadata.setContentLength(3);
+        metadata.addUserMetadata("owner", "alice");
+        subject.putObject(BUCKET, "key", new ByteArrayInputStream(new byte[]{1, 2, 3}), metadata);
+        //when
+        val result = subject.getObjectMetadata(BUCKET, "key");
+        //then
+        assertThat(result.getContentLength()).isEqualTo(3L);
+        assertThat(result.getUserMetaDataOf("owner")).isEqualTo("alice");
+        assertThat(result.getETag()).isEqualTo("5289df737df57326fcdd22597afb1fac");
+        assertThat(result.getLastModified()).isNotNull();
+    }
+
+    @Test
+    public void listShouldPaginate() {
+        //given
+        Arrays.asList("a", "b", "c", "d", "e")
+              .forEach(key -> subject.putObject(BUCKET, key, key));
+        //when
+        val first = subject.listObjects(new ListObjectsRequest().withBucketName(BUCKET)
+                                                                .withMaxKeys(2));
+        val second = subject.listNextBatchOfObjects(first);
+        val third = subject.listNextBatchOfObjects(second);
+        //then
+        assertThat(keys(first.getObjectSummaries())).containsExactly("a", "b");
+        assertThat(first.isTruncated()).isTrue();
+        assertThat(keys(second.getObjectSummaries())).containsExactly("c", "d");
+        assertThat(keys(third.getObjectSummaries())).containsExactly("e");
+        assertThat(third.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void listShouldGroupByDelimiter() {
+        //given
+        Arrays.asList("docs/a", "docs/sub/b", "docs/sub/c", "docs/z", "other")
+              .forEach(key -> subject.putObject(BUCKET, key, key));
+        //when
+        val result = subject.listObjects(new ListObjectsRequest().withBucketName(BUCKET)
+                                                                 .withPrefix("docs/")
+                                                                 .withDelimiter("/"));
+        //then
+        assertThat(keys(result.getObjectSummaries())).containsExactly("docs/a", "docs/z");
+        assertThat(result.getCommonPrefixes()).containsExactly("docs/sub/");
+    }
+
+    @Test
+    public void listV2ShouldPaginateWithContinuationTokens() {
+        //given
+        Arrays.asList("a", "b", "c")
+              .forEach(key -> subject.putObject(BUCKET, key, key));
+        val request = new ListObjectsV2Request().withBucketName(BUCKET)
+                                                .withMaxKeys(2);
+        //when
+        val first = subject.listObjectsV2(request);
+        val second = subject.listObjectsV2(request.withContinuationToken(first.getNextContinuationToken()));
+        //then
+        assertThat(keys(first.getObjectSummaries())).containsExactly("a", "b");
+        assertThat(first.getKeyCount()).isEqualTo(2);
+        assertThat(first.getNextContinuationToken()).isNotNull();
+        assertThat(keys(second.getObjectSummaries())).containsExactly("c");
+        assertThat(second.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void listV2ShouldStartAfterKey() {
+        //given
+        Arrays.asList("a", "b", "c")
+              .forEach(key -> subject.putObject(BUCKET, key, key));
+        //when
+        val result = subject.listObjectsV2(new ListObjectsV2Request().withBucketName(BUCKET)
+                                                                     .withStartAfter("a"));
+        //then
+        assertThat(keys(result.getObjectSummaries())).containsExactly("b", "c");
+    }
+
+    @Test
+    public void copyShouldDuplicateContentAndMetadata() throws IOException {
+        //given
+        subject.putObject(BUCKET, "source", "content");
+        subject.createBucket("other");
+        //when
+        subject.copyObject(BUCKET, "source", "other", "target");
+        //then
+        val result = subject.getObject("other", "target");
+        assertThat(read(result.getObjectContent())).isEqualTo("content");
+        assertThat(result.getObjectMetadata()
+                         .getContentType()).isEqualTo("text/plain");
+        assertThat(subject.doesObjectExist(BUCKET, "source")).isTrue();
+    }
+
+    @Test
+    public void copyShouldReplaceMetadataWhenGiven() {
+        //given
+        subject.putObject(BUCKET, "source", "content");
+        val metadata = new ObjectMetadata();
+        metadata.setContentType("application/octet-stream");
+        //when
+        subject.copyObject(new CopyObjectRequest(BUCKET, "source", BUCKET, "target").withNewObjectMetadata(metadata));
+        //then
+        assertThat(subject.getObjectMetadata(BUCKET, "target")
+                          .getContentType()).isEqualTo("application/octet-stream");
+    }
+
+    @Test
+    public void deleteObjectsShouldRemoveEachKey() {
+        //given
+        Arrays.asList("a", "b", "c")
+              .forEach(key -> subject.putObject(BUCKET, key, key));
+        //when
+        val result = subject.deleteObjects(new DeleteObjectsRequest(BUCKET).withKeys("a", "c", "missing"));
+        //then
+        assertThat(result.getDeletedObjects()).extracting("key")
+                                              .containsExactly("a", "c", "missing");
+        assertThat(keys(subject.listObjects(BUCKET)
+                               .getObjectSummaries())).containsExactly("b");
+    }
+
+    @Test
+    public void deleteBucketShouldFailWhenNotEmpty() {
+        //given
+        subject.putObject(BUCKET, "key", "content");
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Error Code: BucketNotEmpty");
+        //when
+        subject.deleteBucket(BUCKET);
+    }
+
+    @Test
+    public void multipartUploadShouldJoinParts() throws IOException {
+        //given
+        val upload = subject.initiateMultipartUpload(new InitiateMultipartUploadRequest(BUCKET, "key"));
+        val first = new byte[PART_SIZE];
+        Arrays.fill(first, (byte) 'a');
+        val tags = new ArrayList<PartETag>();
+        tags.add(uploadPart(upload.getUploadId(), 1, first));
+        tags.add(uploadPart(upload.getUploadId(), 2, "tail".getBytes(StandardCharsets.UTF_8)));
+        assertThat(subject.getUploadsInProgress(BUCKET)).isEqualTo(1);
+        //when
+        val result = subject.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(BUCKET, "key", upload.getUploadId(), tags));
+        //then
+        assertThat(result.getETag()).endsWith("-2");
+        val tail = new GetObjectRequest(BUCKET, "key").withRange(PART_SIZE - 1, PART_SIZE + 3);
+        val content = read(subject.getObject(tail)
+                                  .getObjectContent());
+        assertThat(content).isEqualTo("atail");
+        assertThat(subject.getUploadsInProgress(BUCKET)).isZero();
+    }
+
+    @Test
+    public void multipartUploadShouldRejectSmallPartsBeforeTheLast() {
+        //given
+        val upload = subject.initiateMultipartUpload(new InitiateMultipartUploadRequest(BUCKET, "key"));
+        val tags = new ArrayList<PartETag>();
+        tags.add(uploadPart(upload.getUploadId(), 1, new byte[1]));
+        tags.add(uploadPart(upload.getUploadId(), 2, new byte[1]));
+        exception.expect(AmazonS3Exception.class);
+        exception.expectMessage("Error Code: EntityTooSmall");
+        //when
+        subject.completeMultipartUpload(new CompleteMultipartUploadRequest(BUCKET, "key", upload.getUploadId(), tags));
+    }
+
+    @Test
+    public void shouldDelayRequestsBySimulatedLatency() {
+        //given
+        subject = new InMemoryAmazonS3(SimulatedNetwork.of(Duration.ofMillis(50), 0L));
+        val start = System.nanoTime();
+        //when
+        subject.listBuckets();
+        //then
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(50)
+                                                                             .toNanos());
+    }
+
+    private PartETag uploadPart(final String uploadId, final int partNumber, final byte[] content) {
+        return subject.uploadPart(new UploadPartRequest().withBucketName(BUCKET)
+                                                         .withKey("key")
+                                                         .withUploadId(uploadId)
+                                                         .withPartNumber(partNumber)
+                                                         .withPartSize(content.length)
+                                                         .withInputStream(new ByteArrayInputStream(content)))
+                      .getPartETag();
+    }
+
+    private static List<String> keys(final List<S3ObjectSummary> summaries) {
+        val keys = new ArrayList<String>();
+        summaries.forEach(summary -> keys.add(summary.getKey()));
+        return keys;
+    }
+
+    private static String read(final InputStream input) throws IOException {
+        try (InputStream in = input) {
+            val output = new ByteArrayOutputStream();
+            val buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
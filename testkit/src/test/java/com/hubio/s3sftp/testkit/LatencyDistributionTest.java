@@ -0,0 +1,84 @@
+package com.hubio.s3sftp.testkit;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LatencyDistribution}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class LatencyDistributionTest {
+
+    private static final long MILLISECOND = Duration.ofMillis(1)
+                                                    .toNanos();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void emptyShouldParseAsNone() {
+        //when
+        val result = LatencyDistribution.parse("");
+        //then
+        assertThat(result.sampleNanos()).isZero();
+    }
+
+    @Test
+    public void shouldParseFixed() {
+        //when
+        val result = LatencyDistribution.parse("fixed:50");
+        //then
+        assertThat(result.sampleNanos()).isEqualTo(50 * MILLISECOND);
+    }
+
+    @Test
+    public void shouldParseUniform() {
+        //given
+        val subject = LatencyDistribution.parse("uniform:10-20");
+        for (int i = 0; i < 1000; i++) {
+            //when
+            val result = subject.sampleNanos();
+            //then
+            assertThat(result).isBetween(10 * MILLISECOND, 20 * MILLISECOND);
+        }
+    }
+
+    @Test
+    public void exponentialShouldHaveRequestedMean() {
+        //given
+        val subject = LatencyDistribution.parse("exponential:10");
+        val samples = 100_000;
+        long total = 0L;
+        //when
+        for (int i = 0; i < samples; i++) {
+            total += subject.sampleNanos();
+        }
+        //then
+        assertThat((double) total / samples).isBetween(9.0 * MILLISECOND, 11.0 * MILLISECOND);
+    }
+
+    @Test
+    public void shouldErrorWhenTypeIsUnknown() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unknown latency distribution: normal");
+        //when
+        LatencyDistribution.parse("normal:10");
+    }
+
+    @Test
+    public void shouldErrorWhenUniformHasNoUpperBound() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Expected uniform:min-max");
+        //when
+        LatencyDistribution.parse("uniform:10");
+    }
+}
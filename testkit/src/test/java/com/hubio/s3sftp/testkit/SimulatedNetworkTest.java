@@ -0,0 +1,72 @@
+package com.hubio.s3sftp.testkit;
+
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SimulatedNetwork}.
+ *
+ * @author Paul Campbell (paul.campbell@hubio.com)
+ */
+public class SimulatedNetworkTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void noneShouldNotLimitReads() {
+        //given
+        val content = new ByteArrayInputStream(new byte[10]);
+        //when
+        val result = SimulatedNetwork.none()
+                                     .receive(content);
+        //then
+        assertThat(result).isSameAs(content);
+    }
+
+    @Test
+    public void receiveShouldPaceReadsToBandwidth() throws Exception {
+        //given
+        val subject = SimulatedNetwork.of(Duration.ZERO, 10_000L);
+        val input = subject.receive(new ByteArrayInputStream(new byte[1000]));
+        val start = System.nanoTime();
+        //when
+        while (input.read(new byte[100]) != -1) {
+            // drain
+        }
+        //then
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(100)
+                                                                             .toNanos());
+    }
+
+    @Test
+    public void shouldErrorWhenLatencyIsNegative() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("latency");
+        //when
+        SimulatedNetwork.of(Duration.ofMillis(-1), 0L);
+    }
+
+    @Test
+    public void shouldErrorWhenBandwidthIsNegative() {
+        //given
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("bytesPerSecond");
+        //when
+        SimulatedNetwork.of(Duration.ZERO, -1L);
+    }
+
+    @Test
+    public void shouldDescribeItself() {
+        assertThat(SimulatedNetwork.of(Duration.ofMillis(20), 1024L)
+                                   .toString()).isEqualTo("latency PT0.02S, 1024 bytes per second");
+    }
+}